@@ -1,5 +1,6 @@
 package com.fintrack.common;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -17,6 +18,20 @@ public class ResponseWrapper {
             .body(ApiResponse.success(data, message));
     }
 
+    public static <T> ResponseEntity<ApiResponse<T>> ok(T data, HttpHeaders headers) {
+        return ResponseEntity.ok()
+            .headers(headers)
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(ApiResponse.success(data));
+    }
+
+    public static <T> ResponseEntity<ApiResponse<T>> ok(T data, HttpHeaders headers, MediaType contentType) {
+        return ResponseEntity.ok()
+            .headers(headers)
+            .contentType(contentType)
+            .body(ApiResponse.success(data));
+    }
+
     public static <T> ResponseEntity<ApiResponse<T>> error(String message, HttpStatus status) {
         return ResponseEntity.status(status)
             .contentType(MediaType.APPLICATION_JSON)
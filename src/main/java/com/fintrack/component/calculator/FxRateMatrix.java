@@ -0,0 +1,293 @@
+package com.fintrack.component.calculator;
+
+import com.fintrack.constants.finance.AssetType;
+import com.fintrack.dto.market.MarketDataDto;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.*;
+
+/**
+ * Dense cross-rate matrix built from a graph of currency pairs.
+ *
+ * Every FOREX pair "A/B" with price p is an edge A -> B with rate p and an edge B -> A with rate 1/p. For each source
+ * currency a breadth-first search finds the path with the fewest hops to every other currency, preferring the pivot
+ * currencies when paths are equally short, and the product of the edge rates along that path is stored in
+ * rates[from][to]. A conversion is then a single array read.
+ *
+ * Rounding: a quoted pair is used exactly as stored. Inverted edges and multi-hop products are rounded to
+ * {@link #CROSS_RATE_CONTEXT} (16 significant digits, HALF_EVEN).
+ *
+ * Instances are immutable. {@link #withRates(Map, long)} returns a new matrix; when only rates of existing pairs change,
+ * only the rows whose search tree uses a changed pair are recomputed and the other rows are shared.
+ */
+public final class FxRateMatrix {
+
+    public static final MathContext CROSS_RATE_CONTEXT = MathContext.DECIMAL64;
+
+    // Preferred intermediate currencies when several shortest paths exist
+    private static final List<String> PIVOT_CURRENCIES = List.of("USD", "EUR");
+
+    private static final FxRateMatrix EMPTY = new FxRateMatrix(0L, Collections.emptyMap());
+
+    private final long version;
+    private final Map<String, BigDecimal> pairRates; // "A/B" -> quoted price
+    private final Map<String, Integer> currencyIndex;
+    private final String[] currencies;
+    private final int[][] neighbours;
+    private final BigDecimal[][] rates; // rates[from][to], null when there is no path
+    private final int[][] parents; // parents[source][node], -1 for the source and unreachable nodes
+    private final int[][] searchOrder; // per source, the reachable nodes in breadth-first order
+
+    private FxRateMatrix(long version, Map<String, BigDecimal> pairRates) {
+        this.version = version;
+        this.pairRates = Collections.unmodifiableMap(new LinkedHashMap<>(pairRates));
+
+        SortedSet<String> currencySet = new TreeSet<>(FxRateMatrix::compareCurrencies);
+        for (String pair : this.pairRates.keySet()) {
+            currencySet.add(baseOf(pair));
+            currencySet.add(quoteOf(pair));
+        }
+        this.currencies = currencySet.toArray(new String[0]);
+        this.currencyIndex = new HashMap<>();
+        for (int i = 0; i < currencies.length; i++) {
+            currencyIndex.put(currencies[i], i);
+        }
+
+        // Currencies are sorted pivots first, so sorted neighbour lists make the search prefer pivots
+        List<SortedSet<Integer>> adjacency = new ArrayList<>();
+        for (int i = 0; i < currencies.length; i++) {
+            adjacency.add(new TreeSet<>());
+        }
+        for (String pair : this.pairRates.keySet()) {
+            int base = currencyIndex.get(baseOf(pair));
+            int quote = currencyIndex.get(quoteOf(pair));
+            adjacency.get(base).add(quote);
+            adjacency.get(quote).add(base);
+        }
+        this.neighbours = new int[currencies.length][];
+        for (int i = 0; i < currencies.length; i++) {
+            neighbours[i] = adjacency.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        int size = currencies.length;
+        this.rates = new BigDecimal[size][];
+        this.parents = new int[size][];
+        this.searchOrder = new int[size][];
+        for (int source = 0; source < size; source++) {
+            search(source);
+            rates[source] = computeRow(source);
+        }
+    }
+
+    /**
+     * Copies the search trees of {@code previous} and recomputes only the rows listed in {@code affectedRows}.
+     */
+    private FxRateMatrix(FxRateMatrix previous, long version, Map<String, BigDecimal> pairRates, boolean[] affectedRows) {
+        this.version = version;
+        this.pairRates = Collections.unmodifiableMap(new LinkedHashMap<>(pairRates));
+        this.currencyIndex = previous.currencyIndex;
+        this.currencies = previous.currencies;
+        this.neighbours = previous.neighbours;
+        this.parents = previous.parents;
+        this.searchOrder = previous.searchOrder;
+        this.rates = previous.rates.clone();
+        for (int source = 0; source < currencies.length; source++) {
+            if (affectedRows[source]) {
+                rates[source] = computeRow(source);
+            }
+        }
+    }
+
+    public static FxRateMatrix empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Builds a matrix from quoted pair prices keyed by "BASE/QUOTE". Malformed symbols and non-positive prices are ignored.
+     */
+    public static FxRateMatrix build(Map<String, BigDecimal> pairRates, long version) {
+        Map<String, BigDecimal> validRates = new LinkedHashMap<>();
+        pairRates.forEach((pair, rate) -> {
+            if (isPair(pair) && rate != null && rate.signum() > 0) {
+                validRates.put(pair, rate);
+            }
+        });
+        return new FxRateMatrix(version, validRates);
+    }
+
+    /**
+     * Builds a matrix from the FOREX entries of the given market data; other asset types are ignored.
+     */
+    public static FxRateMatrix fromMarketData(Collection<MarketDataDto> marketData) {
+        Map<String, BigDecimal> pairRates = new LinkedHashMap<>();
+        for (MarketDataDto dto : marketData) {
+            if (dto.getAssetType() == AssetType.FOREX) {
+                pairRates.putIfAbsent(dto.getSymbol(), dto.getPrice());
+            }
+        }
+        return build(pairRates, 0L);
+    }
+
+    /**
+     * Returns a matrix with the given pair prices applied on top of this one.
+     *
+     * When every updated pair already exists, the graph is unchanged and only the rows whose search tree uses an
+     * updated pair are recomputed. A new pair changes the graph and causes a full rebuild.
+     */
+    public FxRateMatrix withRates(Map<String, BigDecimal> updatedRates, long newVersion) {
+        Map<String, BigDecimal> merged = new LinkedHashMap<>(pairRates);
+        List<String> changedPairs = new ArrayList<>();
+        boolean topologyChanged = false;
+
+        for (Map.Entry<String, BigDecimal> entry : updatedRates.entrySet()) {
+            String pair = entry.getKey();
+            BigDecimal rate = entry.getValue();
+            if (!isPair(pair) || rate == null || rate.signum() <= 0) {
+                continue;
+            }
+            BigDecimal existing = merged.put(pair, rate);
+            if (existing == null) {
+                topologyChanged = true;
+            } else if (!existing.equals(rate)) {
+                changedPairs.add(pair);
+            }
+        }
+
+        if (topologyChanged) {
+            return new FxRateMatrix(newVersion, merged);
+        }
+
+        boolean[] affectedRows = new boolean[currencies.length];
+        for (String pair : changedPairs) {
+            int base = currencyIndex.get(baseOf(pair));
+            int quote = currencyIndex.get(quoteOf(pair));
+            for (int source = 0; source < currencies.length; source++) {
+                if (parents[source][quote] == base || parents[source][base] == quote) {
+                    affectedRows[source] = true;
+                }
+            }
+        }
+        return new FxRateMatrix(this, newVersion, merged, affectedRows);
+    }
+
+    /**
+     * @return The number of units of {@code to} one unit of {@code from} is worth, or null if there is no path
+     */
+    public BigDecimal rate(String from, String to) {
+        if (from.equals(to)) {
+            return BigDecimal.ONE;
+        }
+        Integer fromIndex = currencyIndex.get(from);
+        Integer toIndex = currencyIndex.get(to);
+        if (fromIndex == null || toIndex == null) {
+            return null;
+        }
+        return rates[fromIndex][toIndex];
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Map<String, BigDecimal> getPairRates() {
+        return pairRates;
+    }
+
+    public Set<String> getCurrencies() {
+        return currencyIndex.keySet();
+    }
+
+    public boolean isEmpty() {
+        return currencies.length == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "FxRateMatrix{" +
+                "version=" + version +
+                ", currencies=" + currencies.length +
+                ", pairs=" + pairRates.size() +
+                '}';
+    }
+
+    private void search(int source) {
+        int size = currencies.length;
+        int[] parent = new int[size];
+        Arrays.fill(parent, -1);
+        boolean[] visited = new boolean[size];
+        int[] queue = new int[size];
+        int head = 0;
+        int tail = 0;
+
+        visited[source] = true;
+        queue[tail++] = source;
+        while (head < tail) {
+            int node = queue[head++];
+            for (int next : neighbours[node]) {
+                if (!visited[next]) {
+                    visited[next] = true;
+                    parent[next] = node;
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        parents[source] = parent;
+        searchOrder[source] = Arrays.copyOf(queue, tail);
+    }
+
+    private BigDecimal[] computeRow(int source) {
+        BigDecimal[] row = new BigDecimal[currencies.length];
+        row[source] = BigDecimal.ONE;
+        int[] order = searchOrder[source];
+        // order[0] is the source itself; parents always come before their children
+        for (int i = 1; i < order.length; i++) {
+            int node = order[i];
+            int parent = parents[source][node];
+            BigDecimal edge = edgeRate(parent, node);
+            row[node] = parent == source ? edge : row[parent].multiply(edge, CROSS_RATE_CONTEXT);
+        }
+        return row;
+    }
+
+    private BigDecimal edgeRate(int from, int to) {
+        BigDecimal direct = pairRates.get(currencies[from] + "/" + currencies[to]);
+        if (direct != null) {
+            return direct;
+        }
+        BigDecimal reverse = pairRates.get(currencies[to] + "/" + currencies[from]);
+        return BigDecimal.ONE.divide(reverse, CROSS_RATE_CONTEXT);
+    }
+
+    private static int compareCurrencies(String left, String right) {
+        int leftRank = pivotRank(left);
+        int rightRank = pivotRank(right);
+        if (leftRank != rightRank) {
+            return Integer.compare(leftRank, rightRank);
+        }
+        return left.compareTo(right);
+    }
+
+    private static int pivotRank(String currency) {
+        int rank = PIVOT_CURRENCIES.indexOf(currency);
+        return rank >= 0 ? rank : PIVOT_CURRENCIES.size();
+    }
+
+    private static boolean isPair(String symbol) {
+        if (symbol == null) {
+            return false;
+        }
+        int slash = symbol.indexOf('/');
+        return slash > 0 && slash < symbol.length() - 1 && symbol.indexOf('/', slash + 1) < 0
+                && !baseOf(symbol).equals(quoteOf(symbol));
+    }
+
+    private static String baseOf(String pair) {
+        return pair.substring(0, pair.indexOf('/'));
+    }
+
+    private static String quoteOf(String pair) {
+        return pair.substring(pair.indexOf('/') + 1);
+    }
+}
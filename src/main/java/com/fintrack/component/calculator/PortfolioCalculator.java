@@ -8,7 +8,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.util.*;
 
 public class PortfolioCalculator {
@@ -19,16 +18,47 @@ public class PortfolioCalculator {
     private final List<Holdings> holdings;
     private final Map<String, MarketDataDto> marketDataMap; // String (symbol-assetType) -> MarketDataDto
     private final String baseCurrency;
-    private Map<String, Object[]> assetDetailsMap = new HashMap<>(); // String assetName -> Object[] (symbol, assetType)
-    private Map<String, Map<String, BigDecimal>> assetValuesMap = new HashMap<>();
+    private final FxRateMatrix fxRates;
+    private final ValuationKernel valuationKernel;
+    private Map<String, Object[]> assetDetailsMap; // String assetName -> Object[] (symbol, assetType), built on first access
+    private Map<String, Map<String, BigDecimal>> assetValuesMap; // Built on first access
 
+    /**
+     * Creates a calculator whose FX conversions use the FOREX entries of the market data map.
+     */
     public PortfolioCalculator(UUID accountId, List<Holdings> holdings, Map<String, MarketDataDto> marketDataMap, String baseCurrency) {
+        this(accountId, holdings, marketDataMap, FxRateMatrix.fromMarketData(marketDataMap.values()), baseCurrency);
+    }
+
+    public PortfolioCalculator(UUID accountId, List<Holdings> holdings, PriceSnapshot priceSnapshot, String baseCurrency) {
+        this(accountId, holdings, priceSnapshot.asMap(), priceSnapshot.getFxRates(), baseCurrency);
+    }
+
+    public PortfolioCalculator(UUID accountId, List<Holdings> holdings, Map<String, MarketDataDto> marketDataMap, FxRateMatrix fxRates, String baseCurrency) {
         this.accountId = accountId;
         this.holdings = holdings;
         this.marketDataMap = marketDataMap;
+        this.fxRates = fxRates;
         this.baseCurrency = baseCurrency;
-        this.assetDetailsMap = calculateAssetDetails();
-        this.assetValuesMap = calculateAssetValues();
+        this.valuationKernel = new ValuationKernel(holdings, new MarketDataPriceSource());
+    }
+
+    private PortfolioCalculator(UUID accountId, List<Holdings> holdings, String baseCurrency, ValuationKernel.PriceSource priceSource) {
+        this.accountId = accountId;
+        this.holdings = holdings;
+        this.marketDataMap = Collections.emptyMap();
+        this.fxRates = FxRateMatrix.empty();
+        this.baseCurrency = baseCurrency;
+        this.valuationKernel = new ValuationKernel(holdings, priceSource);
+    }
+
+    /**
+     * Creates a calculator from prices that are already in the base currency, e.g. a materialized monthly valuation.
+     *
+     * @param pricesInBaseCurrency Price per unit keyed by "symbol-assetType"; missing prices value the holding at zero
+     */
+    public static PortfolioCalculator fromBaseCurrencyPrices(UUID accountId, List<Holdings> holdings, Map<String, BigDecimal> pricesInBaseCurrency, String baseCurrency) {
+        return new PortfolioCalculator(accountId, holdings, baseCurrency, new BaseCurrencyPriceSource(pricesInBaseCurrency));
     }
 
     public UUID getAccountId() {
@@ -47,11 +77,25 @@ public class PortfolioCalculator {
         return baseCurrency;
     }
 
+    public FxRateMatrix getFxRates() {
+        return fxRates;
+    }
+
+    public ValuationKernel getValuationKernel() {
+        return valuationKernel;
+    }
+
     public Map<String, Object[]> getAssetDetailsMap() {
+        if (assetDetailsMap == null) {
+            assetDetailsMap = calculateAssetDetails();
+        }
         return assetDetailsMap;
     }
 
     public Map<String, Map<String, BigDecimal>> getAssetValuesMap() {
+        if (assetValuesMap == null) {
+            assetValuesMap = calculateAssetValues();
+        }
         return assetValuesMap;
     }
 
@@ -60,13 +104,14 @@ public class PortfolioCalculator {
 
         for (Holdings holding : holdings) {
             String assetName = holding.getAssetName();
+            int ordinal = valuationKernel.ordinalOf(assetName);
             Map<String, Object> assetData = new HashMap<>();
             assetData.put("assetName", assetName);
-            assetData.put("symbol", assetDetailsMap.get(assetName)[0]);
-            assetData.put("assetType", assetDetailsMap.get(assetName)[1]);
+            assetData.put("symbol", valuationKernel.symbol(ordinal));
+            assetData.put("assetType", valuationKernel.assetType(ordinal));
             assetData.put("quantity", holding.getTotalBalance());
-            assetData.put("priceInBaseCurrency", assetValuesMap.get(assetName).get("priceInBaseCurrency"));
-            assetData.put("totalValueInBaseCurrency", assetValuesMap.get(assetName).get("totalValueInBaseCurrency"));
+            assetData.put("priceInBaseCurrency", valuationKernel.priceInBaseCurrency(ordinal));
+            assetData.put("totalValueInBaseCurrency", valuationKernel.totalValueInBaseCurrency(ordinal));
 
             portfolioData.add(assetData);
         }
@@ -76,20 +121,16 @@ public class PortfolioCalculator {
 
     /**
      * Calculates a map of (asset name) -> Object[] (symbol, asset type).
+     * This is a view over the valuation kernel; prefer {@link #getValuationKernel()} on hot paths.
      */
     public Map<String, Object[]> calculateAssetDetails() {
         Map<String, Object[]> assetDetails = new HashMap<>();
 
+        // Insert in holdings order so the map iterates in the same order the kernel reports
         for (Holdings holding : holdings) {
             String assetName = holding.getAssetName();
-            String symbol = holding.getSymbol();
-            AssetType assetType = holding.getAssetType();
-
-            // Create Object[] pair for symbol and assetType
-            Object[] symbolAssetTypePair = new Object[]{symbol, assetType};
-            assetDetails.put(assetName, symbolAssetTypePair);
-
-            logger.trace("Asset details calculated: assetName={}, symbol={}, assetType={}", assetName, symbol, assetType);
+            int ordinal = valuationKernel.ordinalOf(assetName);
+            assetDetails.put(assetName, new Object[]{valuationKernel.symbol(ordinal), valuationKernel.assetType(ordinal)});
         }
 
         return assetDetails;
@@ -97,105 +138,123 @@ public class PortfolioCalculator {
     
     /**
      * Calculates a map of (asset name) -> Map<String, BigDecimal> (price in base currency, total value in base currency).
+     * This is a view over the valuation kernel; prefer {@link #getValuationKernel()} on hot paths.
      */
     public Map<String, Map<String, BigDecimal>> calculateAssetValues() {
         Map<String, Map<String, BigDecimal>> assetValues = new HashMap<>();
     
         for (Holdings holding : holdings) {
             String assetName = holding.getAssetName();
-            Object[] symbolAssetTypePair = assetDetailsMap.get(assetName);
-            String symbol = (String) symbolAssetTypePair[0];
-            AssetType assetType = (AssetType) symbolAssetTypePair[1];
-            BigDecimal quantity = BigDecimal.valueOf(holding.getTotalBalance());
-    
-            // Get price in base currency
-            BigDecimal priceInBaseCurrency = getPriceInBaseCurrency(symbol, assetType);
-    
-            // Calculate total value in base currency
-            BigDecimal totalValueInBaseCurrency = priceInBaseCurrency.multiply(quantity);
-    
-            // Store the results
+            int ordinal = valuationKernel.ordinalOf(assetName);
+
             Map<String, BigDecimal> values = new HashMap<>();
-            values.put("priceInBaseCurrency", priceInBaseCurrency);
-            values.put("totalValueInBaseCurrency", totalValueInBaseCurrency);
+            values.put("priceInBaseCurrency", valuationKernel.priceInBaseCurrency(ordinal));
+            values.put("totalValueInBaseCurrency", valuationKernel.totalValueInBaseCurrency(ordinal));
     
             assetValues.put(assetName, values);
-    
-            logger.trace("Asset values calculated: assetName={}, priceInBaseCurrency={}, totalValueInBaseCurrency={}",
-                    assetName, priceInBaseCurrency, totalValueInBaseCurrency);
         }
     
         return assetValues;
     }
 
-    private BigDecimal getPriceInBaseCurrency(String symbol, AssetType assetType) {
-        BigDecimal priceInBaseCurrency = BigDecimal.ZERO;
-    
-        if (assetType == AssetType.FOREX) {
-            priceInBaseCurrency = getForexPriceInBaseCurrency(symbol);
-        } else {
-            priceInBaseCurrency = getNonForexPriceInBaseCurrency(symbol, assetType);
-        }
-    
-        return priceInBaseCurrency;
-    }
-
     private BigDecimal getForexPriceInBaseCurrency(String symbol) {
         if (symbol.equals(baseCurrency)) {
             logger.trace("FOREX symbol matches base currency: symbol={}, priceInBaseCurrency=1", symbol);
             return BigDecimal.ONE;
         }
-    
-        // Try direct pair
-        String forexKey = symbol + "/" + baseCurrency + "-" + AssetType.FOREX.getAssetTypeName();
-        MarketDataDto marketData = marketDataMap.get(forexKey);
-    
-        if (marketData == null) {
-            // Try reverse pair
-            forexKey = baseCurrency + "/" + symbol + "-" + AssetType.FOREX.getAssetTypeName();
-            marketData = marketDataMap.get(forexKey);
-    
-            if (marketData != null) {
-                BigDecimal inversePrice = BigDecimal.ONE.divide(marketData.getPrice(), 4, RoundingMode.HALF_UP);
-                logger.trace("Reverse FOREX pair found: forexKey={}, priceInBaseCurrency={}", forexKey, inversePrice);
-                return inversePrice;
-            } else {
-                logger.warn("No FOREX market data found for symbol={}, baseCurrency={}", symbol, baseCurrency);
-                return BigDecimal.ZERO;
-            }
+
+        // Direct, reverse and triangulated pairs are all resolved by the matrix
+        BigDecimal rate = fxRates.rate(symbol, baseCurrency);
+        if (rate == null) {
+            logger.warn("No FOREX conversion path found for symbol={}, baseCurrency={}", symbol, baseCurrency);
+            return BigDecimal.ZERO;
         }
-    
-        logger.trace("FOREX market data found: forexKey={}, priceInBaseCurrency={}", forexKey, marketData.getPrice());
-        return marketData.getPrice();
+
+        logger.trace("FOREX rate found: symbol={}, baseCurrency={}, priceInBaseCurrency={}", symbol, baseCurrency, rate);
+        return rate;
     }
 
-    private BigDecimal getNonForexPriceInBaseCurrency(String symbol, AssetType assetType) {
+    private BigDecimal getNonForexPrice(String symbol, AssetType assetType) {
         String key = symbol + "-" + assetType.getAssetTypeName();
         MarketDataDto marketData = marketDataMap.get(key);
     
         if (marketData == null) {
             logger.warn("No market data found for symbol={}, assetType={}", symbol, assetType);
-            return BigDecimal.ZERO;
+            return null;
         }
     
-        BigDecimal priceInBaseCurrency = marketData.getPrice();
-        logger.trace("Market data found: symbol={}, assetType={}, priceInBaseCurrency={}", symbol, assetType, priceInBaseCurrency);
-    
-        // Convert price to base currency if baseCurrency is not USD
-        if (!baseCurrency.equals("USD")) {
-            String forexKey = "USD/" + baseCurrency + "-" + AssetType.FOREX.getAssetTypeName();
-            MarketDataDto forexMarketData = marketDataMap.get(forexKey);
-    
-            if (forexMarketData != null) {
-                BigDecimal usdToBaseCurrencyRate = forexMarketData.getPrice();
-                priceInBaseCurrency = priceInBaseCurrency.multiply(usdToBaseCurrencyRate);
-                logger.trace("Converted price to base currency: forexKey={}, usdToBaseCurrencyRate={}, priceInBaseCurrency={}",
-                        forexKey, usdToBaseCurrencyRate, priceInBaseCurrency);
-            } else {
-                logger.warn("No FOREX market data found for USD/{} conversion. Using price in USD.", baseCurrency);
+        logger.trace("Market data found: symbol={}, assetType={}, price={}", symbol, assetType, marketData.getPrice());
+        return marketData.getPrice();
+    }
+
+    /**
+     * Looks up the USD to base currency rate once per calculator, or null if the base currency is USD or no rate exists.
+     */
+    private BigDecimal getUsdToBaseCurrencyRate() {
+        if (baseCurrency.equals("USD")) {
+            return null;
+        }
+
+        BigDecimal usdToBaseCurrencyRate = fxRates.rate("USD", baseCurrency);
+        if (usdToBaseCurrencyRate == null) {
+            logger.warn("No FOREX conversion path found for USD/{} conversion. Using price in USD.", baseCurrency);
+            return null;
+        }
+
+        logger.trace("USD conversion rate found: baseCurrency={}, usdToBaseCurrencyRate={}", baseCurrency, usdToBaseCurrencyRate);
+        return usdToBaseCurrencyRate;
+    }
+
+    /**
+     * Feeds the valuation kernel from the market data map. FOREX holdings are priced directly in the base currency;
+     * other holdings are quoted in USD and converted with the USD/base rate when one is available.
+     */
+    private class MarketDataPriceSource implements ValuationKernel.PriceSource {
+        private boolean usdRateResolved;
+        private BigDecimal usdToBaseCurrencyRate;
+
+        @Override
+        public BigDecimal price(String symbol, AssetType assetType) {
+            if (assetType == AssetType.FOREX) {
+                return getForexPriceInBaseCurrency(symbol);
             }
+            BigDecimal price = getNonForexPrice(symbol, assetType);
+            return price != null ? price : BigDecimal.ZERO;
+        }
+
+        @Override
+        public BigDecimal conversionRate(String symbol, AssetType assetType) {
+            // Missing prices stay at BigDecimal.ZERO without conversion
+            if (assetType == AssetType.FOREX || !marketDataMap.containsKey(symbol + "-" + assetType.getAssetTypeName())) {
+                return null;
+            }
+            if (!usdRateResolved) {
+                usdToBaseCurrencyRate = getUsdToBaseCurrencyRate();
+                usdRateResolved = true;
+            }
+            return usdToBaseCurrencyRate;
+        }
+    }
+
+    /**
+     * Feeds the valuation kernel with prices that need no further conversion.
+     */
+    private static class BaseCurrencyPriceSource implements ValuationKernel.PriceSource {
+        private final Map<String, BigDecimal> pricesInBaseCurrency;
+
+        BaseCurrencyPriceSource(Map<String, BigDecimal> pricesInBaseCurrency) {
+            this.pricesInBaseCurrency = pricesInBaseCurrency;
+        }
+
+        @Override
+        public BigDecimal price(String symbol, AssetType assetType) {
+            BigDecimal price = pricesInBaseCurrency.get(PriceSnapshot.key(symbol, assetType));
+            return price != null ? price : BigDecimal.ZERO;
+        }
+
+        @Override
+        public BigDecimal conversionRate(String symbol, AssetType assetType) {
+            return null;
         }
-    
-        return priceInBaseCurrency;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,103 @@
+package com.fintrack.component.calculator;
+
+import com.fintrack.constants.finance.AssetType;
+import com.fintrack.dto.market.MarketDataDto;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Immutable set of prices resolved for a single portfolio valuation.
+ * Entries are keyed by "symbol-assetType", the same convention PortfolioCalculator uses for lookups.
+ * A snapshot without a date holds live prices from market_data; a dated snapshot holds prices
+ * from market_data_monthly for that date. The FX matrix holds the cross rates of the same point in time.
+ * A live snapshot also knows when its oldest price was updated, which is how stale a valuation built on it can be.
+ */
+public final class PriceSnapshot {
+
+    private final LocalDate date;
+    private final Map<String, MarketDataDto> marketDataMap;
+    private final FxRateMatrix fxRates;
+    private final LocalDateTime pricesAsOf;
+
+    private PriceSnapshot(LocalDate date, Map<String, MarketDataDto> marketDataMap, FxRateMatrix fxRates, LocalDateTime pricesAsOf) {
+        this.date = date;
+        this.marketDataMap = Collections.unmodifiableMap(marketDataMap);
+        this.fxRates = fxRates;
+        this.pricesAsOf = pricesAsOf;
+    }
+
+    /**
+     * Creates a snapshot from resolved market data. If the same key appears more than once, the first entry wins.
+     */
+    public static PriceSnapshot of(LocalDate date, Collection<MarketDataDto> marketDataDtos, FxRateMatrix fxRates) {
+        return of(date, marketDataDtos, fxRates, null);
+    }
+
+    /**
+     * Creates a snapshot of live prices whose oldest entry was updated at {@code pricesAsOf}.
+     */
+    public static PriceSnapshot of(LocalDate date, Collection<MarketDataDto> marketDataDtos, FxRateMatrix fxRates, LocalDateTime pricesAsOf) {
+        Map<String, MarketDataDto> marketDataMap = new HashMap<>();
+        for (MarketDataDto dto : marketDataDtos) {
+            marketDataMap.putIfAbsent(key(dto.getSymbol(), dto.getAssetType()), dto);
+        }
+        return new PriceSnapshot(date, marketDataMap, fxRates, pricesAsOf);
+    }
+
+    /**
+     * Creates a snapshot whose FX matrix is built from the FOREX entries of the given market data.
+     */
+    public static PriceSnapshot of(LocalDate date, Collection<MarketDataDto> marketDataDtos) {
+        return of(date, marketDataDtos, FxRateMatrix.fromMarketData(marketDataDtos));
+    }
+
+    public static PriceSnapshot empty(LocalDate date) {
+        return new PriceSnapshot(date, new HashMap<>(), FxRateMatrix.empty(), null);
+    }
+
+    public static String key(String symbol, AssetType assetType) {
+        return symbol + "-" + assetType.getAssetTypeName();
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public boolean isHistorical() {
+        return date != null;
+    }
+
+    public FxRateMatrix getFxRates() {
+        return fxRates;
+    }
+
+    /**
+     * @return When the oldest live price of this snapshot was updated, or null if unknown or historical
+     */
+    public LocalDateTime getPricesAsOf() {
+        return pricesAsOf;
+    }
+
+    public MarketDataDto get(String symbol, AssetType assetType) {
+        return marketDataMap.get(key(symbol, assetType));
+    }
+
+    public Map<String, MarketDataDto> asMap() {
+        return marketDataMap;
+    }
+
+    public int size() {
+        return marketDataMap.size();
+    }
+
+    @Override
+    public String toString() {
+        return "PriceSnapshot{" +
+                "date=" + date +
+                ", marketDataMap=" + marketDataMap +
+                ", fxRates=" + fxRates +
+                '}';
+    }
+}
@@ -0,0 +1,247 @@
+package com.fintrack.component.calculator;
+
+import com.fintrack.constants.finance.AssetType;
+import com.fintrack.model.finance.Holdings;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Fixed-point valuation of a list of holdings, laid out as parallel primitive arrays indexed by holding ordinal.
+ *
+ * Every decimal is stored as an (unscaled long, scale) pair, i.e. the value is {@code unscaled * 10^-scale}, which is
+ * exactly how BigDecimal represents it. Prices, quantities and values are decoded once when the kernel is built; all
+ * arithmetic after that is done on the primitive arrays.
+ *
+ * Rounding:
+ * - Products are exact. The unscaled values are multiplied and the scales added, which is the definition of
+ *   BigDecimal.multiply, so {@link #priceInBaseCurrency(int)} and {@link #totalValueInBaseCurrency(int)} are
+ *   equal (same value and scale) to what the BigDecimal implementation produced.
+ * - If an unscaled product does not fit in a long, that ordinal falls back to BigDecimal arithmetic.
+ * - {@link #totalValueAsDouble(int)} is correctly rounded (round half even), identical to BigDecimal.doubleValue.
+ * - The only lossy steps are inverted and triangulated FX rates, which FxRateMatrix rounds to 16 significant digits
+ *   before the kernel sees them.
+ */
+public final class ValuationKernel {
+
+    // Largest magnitude a double holds exactly, and the powers of ten a double holds exactly
+    private static final long MAX_EXACT_DOUBLE_INTEGER = 1L << 53;
+    private static final double[] DOUBLE_POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * Supplies the quoted price of an asset and the rate that converts the quote into the base currency.
+     */
+    interface PriceSource {
+        BigDecimal price(String symbol, AssetType assetType);
+
+        /**
+         * @return The conversion rate to apply to the quoted price, or null if the price is already in the base currency
+         */
+        BigDecimal conversionRate(String symbol, AssetType assetType);
+    }
+
+    private final int size;
+    private final String[] assetNames;
+    private final String[] symbols;
+    private final AssetType[] assetTypes;
+
+    private final long[] priceUnscaled;
+    private final int[] priceScale;
+    private final long[] quantityUnscaled;
+    private final int[] quantityScale;
+    private final long[] valueUnscaled;
+    private final int[] valueScale;
+    private final double[] valueDoubles;
+
+    // Only allocated when a price or value does not fit the fixed-point layout
+    private BigDecimal[] priceOverflow;
+    private BigDecimal[] valueOverflow;
+
+    // Asset name -> ordinal of the last holding with that name, in the iteration order of the legacy HashMap views
+    private final Map<String, Integer> ordinalsByAssetName;
+    private final int[] iterationOrder;
+
+    ValuationKernel(List<Holdings> holdings, PriceSource priceSource) {
+        this.size = holdings.size();
+        this.assetNames = new String[size];
+        this.symbols = new String[size];
+        this.assetTypes = new AssetType[size];
+        this.priceUnscaled = new long[size];
+        this.priceScale = new int[size];
+        this.quantityUnscaled = new long[size];
+        this.quantityScale = new int[size];
+        this.valueUnscaled = new long[size];
+        this.valueScale = new int[size];
+        this.valueDoubles = new double[size];
+        this.ordinalsByAssetName = new HashMap<>();
+
+        for (int i = 0; i < size; i++) {
+            Holdings holding = holdings.get(i);
+            assetNames[i] = holding.getAssetName();
+            symbols[i] = holding.getSymbol();
+            assetTypes[i] = holding.getAssetType();
+            ordinalsByAssetName.put(assetNames[i], i);
+
+            BigDecimal price = priceSource.price(symbols[i], assetTypes[i]);
+            BigDecimal conversionRate = priceSource.conversionRate(symbols[i], assetTypes[i]);
+            // BigDecimal.valueOf(double) goes through Double.toString, matching the previous quantity representation
+            BigDecimal quantity = BigDecimal.valueOf(holding.getTotalBalance());
+
+            storePrice(i, price, conversionRate);
+            storeQuantity(i, quantity);
+            storeValue(i);
+        }
+
+        this.iterationOrder = new int[ordinalsByAssetName.size()];
+        int position = 0;
+        for (Integer ordinal : ordinalsByAssetName.values()) {
+            iterationOrder[position++] = ordinal;
+        }
+    }
+
+    /**
+     * @return The number of holdings, including holdings that share an asset name
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Ordinals of the distinct assets, in the iteration order of the asset name keyed maps. When several holdings share
+     * an asset name, the ordinal of the last one is used.
+     */
+    public int[] iterationOrder() {
+        return iterationOrder.clone();
+    }
+
+    /**
+     * @return The ordinal used for the given asset name, or -1 if there is no such asset
+     */
+    public int ordinalOf(String assetName) {
+        Integer ordinal = ordinalsByAssetName.get(assetName);
+        return ordinal != null ? ordinal : -1;
+    }
+
+    public String assetName(int ordinal) {
+        return assetNames[ordinal];
+    }
+
+    public String symbol(int ordinal) {
+        return symbols[ordinal];
+    }
+
+    public AssetType assetType(int ordinal) {
+        return assetTypes[ordinal];
+    }
+
+    public BigDecimal priceInBaseCurrency(int ordinal) {
+        if (priceOverflow != null && priceOverflow[ordinal] != null) {
+            return priceOverflow[ordinal];
+        }
+        return BigDecimal.valueOf(priceUnscaled[ordinal], priceScale[ordinal]);
+    }
+
+    public BigDecimal totalValueInBaseCurrency(int ordinal) {
+        if (valueOverflow != null && valueOverflow[ordinal] != null) {
+            return valueOverflow[ordinal];
+        }
+        return BigDecimal.valueOf(valueUnscaled[ordinal], valueScale[ordinal]);
+    }
+
+    public double totalValueAsDouble(int ordinal) {
+        return valueDoubles[ordinal];
+    }
+
+    private void storePrice(int ordinal, BigDecimal price, BigDecimal conversionRate) {
+        if (fitsFixedPoint(price)) {
+            priceUnscaled[ordinal] = price.unscaledValue().longValue();
+            priceScale[ordinal] = price.scale();
+            if (conversionRate == null) {
+                return;
+            }
+            if (fitsFixedPoint(conversionRate)
+                    && multiplyInto(priceUnscaled[ordinal], priceScale[ordinal],
+                            conversionRate.unscaledValue().longValue(), conversionRate.scale(),
+                            priceUnscaled, priceScale, ordinal)) {
+                return;
+            }
+        }
+        if (priceOverflow == null) {
+            priceOverflow = new BigDecimal[size];
+        }
+        priceOverflow[ordinal] = conversionRate != null ? price.multiply(conversionRate) : price;
+    }
+
+    private void storeQuantity(int ordinal, BigDecimal quantity) {
+        // Quantities come from a double, so they always have at most 17 significant digits
+        quantityUnscaled[ordinal] = quantity.unscaledValue().longValue();
+        quantityScale[ordinal] = quantity.scale();
+    }
+
+    private void storeValue(int ordinal) {
+        boolean priceIsFixedPoint = priceOverflow == null || priceOverflow[ordinal] == null;
+        if (priceIsFixedPoint
+                && multiplyInto(priceUnscaled[ordinal], priceScale[ordinal],
+                        quantityUnscaled[ordinal], quantityScale[ordinal],
+                        valueUnscaled, valueScale, ordinal)) {
+            valueDoubles[ordinal] = toDouble(valueUnscaled[ordinal], valueScale[ordinal]);
+            return;
+        }
+        BigDecimal quantity = BigDecimal.valueOf(quantityUnscaled[ordinal], quantityScale[ordinal]);
+        BigDecimal value = priceInBaseCurrency(ordinal).multiply(quantity);
+        if (valueOverflow == null) {
+            valueOverflow = new BigDecimal[size];
+        }
+        valueOverflow[ordinal] = value;
+        valueDoubles[ordinal] = value.doubleValue();
+    }
+
+    /**
+     * Multiplies two fixed-point numbers into the target arrays.
+     *
+     * @return false if the unscaled product or the scale overflows, in which case nothing is written
+     */
+    private static boolean multiplyInto(long leftUnscaled, int leftScale, long rightUnscaled, int rightScale,
+                                        long[] targetUnscaled, int[] targetScale, int ordinal) {
+        long high = Math.multiplyHigh(leftUnscaled, rightUnscaled);
+        long low = leftUnscaled * rightUnscaled;
+        // The product fits in a long only if the high word is the sign extension of the low word
+        if (high != (low >> 63)) {
+            return false;
+        }
+        long scale = (long) leftScale + rightScale;
+        if (scale != (int) scale) {
+            return false;
+        }
+        targetUnscaled[ordinal] = low;
+        targetScale[ordinal] = (int) scale;
+        return true;
+    }
+
+    /**
+     * Converts a fixed-point number to the nearest double. When both the unscaled value and the power of ten are
+     * exactly representable, a single IEEE multiplication or division is correctly rounded; otherwise defer to
+     * BigDecimal, which is also correctly rounded.
+     */
+    private static double toDouble(long unscaled, int scale) {
+        if (Math.abs(unscaled) < MAX_EXACT_DOUBLE_INTEGER) {
+            if (scale == 0) {
+                return (double) unscaled;
+            }
+            if (scale > 0 && scale < DOUBLE_POWERS_OF_TEN.length) {
+                return (double) unscaled / DOUBLE_POWERS_OF_TEN[scale];
+            }
+            if (scale < 0 && -scale < DOUBLE_POWERS_OF_TEN.length) {
+                return (double) unscaled * DOUBLE_POWERS_OF_TEN[-scale];
+            }
+        }
+        return BigDecimal.valueOf(unscaled, scale).doubleValue();
+    }
+
+    private static boolean fitsFixedPoint(BigDecimal decimal) {
+        return decimal.unscaledValue().bitLength() < Long.SIZE;
+    }
+}
@@ -32,6 +32,11 @@ public class BarChart extends Chart {
         this.barChartDatas = generateBarChartDataByCategory(category);
     }
 
+    public BarChart(PortfolioCalculator portfolioCalculator, CategoryLayout categoryLayout) {
+        super(portfolioCalculator, categoryLayout);
+        this.barChartDatas = generateBarChartDataByCategory(categoryLayout.getCategory());
+    }
+
     public List<BarChartData> getBarChartDatas() {
         return barChartDatas;
     }
@@ -48,25 +53,12 @@ public class BarChart extends Chart {
         this.localDate = localDate;
     }
 
-    public Map<String, Object> getDataByDate() {
-        List<Map<String, Object>> data = new ArrayList<>();
+    public BarChartSeries getSeries() {
+        List<ChartRow> data = new ArrayList<>(barChartDatas.size());
         for (BarChartData barChartData : barChartDatas) {
-            Map<String, Object> map = new HashMap<>();
-            map.put("assetName", barChartData.getAssetName());
-            map.put("symbol", barChartData.getSymbol());
-            map.put("subcategory", barChartData.getSubcategory());
-            map.put("value", barChartData.getValue());
-            map.put("color", barChartData.getColor());
-            map.put("priority", barChartData.getPriority());
-            map.put("totalValue", getTotalValue());
-            map.put("subcategoryValue", getSubcategoryValueMap().getOrDefault(barChartData.getSubcategory(), 0.0));
-            map.put("percentage", barChartData.getPercentage());
-            map.put("percentageOfSubcategory", barChartData.getPercentageOfSubcategory());
-            data.add(map);
+            data.add(ChartRow.of(barChartData, barChartData.getPercentageOfSubcategory(), this));
         }
-        Map<String, Object> totalMap = new HashMap<>();
-        totalMap.put(getLocalDate().toString(), data);
-        return totalMap;
+        return new BarChartSeries(getLocalDate().toString(), data);
     }
 
     private List<BarChartData> generateBarChartData() {
@@ -0,0 +1,9 @@
+package com.fintrack.component.chart;
+
+import java.util.List;
+
+/**
+ * The rows of the bar chart for one date.
+ */
+public record BarChartSeries(String date, List<ChartRow> data) {
+}
@@ -0,0 +1,87 @@
+package com.fintrack.component.chart;
+
+import com.fintrack.model.finance.Category;
+import com.fintrack.model.finance.HoldingsCategory;
+
+import java.util.*;
+
+/**
+ * The category-dependent inputs of a chart: which subcategory each asset belongs to, and the color and priority of
+ * every subcategory. These only depend on the account's categories, so a layout can be built once and shared by every
+ * chart drawn for the same category, e.g. each month of a bar chart.
+ */
+public final class CategoryLayout {
+
+    private static final String NONE = "None";
+    private static final String DEFAULT_COLOR = "#0000FF"; // Blue
+
+    private final Category category;
+    private final List<HoldingsCategory> holdingsCategories;
+    private final List<Category> subcategories;
+    private final Map<String, String> assetNamesSubcategoryMap;
+    private final Map<String, String> subcategoryColorMap;
+    private final Map<String, Integer> subcategoryPriorityMap;
+
+    public CategoryLayout(Category category, List<HoldingsCategory> holdingsCategories, List<Category> subcategories) {
+        this.category = category;
+        this.holdingsCategories = holdingsCategories;
+        this.subcategories = subcategories;
+
+        // Assets in this category -> subcategory name, the first mapping wins
+        Map<String, String> assetNamesSubcategories = new HashMap<>();
+        for (HoldingsCategory holdingsCategory : holdingsCategories) {
+            if (holdingsCategory.getCategory() != null && holdingsCategory.getCategory().equals(category.getCategoryName())) {
+                assetNamesSubcategories.putIfAbsent(
+                        holdingsCategory.getAssetName(),
+                        holdingsCategory.getSubcategory() != null ? holdingsCategory.getSubcategory() : NONE);
+            }
+        }
+
+        Map<String, String> colors = new HashMap<>();
+        Map<String, Integer> priorities = new HashMap<>();
+        if (subcategories != null) {
+            for (Category subcategory : subcategories) {
+                colors.put(subcategory.getCategoryName(), subcategory.getColor() != null ? subcategory.getColor() : DEFAULT_COLOR);
+                priorities.put(subcategory.getCategoryName(), subcategory.getPriority());
+            }
+        }
+        colors.put(NONE, DEFAULT_COLOR);
+        priorities.put(NONE, 0);
+
+        this.assetNamesSubcategoryMap = Collections.unmodifiableMap(assetNamesSubcategories);
+        this.subcategoryColorMap = Collections.unmodifiableMap(colors);
+        this.subcategoryPriorityMap = Collections.unmodifiableMap(priorities);
+    }
+
+    public Category getCategory() {
+        return category;
+    }
+
+    public List<HoldingsCategory> getHoldingsCategories() {
+        return holdingsCategories;
+    }
+
+    public List<Category> getSubcategories() {
+        return subcategories;
+    }
+
+    /**
+     * @return The subcategory of the asset, or null if the asset is not in this category
+     */
+    public String subcategoryOf(String assetName) {
+        return assetNamesSubcategoryMap.get(assetName);
+    }
+
+    public String colorOf(String subcategory) {
+        return subcategoryColorMap.getOrDefault(subcategory, DEFAULT_COLOR);
+    }
+
+    public int priorityOf(String subcategory) {
+        Integer priority = subcategoryPriorityMap.get(subcategory);
+        return priority != null ? priority : 0;
+    }
+
+    public int size() {
+        return assetNamesSubcategoryMap.size();
+    }
+}
@@ -4,6 +4,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fintrack.component.calculator.PortfolioCalculator;
+import com.fintrack.component.calculator.ValuationKernel;
 import com.fintrack.constants.Color;
 import com.fintrack.dto.market.MarketDataDto;
 import com.fintrack.model.finance.Category;
@@ -12,7 +13,6 @@ import com.fintrack.model.finance.HoldingsCategory;
 
 import java.util.*;
 import java.util.stream.Collectors;
-import java.math.BigDecimal;
 
 public abstract class Chart {
 
@@ -28,6 +28,7 @@ public abstract class Chart {
     private List<Category> subcategories;
     private List<ChartData> chartData;
     private Category category;
+    private CategoryLayout categoryLayout;
     private Map<String, String> subcategoryColorMap = new HashMap<>();
     private Double totalValue = 0.0;
     private Map<String, Double> assetValueMap = new HashMap<>();
@@ -42,20 +43,21 @@ public abstract class Chart {
     }
 
     public Chart(PortfolioCalculator portfolioCalculator, List<HoldingsCategory> holdingsCategories, Category category) {
-        this.portfolioCalculator = portfolioCalculator;
-        this.holdings = portfolioCalculator.getHoldings();
-        this.holdingsCategories = holdingsCategories;
-        this.category = category;
-        this.chartData = generateChartDataByCategory(category);
+        this(portfolioCalculator, new CategoryLayout(category, holdingsCategories, null));
     }
 
     public Chart(PortfolioCalculator portfolioCalculator, List<HoldingsCategory> holdingsCategories, List<Category> subcategories, Category category) {
+        this(portfolioCalculator, new CategoryLayout(category, holdingsCategories, subcategories));
+    }
+
+    public Chart(PortfolioCalculator portfolioCalculator, CategoryLayout categoryLayout) {
         this.portfolioCalculator = portfolioCalculator;
         this.holdings = portfolioCalculator.getHoldings();
-        this.holdingsCategories = holdingsCategories;
-        this.subcategories = subcategories;
-        this.category = category;
-        this.chartData = generateChartDataByCategory(category);
+        this.holdingsCategories = categoryLayout.getHoldingsCategories();
+        this.subcategories = categoryLayout.getSubcategories();
+        this.category = categoryLayout.getCategory();
+        this.categoryLayout = categoryLayout;
+        this.chartData = generateChartDataByCategory(categoryLayout);
     }
 
     public Category getCategory() {
@@ -98,6 +100,10 @@ public abstract class Chart {
         this.subcategories = subcategories;
     }
 
+    public CategoryLayout getCategoryLayout() {
+        return categoryLayout;
+    }
+
     public List<ChartData> getChartData() {
         return chartData;
     }
@@ -125,117 +131,90 @@ public abstract class Chart {
     protected List<ChartData> generateChartData() {
         logger.trace("Generating chart data using PortfolioCalculator");
     
-        // Get pre-calculated asset values from PortfolioCalculator
-        Map<String, Map<String, BigDecimal>> assetValues = portfolioCalculator.calculateAssetValues();
-        Map<String, Object[]> assetDetailsMap = portfolioCalculator.getAssetDetailsMap();
-    
-        // Iterate over asset values to generate chart data
-        List<ChartData> chartData = assetValues.entrySet().stream()
-                .map(entry -> {
-                    String assetName = entry.getKey();
-                    String symbol = (String) assetDetailsMap.get(assetName)[0];
-                    Map<String, BigDecimal> values = entry.getValue();
-                    BigDecimal priceInBaseCurrency = values.get("priceInBaseCurrency");
-                    BigDecimal totalValueInBaseCurrency = values.get("totalValueInBaseCurrency");
-
-                    logger.trace("Asset Name: {}, Symbol: {}, Price in Base Currency: {}, Total Value in Base Currency: {}",
-                            assetName, symbol, priceInBaseCurrency, totalValueInBaseCurrency);
-    
-                    // Assign a color for the asset
-                    String color = assignColor();
-    
-                    // Update total value
-                    totalValue += totalValueInBaseCurrency.doubleValue();
-    
-                    // Store asset value
-                    assetValueMap.put(assetName, totalValueInBaseCurrency.doubleValue());
-    
-                    // Create ChartData object
-                    return new ChartData(
-                            assetName,
-                            symbol,
-                            "None", // Default subcategory
-                            totalValueInBaseCurrency.doubleValue(),
-                            0, // Default priority
-                            color
-                    );
-                })
-                .sorted(Comparator.comparing(ChartData::getValue).reversed()) // Sort by asset value in descending order
-                .collect(Collectors.toList());
+        // Read the pre-calculated values straight from the valuation kernel
+        ValuationKernel valuationKernel = portfolioCalculator.getValuationKernel();
+        int[] iterationOrder = valuationKernel.iterationOrder();
+        List<ChartData> chartData = new ArrayList<>(iterationOrder.length);
+        double runningTotal = totalValue;
+
+        for (int ordinal : iterationOrder) {
+            String assetName = valuationKernel.assetName(ordinal);
+            String symbol = valuationKernel.symbol(ordinal);
+            double totalValueInBaseCurrency = valuationKernel.totalValueAsDouble(ordinal);
+
+            logger.trace("Asset Name: {}, Symbol: {}, Total Value in Base Currency: {}", assetName, symbol, totalValueInBaseCurrency);
+
+            // Assign a color for the asset
+            String color = assignColor();
+
+            // Update total value
+            runningTotal += totalValueInBaseCurrency;
+
+            // Store asset value
+            assetValueMap.put(assetName, totalValueInBaseCurrency);
+
+            chartData.add(new ChartData(
+                    assetName,
+                    symbol,
+                    "None", // Default subcategory
+                    totalValueInBaseCurrency,
+                    0, // Default priority
+                    color
+            ));
+        }
+        totalValue = runningTotal;
+
+        chartData.sort(Comparator.comparing(ChartData::getValue).reversed()); // Sort by asset value in descending order
         
         logger.trace("Generated chart data: {}", chartData);
         return chartData;
     }
 
-    private List<ChartData> generateChartDataByCategory(Category category) {
-        logger.trace("Generating chart data for category: {}", category.getCategoryName());
+    private List<ChartData> generateChartDataByCategory(CategoryLayout categoryLayout) {
+        logger.trace("Generating chart data for category: {}", categoryLayout.getCategory().getCategoryName());
     
-        // Get pre-calculated asset values from PortfolioCalculator
-        Map<String, Map<String, BigDecimal>> assetValues = portfolioCalculator.calculateAssetValues();
-        Map<String, Object[]> assetDetailsMap = portfolioCalculator.getAssetDetailsMap();
-    
-        // Filter holdings by category
-        Map<String, String> assetNamesSubcategoryMap = holdingsCategories.stream()
-                .filter(holdingsCategory -> holdingsCategory.getCategory() != null && holdingsCategory.getCategory().equals(category.getCategoryName()))
-                .collect(Collectors.toMap(
-                        HoldingsCategory::getAssetName,
-                        holdingsCategory -> holdingsCategory.getSubcategory() != null ? holdingsCategory.getSubcategory() : "None",
-                        (existing, replacement) -> existing
-                ));
-        
-        logger.trace("Filtered asset names and subcategories: {}", assetNamesSubcategoryMap);
-
-        // Create a map of subcategory names to their colors from the subcategories list
-        final Map<String, String> subcategoryColorMap = new HashMap<>();
-        if (subcategories != null) {
-            subcategories.stream()
-                .forEach(subcategory -> 
-                    subcategoryColorMap.put(
-                        subcategory.getCategoryName(),
-                        subcategory.getColor() != null ? subcategory.getColor() : "#0000FF" // Default to blue if no color set
-                    )
-                );
+        ValuationKernel valuationKernel = portfolioCalculator.getValuationKernel();
+        int[] iterationOrder = valuationKernel.iterationOrder();
+        List<ChartData> chartData = new ArrayList<>(categoryLayout.size());
+        double runningTotal = totalValue;
+
+        for (int ordinal : iterationOrder) {
+            String assetName = valuationKernel.assetName(ordinal);
+            String subcategory = categoryLayout.subcategoryOf(assetName);
+            if (subcategory == null) {
+                continue; // Asset is not in this category
+            }
+
+            String symbol = valuationKernel.symbol(ordinal);
+            double totalValueInBaseCurrency = valuationKernel.totalValueAsDouble(ordinal);
+            String color = categoryLayout.colorOf(subcategory);
+
+            logger.trace("Asset Name: {}, Symbol: {}, Subcategory: {}, Total Value in Base Currency: {}, Color: {}",
+                    assetName, symbol, subcategory, totalValueInBaseCurrency, color);
+
+            // Update total value and subcategory value
+            runningTotal += totalValueInBaseCurrency;
+
+            assetValueMap.put(assetName, totalValueInBaseCurrency);
+
+            subcategoryValueMap.merge(subcategory, totalValueInBaseCurrency, Double::sum);
+
+            chartData.add(new ChartData(
+                    assetName,
+                    symbol,
+                    subcategory,
+                    totalValueInBaseCurrency,
+                    categoryLayout.priorityOf(subcategory),
+                    color
+            ));
         }
-        // Add "None" subcategory with a default color
-        subcategoryColorMap.put("None", "#0000FF"); // Blue color for "None" subcategory
-    
-        // Generate chart data
-        List<ChartData> chartData = assetValues.entrySet().stream()
-                .filter(entry -> assetNamesSubcategoryMap.containsKey(entry.getKey())) // Filter by valid keys
-                .map(entry -> {
-                    String assetName = entry.getKey();
-                    String symbol = (String) assetDetailsMap.get(assetName)[0];
-                    Map<String, BigDecimal> values = entry.getValue();
-                    BigDecimal totalValueInBaseCurrency = values.get("totalValueInBaseCurrency");
-    
-                    String subcategory = assetNamesSubcategoryMap.get(assetName);
-                    String color = subcategoryColorMap.getOrDefault(subcategory, "#0000FF"); // Default to blue if no color found
-
-                    logger.trace("Asset Name: {}, Symbol: {}, Subcategory: {}, Total Value in Base Currency: {}, Color: {}",
-                            assetName, symbol, subcategory, totalValueInBaseCurrency, color);
-    
-                    // Update total value and subcategory value
-                    totalValue += totalValueInBaseCurrency.doubleValue();
+        totalValue = runningTotal;
 
-                    assetValueMap.put(assetName, totalValueInBaseCurrency.doubleValue());
+        chartData.sort(Comparator
+                .comparing(ChartData::getPriority)
+                .thenComparing(ChartData::getValue).reversed());
 
-                    subcategoryValueMap.put(subcategory, subcategoryValueMap.getOrDefault(subcategory, 0.0) + totalValueInBaseCurrency.doubleValue());
-    
-                    return new ChartData(
-                            assetName,
-                            symbol,
-                            subcategory,
-                            totalValueInBaseCurrency.doubleValue(),
-                            getSubcategoryPriorityMap().getOrDefault(subcategory, 0),
-                            color
-                    );
-                })
-                .sorted(Comparator
-                        .comparing(ChartData::getPriority)
-                        .thenComparing(ChartData::getValue).reversed())
-                .collect(Collectors.toList());
-
-        logger.trace("Generated chart data for category {}: {}", category.getCategoryName(), chartData);
+        logger.trace("Generated chart data for category {}: {}", categoryLayout.getCategory().getCategoryName(), chartData);
         return chartData;
     }
 
@@ -244,13 +223,6 @@ public abstract class Chart {
                 .collect(Collectors.toMap(MarketDataDto::getSymbol, marketDataDto -> marketDataDto.getPrice().doubleValue()));
     }
 
-    private Map<String, Integer> getSubcategoryPriorityMap() {
-        Map<String, Integer> subcategoryPriorityMap = subcategories.stream()
-        .collect(Collectors.toMap(Category::getCategoryName, Category::getPriority));
-        subcategoryPriorityMap.put("None", 0); // Assign priority 0 to "None" subcategory
-        return subcategoryPriorityMap;
-    }
-
     private String assignColor() {
       String color = COLORS.get(colorIndex).getHexCode(); // Get color from predefined list
       colorIndex = (colorIndex + 1) % COLORS.size(); // Cycle through colors
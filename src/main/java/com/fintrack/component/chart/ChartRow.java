@@ -0,0 +1,53 @@
+package com.fintrack.component.chart;
+
+import java.util.List;
+
+/**
+ * One asset of a pie chart or of one date of a bar chart, as sent to the client.
+ *
+ * totalValue is the same for every row of a chart; it is kept on the row so the default JSON format does not change.
+ * The columnar format ({@link ColumnarChart}) sends it once per chart instead.
+ */
+public record ChartRow(
+        String assetName,
+        String symbol,
+        String subcategory,
+        double value,
+        String color,
+        Integer priority,
+        Double totalValue,
+        Double subcategoryValue,
+        Double percentage,
+        Double percentageOfSubcategory) {
+
+    /**
+     * Column names of {@link #columnValues()}, in order.
+     */
+    public static final List<String> COLUMNS = List.of(
+            "assetName", "symbol", "subcategory", "value", "color", "priority",
+            "subcategoryValue", "percentage", "percentageOfSubcategory");
+
+    static ChartRow of(ChartData data, Double percentageOfSubcategory, Chart chart) {
+        return new ChartRow(
+                data.getAssetName(),
+                data.getSymbol(),
+                data.getSubcategory(),
+                data.getValue(),
+                data.getColor(),
+                data.getPriority(),
+                chart.getTotalValue(),
+                chart.getSubcategoryValueMap().getOrDefault(data.getSubcategory(), 0.0),
+                data.getPercentage(),
+                percentageOfSubcategory);
+    }
+
+    /**
+     * @return The values of this row in the order of {@link #COLUMNS}
+     */
+    public Object[] columnValues() {
+        return new Object[] {
+                assetName, symbol, subcategory, value, color, priority,
+                subcategoryValue, percentage, percentageOfSubcategory
+        };
+    }
+}
@@ -0,0 +1,39 @@
+package com.fintrack.component.chart;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Columnar form of chart data: the column names are sent once, and each date carries its total and one value array
+ * per asset. A pie chart is a single series without a date.
+ *
+ * Compared to the row format, the keys and the per-chart totalValue are no longer repeated on every row, so the size
+ * of a multi-year bar chart grows with the number of values only.
+ */
+public record ColumnarChart(List<String> columns, List<Series> series) {
+
+    public record Series(String date, Double totalValue, List<Object[]> rows) {
+    }
+
+    public static ColumnarChart fromPieChart(List<ChartRow> rows) {
+        return new ColumnarChart(ChartRow.COLUMNS, List.of(toSeries(null, rows)));
+    }
+
+    public static ColumnarChart fromBarCharts(List<BarChartSeries> barChartSeries) {
+        List<Series> series = new ArrayList<>(barChartSeries.size());
+        for (BarChartSeries dateSeries : barChartSeries) {
+            series.add(toSeries(dateSeries.date(), dateSeries.data()));
+        }
+        return new ColumnarChart(ChartRow.COLUMNS, series);
+    }
+
+    private static Series toSeries(String date, List<ChartRow> rows) {
+        List<Object[]> values = new ArrayList<>(rows.size());
+        Double totalValue = null;
+        for (ChartRow row : rows) {
+            values.add(row.columnValues());
+            totalValue = row.totalValue();
+        }
+        return new Series(date, totalValue, values);
+    }
+}
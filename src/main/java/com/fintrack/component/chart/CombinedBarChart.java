@@ -1,6 +1,5 @@
 package com.fintrack.component.chart;
 
-import java.time.LocalDate;
 import java.util.*;
 
 import com.fintrack.model.finance.Category;
@@ -13,7 +12,7 @@ public class CombinedBarChart {
     private static final Logger logger = LoggerFactory.getLogger(CombinedBarChart.class);
 
     private List<BarChart> barCharts;
-    List<Map<String, Object>> combinedBarChartsData = new ArrayList<>();
+    List<BarChartSeries> combinedBarChartsData = new ArrayList<>();
     private Category category;
 
     public CombinedBarChart(List<BarChart> barCharts, Category category) {
@@ -38,21 +37,17 @@ public class CombinedBarChart {
         this.category = category;
     }
 
-    private List<Map<String, Object>> generateCombinedBarChartsData() {
+    private List<BarChartSeries> generateCombinedBarChartsData() {
         logger.debug("Generating combined bar charts data...");
-        List<Map<String, Object>> combinedBarChartsDatas = new ArrayList<>();
+        List<BarChartSeries> combinedBarChartsDatas = new ArrayList<>(barCharts.size());
         for (BarChart barChart : barCharts) {
-            Map<String, Object> data = new HashMap<>();
-            LocalDate localDate = barChart.getLocalDate();
-            data.put("date", localDate.toString());
-            data.put("data", barChart.getDataByDate().get(localDate.toString()));
-            combinedBarChartsDatas.add(data);
+            combinedBarChartsDatas.add(barChart.getSeries());
         }
         logger.debug("Finished generating combined bar charts data.");
         return combinedBarChartsDatas;
     }
 
-    public List<Map<String, Object>> getCombinedBarChartsData() {
+    public List<BarChartSeries> getCombinedBarChartsData() {
         return combinedBarChartsData;
     }
 }
@@ -27,6 +27,11 @@ public class PieChart extends Chart {
         this.pieChartData = generatePieChartDataByCategory(category);
     }
 
+    public PieChart(PortfolioCalculator portfolioCalculator, CategoryLayout categoryLayout) {
+        super(portfolioCalculator, categoryLayout);
+        this.pieChartData = generatePieChartDataByCategory(categoryLayout.getCategory());
+    }
+
     public List<PieChartData> getPieChartData() {
         return pieChartData;
     }
@@ -35,21 +40,10 @@ public class PieChart extends Chart {
         this.pieChartData = pieChartData;
     }
 
-    public List<Map<String, Object>> getData() {
-        List<Map<String, Object>> data = new ArrayList<>();
+    public List<ChartRow> getData() {
+        List<ChartRow> data = new ArrayList<>(pieChartData.size());
         for (PieChartData pieChart : pieChartData) {
-            Map<String, Object> map = new HashMap<>();
-            map.put("assetName", pieChart.getAssetName());
-            map.put("symbol", pieChart.getSymbol());
-            map.put("subcategory", pieChart.getSubcategory());
-            map.put("value", pieChart.getValue());
-            map.put("color", pieChart.getColor());
-            map.put("priority", pieChart.getPriority());
-            map.put("totalValue", getTotalValue());
-            map.put("subcategoryValue", getSubcategoryValueMap().getOrDefault(pieChart.getSubcategory(), 0.0));
-            map.put("percentage", pieChart.getPercentage());
-            map.put("percentageOfSubcategory", pieChart.getPercentageOfSubcategory());
-            data.add(map);
+            data.add(ChartRow.of(pieChart, pieChart.getPercentageOfSubcategory(), this));
         }
         return data;
     }
@@ -1,14 +1,24 @@
 package com.fintrack.config;
 
+import com.fintrack.constants.KafkaTopics;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.ContainerProperties;
 import org.springframework.kafka.support.converter.StringJsonMessageConverter;
 import org.springframework.kafka.support.serializer.JsonSerializer;
 
@@ -18,9 +28,24 @@ import java.util.*;
 @ConditionalOnProperty(name = "spring.kafka.bootstrap-servers", matchIfMissing = false)
 public class KafkaConfig {
 
+    /** Batch listener container factory for the market data completion topics */
+    public static final String MARKET_DATA_BATCH_LISTENER_FACTORY = "marketDataBatchListenerFactory";
+
     @Value("${spring.kafka.bootstrap-servers}")
     private String bootstrapServers;
 
+    @Value("${market-data.kafka.max-poll-records:500}")
+    private int marketDataMaxPollRecords = 500;
+
+    @Value("${market-data.kafka.concurrency:1}")
+    private int marketDataConcurrency = 1;
+
+    private final Environment environment;
+
+    public KafkaConfig(Environment environment) {
+        this.environment = environment;
+    }
+
     @Bean
     public ProducerFactory<String, String> producerFactory() {
         Map<String, Object> configProps = new HashMap<>();
@@ -47,4 +72,49 @@ public class KafkaConfig {
         template.setMessageConverter(new StringJsonMessageConverter());
         return template;
     }
-}
\ No newline at end of file
+
+    /**
+     * Consumer factory for the market data completion topics. Values are left as bytes so that the listeners can bind
+     * them straight into their message classes, and offsets are only committed when a listener acknowledges its batch.
+     */
+    @Bean
+    public ConsumerFactory<String, byte[]> marketDataConsumerFactory() {
+        Map<String, Object> configProps = new HashMap<>();
+        configProps.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        configProps.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        configProps.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        configProps.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        configProps.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, marketDataMaxPollRecords);
+
+        return new DefaultKafkaConsumerFactory<>(configProps);
+    }
+
+    @Bean(MARKET_DATA_BATCH_LISTENER_FACTORY)
+    public ConcurrentKafkaListenerContainerFactory<String, byte[]> marketDataBatchListenerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, byte[]> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(marketDataConsumerFactory());
+        factory.setBatchListener(true);
+        factory.setConcurrency(marketDataConcurrency);
+        factory.setContainerCustomizer(container -> container.setConcurrency(concurrency(container)));
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        return factory;
+    }
+
+    /**
+     * Consumers per node for a market data container, read from market-data.kafka.topics.&lt;TOPIC&gt;.concurrency
+     * and falling back to market-data.kafka.concurrency.
+     *
+     * Each partition is read by a single consumer of a group, so records with the same key stay in order whatever the
+     * concurrency; consumers of a group beyond the topic's partition count stay idle.
+     */
+    private int concurrency(ConcurrentMessageListenerContainer<String, byte[]> container) {
+        String[] topics = container.getContainerProperties().getTopics();
+        if (topics == null || topics.length != 1) {
+            return marketDataConcurrency;
+        }
+        return KafkaTopics.fromTopicName(topics[0])
+                .map(topic -> environment.getProperty("market-data.kafka.topics." + topic.name() + ".concurrency",
+                        Integer.class, marketDataConcurrency))
+                .orElse(marketDataConcurrency);
+    }
+}
@@ -0,0 +1,12 @@
+package com.fintrack.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Runs the @Scheduled jobs: cache statistics flushes and cache metrics.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -1,5 +1,7 @@
 package com.fintrack.config;
 
+import com.fintrack.service.cache.MarketDataRedisSerializer;
+import com.fintrack.service.cache.NearMarketDataCacheService;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
@@ -9,6 +11,8 @@ import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
@@ -29,14 +33,26 @@ public class ValkeyConfig {
         template.setKeySerializer(new StringRedisSerializer());
         template.setHashKeySerializer(new StringRedisSerializer());
         
-        // Use JSON serializer for values
-        template.setValueSerializer(new GenericJackson2JsonRedisSerializer());
+        // Market data values and lists use a compact binary codec, everything else JSON
+        template.setValueSerializer(new MarketDataRedisSerializer());
         template.setHashValueSerializer(new GenericJackson2JsonRedisSerializer());
         
         template.afterPropertiesSet();
         return template;
     }
 
+    /**
+     * Delivers market data invalidations published by other nodes to the in-process near cache.
+     */
+    @Bean
+    public RedisMessageListenerContainer marketDataInvalidationListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                                 NearMarketDataCacheService nearMarketDataCacheService) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(nearMarketDataCacheService, new ChannelTopic(NearMarketDataCacheService.INVALIDATION_CHANNEL));
+        return container;
+    }
+
     @Bean
     public CacheManager cacheManager(RedisConnectionFactory connectionFactory) {
         // Market data cache configuration (5 minutes TTL)
@@ -51,6 +67,12 @@ public class ValkeyConfig {
             .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
             .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(new GenericJackson2JsonRedisSerializer()));
 
+        // Closed-month portfolio history: inputs never change under a given version key, so the TTL only reclaims space
+        RedisCacheConfiguration portfolioHistoryConfig = RedisCacheConfiguration.defaultCacheConfig()
+            .entryTtl(Duration.ofDays(30))
+            .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
+            .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(new GenericJackson2JsonRedisSerializer()));
+
         // User session cache configuration (30 minutes TTL)
         RedisCacheConfiguration sessionConfig = RedisCacheConfiguration.defaultCacheConfig()
             .entryTtl(Duration.ofMinutes(30))
@@ -61,6 +83,7 @@ public class ValkeyConfig {
             .cacheDefaults(marketDataConfig)
             .withCacheConfiguration("marketData", marketDataConfig)
             .withCacheConfiguration("portfolio", portfolioConfig)
+            .withCacheConfiguration("portfolioHistory", portfolioHistoryConfig)
             .withCacheConfiguration("userSession", sessionConfig)
             .build();
     }
@@ -1,20 +1,37 @@
 package com.fintrack.constants;
 
+import java.util.Arrays;
+import java.util.Optional;
+
 public enum KafkaTopics {
-    MARKET_DATA_UPDATE_REQUEST("MARKET_DATA_UPDATE_REQUEST"),
-    MARKET_DATA_UPDATE_COMPLETE("MARKET_DATA_UPDATE_COMPLETE"),
-    MARKET_INDEX_DATA_UPDATE_REQUEST("MARKET_INDEX_DATA_UPDATE_REQUEST"),
-    MARKET_INDEX_DATA_UPDATE_COMPLETE("MARKET_INDEX_DATA_UPDATE_COMPLETE"),
-    HISTORICAL_MARKET_DATA_REQUEST("HISTORICAL_MARKET_DATA_REQUEST"),
-    HISTORICAL_MARKET_DATA_COMPLETE("HISTORICAL_MARKET_DATA_COMPLETE");
+    MARKET_DATA_UPDATE_REQUEST("MARKET_DATA_UPDATE_REQUEST", true),
+    MARKET_DATA_UPDATE_COMPLETE("MARKET_DATA_UPDATE_COMPLETE", false),
+    MARKET_INDEX_DATA_UPDATE_REQUEST("MARKET_INDEX_DATA_UPDATE_REQUEST", true),
+    MARKET_INDEX_DATA_UPDATE_COMPLETE("MARKET_INDEX_DATA_UPDATE_COMPLETE", false),
+    HISTORICAL_MARKET_DATA_REQUEST("HISTORICAL_MARKET_DATA_REQUEST", false),
+    HISTORICAL_MARKET_DATA_COMPLETE("HISTORICAL_MARKET_DATA_COMPLETE", false);
 
     private final String topicName;
+    private final boolean bestEffort;
 
-    KafkaTopics(String topicName) {
+    KafkaTopics(String topicName, boolean bestEffort) {
         this.topicName = topicName;
+        this.bestEffort = bestEffort;
     }
 
     public String getTopicName() {
         return topicName;
     }
-}
\ No newline at end of file
+
+    /**
+     * @return Whether a message may be dropped when the producer is backed up; true for refresh hints that the next
+     *         request sends again anyway
+     */
+    public boolean isBestEffort() {
+        return bestEffort;
+    }
+
+    public static Optional<KafkaTopics> fromTopicName(String topicName) {
+        return Arrays.stream(values()).filter(topic -> topic.topicName.equals(topicName)).findFirst();
+    }
+}
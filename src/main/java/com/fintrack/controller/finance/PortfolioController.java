@@ -1,22 +1,61 @@
 package com.fintrack.controller.finance;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.http.MediaType;
 import com.fintrack.common.ApiResponse;
 import com.fintrack.common.ResponseWrapper;
+import com.fintrack.component.chart.BarChartSeries;
+import com.fintrack.component.chart.ChartRow;
+import com.fintrack.component.chart.ColumnarChart;
+import com.fintrack.service.finance.LivePortfolioStreamService;
+import com.fintrack.service.finance.PortfolioComputationContext;
 import com.fintrack.service.finance.PortfolioService;
+import com.fintrack.service.market.MarketDataRefreshService;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.*;
 
 @RestController
 @RequestMapping(value = "/api/portfolio", produces = MediaType.APPLICATION_JSON_VALUE)
 public class PortfolioController {
 
+    static final String LOOKUPS_SAVED_HEADER = "X-Portfolio-Lookups-Saved";
+    static final String DATA_AGE_HEADER = "X-Portfolio-Data-Age-Seconds";
+    static final String REFRESH_PENDING_HEADER = "X-Portfolio-Refresh-Pending";
+
+    // Chart data as column names plus value arrays, see ColumnarChart; also selected with "format": "columnar"
+    public static final String COLUMNAR_JSON_VALUE = "application/vnd.fintrack.columnar+json";
+    private static final MediaType COLUMNAR_JSON = MediaType.parseMediaType(COLUMNAR_JSON_VALUE);
+
     private final PortfolioService portfolioService;
+    private final LivePortfolioStreamService livePortfolioStreamService;
+    private final MarketDataRefreshService marketDataRefreshService;
+    /** Lookups saved per request, by endpoint */
+    private final Map<String, DistributionSummary> lookupsSavedSummaries = new HashMap<>();
+
+    // Default refresh mode when a request does not send "refresh": "sync" or "async"
+    @Value("${portfolio.market-data.refresh.async:false}")
+    private boolean asyncRefreshByDefault = false;
 
-    public PortfolioController(PortfolioService portfolioService) {
+    public PortfolioController(PortfolioService portfolioService, LivePortfolioStreamService livePortfolioStreamService,
+                               MarketDataRefreshService marketDataRefreshService, MeterRegistry meterRegistry) {
         this.portfolioService = portfolioService;
+        this.livePortfolioStreamService = livePortfolioStreamService;
+        this.marketDataRefreshService = marketDataRefreshService;
+        for (String endpoint : List.of("portfolio-data", "piechart-data", "barchart-data")) {
+            lookupsSavedSummaries.put(endpoint, DistributionSummary.builder("portfolio.context.lookups.saved")
+                    .description("Lookups answered by the per-request portfolio computation context")
+                    .tag("endpoint", endpoint)
+                    .register(meterRegistry));
+        }
     }
 
     @PostMapping("/portfolio-data")
@@ -25,38 +64,93 @@ public class PortfolioController {
             UUID accountId = UUID.fromString((String) requestData.get("accountId"));
             String baseCurrency = (String) requestData.get("baseCurrency");
 
-            List<Map<String, Object>> portfolioData = portfolioService.calculatePortfolioData(accountId, baseCurrency);
-            return ResponseWrapper.ok(portfolioData);
+            PortfolioComputationContext context = createContext(requestData);
+            List<Map<String, Object>> portfolioData = portfolioService.calculatePortfolioData(accountId, baseCurrency, context);
+            return ResponseWrapper.ok(portfolioData, responseHeaders("portfolio-data", accountId, context));
         } catch (Exception e) {
             return ResponseWrapper.badRequest(e.getMessage());
         }
     }
 
-    @PostMapping("/piechart-data")
-    public ResponseEntity<ApiResponse<List<Map<String, Object>>>> getPortfolioPieChartData(@RequestBody Map<String, Object> requestData) {
+    @PostMapping(value = "/piechart-data", produces = {MediaType.APPLICATION_JSON_VALUE, COLUMNAR_JSON_VALUE})
+    public ResponseEntity<ApiResponse<Object>> getPortfolioPieChartData(@RequestBody Map<String, Object> requestData,
+                                                                        @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
         try {
             UUID accountId = UUID.fromString((String) requestData.get("accountId"));
             String category = (String) requestData.get("category");
             String baseCurrency = (String) requestData.get("baseCurrency");
 
-            List<Map<String, Object>> pieChartData = portfolioService.calculatePortfolioPieChartData(accountId, category, baseCurrency);
-            return ResponseWrapper.ok(pieChartData);
+            PortfolioComputationContext context = createContext(requestData);
+            List<ChartRow> pieChartData = portfolioService.calculatePortfolioPieChartData(accountId, category, baseCurrency, context);
+            HttpHeaders headers = responseHeaders("piechart-data", accountId, context);
+            if (isColumnar(requestData, accept)) {
+                return ResponseWrapper.ok(ColumnarChart.fromPieChart(pieChartData), headers, COLUMNAR_JSON);
+            }
+            return ResponseWrapper.ok(pieChartData, headers);
         } catch (Exception e) {
             return ResponseWrapper.badRequest(e.getMessage());
         }
     }
 
-    @PostMapping("/barchart-data")
-    public ResponseEntity<ApiResponse<List<Map<String, Object>>>> getPortfolioBarChartsData(@RequestBody Map<String, Object> requestData) {
+    @PostMapping(value = "/barchart-data", produces = {MediaType.APPLICATION_JSON_VALUE, COLUMNAR_JSON_VALUE})
+    public ResponseEntity<ApiResponse<Object>> getPortfolioBarChartsData(@RequestBody Map<String, Object> requestData,
+                                                                         @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
         try {
             UUID accountId = UUID.fromString((String) requestData.get("accountId"));
             String category = (String) requestData.get("category");
             String baseCurrency = (String) requestData.get("baseCurrency");
 
-            List<Map<String, Object>> barChartData = portfolioService.calculatePortfolioBarChartsData(accountId, category, baseCurrency);
-            return ResponseWrapper.ok(barChartData);
+            PortfolioComputationContext context = createContext(requestData);
+            List<BarChartSeries> barChartData = portfolioService.calculatePortfolioBarChartsData(accountId, category, baseCurrency, context);
+            HttpHeaders headers = responseHeaders("barchart-data", accountId, context);
+            if (isColumnar(requestData, accept)) {
+                return ResponseWrapper.ok(ColumnarChart.fromBarCharts(barChartData), headers, COLUMNAR_JSON);
+            }
+            return ResponseWrapper.ok(barChartData, headers);
         } catch (Exception e) {
             return ResponseWrapper.badRequest(e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Streams the live valuation of the portfolio: a "snapshot" event on connect and "update" events with the rows
+     * that changed whenever market data for a held symbol arrives.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamPortfolio(@RequestParam UUID accountId, @RequestParam String baseCurrency) {
+        return livePortfolioStreamService.subscribe(accountId, baseCurrency);
+    }
+
+    private static boolean isColumnar(Map<String, Object> requestData, String accept) {
+        return "columnar".equals(requestData.get("format")) || (accept != null && accept.contains(COLUMNAR_JSON_VALUE));
+    }
+
+    private PortfolioComputationContext createContext(Map<String, Object> requestData) {
+        Object refresh = requestData.get("refresh");
+        boolean asyncRefresh = refresh == null ? asyncRefreshByDefault : "async".equalsIgnoreCase(refresh.toString());
+        return new PortfolioComputationContext(asyncRefresh);
+    }
+
+    /**
+     * Reports how many lookups the request's computation context answered from memory, as a header and a metric.
+     * In async refresh mode it also reports the age of the oldest live price and whether a refresh is pending.
+     */
+    private HttpHeaders responseHeaders(String endpoint, UUID accountId, PortfolioComputationContext context) {
+        int lookupsSaved = context.getLookupsSaved();
+        lookupsSavedSummaries.get(endpoint).record(lookupsSaved);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(LOOKUPS_SAVED_HEADER, String.valueOf(lookupsSaved));
+        if (context.isAsyncRefresh()) {
+            // A cached response carries no price timestamps, so the age is only reported when it is known
+            LocalDateTime pricesAsOf = context.getPricesAsOf();
+            if (pricesAsOf != null) {
+                long ageSeconds = Math.max(0, Duration.between(pricesAsOf, LocalDateTime.now()).getSeconds());
+                headers.add(DATA_AGE_HEADER, String.valueOf(ageSeconds));
+            }
+            boolean refreshPending = context.isRefreshPending() || marketDataRefreshService.isRefreshPending(accountId);
+            headers.add(REFRESH_PENDING_HEADER, String.valueOf(refreshPending));
+        }
+        return headers;
+    }
+}
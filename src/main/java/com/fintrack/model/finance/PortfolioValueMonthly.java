@@ -0,0 +1,72 @@
+package com.fintrack.model.finance;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import com.fintrack.constants.finance.AssetType;
+
+/**
+ * Materialized month-end valuation of one asset of an account in one base currency.
+ * Rows are derived from holdings_monthly and market_data_monthly and are rebuilt when either changes.
+ */
+@Entity
+@Table(name = "portfolio_value_monthly", uniqueConstraints = {
+        @UniqueConstraint(columnNames = {"account_id", "date", "asset_name", "base_currency"})
+}, indexes = {
+        @Index(name = "idx_portfolio_value_monthly_account_currency_date", columnList = "account_id, base_currency, date"),
+        @Index(name = "idx_portfolio_value_monthly_symbol_date", columnList = "symbol, date")
+})
+@Data
+@NoArgsConstructor
+public class PortfolioValueMonthly {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "account_id", nullable = false)
+    private UUID accountId;
+
+    @Column(name = "date", nullable = false)
+    private LocalDate date;
+
+    @Column(name = "asset_name", nullable = false)
+    private String assetName;
+
+    @Column(name = "symbol", nullable = false)
+    private String symbol;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "asset_type", nullable = false)
+    private AssetType assetType;
+
+    @Column(name = "base_currency", nullable = false, length = 10)
+    private String baseCurrency;
+
+    @Column(name = "quantity", nullable = false, precision = 38, scale = 10)
+    private BigDecimal quantity;
+
+    @Column(name = "price_in_base_currency", nullable = false, precision = 38, scale = 10)
+    private BigDecimal priceInBaseCurrency;
+
+    @Column(name = "total_value_in_base_currency", nullable = false, precision = 38, scale = 10)
+    private BigDecimal totalValueInBaseCurrency;
+
+    @Column(name = "computed_at", nullable = false)
+    private LocalDateTime computedAt;
+
+    public Holdings getHoldings() {
+        Holdings holdings = new Holdings();
+        holdings.setAccountId(getAccountId());
+        holdings.setAssetName(getAssetName());
+        holdings.setTotalBalance(getQuantity().doubleValue());
+        holdings.setSymbol(getSymbol());
+        holdings.setAssetType(getAssetType());
+        return holdings;
+    }
+}
@@ -3,7 +3,9 @@ package com.fintrack.model.market;
 import jakarta.persistence.*;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 
 import com.fintrack.constants.finance.AssetType;
@@ -44,4 +46,10 @@ public class MarketData {
 
     @Column(name = "low", precision = 15, scale = 6)
     private BigDecimal low;
+
+    // When this value was written to the market data cache; only set on cached copies
+    @Transient
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private LocalDateTime cachedAt;
 }
\ No newline at end of file
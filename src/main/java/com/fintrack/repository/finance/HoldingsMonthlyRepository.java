@@ -10,6 +10,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -21,6 +22,11 @@ public interface HoldingsMonthlyRepository extends JpaRepository<HoldingsMonthly
     List<HoldingsMonthly> findByAccountIdAndDateAfter(UUID accountId, LocalDate date);
 
     List<HoldingsMonthly> findByAccountIdAndDateBetween(UUID accountId, LocalDate startDate, LocalDate endDate);
+
+    List<HoldingsMonthly> findByAccountIdAndDateIn(UUID accountId, Collection<LocalDate> dates);
+
+    @Query(value = "SELECT DISTINCT date FROM holdings_monthly WHERE account_id = :accountId", nativeQuery = true)
+    List<LocalDate> findDistinctDatesByAccountId(@Param("accountId") UUID accountId);
     
     @Query(value = "SELECT MIN(date) FROM holdings_monthly WHERE account_id = :accountId", nativeQuery = true)
     LocalDate findEarliestDateByAccountId(@Param("accountId") UUID accountId);
@@ -28,6 +34,14 @@ public interface HoldingsMonthlyRepository extends JpaRepository<HoldingsMonthly
     @Query(value = "SELECT MAX(date) FROM holdings_monthly WHERE account_id = :accountId", nativeQuery = true)
     LocalDate findLatestDateByAccountId(@Param("accountId") UUID accountId);
 
+    @Query(value = """
+        SELECT DISTINCT account_id
+        FROM holdings_monthly
+        WHERE symbol IN (:symbols)
+        AND date >= :fromDate
+        """, nativeQuery = true)
+    List<UUID> findAccountIdsHoldingSymbolsFrom(@Param("symbols") Collection<String> symbols, @Param("fromDate") LocalDate fromDate);
+
     @Modifying
     @Query(value = "DELETE FROM holdings_monthly WHERE account_id = :accountId", nativeQuery = true)
     int deleteByAccountId(@Param("accountId") UUID accountId);
@@ -21,6 +21,14 @@ public interface HoldingsRepository extends JpaRepository<Holdings, Long> {
         """, nativeQuery = true)
     List<Holdings> findHoldingsByAccount(@Param("accountId") UUID accountId);
 
+    @Query(value = """
+        SELECT DISTINCT account_id 
+        FROM holdings 
+        WHERE symbol IN (:symbols)
+        AND total_balance > 0
+        """, nativeQuery = true)
+    List<UUID> findAccountIdsHoldingSymbols(@Param("symbols") Collection<String> symbols);
+
     @Modifying
     @Query(value = "DELETE FROM holdings WHERE account_id = :accountId", nativeQuery = true)
     int deleteByAccountId(@Param("accountId") UUID accountId);
@@ -0,0 +1,50 @@
+package com.fintrack.repository.finance;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.fintrack.model.finance.PortfolioValueMonthly;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface PortfolioValueMonthlyRepository extends JpaRepository<PortfolioValueMonthly, Long> {
+
+    List<PortfolioValueMonthly> findByAccountIdAndBaseCurrencyOrderByDateAsc(UUID accountId, String baseCurrency);
+
+    @Modifying
+    @Query(value = "DELETE FROM portfolio_value_monthly WHERE account_id = :accountId AND date IN (:dates)", nativeQuery = true)
+    int deleteByAccountIdAndDates(@Param("accountId") UUID accountId, @Param("dates") Collection<LocalDate> dates);
+
+    @Modifying
+    @Query(value = "DELETE FROM portfolio_value_monthly WHERE account_id = :accountId AND base_currency = :baseCurrency AND date IN (:dates)", nativeQuery = true)
+    int deleteByAccountIdAndBaseCurrencyAndDates(@Param("accountId") UUID accountId, @Param("baseCurrency") String baseCurrency,
+                                                 @Param("dates") Collection<LocalDate> dates);
+
+    /**
+     * Drops the months from {@code fromDate} on of the given accounts that hold one of the given symbols, in every
+     * currency.
+     */
+    @Modifying
+    @Query(value = "DELETE FROM portfolio_value_monthly p WHERE p.account_id IN (:accountIds) AND p.date >= :fromDate AND EXISTS (" +
+                   "SELECT 1 FROM portfolio_value_monthly s WHERE s.account_id = p.account_id AND s.date = p.date " +
+                   "AND s.base_currency = p.base_currency AND s.symbol IN (:symbols))", nativeQuery = true)
+    int deleteMonthsContainingSymbols(@Param("accountIds") Collection<UUID> accountIds, @Param("symbols") Collection<String> symbols,
+                                      @Param("fromDate") LocalDate fromDate);
+
+    /**
+     * Drops every month from {@code fromDate} on whose valuation used an FX rate: months valued in a currency other
+     * than USD, and months holding a FOREX asset.
+     */
+    @Modifying
+    @Query(value = "DELETE FROM portfolio_value_monthly p WHERE p.date >= :fromDate AND (p.base_currency <> 'USD' OR EXISTS (" +
+                   "SELECT 1 FROM portfolio_value_monthly s WHERE s.account_id = p.account_id AND s.date = p.date " +
+                   "AND s.base_currency = p.base_currency AND s.asset_type = 'FOREX'))", nativeQuery = true)
+    int deleteFxDependentMonthsFrom(@Param("fromDate") LocalDate fromDate);
+}
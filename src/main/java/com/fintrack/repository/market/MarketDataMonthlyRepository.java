@@ -5,9 +5,11 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.fintrack.constants.finance.AssetType;
 import com.fintrack.model.market.MarketDataMonthly;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -21,4 +23,19 @@ public interface MarketDataMonthlyRepository extends JpaRepository<MarketDataMon
 
     @Query(value = "SELECT * FROM market_data_monthly WHERE symbol = :symbol AND date BETWEEN :startDate AND :endDate", nativeQuery = true)
     List<MarketDataMonthly> findBySymbolAndDateRange(@Param("symbol") String symbol, @Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
-}
\ No newline at end of file
+
+    @Query(value = "SELECT * FROM market_data_monthly WHERE symbol IN :symbols AND date BETWEEN :startDate AND :endDate", nativeQuery = true)
+    List<MarketDataMonthly> findBySymbolsAndDateRange(@Param("symbols") List<String> symbols, @Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+
+    /**
+     * @return Every stored month of the given symbols, of any asset type
+     */
+    @Query(value = "SELECT * FROM market_data_monthly WHERE symbol IN :symbols", nativeQuery = true)
+    List<MarketDataMonthly> findBySymbols(@Param("symbols") Collection<String> symbols);
+
+    /**
+     * @return (symbol, date) of every stored month of the given symbols
+     */
+    @Query("SELECT m.symbol, m.date FROM MarketDataMonthly m WHERE m.assetType = :assetType AND m.symbol IN :symbols")
+    List<Object[]> findSymbolsAndDatesBySymbolsAndAssetType(@Param("symbols") Collection<String> symbols, @Param("assetType") AssetType assetType);
+}
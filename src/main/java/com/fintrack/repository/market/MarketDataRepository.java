@@ -19,6 +19,9 @@ public interface MarketDataRepository extends JpaRepository<MarketData, Long> {
     @Query(value = "SELECT * FROM market_data WHERE symbol = :symbol AND asset_type = :assetType", nativeQuery = true)
     List<MarketData> findMarketDataBySymbolAndAssetType(@Param("symbol") String symbol, @Param("assetType") String assetType);
 
+    @Query(value = "SELECT * FROM market_data WHERE asset_type = :assetType", nativeQuery = true)
+    List<MarketData> findMarketDataByAssetType(@Param("assetType") String assetType);
+
     @Query(value = "SELECT * FROM market_data WHERE symbol = :symbol", nativeQuery = true)
     MarketData findMarketDataBySymbol(@Param("symbol") String symbol);
 }
\ No newline at end of file
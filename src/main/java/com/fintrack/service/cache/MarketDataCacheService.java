@@ -18,6 +18,15 @@ public interface MarketDataCacheService {
     // Batch operations
     List<MarketData> getMarketDataBatch(List<String> symbols, AssetType assetType);
     void setMarketDataBatch(List<MarketData> marketDataList);
+    void invalidateMarketDataBatch(Map<AssetType, List<String>> symbolsByAssetType);
+    
+    // Updates every node receives itself, such as MARKET_DATA_UPDATE_COMPLETE, are written in two parts:
+    // once per cluster to the shared cache, and by each node to its own cache, without notifying the other nodes
+    default void setSharedMarketDataBatch(List<MarketData> marketDataList) {
+        setMarketDataBatch(marketDataList);
+    }
+    default void setLocalMarketDataBatch(List<MarketData> marketDataList) {
+    }
     
     // Account-specific operations
     List<MarketData> getAccountMarketData(UUID accountId);
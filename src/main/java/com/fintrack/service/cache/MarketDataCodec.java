@@ -0,0 +1,258 @@
+package com.fintrack.service.cache;
+
+import com.fintrack.constants.finance.AssetType;
+import com.fintrack.model.market.MarketData;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary encoding of cached {@link MarketData} values and lists.
+ *
+ * Layout (big-endian):
+ * <pre>
+ * header   'M' 'D' version kind          kind 1 = single entry, 2 = list
+ * list     int count, then count entries
+ * entry    short presence flags, then only the fields that are set:
+ *          long id
+ *          byte asset type ordinal
+ *          short length + UTF-8 symbol
+ *          long updatedAt as epoch millis (the LocalDateTime read as UTC)
+ *          price, percentChange, change, high, low: byte scale + long unscaled value each
+ *          long cachedAt as epoch millis (version 2)
+ * </pre>
+ *
+ * Decimals keep their scale, so a decoded value equals the original. A decimal whose unscaled value does not fit in
+ * a long, or whose scale does not fit in a byte, cannot be encoded; callers store such entries as JSON instead. The
+ * asset type is stored by ordinal, so reordering AssetType requires a new version.
+ *
+ * Version 2 added cachedAt. Version 1 entries are still decoded, without it.
+ */
+public final class MarketDataCodec {
+
+    static final byte VERSION = 2;
+    private static final byte MIN_VERSION = 1;
+
+    private static final byte MAGIC_0 = 'M';
+    private static final byte MAGIC_1 = 'D';
+    private static final byte KIND_SINGLE = 1;
+    private static final byte KIND_LIST = 2;
+    private static final int HEADER_LENGTH = 4;
+
+    private static final int HAS_ID = 1;
+    private static final int HAS_ASSET_TYPE = 1 << 1;
+    private static final int HAS_SYMBOL = 1 << 2;
+    private static final int HAS_UPDATED_AT = 1 << 3;
+    private static final int HAS_PRICE = 1 << 4;
+    private static final int HAS_PERCENT_CHANGE = 1 << 5;
+    private static final int HAS_CHANGE = 1 << 6;
+    private static final int HAS_HIGH = 1 << 7;
+    private static final int HAS_LOW = 1 << 8;
+    private static final int HAS_CACHED_AT = 1 << 9;
+
+    private static final int DECIMAL_LENGTH = 1 + Long.BYTES;
+    private static final AssetType[] ASSET_TYPES = AssetType.values();
+
+    private MarketDataCodec() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if a decimal of the entry cannot be stored as a scaled long
+     */
+    public static byte[] encode(MarketData marketData) {
+        byte[] symbol = symbolBytes(marketData);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + entryLength(marketData, symbol));
+        writeHeader(buffer, KIND_SINGLE);
+        writeEntry(buffer, marketData, symbol);
+        return buffer.array();
+    }
+
+    /**
+     * @throws IllegalArgumentException if a decimal of any entry cannot be stored as a scaled long
+     */
+    public static byte[] encodeList(List<MarketData> marketDataList) {
+        List<byte[]> symbols = new ArrayList<>(marketDataList.size());
+        int length = HEADER_LENGTH + Integer.BYTES;
+        for (MarketData marketData : marketDataList) {
+            byte[] symbol = symbolBytes(marketData);
+            symbols.add(symbol);
+            length += entryLength(marketData, symbol);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        writeHeader(buffer, KIND_LIST);
+        buffer.putInt(marketDataList.size());
+        for (int i = 0; i < marketDataList.size(); i++) {
+            writeEntry(buffer, marketDataList.get(i), symbols.get(i));
+        }
+        return buffer.array();
+    }
+
+    /**
+     * @return true if the bytes start with the header of this codec, in any version
+     */
+    public static boolean isEncoded(byte[] bytes) {
+        return bytes != null && bytes.length >= HEADER_LENGTH && bytes[0] == MAGIC_0 && bytes[1] == MAGIC_1;
+    }
+
+    /**
+     * @return A {@link MarketData} or a {@code List<MarketData>}, depending on what was encoded
+     * @throws IllegalArgumentException if the bytes were written by an unknown codec version
+     */
+    public static Object decode(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.position(2);
+        byte version = buffer.get();
+        if (version < MIN_VERSION || version > VERSION) {
+            throw new IllegalArgumentException("Unsupported market data codec version: " + version);
+        }
+        byte kind = buffer.get();
+        if (kind == KIND_SINGLE) {
+            return readEntry(buffer);
+        }
+        int count = buffer.getInt();
+        List<MarketData> marketDataList = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            marketDataList.add(readEntry(buffer));
+        }
+        return marketDataList;
+    }
+
+    private static void writeHeader(ByteBuffer buffer, byte kind) {
+        buffer.put(MAGIC_0).put(MAGIC_1).put(VERSION).put(kind);
+    }
+
+    private static int entryLength(MarketData marketData, byte[] symbol) {
+        int length = Short.BYTES;
+        if (marketData.getId() != null) {
+            length += Long.BYTES;
+        }
+        if (marketData.getAssetType() != null) {
+            length += 1;
+        }
+        if (symbol != null) {
+            length += Short.BYTES + symbol.length;
+        }
+        if (marketData.getUpdatedAt() != null) {
+            length += Long.BYTES;
+        }
+        for (BigDecimal decimal : decimals(marketData)) {
+            if (decimal != null) {
+                length += DECIMAL_LENGTH;
+            }
+        }
+        if (marketData.getCachedAt() != null) {
+            length += Long.BYTES;
+        }
+        return length;
+    }
+
+    private static void writeEntry(ByteBuffer buffer, MarketData marketData, byte[] symbol) {
+        BigDecimal[] decimals = decimals(marketData);
+        int flags = 0;
+        flags |= marketData.getId() != null ? HAS_ID : 0;
+        flags |= marketData.getAssetType() != null ? HAS_ASSET_TYPE : 0;
+        flags |= symbol != null ? HAS_SYMBOL : 0;
+        flags |= marketData.getUpdatedAt() != null ? HAS_UPDATED_AT : 0;
+        for (int i = 0; i < decimals.length; i++) {
+            flags |= decimals[i] != null ? HAS_PRICE << i : 0;
+        }
+        flags |= marketData.getCachedAt() != null ? HAS_CACHED_AT : 0;
+        buffer.putShort((short) flags);
+
+        if (marketData.getId() != null) {
+            buffer.putLong(marketData.getId());
+        }
+        if (marketData.getAssetType() != null) {
+            buffer.put((byte) marketData.getAssetType().ordinal());
+        }
+        if (symbol != null) {
+            buffer.putShort((short) symbol.length).put(symbol);
+        }
+        if (marketData.getUpdatedAt() != null) {
+            buffer.putLong(toEpochMillis(marketData.getUpdatedAt()));
+        }
+        for (BigDecimal decimal : decimals) {
+            if (decimal != null) {
+                writeDecimal(buffer, decimal);
+            }
+        }
+        if (marketData.getCachedAt() != null) {
+            buffer.putLong(toEpochMillis(marketData.getCachedAt()));
+        }
+    }
+
+    private static MarketData readEntry(ByteBuffer buffer) {
+        int flags = buffer.getShort() & 0xFFFF;
+        MarketData marketData = new MarketData();
+        if ((flags & HAS_ID) != 0) {
+            marketData.setId(buffer.getLong());
+        }
+        if ((flags & HAS_ASSET_TYPE) != 0) {
+            marketData.setAssetType(ASSET_TYPES[buffer.get()]);
+        }
+        if ((flags & HAS_SYMBOL) != 0) {
+            byte[] symbol = new byte[buffer.getShort()];
+            buffer.get(symbol);
+            marketData.setSymbol(new String(symbol, StandardCharsets.UTF_8));
+        }
+        if ((flags & HAS_UPDATED_AT) != 0) {
+            marketData.setUpdatedAt(fromEpochMillis(buffer.getLong()));
+        }
+        marketData.setPrice((flags & HAS_PRICE) != 0 ? readDecimal(buffer) : null);
+        marketData.setPercentChange((flags & HAS_PERCENT_CHANGE) != 0 ? readDecimal(buffer) : null);
+        marketData.setChange((flags & HAS_CHANGE) != 0 ? readDecimal(buffer) : null);
+        marketData.setHigh((flags & HAS_HIGH) != 0 ? readDecimal(buffer) : null);
+        marketData.setLow((flags & HAS_LOW) != 0 ? readDecimal(buffer) : null);
+        if ((flags & HAS_CACHED_AT) != 0) {
+            marketData.setCachedAt(fromEpochMillis(buffer.getLong()));
+        }
+        return marketData;
+    }
+
+    private static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static LocalDateTime fromEpochMillis(long epochMillis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochMillis, 1000L),
+                (int) Math.floorMod(epochMillis, 1000L) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    // Same order as the HAS_PRICE.. HAS_LOW flags
+    private static BigDecimal[] decimals(MarketData marketData) {
+        return new BigDecimal[] {
+                marketData.getPrice(), marketData.getPercentChange(), marketData.getChange(), marketData.getHigh(), marketData.getLow()
+        };
+    }
+
+    private static void writeDecimal(ByteBuffer buffer, BigDecimal decimal) {
+        BigInteger unscaled = decimal.unscaledValue();
+        if (unscaled.bitLength() > 63 || decimal.scale() < Byte.MIN_VALUE || decimal.scale() > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Decimal does not fit a scaled long: " + decimal);
+        }
+        buffer.put((byte) decimal.scale()).putLong(unscaled.longValue());
+    }
+
+    private static BigDecimal readDecimal(ByteBuffer buffer) {
+        byte scale = buffer.get();
+        return BigDecimal.valueOf(buffer.getLong(), scale);
+    }
+
+    private static byte[] symbolBytes(MarketData marketData) {
+        if (marketData.getSymbol() == null) {
+            return null;
+        }
+        byte[] symbol = marketData.getSymbol().getBytes(StandardCharsets.UTF_8);
+        if (symbol.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Symbol too long to encode: " + symbol.length + " bytes");
+        }
+        return symbol;
+    }
+}
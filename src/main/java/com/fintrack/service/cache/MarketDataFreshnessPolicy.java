@@ -0,0 +1,63 @@
+package com.fintrack.service.cache;
+
+import com.fintrack.constants.finance.AssetType;
+import com.fintrack.model.market.MarketData;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Decides whether a cached market data value is still fresh, from the timestamps the value carries.
+ *
+ * The age of a value is measured from when it was written to the cache ({@link MarketData#getCachedAt()}), or from
+ * its source updatedAt for entries cached before cachedAt was recorded. The allowed age is configured per asset type;
+ * values above the cache TTL (5 minutes) have no effect, since the entry expires first.
+ */
+@Component
+public class MarketDataFreshnessPolicy {
+
+    @Value("${market-data.freshness.stock-max-age-ms:120000}")
+    private long stockMaxAgeMillis = 120000;
+
+    @Value("${market-data.freshness.forex-max-age-ms:120000}")
+    private long forexMaxAgeMillis = 120000;
+
+    @Value("${market-data.freshness.crypto-max-age-ms:120000}")
+    private long cryptoMaxAgeMillis = 120000;
+
+    @Value("${market-data.freshness.commodity-max-age-ms:120000}")
+    private long commodityMaxAgeMillis = 120000;
+
+    @Value("${market-data.freshness.default-max-age-ms:120000}")
+    private long defaultMaxAgeMillis = 120000;
+
+    public Duration maxAge(AssetType assetType) {
+        if (assetType == null) {
+            return Duration.ofMillis(defaultMaxAgeMillis);
+        }
+        return Duration.ofMillis(switch (assetType) {
+            case STOCK -> stockMaxAgeMillis;
+            case FOREX -> forexMaxAgeMillis;
+            case CRYPTO -> cryptoMaxAgeMillis;
+            case COMMODITY -> commodityMaxAgeMillis;
+            default -> defaultMaxAgeMillis;
+        });
+    }
+
+    public boolean isFresh(MarketData marketData, LocalDateTime now) {
+        return isFresh(marketData, maxAge(marketData.getAssetType()), now);
+    }
+
+    /**
+     * @return false if the value carries neither a cache-write time nor an updatedAt
+     */
+    public static boolean isFresh(MarketData marketData, Duration maxAge, LocalDateTime now) {
+        LocalDateTime since = marketData.getCachedAt() != null ? marketData.getCachedAt() : marketData.getUpdatedAt();
+        if (since == null) {
+            return false;
+        }
+        return Duration.between(since, now).compareTo(maxAge) <= 0;
+    }
+}
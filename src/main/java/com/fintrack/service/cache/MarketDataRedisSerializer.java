@@ -0,0 +1,73 @@
+package com.fintrack.service.cache;
+
+import com.fintrack.model.market.MarketData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.List;
+
+/**
+ * Value serializer of the Valkey template: {@link MarketData} values and lists are written with
+ * {@link MarketDataCodec}, everything else as JSON.
+ *
+ * Reads recognize the codec header and hand anything else to the JSON serializer, so entries written as JSON before
+ * the codec was introduced, or that the codec could not encode, are still read until they expire.
+ */
+public class MarketDataRedisSerializer implements RedisSerializer<Object> {
+
+    private static final Logger logger = LoggerFactory.getLogger(MarketDataRedisSerializer.class);
+
+    private final RedisSerializer<Object> jsonSerializer;
+
+    public MarketDataRedisSerializer() {
+        this(new GenericJackson2JsonRedisSerializer());
+    }
+
+    public MarketDataRedisSerializer(RedisSerializer<Object> jsonSerializer) {
+        this.jsonSerializer = jsonSerializer;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        try {
+            if (value instanceof MarketData marketData) {
+                return MarketDataCodec.encode(marketData);
+            }
+            if (value instanceof List<?> list && isMarketDataList(list)) {
+                @SuppressWarnings("unchecked")
+                List<MarketData> marketDataList = (List<MarketData>) list;
+                return MarketDataCodec.encodeList(marketDataList);
+            }
+        } catch (IllegalArgumentException e) {
+            logger.debug("Storing market data as JSON: {}", e.getMessage());
+        }
+        return jsonSerializer.serialize(value);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (MarketDataCodec.isEncoded(bytes)) {
+            try {
+                return MarketDataCodec.decode(bytes);
+            } catch (RuntimeException e) {
+                throw new SerializationException("Could not decode market data", e);
+            }
+        }
+        return jsonSerializer.deserialize(bytes);
+    }
+
+    private static boolean isMarketDataList(List<?> list) {
+        if (list.isEmpty()) {
+            return false;
+        }
+        for (Object element : list) {
+            if (!(element instanceof MarketData)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
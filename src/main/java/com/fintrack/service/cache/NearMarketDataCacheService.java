@@ -0,0 +1,355 @@
+package com.fintrack.service.cache;
+
+import com.fintrack.constants.finance.AssetType;
+import com.fintrack.model.market.MarketData;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process near cache in front of {@link ValkeyMarketDataCacheService}.
+ *
+ * Every request reads the same few thousand symbols, so single and batch reads are first answered from a bounded LRU
+ * map in this JVM; only misses go to Valkey. An entry expires when the Valkey entry it was read from does, 5 minutes
+ * after its cachedAt, and entries are evicted least recently used first once the map is full.
+ *
+ * Writes and invalidations are applied locally and published on the {@link #INVALIDATION_CHANNEL} Valkey channel, so
+ * the other nodes drop their copy of the keys. Updates every node receives itself are not published: each node applies
+ * them to its own near cache with {@link #setLocalMarketDataBatch}, and one node writes them to Valkey with
+ * {@link #setSharedMarketDataBatch}. A read that overlaps an invalidation does not store its result, so a
+ * value read before the invalidation cannot be put back afterwards.
+ *
+ * Account market data, freshness checks and statistics are passed through to Valkey.
+ */
+@Service
+@Primary
+public class NearMarketDataCacheService implements MarketDataCacheService, MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(NearMarketDataCacheService.class);
+
+    public static final String INVALIDATION_CHANNEL = "market_data_invalidation";
+    private static final String ALL_KEYS = "*";
+    private static final String KEY_SEPARATOR = "\n";
+
+    private final ValkeyMarketDataCacheService valkeyCache;
+    private final RedisTemplate<String, Object> valkeyTemplate;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final Counter nearHits;
+    private final Counter nearMisses;
+    private final Counter valkeyHits;
+    private final Counter valkeyMisses;
+
+    @Value("${market-data.near-cache.max-entries:10000}")
+    private int maxEntries = 10000;
+
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, NearEntry> entries = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, NearEntry> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    public NearMarketDataCacheService(ValkeyMarketDataCacheService valkeyCache, RedisTemplate<String, Object> valkeyTemplate,
+                                      MeterRegistry meterRegistry) {
+        this.valkeyCache = valkeyCache;
+        this.valkeyTemplate = valkeyTemplate;
+        this.nearHits = requestCounter(meterRegistry, "near", "hit");
+        this.nearMisses = requestCounter(meterRegistry, "near", "miss");
+        this.valkeyHits = requestCounter(meterRegistry, "valkey", "hit");
+        this.valkeyMisses = requestCounter(meterRegistry, "valkey", "miss");
+        Gauge.builder("market.data.cache.near.size", this, NearMarketDataCacheService::size)
+                .description("Entries in the in-process market data near cache")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Optional<MarketData> getMarketData(String symbol, AssetType assetType) {
+        String key = key(symbol, assetType);
+        MarketData cached = getNear(key);
+        if (cached != null) {
+            nearHits.increment();
+            return Optional.of(cached);
+        }
+        nearMisses.increment();
+
+        long generation = invalidations.get();
+        Optional<MarketData> marketData = valkeyCache.getMarketData(symbol, assetType);
+        if (marketData.isPresent()) {
+            valkeyHits.increment();
+            putNearIfCurrent(key, marketData.get(), generation);
+        } else {
+            valkeyMisses.increment();
+        }
+        return marketData;
+    }
+
+    @Override
+    public List<MarketData> getMarketDataBatch(List<String> symbols, AssetType assetType) {
+        Map<String, MarketData> found = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String symbol : symbols) {
+            MarketData cached = getNear(key(symbol, assetType));
+            if (cached != null) {
+                found.put(symbol, cached);
+            } else {
+                missing.add(symbol);
+            }
+        }
+        nearHits.increment(found.size());
+        nearMisses.increment(missing.size());
+
+        if (!missing.isEmpty()) {
+            long generation = invalidations.get();
+            List<MarketData> loaded = valkeyCache.getMarketDataBatch(missing, assetType);
+            for (MarketData marketData : loaded) {
+                found.putIfAbsent(marketData.getSymbol(), marketData);
+                putNearIfCurrent(key(marketData.getSymbol(), assetType), marketData, generation);
+            }
+            valkeyHits.increment(loaded.size());
+            valkeyMisses.increment(missing.size() - loaded.size());
+        }
+
+        // Same order as the requested symbols, without the ones found nowhere
+        List<MarketData> results = new ArrayList<>(found.size());
+        for (String symbol : symbols) {
+            MarketData marketData = found.remove(symbol);
+            if (marketData != null) {
+                results.add(marketData);
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public void setMarketData(MarketData marketData) {
+        valkeyCache.setMarketData(marketData);
+        String key = key(marketData.getSymbol(), marketData.getAssetType());
+        invalidateNear(List.of(key));
+        putNear(key, marketData);
+        publishInvalidation(List.of(key));
+    }
+
+    @Override
+    public void setMarketDataBatch(List<MarketData> marketDataList) {
+        valkeyCache.setMarketDataBatch(marketDataList);
+        publishInvalidation(putNear(marketDataList));
+    }
+
+    @Override
+    public void setSharedMarketDataBatch(List<MarketData> marketDataList) {
+        valkeyCache.setMarketDataBatch(marketDataList);
+    }
+
+    @Override
+    public void setLocalMarketDataBatch(List<MarketData> marketDataList) {
+        putNear(marketDataList);
+    }
+
+    @Override
+    public void invalidateMarketData(String symbol, AssetType assetType) {
+        valkeyCache.invalidateMarketData(symbol, assetType);
+        List<String> keys = List.of(key(symbol, assetType));
+        invalidateNear(keys);
+        publishInvalidation(keys);
+    }
+
+    @Override
+    public void invalidateMarketDataBatch(Map<AssetType, List<String>> symbolsByAssetType) {
+        valkeyCache.invalidateMarketDataBatch(symbolsByAssetType);
+        List<String> keys = new ArrayList<>();
+        symbolsByAssetType.forEach((assetType, symbols) -> {
+            for (String symbol : symbols) {
+                keys.add(key(symbol, assetType));
+            }
+        });
+        if (keys.isEmpty()) {
+            return;
+        }
+        invalidateNear(keys);
+        publishInvalidation(keys);
+    }
+
+    @Override
+    public List<MarketData> getAccountMarketData(UUID accountId) {
+        return valkeyCache.getAccountMarketData(accountId);
+    }
+
+    @Override
+    public void setAccountMarketData(UUID accountId, List<MarketData> marketDataList) {
+        valkeyCache.setAccountMarketData(accountId, marketDataList);
+    }
+
+    @Override
+    public void clearCache() {
+        valkeyCache.clearCache();
+        clearNear();
+        publishInvalidation(List.of(ALL_KEYS));
+    }
+
+    @Override
+    public Map<String, Object> getCacheStats() {
+        Map<String, Object> stats = new HashMap<>(valkeyCache.getCacheStats());
+        long hits = (long) nearHits.count();
+        long misses = (long) nearMisses.count();
+        stats.put("nearHits", hits);
+        stats.put("nearMisses", misses);
+        stats.put("nearHitRate", hits + misses > 0 ? (double) hits / (hits + misses) : 0.0);
+        stats.put("nearSize", size());
+        stats.put("valkeyHits", (long) valkeyHits.count());
+        stats.put("valkeyMisses", (long) valkeyMisses.count());
+        return stats;
+    }
+
+    @Override
+    public boolean isDataFresh(String symbol, AssetType assetType, Duration maxAge) {
+        return valkeyCache.isDataFresh(symbol, assetType, maxAge);
+    }
+
+    /**
+     * Drops the keys another node wrote or invalidated. Messages published by this node are ignored.
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            Object payload = valkeyTemplate.getValueSerializer().deserialize(message.getBody());
+            if (!(payload instanceof String text)) {
+                return;
+            }
+            int separator = text.indexOf('|');
+            if (separator < 0 || nodeId.equals(text.substring(0, separator))) {
+                return;
+            }
+            List<String> keys = Arrays.asList(text.substring(separator + 1).split(KEY_SEPARATOR));
+            if (keys.contains(ALL_KEYS)) {
+                // Another node moved the Valkey cache to a new generation; read from it right away
+                valkeyCache.refreshGeneration();
+                clearNear();
+            } else {
+                invalidateNear(keys);
+            }
+            logger.debug("Near cache dropped {} keys invalidated by another node", keys.size());
+        } catch (Exception e) {
+            // A lost message only leaves entries until their TTL, so drop everything to stay safe
+            logger.error("Error handling market data invalidation message, clearing near cache", e);
+            clearNear();
+        }
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private MarketData getNear(String key) {
+        synchronized (entries) {
+            NearEntry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt() <= System.currentTimeMillis()) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.marketData();
+        }
+    }
+
+    private void putNear(String key, MarketData marketData) {
+        synchronized (entries) {
+            entries.put(key, new NearEntry(marketData, expiresAt(marketData)));
+        }
+    }
+
+    /**
+     * Replaces the near entries of the given values, so reads that overlap cannot put older values back.
+     *
+     * @return The keys of the values
+     */
+    private List<String> putNear(List<MarketData> marketDataList) {
+        List<String> keys = new ArrayList<>(marketDataList.size());
+        for (MarketData marketData : marketDataList) {
+            keys.add(key(marketData.getSymbol(), marketData.getAssetType()));
+        }
+        invalidateNear(keys);
+        for (int i = 0; i < keys.size(); i++) {
+            putNear(keys.get(i), marketDataList.get(i));
+        }
+        return keys;
+    }
+
+    private void putNearIfCurrent(String key, MarketData marketData, long generation) {
+        synchronized (entries) {
+            if (invalidations.get() == generation) {
+                entries.put(key, new NearEntry(marketData, expiresAt(marketData)));
+            }
+        }
+    }
+
+    /**
+     * An entry expires with the Valkey entry it was read from, {@link ValkeyMarketDataCacheService#MARKET_DATA_TTL}
+     * after it was cached there; a value without a cachedAt was not read from Valkey and gets the whole TTL.
+     */
+    private static long expiresAt(MarketData marketData) {
+        long expiresAt = System.currentTimeMillis() + ValkeyMarketDataCacheService.MARKET_DATA_TTL.toMillis();
+        if (marketData.getCachedAt() != null) {
+            expiresAt -= Math.max(0, Duration.between(marketData.getCachedAt(), LocalDateTime.now()).toMillis());
+        }
+        return expiresAt;
+    }
+
+    private void invalidateNear(Collection<String> keys) {
+        synchronized (entries) {
+            invalidations.incrementAndGet();
+            for (String key : keys) {
+                entries.remove(key);
+            }
+        }
+    }
+
+    private void clearNear() {
+        synchronized (entries) {
+            invalidations.incrementAndGet();
+            entries.clear();
+        }
+    }
+
+    private void publishInvalidation(List<String> keys) {
+        try {
+            valkeyTemplate.convertAndSend(INVALIDATION_CHANNEL, nodeId + "|" + String.join(KEY_SEPARATOR, keys));
+        } catch (Exception e) {
+            logger.error("Error publishing market data invalidation for {} keys", keys.size(), e);
+        }
+    }
+
+    private static Counter requestCounter(MeterRegistry meterRegistry, String tier, String result) {
+        return Counter.builder("market.data.cache.requests")
+                .description("Market data cache lookups by tier and result")
+                .tag("tier", tier)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static String key(String symbol, AssetType assetType) {
+        return assetType + ":" + symbol;
+    }
+
+    private record NearEntry(MarketData marketData, long expiresAt) {
+    }
+}
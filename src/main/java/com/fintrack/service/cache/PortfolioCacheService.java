@@ -0,0 +1,249 @@
+package com.fintrack.service.cache;
+
+import com.fintrack.constants.finance.AssetType;
+import com.fintrack.model.market.MarketData;
+import com.fintrack.repository.finance.HoldingsRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.YearMonth;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Caches portfolio responses in the "portfolio" region and closed-month bar chart history in the "portfolioHistory"
+ * region.
+ *
+ * Entries are never evicted one by one. Every key embeds the versions of the inputs it was computed from, and a change
+ * bumps the version, so the old entries are no longer reachable and expire through their TTL:
+ * - account version: holdings, transactions and categories of the account
+ * - price version: live prices of a symbol the account holds
+ * - FX version: any FX rate, only for responses in a base currency other than USD
+ * - history version: historical prices, only for closed months
+ *
+ * Versions are counters in Valkey, so every node sees a bump at once. A cache failure never fails a request; the
+ * response is computed as if the entry were missing.
+ */
+@Service
+public class PortfolioCacheService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PortfolioCacheService.class);
+
+    static final String PORTFOLIO_CACHE = "portfolio";
+    static final String PORTFOLIO_HISTORY_CACHE = "portfolioHistory";
+
+    private static final String VERSION_PREFIX = "portfolio_version:";
+    private static final String FX_VERSION_KEY = VERSION_PREFIX + "fx";
+    private static final String HISTORY_VERSION_KEY = VERSION_PREFIX + "history";
+
+    private final CacheManager cacheManager;
+    private final RedisTemplate<String, Object> valkeyTemplate;
+    private final HoldingsRepository holdingsRepository;
+
+    public PortfolioCacheService(CacheManager cacheManager, RedisTemplate<String, Object> valkeyTemplate, HoldingsRepository holdingsRepository) {
+        this.cacheManager = cacheManager;
+        this.valkeyTemplate = valkeyTemplate;
+        this.holdingsRepository = holdingsRepository;
+    }
+
+    /**
+     * Returns the cached response of a portfolio endpoint, or computes and caches it.
+     */
+    public <T> List<T> getPortfolioResponse(String endpoint, UUID accountId, String baseCurrency, String category,
+                                            Supplier<List<T>> loader) {
+        return getOrCompute(PORTFOLIO_CACHE, versions -> String.join(":",
+                endpoint, accountId.toString(), baseCurrency, String.valueOf(category),
+                "a" + versions.account(), "p" + versions.prices() + ("USD".equals(baseCurrency) ? "" : ".fx" + versions.fx())),
+                accountId, loader);
+    }
+
+    /**
+     * Returns the cached bar chart entries of the closed months, or computes and caches them. The current month is
+     * part of the key, so the series gains the month that just closed on the first request of a new month.
+     */
+    public <T> List<T> getClosedMonths(UUID accountId, String baseCurrency, String category,
+                                       Supplier<List<T>> loader) {
+        return getOrCompute(PORTFOLIO_HISTORY_CACHE, versions -> String.join(":",
+                accountId.toString(), baseCurrency, String.valueOf(category), YearMonth.now().toString(),
+                "a" + versions.account(), "h" + versions.history()),
+                accountId, loader);
+    }
+
+    /**
+     * Invalidates the cached responses of an account whose holdings or categories changed, once the change commits.
+     */
+    public void onAccountChanged(UUID accountId) {
+        afterCommit(() -> increment(accountVersionKey(accountId)));
+    }
+
+    /**
+     * Invalidates the cached responses of the accounts holding any of the updated symbols. For FX pairs both currencies
+     * count as held symbols, and every response in a base currency other than USD is invalidated.
+     */
+    public void onPriceUpdates(List<MarketData> marketDataList) {
+        Set<String> symbols = new HashSet<>();
+        boolean fxChanged = false;
+        for (MarketData marketData : marketDataList) {
+            if (marketData.getSymbol() == null) {
+                continue;
+            }
+            if (marketData.getAssetType() == AssetType.FOREX) {
+                fxChanged = true;
+                symbols.addAll(Arrays.asList(marketData.getSymbol().split("/")));
+            } else {
+                symbols.add(marketData.getSymbol());
+            }
+        }
+        if (symbols.isEmpty()) {
+            return;
+        }
+
+        try {
+            List<UUID> accountIds = holdingsRepository.findAccountIdsHoldingSymbols(symbols);
+            List<String> keys = new ArrayList<>(accountIds.size() + 1);
+            for (UUID accountId : accountIds) {
+                keys.add(priceVersionKey(accountId));
+            }
+            if (fxChanged) {
+                keys.add(FX_VERSION_KEY);
+            }
+            incrementAll(keys);
+            logger.debug("Invalidated cached portfolios of {} accounts for {} updated symbols", accountIds.size(), symbols.size());
+        } catch (Exception e) {
+            logger.error("Error invalidating cached portfolios for {} updated symbols", symbols.size(), e);
+        }
+    }
+
+    /**
+     * Invalidates the cached closed-month history of every account after a historical price backfill.
+     */
+    public void onHistoricalPricesChanged() {
+        increment(HISTORY_VERSION_KEY);
+    }
+
+    /**
+     * Invalidates the cached responses of an account whose monthly valuations are being dropped. Unlike
+     * {@link #onAccountChanged(UUID)} the version is bumped at once, so it can bracket the delete.
+     */
+    public void onMonthlyValuationsInvalidated(UUID accountId) {
+        increment(accountVersionKey(accountId));
+    }
+
+    /**
+     * Returns the versions the monthly valuations of an account are computed from, its account and history versions,
+     * as one token that changes whenever either is bumped.
+     *
+     * @return The token, or null if the versions cannot be read
+     */
+    public String monthlyValuationVersion(UUID accountId) {
+        try {
+            Versions versions = readVersions(accountId);
+            return "a" + versions.account() + ".h" + versions.history();
+        } catch (Exception e) {
+            logger.error("Error reading monthly valuation version of account {}", accountId, e);
+            return null;
+        }
+    }
+
+    private <T> List<T> getOrCompute(String cacheName, Function<Versions, String> keyFunction,
+                                     UUID accountId, Supplier<List<T>> loader) {
+        Cache cache = null;
+        String key = null;
+        try {
+            cache = cacheManager.getCache(cacheName);
+            key = keyFunction.apply(readVersions(accountId));
+            Cache.ValueWrapper cached = cache != null ? cache.get(key) : null;
+            if (cached != null) {
+                logger.debug("Portfolio cache hit: {}/{}", cacheName, key);
+                @SuppressWarnings("unchecked")
+                List<T> value = (List<T>) cached.get();
+                return value;
+            }
+        } catch (Exception e) {
+            logger.error("Error reading portfolio cache {}", cacheName, e);
+            cache = null;
+        }
+
+        List<T> value = loader.get();
+        if (cache != null) {
+            try {
+                cache.put(key, value);
+            } catch (Exception e) {
+                logger.error("Error writing portfolio cache {}/{}", cacheName, key, e);
+            }
+        }
+        return value;
+    }
+
+    private Versions readVersions(UUID accountId) {
+        List<Object> values = valkeyTemplate.opsForValue().multiGet(List.of(
+                accountVersionKey(accountId), priceVersionKey(accountId), FX_VERSION_KEY, HISTORY_VERSION_KEY));
+        return new Versions(
+                toLong(values, 0), toLong(values, 1), toLong(values, 2), toLong(values, 3));
+    }
+
+    private void increment(String key) {
+        try {
+            valkeyTemplate.opsForValue().increment(key);
+        } catch (Exception e) {
+            logger.error("Error bumping portfolio cache version {}", key, e);
+        }
+    }
+
+    // One pipelined round trip however many accounts hold the updated symbols
+    private void incrementAll(List<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        valkeyTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, Object> pipeline = (RedisOperations<String, Object>) operations;
+                for (String key : keys) {
+                    pipeline.opsForValue().increment(key);
+                }
+                return null;
+            }
+        });
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static long toLong(List<Object> values, int index) {
+        Object value = values != null && values.size() > index ? values.get(index) : null;
+        return value != null ? Long.parseLong(value.toString()) : 0L;
+    }
+
+    private static String accountVersionKey(UUID accountId) {
+        return VERSION_PREFIX + accountId + ":account";
+    }
+
+    private static String priceVersionKey(UUID accountId) {
+        return VERSION_PREFIX + accountId + ":prices";
+    }
+
+    private record Versions(long account, long prices, long fx, long history) {
+    }
+}
@@ -5,15 +5,40 @@ import com.fintrack.constants.finance.AssetType;
 import com.fintrack.model.market.MarketData;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import jakarta.annotation.PreDestroy;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
 
+/**
+ * Market data cache in Valkey.
+ *
+ * Market data keys are namespaced by a cache generation, {@code market_data:<generation>:<asset type>:<symbol>}. A
+ * full clear increments the generation in Valkey, which is O(1) and does not block other clients; entries of older
+ * generations are no longer read, expire with their TTL and are additionally reaped in the background with SCAN and
+ * UNLINK. Every node keeps the current generation in memory and re-reads it periodically, so another node's clear
+ * is picked up within {@code market-data.cache.generation-refresh-ms}.
+ */
 @Service
 public class ValkeyMarketDataCacheService implements MarketDataCacheService {
 
@@ -24,25 +49,53 @@ public class ValkeyMarketDataCacheService implements MarketDataCacheService {
     
     private static final String MARKET_DATA_PREFIX = "market_data:";
     private static final String ACCOUNT_MARKET_DATA_PREFIX = "account_market_data:";
+    private static final String GENERATION_KEY = "market_data_generation";
+    private static final int SCAN_BATCH_SIZE = 1000;
     private static final String CACHE_STATS_PREFIX = "cache_stats:";
+    private static final String CACHE_STATS_NODES_KEY = CACHE_STATS_PREFIX + "nodes";
+    private static final String CACHE_STATS_NODE_PREFIX = CACHE_STATS_PREFIX + "node:";
+    private static final String HITS_FIELD = ":hits";
+    private static final String MISSES_FIELD = ":misses";
+    // A node that stops flushing drops out of the cluster-wide stats after this long
+    private static final Duration CACHE_STATS_NODE_TTL = Duration.ofDays(1);
+
+    static final Duration MARKET_DATA_TTL = Duration.ofMinutes(5);
+
+    // Hits and misses are counted in memory per asset type and flushed to this node's stats hash periodically
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<AssetType, LongAdder> hitCounters = new EnumMap<>(AssetType.class);
+    private final Map<AssetType, LongAdder> missCounters = new EnumMap<>(AssetType.class);
+
+    // Keys per pipelined batch write; keeps a single pipeline well below the server's query buffer limit
+    @Value("${market-data.cache.batch-chunk-size:500}")
+    private int batchChunkSize = 500;
+
+    private volatile long generation;
+    private volatile boolean generationLoaded;
+    private final AtomicBoolean reapScheduled = new AtomicBoolean();
+    private volatile ExecutorService reaperExecutor;
     
     public ValkeyMarketDataCacheService(RedisTemplate<String, Object> valkeyTemplate, ObjectMapper objectMapper) {
         this.valkeyTemplate = valkeyTemplate;
         this.objectMapper = objectMapper;
+        for (AssetType assetType : AssetType.values()) {
+            hitCounters.put(assetType, new LongAdder());
+            missCounters.put(assetType, new LongAdder());
+        }
     }
 
     @Override
     @Cacheable(value = "marketData", key = "#symbol + ':' + #assetType")
     public Optional<MarketData> getMarketData(String symbol, AssetType assetType) {
-        String key = MARKET_DATA_PREFIX + assetType + ":" + symbol;
+        String key = marketDataKey(symbol, assetType);
         try {
             MarketData marketData = (MarketData) valkeyTemplate.opsForValue().get(key);
             if (marketData != null) {
                 logger.debug("Cache hit for market data: {}/{}", symbol, assetType);
-                incrementCacheHit(symbol, assetType);
+                addCacheHits(assetType, 1);
             } else {
                 logger.debug("Cache miss for market data: {}/{}", symbol, assetType);
-                incrementCacheMiss(symbol, assetType);
+                addCacheMisses(assetType, 1);
             }
             return Optional.ofNullable(marketData);
         } catch (Exception e) {
@@ -54,9 +107,10 @@ public class ValkeyMarketDataCacheService implements MarketDataCacheService {
     @Override
     @CacheEvict(value = "marketData", key = "#marketData.symbol + ':' + #marketData.assetType")
     public void setMarketData(MarketData marketData) {
-        String key = MARKET_DATA_PREFIX + marketData.getAssetType() + ":" + marketData.getSymbol();
+        String key = marketDataKey(marketData.getSymbol(), marketData.getAssetType());
         try {
-            valkeyTemplate.opsForValue().set(key, marketData, Duration.ofMinutes(5));
+            marketData.setCachedAt(LocalDateTime.now());
+            valkeyTemplate.opsForValue().set(key, marketData, MARKET_DATA_TTL);
             logger.debug("Cached market data: {}/{}", marketData.getSymbol(), marketData.getAssetType());
         } catch (Exception e) {
             logger.error("Error caching market data: {}/{}", marketData.getSymbol(), marketData.getAssetType(), e);
@@ -67,19 +121,18 @@ public class ValkeyMarketDataCacheService implements MarketDataCacheService {
     public List<MarketData> getMarketDataBatch(List<String> symbols, AssetType assetType) {
         List<MarketData> results = new ArrayList<>();
         List<String> keys = symbols.stream()
-            .map(symbol -> MARKET_DATA_PREFIX + assetType + ":" + symbol)
+            .map(symbol -> marketDataKey(symbol, assetType))
             .toList();
         
         try {
             List<Object> cachedData = valkeyTemplate.opsForValue().multiGet(keys);
-            for (int i = 0; i < cachedData.size(); i++) {
-                if (cachedData.get(i) != null) {
-                    results.add((MarketData) cachedData.get(i));
-                    incrementCacheHit(symbols.get(i), assetType);
-                } else {
-                    incrementCacheMiss(symbols.get(i), assetType);
+            for (Object cached : cachedData) {
+                if (cached != null) {
+                    results.add((MarketData) cached);
                 }
             }
+            addCacheHits(assetType, results.size());
+            addCacheMisses(assetType, cachedData.size() - results.size());
             logger.debug("Batch cache retrieval: {}/{} found, {}/{} total", 
                 results.size(), symbols.size(), results.size(), symbols.size());
         } catch (Exception e) {
@@ -89,26 +142,44 @@ public class ValkeyMarketDataCacheService implements MarketDataCacheService {
         return results;
     }
 
+    /**
+     * Writes every entry with its TTL as SET ... EX, pipelined in chunks of {@code batchChunkSize} keys, so a batch
+     * costs one round trip per chunk instead of an MSET plus one EXPIRE per key.
+     */
     @Override
     public void setMarketDataBatch(List<MarketData> marketDataList) {
-        try {
-            Map<String, MarketData> batchData = new HashMap<>();
-            for (MarketData marketData : marketDataList) {
-                String key = MARKET_DATA_PREFIX + marketData.getAssetType() + ":" + marketData.getSymbol();
-                batchData.put(key, marketData);
-            }
-            
-            valkeyTemplate.opsForValue().multiSet(batchData);
-            
-            // Set TTL for all keys
-            for (String key : batchData.keySet()) {
-                valkeyTemplate.expire(key, Duration.ofMinutes(5));
+        LocalDateTime cachedAt = LocalDateTime.now();
+        Map<String, MarketData> batchData = new LinkedHashMap<>();
+        for (MarketData marketData : marketDataList) {
+            marketData.setCachedAt(cachedAt);
+            String key = marketDataKey(marketData.getSymbol(), marketData.getAssetType());
+            batchData.put(key, marketData);
+        }
+        if (batchData.isEmpty()) {
+            return;
+        }
+
+        List<Map.Entry<String, MarketData>> entries = new ArrayList<>(batchData.entrySet());
+        int chunkSize = Math.max(1, batchChunkSize);
+        for (int from = 0; from < entries.size(); from += chunkSize) {
+            List<Map.Entry<String, MarketData>> chunk = entries.subList(from, Math.min(from + chunkSize, entries.size()));
+            try {
+                valkeyTemplate.executePipelined(new SessionCallback<Object>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                        RedisOperations<String, Object> pipeline = (RedisOperations<String, Object>) operations;
+                        for (Map.Entry<String, MarketData> entry : chunk) {
+                            pipeline.opsForValue().set(entry.getKey(), entry.getValue(), MARKET_DATA_TTL);
+                        }
+                        return null;
+                    }
+                });
+            } catch (Exception e) {
+                logger.error("Error in batch cache operation for {} of {} entries", chunk.size(), entries.size(), e);
             }
-            
-            logger.debug("Batch cached {} market data entries", marketDataList.size());
-        } catch (Exception e) {
-            logger.error("Error in batch cache operation", e);
         }
+        logger.debug("Batch cached {} market data entries", entries.size());
     }
 
     @Override
@@ -137,7 +208,7 @@ public class ValkeyMarketDataCacheService implements MarketDataCacheService {
 
     @Override
     public void invalidateMarketData(String symbol, AssetType assetType) {
-        String key = MARKET_DATA_PREFIX + assetType + ":" + symbol;
+        String key = marketDataKey(symbol, assetType);
         try {
             valkeyTemplate.delete(key);
             logger.debug("Invalidated market data cache: {}/{}", symbol, assetType);
@@ -146,55 +217,205 @@ public class ValkeyMarketDataCacheService implements MarketDataCacheService {
         }
     }
 
+    /**
+     * Unlinks the keys of all given symbols, pipelined in chunks of {@code batchChunkSize} keys.
+     */
+    @Override
+    public void invalidateMarketDataBatch(Map<AssetType, List<String>> symbolsByAssetType) {
+        List<String> keys = new ArrayList<>();
+        symbolsByAssetType.forEach((assetType, symbols) -> {
+            for (String symbol : symbols) {
+                keys.add(marketDataKey(symbol, assetType));
+            }
+        });
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        int chunkSize = Math.max(1, batchChunkSize);
+        try {
+            valkeyTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, Object> pipeline = (RedisOperations<String, Object>) operations;
+                    for (int from = 0; from < keys.size(); from += chunkSize) {
+                        pipeline.unlink(keys.subList(from, Math.min(from + chunkSize, keys.size())));
+                    }
+                    return null;
+                }
+            });
+            logger.debug("Invalidated {} market data cache entries", keys.size());
+        } catch (Exception e) {
+            logger.error("Error invalidating {} market data cache entries", keys.size(), e);
+        }
+    }
+
+    /**
+     * Moves the cache to a new generation instead of deleting every key, then reaps the old generations in the
+     * background.
+     */
     @Override
     public void clearCache() {
         try {
-            Set<String> keys = valkeyTemplate.keys(MARKET_DATA_PREFIX + "*");
-            if (keys != null && !keys.isEmpty()) {
-                valkeyTemplate.delete(keys);
-                logger.info("Cleared {} market data cache entries", keys.size());
+            Long newGeneration = valkeyTemplate.opsForValue().increment(GENERATION_KEY);
+            if (newGeneration != null) {
+                generation = newGeneration;
+                generationLoaded = true;
             }
+            logger.info("Cleared market data cache, now at generation {}", generation);
+            scheduleReap();
         } catch (Exception e) {
             logger.error("Error clearing cache", e);
         }
     }
 
+    /**
+     * Re-reads the current generation, so a clear by another node takes effect here. This is a plain GET, so it can
+     * be served by replicas; a missing key is generation 0, the one in use before the first clear.
+     */
+    @Scheduled(fixedRateString = "${market-data.cache.generation-refresh-ms:1000}")
+    public void refreshGeneration() {
+        try {
+            Object current = valkeyTemplate.opsForValue().get(GENERATION_KEY);
+            generation = current != null ? Long.parseLong(current.toString()) : 0L;
+            generationLoaded = true;
+        } catch (Exception e) {
+            logger.error("Error reading market data cache generation, staying at {}", generation, e);
+        }
+    }
+
+    long currentGeneration() {
+        if (!generationLoaded) {
+            refreshGeneration();
+        }
+        return generation;
+    }
+
+    /**
+     * Unlinks every market data key that does not belong to the current generation, including keys written before
+     * keys were namespaced. Scans incrementally, so Valkey keeps serving other clients in between.
+     *
+     * @return the number of keys unlinked
+     */
+    long reapOldGenerations() {
+        String currentPrefix = MARKET_DATA_PREFIX + currentGeneration() + ":";
+        Long reaped = valkeyTemplate.execute((RedisCallback<Long>) connection -> {
+            long count = 0;
+            List<byte[]> batch = new ArrayList<>(SCAN_BATCH_SIZE);
+            ScanOptions options = ScanOptions.scanOptions().match(MARKET_DATA_PREFIX + "*").count(SCAN_BATCH_SIZE).build();
+            try (Cursor<byte[]> cursor = connection.keyCommands().scan(options)) {
+                while (cursor.hasNext()) {
+                    byte[] key = cursor.next();
+                    if (!new String(key, StandardCharsets.UTF_8).startsWith(currentPrefix)) {
+                        batch.add(key);
+                    }
+                    if (batch.size() >= SCAN_BATCH_SIZE) {
+                        count += unlink(connection, batch);
+                    }
+                }
+            }
+            return count + unlink(connection, batch);
+        });
+        return reaped != null ? reaped : 0;
+    }
+
+    private static long unlink(RedisConnection connection, List<byte[]> keys) {
+        if (keys.isEmpty()) {
+            return 0;
+        }
+        Long unlinked = connection.keyCommands().unlink(keys.toArray(new byte[0][]));
+        keys.clear();
+        return unlinked != null ? unlinked : 0;
+    }
+
+    private void scheduleReap() {
+        if (!reapScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        reaperExecutor().execute(() -> {
+            try {
+                long reaped = reapOldGenerations();
+                logger.info("Reaped {} market data cache entries of old generations", reaped);
+            } catch (Exception e) {
+                logger.error("Error reaping old market data cache generations, leaving them to expire", e);
+            } finally {
+                reapScheduled.set(false);
+            }
+        });
+    }
+
+    private ExecutorService reaperExecutor() {
+        ExecutorService executor = reaperExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                if (reaperExecutor == null) {
+                    reaperExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, "market-data-cache-reaper");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+                executor = reaperExecutor;
+            }
+        }
+        return executor;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (reaperExecutor != null) {
+            reaperExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Aggregates the hit and miss counts of every node from their stats hashes, plus the counts of this node that
+     * have not been flushed yet.
+     */
     @Override
     public Map<String, Object> getCacheStats() {
         Map<String, Object> stats = new HashMap<>();
         try {
-            // Get cache hit/miss statistics
-            Set<String> hitKeys = valkeyTemplate.keys(CACHE_STATS_PREFIX + "*:hits");
-            Set<String> missKeys = valkeyTemplate.keys(CACHE_STATS_PREFIX + "*:misses");
-            
-            long totalHits = 0;
-            long totalMisses = 0;
-            
-            if (hitKeys != null) {
-                for (String key : hitKeys) {
-                    Object value = valkeyTemplate.opsForValue().get(key);
-                    if (value != null) {
-                        totalHits += Long.parseLong(value.toString());
+            Map<String, Long> counts = new HashMap<>();
+            Set<Object> nodes = valkeyTemplate.opsForSet().members(CACHE_STATS_NODES_KEY);
+            if (nodes != null) {
+                for (Object node : nodes) {
+                    Map<Object, Object> nodeCounts = valkeyTemplate.opsForHash().entries(CACHE_STATS_NODE_PREFIX + node);
+                    if (nodeCounts == null || nodeCounts.isEmpty()) {
+                        // The node's hash expired: it has not flushed for a day
+                        valkeyTemplate.opsForSet().remove(CACHE_STATS_NODES_KEY, node);
+                        continue;
                     }
+                    nodeCounts.forEach((field, value) -> counts.merge(field.toString(), Long.parseLong(value.toString()), Long::sum));
                 }
             }
-            
-            if (missKeys != null) {
-                for (String key : missKeys) {
-                    Object value = valkeyTemplate.opsForValue().get(key);
-                    if (value != null) {
-                        totalMisses += Long.parseLong(value.toString());
-                    }
+            forEachCount(false, (field, count) -> counts.merge(field, count, Long::sum));
+
+            long totalHits = 0;
+            long totalMisses = 0;
+            Map<String, Map<String, Long>> byAssetType = new TreeMap<>();
+            for (Map.Entry<String, Long> count : counts.entrySet()) {
+                String field = count.getKey();
+                boolean hit = field.endsWith(HITS_FIELD);
+                String assetType = field.substring(0, field.length() - (hit ? HITS_FIELD : MISSES_FIELD).length());
+                byAssetType.computeIfAbsent(assetType, type -> new HashMap<>()).merge(hit ? "hits" : "misses", count.getValue(), Long::sum);
+                if (hit) {
+                    totalHits += count.getValue();
+                } else {
+                    totalMisses += count.getValue();
                 }
             }
-            
+
             stats.put("totalHits", totalHits);
             stats.put("totalMisses", totalMisses);
             stats.put("hitRate", totalHits + totalMisses > 0 ? 
                 (double) totalHits / (totalHits + totalMisses) : 0.0);
+            stats.put("byAssetType", byAssetType);
+            stats.put("nodes", nodes != null ? nodes.size() : 0);
             
-            Set<String> marketDataKeys = valkeyTemplate.keys(MARKET_DATA_PREFIX + "*");
-            stats.put("cacheSize", marketDataKeys != null ? marketDataKeys.size() : 0);
+            stats.put("generation", currentGeneration());
+            stats.put("cacheSize", countCurrentKeys());
             
         } catch (Exception e) {
             logger.error("Error getting cache stats", e);
@@ -203,33 +424,101 @@ public class ValkeyMarketDataCacheService implements MarketDataCacheService {
         return stats;
     }
 
+    /**
+     * Adds the hits and misses counted since the last flush to this node's stats hash, in one pipelined round trip.
+     * Counts that cannot be written are kept for the next flush.
+     */
+    @Scheduled(fixedRateString = "${market-data.cache-stats.flush-ms:10000}")
+    public void flushCacheStats() {
+        Map<String, Long> deltas = new HashMap<>();
+        forEachCount(true, deltas::put);
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        String nodeKey = CACHE_STATS_NODE_PREFIX + nodeId;
+        try {
+            valkeyTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, Object> pipeline = (RedisOperations<String, Object>) operations;
+                    deltas.forEach((field, delta) -> pipeline.opsForHash().increment(nodeKey, field, delta));
+                    pipeline.expire(nodeKey, CACHE_STATS_NODE_TTL);
+                    pipeline.opsForSet().add(CACHE_STATS_NODES_KEY, nodeId);
+                    return null;
+                }
+            });
+            logger.debug("Flushed {} cache stats counters", deltas.size());
+        } catch (Exception e) {
+            logger.error("Error flushing cache stats, keeping {} counters for the next flush", deltas.size(), e);
+            deltas.forEach((field, delta) -> (field.endsWith(HITS_FIELD) ? hitCounters : missCounters)
+                    .get(AssetType.valueOf(field.substring(0, field.indexOf(':')))).add(delta));
+        }
+    }
+
+    /**
+     * Reads the entry and checks the cache-write time it carries. Callers that already hold the cached value should
+     * use {@link MarketDataFreshnessPolicy} on it instead of asking again.
+     */
     @Override
     public boolean isDataFresh(String symbol, AssetType assetType, Duration maxAge) {
-        String key = MARKET_DATA_PREFIX + assetType + ":" + symbol;
+        String key = marketDataKey(symbol, assetType);
         try {
-            Long ttl = valkeyTemplate.getExpire(key, TimeUnit.SECONDS);
-            if (ttl == null || ttl <= 0) {
-                return false;
-            }
-            
-            Duration remainingTtl = Duration.ofSeconds(ttl);
-            Duration originalTtl = Duration.ofMinutes(5);
-            Duration age = originalTtl.minus(remainingTtl);
-            
-            return age.compareTo(maxAge) <= 0;
+            MarketData marketData = (MarketData) valkeyTemplate.opsForValue().get(key);
+            return marketData != null && MarketDataFreshnessPolicy.isFresh(marketData, maxAge, LocalDateTime.now());
         } catch (Exception e) {
             logger.error("Error checking data freshness: {}/{}", symbol, assetType, e);
             return false;
         }
     }
 
-    private void incrementCacheHit(String symbol, AssetType assetType) {
-        String key = CACHE_STATS_PREFIX + assetType + ":" + symbol + ":hits";
-        valkeyTemplate.opsForValue().increment(key);
+    private void addCacheHits(AssetType assetType, long count) {
+        if (assetType != null && count > 0) {
+            hitCounters.get(assetType).add(count);
+        }
+    }
+
+    private void addCacheMisses(AssetType assetType, long count) {
+        if (assetType != null && count > 0) {
+            missCounters.get(assetType).add(count);
+        }
+    }
+
+    /**
+     * Passes each non-zero counter as "ASSET_TYPE:hits" or "ASSET_TYPE:misses", optionally resetting it.
+     */
+    private void forEachCount(boolean reset, BiConsumer<String, Long> consumer) {
+        for (AssetType assetType : AssetType.values()) {
+            long hits = reset ? hitCounters.get(assetType).sumThenReset() : hitCounters.get(assetType).sum();
+            long misses = reset ? missCounters.get(assetType).sumThenReset() : missCounters.get(assetType).sum();
+            if (hits > 0) {
+                consumer.accept(assetType + HITS_FIELD, hits);
+            }
+            if (misses > 0) {
+                consumer.accept(assetType + MISSES_FIELD, misses);
+            }
+        }
+    }
+
+    // Counts the keys of the current generation with SCAN instead of KEYS
+    private long countCurrentKeys() {
+        ScanOptions options = ScanOptions.scanOptions()
+                .match(MARKET_DATA_PREFIX + currentGeneration() + ":*").count(SCAN_BATCH_SIZE).build();
+        Long count = valkeyTemplate.execute((RedisCallback<Long>) connection -> {
+            long keys = 0;
+            try (Cursor<byte[]> cursor = connection.keyCommands().scan(options)) {
+                while (cursor.hasNext()) {
+                    cursor.next();
+                    keys++;
+                }
+            }
+            return keys;
+        });
+        return count != null ? count : 0;
     }
 
-    private void incrementCacheMiss(String symbol, AssetType assetType) {
-        String key = CACHE_STATS_PREFIX + assetType + ":" + symbol + ":misses";
-        valkeyTemplate.opsForValue().increment(key);
+    private String marketDataKey(String symbol, AssetType assetType) {
+        return MARKET_DATA_PREFIX + currentGeneration() + ":" + assetType + ":" + symbol;
     }
-} 
\ No newline at end of file
+}
@@ -5,6 +5,7 @@ import com.fintrack.repository.finance.CategoriesRepository;
 import com.fintrack.repository.finance.HoldingsCategoriesRepository;
 import com.fintrack.repository.finance.SubcategoriesRepository;
 import com.fintrack.constants.Color;
+import com.fintrack.service.cache.PortfolioCacheService;
 
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
@@ -23,14 +24,17 @@ public class CategoriesService {
     private final CategoriesRepository categoriesRepository;
     private final SubcategoriesRepository subcategoriesRepository;
     private final HoldingsCategoriesRepository holdingsCategoriesRepository;
+    private final PortfolioCacheService portfolioCacheService;
 
     public CategoriesService(
         CategoriesRepository categoriesRepository, 
         SubcategoriesRepository subcategoriesRepository,
-        HoldingsCategoriesRepository holdingsCategoriesRepository) {
+        HoldingsCategoriesRepository holdingsCategoriesRepository,
+        PortfolioCacheService portfolioCacheService) {
         this.categoriesRepository = categoriesRepository;
         this.subcategoriesRepository = subcategoriesRepository;
         this.holdingsCategoriesRepository = holdingsCategoriesRepository;
+        this.portfolioCacheService = portfolioCacheService;
     }
 
         @Transactional
@@ -72,6 +76,8 @@ public class CategoriesService {
         } catch (DataIntegrityViolationException e) {
             throw new IllegalArgumentException("Failed to insert category. Possible data integrity violation.", e);
         }
+
+        portfolioCacheService.onAccountChanged(accountId);
     }
 
     @Transactional
@@ -92,6 +98,8 @@ public class CategoriesService {
     
         // Update the category name
         categoriesRepository.updateCategoryName(accountId, categoryId, newCategoryName);
+
+        portfolioCacheService.onAccountChanged(accountId);
     }
 
     public List<String> getCategoryNames(UUID accountId) {
@@ -156,6 +164,8 @@ public class CategoriesService {
             Category category = remainingCategories.get(priority - 1);
             categoriesRepository.updateCategoryPriority(category.getCategoryId(), priority);
         }
+
+        portfolioCacheService.onAccountChanged(accountId);
     }
 
     @Transactional
@@ -176,6 +186,8 @@ public class CategoriesService {
                    accountId, categoryName, categoryId, hexCode.toUpperCase());
         categoriesRepository.updateCategoryColor(accountId, categoryId, hexCode.toUpperCase());
         logger.info("Category color updated successfully");
+
+        portfolioCacheService.onAccountChanged(accountId);
     }
 
     @Transactional(readOnly = true)
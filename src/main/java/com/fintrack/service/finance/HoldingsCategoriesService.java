@@ -5,6 +5,7 @@ import com.fintrack.repository.finance.CategoriesRepository;
 import com.fintrack.repository.finance.HoldingsCategoriesRepository;
 import com.fintrack.repository.finance.SubcategoriesRepository;
 import com.fintrack.repository.finance.AssetRepository;
+import com.fintrack.service.cache.PortfolioCacheService;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -23,16 +24,19 @@ public class HoldingsCategoriesService {
     private final CategoriesRepository categoriesRepository;
     private final SubcategoriesRepository subcategoriesRepository;
     private final AssetRepository assetRepository;
+    private final PortfolioCacheService portfolioCacheService;
 
     public HoldingsCategoriesService(
         HoldingsCategoriesRepository holdingsCategoriesRepository, 
         CategoriesRepository categoriesRepository,
         SubcategoriesRepository subcategoriesRepository,
-        AssetRepository assetRepository) {
+        AssetRepository assetRepository,
+        PortfolioCacheService portfolioCacheService) {
         this.holdingsCategoriesRepository = holdingsCategoriesRepository;
         this.categoriesRepository = categoriesRepository;
         this.subcategoriesRepository = subcategoriesRepository;
         this.assetRepository = assetRepository;
+        this.portfolioCacheService = portfolioCacheService;
     }
 
     @Transactional
@@ -81,6 +85,8 @@ public class HoldingsCategoriesService {
                 );
             }
         }
+
+        portfolioCacheService.onAccountChanged(accountId);
     }
 
     @Transactional
@@ -128,6 +134,8 @@ public class HoldingsCategoriesService {
                 );
             }
         }
+
+        portfolioCacheService.onAccountChanged(accountId);
     }
 
     @Transactional
@@ -139,6 +147,8 @@ public class HoldingsCategoriesService {
     
         // Remove the holdings category from the database
         holdingsCategoriesRepository.deleteByAccountIdAndCategory(accountId, category);
+
+        portfolioCacheService.onAccountChanged(accountId);
     }
 
     @Transactional(readOnly = true)
@@ -189,6 +199,7 @@ public class HoldingsCategoriesService {
         
         if (deletedCount > 0) {
             logger.info("Cleaned up {} orphaned holdings categories for account: {}", deletedCount, accountId);
+            portfolioCacheService.onAccountChanged(accountId);
         } else {
             logger.info("No orphaned holdings categories found for account: {}", accountId);
         }
@@ -212,6 +223,7 @@ public class HoldingsCategoriesService {
         
         if (deletedCount > 0) {
             logger.info("Cleaned up {} orphaned holdings categories for account: {} and assets: {}", deletedCount, accountId, assetNames);
+            portfolioCacheService.onAccountChanged(accountId);
         } else {
             logger.info("No orphaned holdings categories found for account: {} and assets: {}", accountId, assetNames);
         }
@@ -230,6 +242,7 @@ public class HoldingsCategoriesService {
         
         if (deletedCount > 0) {
             logger.info("Cleaned up {} orphaned assets for account: {}", deletedCount, accountId);
+            portfolioCacheService.onAccountChanged(accountId);
         } else {
             logger.info("No orphaned assets found for account: {}", accountId);
         }
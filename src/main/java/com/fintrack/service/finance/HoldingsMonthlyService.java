@@ -21,10 +21,15 @@ public class HoldingsMonthlyService {
     private static final Logger logger = LoggerFactory.getLogger(HoldingsMonthlyService.class);
     private final HoldingsMonthlyRepository holdingsMonthlyRepository;
     private final TransactionRepository transactionRepository;
+    private final PortfolioValueMonthlyService portfolioValueMonthlyService;
 
-    public HoldingsMonthlyService(HoldingsMonthlyRepository holdingsMonthlyRepository, TransactionRepository transactionRepository) {
+    public HoldingsMonthlyService(
+            HoldingsMonthlyRepository holdingsMonthlyRepository,
+            TransactionRepository transactionRepository,
+            PortfolioValueMonthlyService portfolioValueMonthlyService) {
         this.holdingsMonthlyRepository = holdingsMonthlyRepository;
         this.transactionRepository = transactionRepository;
+        this.portfolioValueMonthlyService = portfolioValueMonthlyService;
     }
 
     public List<HoldingsMonthly> getMonthlyHoldingsByAccount(UUID accountId) {
@@ -100,6 +105,9 @@ public class HoldingsMonthlyService {
                 holding.setTotalBalance(runningTotals.get(assetName));
             }
         }
+        // Only months whose holdings actually change need their materialized valuation rebuilt
+        Set<LocalDate> changedMonths = findChangedMonths(holdingsMonthlyRepository.findByAccountId(accountId), monthAssetToHoldings);
+
         // Remove existing monthly holdings for the account
         int deletedCount = holdingsMonthlyRepository.deleteByAccountId(accountId);
         logger.info("Deleted {} existing monthly holdings for account: {}", deletedCount, accountId);
@@ -119,4 +127,41 @@ public class HoldingsMonthlyService {
             }
         }
     }
-}
\ No newline at end of file
+        portfolioValueMonthlyService.invalidateMonths(accountId, changedMonths);
+        logger.info("Invalidated monthly valuations for {} changed months of account: {}", changedMonths.size(), accountId);
+    }
+
+    /**
+     * Compares the stored monthly holdings with the recalculated ones and returns the months that were added,
+     * removed or differ in any asset.
+     */
+    private Set<LocalDate> findChangedMonths(List<HoldingsMonthly> previousHoldings, Map<YearMonth, Map<String, HoldingsMonthly>> monthAssetToHoldings) {
+        Map<LocalDate, Set<List<Object>>> previousByDate = new HashMap<>();
+        for (HoldingsMonthly holding : previousHoldings) {
+            previousByDate.computeIfAbsent(holding.getDate(), date -> new HashSet<>()).add(signatureOf(holding));
+        }
+
+        Map<LocalDate, Set<List<Object>>> currentByDate = new HashMap<>();
+        for (Map<String, HoldingsMonthly> assetMap : monthAssetToHoldings.values()) {
+            for (HoldingsMonthly holding : assetMap.values()) {
+                currentByDate.computeIfAbsent(holding.getDate(), date -> new HashSet<>()).add(signatureOf(holding));
+            }
+        }
+
+        Set<LocalDate> changedMonths = new TreeSet<>();
+        Set<LocalDate> allDates = new HashSet<>(previousByDate.keySet());
+        allDates.addAll(currentByDate.keySet());
+        for (LocalDate date : allDates) {
+            if (!Objects.equals(previousByDate.get(date), currentByDate.get(date))) {
+                changedMonths.add(date);
+            }
+        }
+        return changedMonths;
+    }
+
+    private static List<Object> signatureOf(HoldingsMonthly holding) {
+        // stripTrailingZeros so 10.00 loaded from the database matches a recalculated 10
+        BigDecimal balance = holding.getTotalBalance() != null ? holding.getTotalBalance().stripTrailingZeros() : null;
+        return Arrays.asList(holding.getAssetName(), holding.getSymbol(), holding.getAssetType(), balance);
+    }
+}
@@ -0,0 +1,499 @@
+package com.fintrack.service.finance;
+
+import com.fintrack.component.calculator.FxRateMatrix;
+import com.fintrack.component.calculator.PortfolioCalculator;
+import com.fintrack.component.calculator.PriceSnapshot;
+import com.fintrack.constants.finance.AssetType;
+import com.fintrack.dto.market.MarketDataDto;
+import com.fintrack.model.finance.Holdings;
+import com.fintrack.model.market.MarketData;
+import com.fintrack.repository.finance.HoldingsRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Streams live portfolio valuations to connected clients over Server-Sent Events.
+ *
+ * For every (account, base currency) with at least one open stream, the holdings, the live prices and the FX matrix
+ * are kept in memory. A reverse index maps each price key ("symbol-assetType") to the valuations that hold it, so a
+ * market data update only touches the accounts that hold an updated symbol. FOREX updates reach every valuation that
+ * converts currencies. After an update the valuation is recomputed in memory and only the rows whose values changed
+ * are pushed. Nothing is kept for accounts without an open stream.
+ *
+ * Events: "snapshot" carries every row when a stream opens or the holdings change; "update" carries the changed rows.
+ * They are queued per stream and written by a small pool of sender threads, so a slow client never holds up the
+ * market data listener. A client that falls {@code portfolio.stream.queue-capacity} events behind is disconnected and
+ * gets a new snapshot when it reconnects.
+ */
+@Service
+public class LivePortfolioStreamService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LivePortfolioStreamService.class);
+
+    static final String SNAPSHOT_EVENT = "snapshot";
+    static final String UPDATE_EVENT = "update";
+
+    private final HoldingsRepository holdingsRepository;
+    private final PriceSnapshotResolver priceSnapshotResolver;
+
+    @Value("${portfolio.stream.timeout-ms:1800000}")
+    private long streamTimeoutMillis = 1_800_000L;
+
+    @Value("${portfolio.stream.send-threads:2}")
+    private int sendThreads = 2;
+
+    @Value("${portfolio.stream.queue-capacity:100}")
+    private int queueCapacity = 100;
+
+    private volatile ThreadPoolExecutor sendExecutor;
+
+    // "accountId|baseCurrency" -> live valuation
+    private final Map<String, LiveValuation> valuations = new ConcurrentHashMap<>();
+    // "symbol-assetType" -> valuations holding it
+    private final Map<String, Set<LiveValuation>> valuationsByPriceKey = new ConcurrentHashMap<>();
+    // Valuations whose rows depend on FX rates
+    private final Set<LiveValuation> fxDependentValuations = ConcurrentHashMap.newKeySet();
+
+    public LivePortfolioStreamService(HoldingsRepository holdingsRepository, PriceSnapshotResolver priceSnapshotResolver) {
+        this.holdingsRepository = holdingsRepository;
+        this.priceSnapshotResolver = priceSnapshotResolver;
+    }
+
+    /**
+     * Opens a stream for the account and sends the current valuation as the first event.
+     */
+    public SseEmitter subscribe(UUID accountId, String baseCurrency) {
+        if (accountId == null || baseCurrency == null || baseCurrency.isEmpty()) {
+            throw new IllegalArgumentException("Account ID and base currency must not be null or empty.");
+        }
+
+        String streamKey = streamKey(accountId, baseCurrency);
+        SseEmitter emitter = createEmitter();
+        while (true) {
+            LiveValuation valuation = valuations.get(streamKey);
+            if (valuation == null) {
+                LiveValuation loaded = new LiveValuation(accountId, baseCurrency);
+                // Price updates for the new valuation wait on its monitor until it is loaded
+                synchronized (loaded) {
+                    valuation = valuations.putIfAbsent(streamKey, loaded);
+                    if (valuation == null) {
+                        valuation = loaded;
+                        try {
+                            load(valuation);
+                        } catch (RuntimeException e) {
+                            valuations.remove(streamKey, valuation);
+                            unindex(valuation);
+                            throw e;
+                        }
+                    }
+                }
+            }
+
+            synchronized (valuation) {
+                // The last stream of this valuation may have closed in the meantime
+                if (valuations.get(streamKey) != valuation) {
+                    continue;
+                }
+                Stream stream = new Stream(valuation, emitter);
+                emitter.onCompletion(() -> unsubscribe(stream));
+                emitter.onTimeout(() -> unsubscribe(stream));
+                emitter.onError(error -> unsubscribe(stream));
+                valuation.streams.add(stream);
+                stream.enqueue(event(SNAPSHOT_EVENT, valuation.payload(valuation.rows.values(), Collections.emptyList())));
+                logger.debug("Opened portfolio stream for account {} in {}, {} open streams", accountId, baseCurrency, valuation.streams.size());
+            }
+            return emitter;
+        }
+    }
+
+    /**
+     * Applies updated prices to the valuations that hold them and pushes the rows that changed.
+     */
+    public void onPriceUpdates(List<MarketData> marketDataList) {
+        if (valuations.isEmpty() || marketDataList.isEmpty()) {
+            return;
+        }
+
+        Map<String, MarketDataDto> priceUpdates = new HashMap<>();
+        Map<String, BigDecimal> fxUpdates = new HashMap<>();
+        for (MarketData marketData : marketDataList) {
+            if (marketData.getSymbol() == null || marketData.getAssetType() == null || marketData.getPrice() == null) {
+                continue;
+            }
+            if (marketData.getAssetType() == AssetType.FOREX) {
+                fxUpdates.put(marketData.getSymbol(), marketData.getPrice());
+            } else {
+                priceUpdates.put(PriceSnapshot.key(marketData.getSymbol(), marketData.getAssetType()), new MarketDataDto(marketData));
+            }
+        }
+
+        // Only the valuations that hold an updated symbol, or convert currencies when FX moved, are touched
+        Set<LiveValuation> affected = new HashSet<>();
+        for (String priceKey : priceUpdates.keySet()) {
+            affected.addAll(valuationsByPriceKey.getOrDefault(priceKey, Collections.emptySet()));
+        }
+        if (!fxUpdates.isEmpty()) {
+            affected.addAll(fxDependentValuations);
+        }
+
+        for (LiveValuation valuation : affected) {
+            synchronized (valuation) {
+                List<Map<String, Object>> changedRows = valuation.applyPrices(priceUpdates, fxUpdates);
+                if (!changedRows.isEmpty()) {
+                    broadcast(valuation, UPDATE_EVENT, valuation.payload(changedRows, Collections.emptyList()));
+                }
+            }
+        }
+        logger.debug("Applied {} price and {} FX updates to {} live portfolio valuations", priceUpdates.size(), fxUpdates.size(), affected.size());
+    }
+
+    /**
+     * Reloads the holdings of an account with open streams and pushes a new snapshot. Inside a transaction the reload
+     * waits for the commit, so the stream never shows holdings that are rolled back.
+     */
+    public void onHoldingsChanged(UUID accountId) {
+        if (valuations.values().stream().noneMatch(valuation -> valuation.accountId.equals(accountId))) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    reloadAccount(accountId);
+                }
+            });
+        } else {
+            reloadAccount(accountId);
+        }
+    }
+
+    /**
+     * @return The number of valuations currently kept in memory
+     */
+    public int getLiveValuationCount() {
+        return valuations.size();
+    }
+
+    SseEmitter createEmitter() {
+        return new SseEmitter(streamTimeoutMillis);
+    }
+
+    /**
+     * Runs the tasks writing queued events to clients. A stream has at most one task queued or running, so the queue
+     * is bounded by the number of open streams.
+     */
+    Executor sendExecutor() {
+        ThreadPoolExecutor executor = sendExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                if (sendExecutor == null) {
+                    int threads = Math.max(1, sendThreads);
+                    sendExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                            new LinkedBlockingQueue<>(), runnable -> {
+                                Thread thread = new Thread(runnable, "portfolio-stream-sender");
+                                thread.setDaemon(true);
+                                return thread;
+                            });
+                }
+                executor = sendExecutor;
+            }
+        }
+        return executor;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (sendExecutor != null) {
+            sendExecutor.shutdown();
+        }
+    }
+
+    private void reloadAccount(UUID accountId) {
+        for (LiveValuation valuation : valuations.values()) {
+            if (!valuation.accountId.equals(accountId)) {
+                continue;
+            }
+            synchronized (valuation) {
+                unindex(valuation);
+                Set<String> previousAssets = new HashSet<>(valuation.rows.keySet());
+                load(valuation);
+                previousAssets.removeAll(valuation.rows.keySet());
+                broadcast(valuation, SNAPSHOT_EVENT, valuation.payload(valuation.rows.values(), previousAssets));
+            }
+        }
+    }
+
+    /**
+     * Loads the holdings of a valuation, indexes them and then loads their prices. An update written to the cache
+     * after the prices are read is therefore always routed to the valuation. Called with its monitor held.
+     */
+    private void load(LiveValuation valuation) {
+        valuation.loadHoldings();
+        index(valuation);
+        valuation.loadPrices();
+    }
+
+    private void unsubscribe(Stream stream) {
+        LiveValuation valuation = stream.valuation;
+        stream.discard();
+        synchronized (valuation) {
+            valuation.streams.remove(stream);
+            if (valuation.streams.isEmpty() && valuations.remove(streamKey(valuation.accountId, valuation.baseCurrency), valuation)) {
+                unindex(valuation);
+                logger.debug("Closed last portfolio stream for account {} in {}", valuation.accountId, valuation.baseCurrency);
+            }
+        }
+    }
+
+    private void index(LiveValuation valuation) {
+        for (String priceKey : valuation.priceKeys()) {
+            valuationsByPriceKey.computeIfAbsent(priceKey, key -> ConcurrentHashMap.newKeySet()).add(valuation);
+        }
+        if (valuation.dependsOnFx()) {
+            fxDependentValuations.add(valuation);
+        }
+    }
+
+    private void unindex(LiveValuation valuation) {
+        for (String priceKey : valuation.priceKeys()) {
+            valuationsByPriceKey.computeIfPresent(priceKey, (key, holders) -> {
+                holders.remove(valuation);
+                return holders.isEmpty() ? null : holders;
+            });
+        }
+        fxDependentValuations.remove(valuation);
+    }
+
+    private void broadcast(LiveValuation valuation, String eventName, Map<String, Object> payload) {
+        SseEmitter.SseEventBuilder event = event(eventName, payload);
+        for (Stream stream : valuation.streams) {
+            stream.enqueue(event);
+        }
+    }
+
+    private static SseEmitter.SseEventBuilder event(String eventName, Map<String, Object> payload) {
+        return SseEmitter.event().name(eventName).data(payload);
+    }
+
+    private static String streamKey(UUID accountId, String baseCurrency) {
+        return accountId + "|" + baseCurrency;
+    }
+
+    /**
+     * One open stream. Its events are written by the send executor one at a time and in order.
+     */
+    private final class Stream {
+        private final LiveValuation valuation;
+        private final SseEmitter emitter;
+        // Guarded by this stream's monitor
+        private final Deque<SseEmitter.SseEventBuilder> pending = new ArrayDeque<>();
+        private boolean draining;
+        private boolean closed;
+
+        Stream(LiveValuation valuation, SseEmitter emitter) {
+            this.valuation = valuation;
+            this.emitter = emitter;
+        }
+
+        void enqueue(SseEmitter.SseEventBuilder event) {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                if (pending.size() < queueCapacity) {
+                    pending.add(event);
+                    if (draining) {
+                        return;
+                    }
+                    draining = true;
+                    event = null;
+                }
+            }
+            if (event != null) {
+                logger.warn("Closing portfolio stream for account {}, {} events behind", valuation.accountId, queueCapacity);
+                close(new IllegalStateException("Portfolio stream queue is full"));
+                return;
+            }
+            try {
+                sendExecutor().execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                close(e);
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                SseEmitter.SseEventBuilder event;
+                synchronized (this) {
+                    event = closed ? null : pending.poll();
+                    if (event == null) {
+                        draining = false;
+                        return;
+                    }
+                }
+                try {
+                    emitter.send(event);
+                } catch (IOException | IllegalStateException e) {
+                    // The client went away; drop the stream so the next update does not try again
+                    logger.debug("Dropping portfolio stream for account {}: {}", valuation.accountId, e.getMessage());
+                    close(e);
+                    return;
+                }
+            }
+        }
+
+        private void close(Exception error) {
+            unsubscribe(this);
+            emitter.completeWithError(error);
+        }
+
+        synchronized void discard() {
+            closed = true;
+            pending.clear();
+        }
+    }
+
+    /**
+     * In-memory valuation of one account in one base currency. Guarded by its own monitor.
+     */
+    private final class LiveValuation {
+        private final UUID accountId;
+        private final String baseCurrency;
+        private final List<Stream> streams = new CopyOnWriteArrayList<>();
+
+        private List<Holdings> holdings = Collections.emptyList();
+        private Map<String, MarketDataDto> prices = Collections.emptyMap();
+        private FxRateMatrix fxRates = FxRateMatrix.empty();
+        // Asset name -> last row sent to clients
+        private Map<String, Map<String, Object>> rows = new LinkedHashMap<>();
+
+        LiveValuation(UUID accountId, String baseCurrency) {
+            this.accountId = accountId;
+            this.baseCurrency = baseCurrency;
+        }
+
+        void loadHoldings() {
+            holdings = holdingsRepository.findHoldingsByAccount(accountId);
+        }
+
+        void loadPrices() {
+            List<Object[]> symbolAssetTypePairs = holdings.stream()
+                    .map(holding -> new Object[]{holding.getSymbol(), holding.getAssetType()})
+                    .collect(Collectors.toList());
+            PriceSnapshot snapshot = priceSnapshotResolver.resolve(symbolAssetTypePairs, baseCurrency, null);
+            prices = new HashMap<>(snapshot.asMap());
+            fxRates = snapshot.getFxRates();
+            rows = computeRows();
+        }
+
+        /**
+         * @return The rows whose values changed
+         */
+        List<Map<String, Object>> applyPrices(Map<String, MarketDataDto> priceUpdates, Map<String, BigDecimal> fxUpdates) {
+            boolean changed = false;
+            for (Map.Entry<String, MarketDataDto> update : priceUpdates.entrySet()) {
+                MarketDataDto current = prices.get(update.getKey());
+                if (current != null && current.getPrice().compareTo(update.getValue().getPrice()) == 0) {
+                    continue;
+                }
+                if (current != null || holdsPriceKey(update.getKey())) {
+                    prices.put(update.getKey(), update.getValue());
+                    changed = true;
+                }
+            }
+            if (!fxUpdates.isEmpty() && dependsOnFx()) {
+                FxRateMatrix updated = fxRates.withRates(fxUpdates, fxRates.getVersion() + 1);
+                changed |= !updated.getPairRates().equals(fxRates.getPairRates());
+                fxRates = updated;
+            }
+            if (!changed) {
+                return Collections.emptyList();
+            }
+
+            Map<String, Map<String, Object>> recomputed = computeRows();
+            List<Map<String, Object>> changedRows = new ArrayList<>();
+            recomputed.forEach((assetName, row) -> {
+                if (!sameValues(rows.get(assetName), row)) {
+                    changedRows.add(row);
+                }
+            });
+            rows = recomputed;
+            return changedRows;
+        }
+
+        Set<String> priceKeys() {
+            Set<String> priceKeys = new HashSet<>();
+            for (Holdings holding : holdings) {
+                if (holding.getAssetType() != AssetType.FOREX) {
+                    priceKeys.add(PriceSnapshot.key(holding.getSymbol(), holding.getAssetType()));
+                }
+            }
+            return priceKeys;
+        }
+
+        boolean dependsOnFx() {
+            for (Holdings holding : holdings) {
+                if (holding.getAssetType() == AssetType.FOREX ? !holding.getSymbol().equals(baseCurrency) : !"USD".equals(baseCurrency)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        Map<String, Object> payload(Collection<Map<String, Object>> rowsToSend, Collection<String> removedAssets) {
+            Map<String, Object> payload = new LinkedHashMap<>();
+            payload.put("accountId", accountId);
+            payload.put("baseCurrency", baseCurrency);
+            payload.put("rows", new ArrayList<>(rowsToSend));
+            if (!removedAssets.isEmpty()) {
+                payload.put("removedAssets", new ArrayList<>(removedAssets));
+            }
+            return payload;
+        }
+
+        private boolean holdsPriceKey(String priceKey) {
+            return priceKeys().contains(priceKey);
+        }
+
+        private Map<String, Map<String, Object>> computeRows() {
+            PortfolioCalculator calculator = new PortfolioCalculator(accountId, holdings, prices, fxRates, baseCurrency);
+            Map<String, Map<String, Object>> computed = new LinkedHashMap<>();
+            for (Map<String, Object> row : calculator.getPortfolioData()) {
+                computed.put((String) row.get("assetName"), row);
+            }
+            return computed;
+        }
+
+        private boolean sameValues(Map<String, Object> previous, Map<String, Object> current) {
+            if (previous == null) {
+                return false;
+            }
+            return Objects.equals(previous.get("quantity"), current.get("quantity"))
+                    && compare((BigDecimal) previous.get("priceInBaseCurrency"), (BigDecimal) current.get("priceInBaseCurrency"))
+                    && compare((BigDecimal) previous.get("totalValueInBaseCurrency"), (BigDecimal) current.get("totalValueInBaseCurrency"));
+        }
+
+        private boolean compare(BigDecimal left, BigDecimal right) {
+            return left == null ? right == null : right != null && left.compareTo(right) == 0;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.fintrack.service.finance;
+
+import com.fintrack.component.calculator.PriceSnapshot;
+import com.fintrack.component.chart.CategoryLayout;
+import com.fintrack.model.finance.Holdings;
+import com.fintrack.model.finance.HoldingsCategory;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Memoizes the lookups of a single portfolio request.
+ *
+ * A bar chart over five years asks for the same category tree and holdings-category mappings for every month, and a
+ * page that renders the table, pie and bar charts asks for the same holdings and prices several times. A context is
+ * created once per request and passed to every PortfolioService call and chart built for it, so each of those lookups
+ * is only made once. Price snapshots include the FX pairs, so FX rates are shared the same way.
+ *
+ * A context also carries the refresh mode of the request and what the response should report about it: in async mode
+ * market data is refreshed in the background and the response is computed from the prices already stored, so the
+ * context records how old the oldest of those prices was and whether a refresh is still pending.
+ *
+ * A context must not outlive its request: nothing in it is invalidated.
+ */
+public class PortfolioComputationContext {
+
+    // Database calls replaced by a category layout: category id, subcategories, holdings categories, category by id
+    private static final int CATEGORY_LAYOUT_LOOKUPS = 4;
+
+    private final Map<UUID, List<Holdings>> holdingsByAccount = new ConcurrentHashMap<>();
+    private final Map<UUID, List<HoldingsCategory>> holdingsCategoriesByAccount = new ConcurrentHashMap<>();
+    private final Map<String, CategoryLayout> categoryLayouts = new ConcurrentHashMap<>();
+    private final Map<String, PriceSnapshot> priceSnapshots = new ConcurrentHashMap<>();
+    private final Set<UUID> refreshedAccounts = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger lookupsSaved = new AtomicInteger();
+    private final AtomicReference<LocalDateTime> pricesAsOf = new AtomicReference<>();
+    private volatile boolean asyncRefresh;
+    private volatile boolean refreshPending;
+
+    public PortfolioComputationContext() {
+    }
+
+    public PortfolioComputationContext(boolean asyncRefresh) {
+        this.asyncRefresh = asyncRefresh;
+    }
+
+    public List<Holdings> getHoldings(UUID accountId, Supplier<List<Holdings>> loader) {
+        return memoize(holdingsByAccount, accountId, 1, loader);
+    }
+
+    public List<HoldingsCategory> getHoldingsCategories(UUID accountId, Supplier<List<HoldingsCategory>> loader) {
+        return memoize(holdingsCategoriesByAccount, accountId, 1, loader);
+    }
+
+    public CategoryLayout getCategoryLayout(UUID accountId, String categoryName, Supplier<CategoryLayout> loader) {
+        return memoize(categoryLayouts, categoryLayoutKey(accountId, categoryName), CATEGORY_LAYOUT_LOOKUPS, loader);
+    }
+
+    /**
+     * @return The category layout if it has already been loaded in this context, or null
+     */
+    public CategoryLayout peekCategoryLayout(UUID accountId, String categoryName) {
+        return categoryLayouts.get(categoryLayoutKey(accountId, categoryName));
+    }
+
+    public PriceSnapshot getPriceSnapshot(List<Object[]> symbolAssetTypePairs, String baseCurrency, LocalDate date, Supplier<PriceSnapshot> loader) {
+        return memoize(priceSnapshots, priceSnapshotKey(symbolAssetTypePairs, baseCurrency, date), 1, loader);
+    }
+
+    /**
+     * @return true if the account's market data has already been refreshed in this context
+     */
+    public boolean isMarketDataRefreshed(UUID accountId) {
+        return refreshedAccounts.contains(accountId);
+    }
+
+    /**
+     * Records that the account's market data is being refreshed.
+     *
+     * @return true the first time it is called for an account, false afterwards
+     */
+    public boolean markMarketDataRefreshed(UUID accountId) {
+        if (refreshedAccounts.add(accountId)) {
+            return true;
+        }
+        lookupsSaved.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * @return true if market data should be refreshed in the background instead of before computing the response
+     */
+    public boolean isAsyncRefresh() {
+        return asyncRefresh;
+    }
+
+    public void recordRefreshPending(boolean pending) {
+        if (pending) {
+            refreshPending = true;
+        }
+    }
+
+    /**
+     * @return true if a background refresh was pending for an account of this request
+     */
+    public boolean isRefreshPending() {
+        return refreshPending;
+    }
+
+    /**
+     * Records the update time of the oldest price of a live snapshot used by this request. Null values are ignored.
+     */
+    public void recordPricesAsOf(LocalDateTime updatedAt) {
+        if (updatedAt != null) {
+            pricesAsOf.accumulateAndGet(updatedAt, (current, candidate) -> current == null || candidate.isBefore(current) ? candidate : current);
+        }
+    }
+
+    /**
+     * @return The update time of the oldest live price the response was computed from, or null if unknown
+     */
+    public LocalDateTime getPricesAsOf() {
+        return pricesAsOf.get();
+    }
+
+    /**
+     * Records lookups that were avoided outside of the memoized accessors.
+     */
+    public void recordLookupsSaved(int lookups) {
+        lookupsSaved.addAndGet(lookups);
+    }
+
+    /**
+     * @return The number of repository or service calls this context has answered from memory
+     */
+    public int getLookupsSaved() {
+        return lookupsSaved.get();
+    }
+
+    private <K, V> V memoize(Map<K, V> cache, K key, int lookups, Supplier<V> loader) {
+        V cached = cache.get(key);
+        if (cached != null) {
+            lookupsSaved.addAndGet(lookups);
+            return cached;
+        }
+        V loaded = loader.get();
+        if (loaded == null) {
+            return null;
+        }
+        V existing = cache.putIfAbsent(key, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    private static String categoryLayoutKey(UUID accountId, String categoryName) {
+        return accountId + ":" + categoryName;
+    }
+
+    private static String priceSnapshotKey(List<Object[]> symbolAssetTypePairs, String baseCurrency, LocalDate date) {
+        // The pairs are sorted so the same holdings in a different order share a snapshot
+        List<String> keys = new ArrayList<>(symbolAssetTypePairs.size());
+        for (Object[] pair : symbolAssetTypePairs) {
+            keys.add(pair[0] + "-" + pair[1]);
+        }
+        Collections.sort(keys);
+        return baseCurrency + "|" + date + "|" + String.join(",", keys);
+    }
+}
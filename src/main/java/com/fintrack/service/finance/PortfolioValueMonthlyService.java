@@ -0,0 +1,345 @@
+package com.fintrack.service.finance;
+
+import com.fintrack.component.calculator.PortfolioCalculator;
+import com.fintrack.component.calculator.PriceSnapshot;
+import com.fintrack.component.calculator.ValuationKernel;
+import com.fintrack.constants.finance.AssetType;
+import com.fintrack.model.finance.HoldingsMonthly;
+import com.fintrack.model.finance.PortfolioValueMonthly;
+import com.fintrack.repository.finance.HoldingsMonthlyRepository;
+import com.fintrack.repository.finance.PortfolioValueMonthlyRepository;
+import com.fintrack.service.cache.PortfolioCacheService;
+import com.fintrack.service.market.event.HistoricalMarketDataEvent;
+import com.fintrack.service.market.event.HistoricalMarketDataHandler;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains portfolio_value_monthly, the month-end valuation of every asset of an account per base currency.
+ *
+ * Rows are computed the first time a month is read and then served from the table. They are dropped when the
+ * underlying data changes: HoldingsMonthlyService invalidates the months whose holdings it rewrote, and a completed
+ * historical market data load invalidates the months that hold the updated symbols. The next read recomputes only
+ * the dropped months.
+ *
+ * Every invalidation bumps the monthly valuation version of PortfolioCacheService before and after its delete, and a
+ * materialization reads the version before its inputs. If the version differs once the rows are stored, an
+ * invalidation ran in between and may have missed them, so they are deleted again. Holdings invalidations run once the
+ * new holdings are committed, so a version read after the bump always sees them.
+ */
+@Service
+@Order(HistoricalMarketDataHandler.DERIVED_STATE_ORDER)
+public class PortfolioValueMonthlyService implements HistoricalMarketDataHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(PortfolioValueMonthlyService.class);
+
+    // Matches the column scale of portfolio_value_monthly, so returned rows equal what a later read loads
+    private static final int VALUE_SCALE = 10;
+
+    // Used when a price update does not say which months it covers
+    private static final LocalDate EARLIEST_DATE = LocalDate.of(1900, 1, 1);
+
+    private final PortfolioValueMonthlyRepository portfolioValueMonthlyRepository;
+    private final HoldingsMonthlyRepository holdingsMonthlyRepository;
+    private final PriceSnapshotResolver priceSnapshotResolver;
+    private final TransactionTemplate writeTransaction;
+    private final PortfolioCacheService portfolioCacheService;
+
+    // Values missing months concurrently; months are independent once their prices are resolved
+    @Value("${portfolio.valuation.parallel.enabled:true}")
+    private boolean parallelValuationEnabled = true;
+
+    @Value("${portfolio.valuation.parallelism:4}")
+    private int valuationParallelism = 4;
+
+    private volatile ForkJoinPool valuationPool;
+
+    public PortfolioValueMonthlyService(
+            PortfolioValueMonthlyRepository portfolioValueMonthlyRepository,
+            HoldingsMonthlyRepository holdingsMonthlyRepository,
+            PriceSnapshotResolver priceSnapshotResolver,
+            PlatformTransactionManager transactionManager,
+            PortfolioCacheService portfolioCacheService) {
+        this.portfolioValueMonthlyRepository = portfolioValueMonthlyRepository;
+        this.holdingsMonthlyRepository = holdingsMonthlyRepository;
+        this.priceSnapshotResolver = priceSnapshotResolver;
+        // Readers usually run inside a read-only transaction, so writes get their own
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.portfolioCacheService = portfolioCacheService;
+    }
+
+    /**
+     * Returns the month-end valuation rows of every closed month in holdings_monthly, computing and storing missing
+     * months. The current month is still moving and is left to live valuation.
+     *
+     * @return Rows ordered by date
+     */
+    public List<PortfolioValueMonthly> getMonthlyValues(UUID accountId, String baseCurrency) {
+        if (accountId == null || baseCurrency == null || baseCurrency.isEmpty()) {
+            throw new IllegalArgumentException("Account ID and base currency must not be null or empty.");
+        }
+
+        LocalDate today = LocalDate.now();
+        Set<LocalDate> holdingsDates = holdingsMonthlyRepository.findDistinctDatesByAccountId(accountId).stream()
+                .filter(date -> !date.isAfter(today))
+                .collect(Collectors.toSet());
+        if (holdingsDates.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<PortfolioValueMonthly> materialized = portfolioValueMonthlyRepository.findByAccountIdAndBaseCurrencyOrderByDateAsc(accountId, baseCurrency);
+        Set<LocalDate> materializedDates = materialized.stream()
+                .map(PortfolioValueMonthly::getDate)
+                .collect(Collectors.toSet());
+
+        Set<LocalDate> missingDates = new TreeSet<>(holdingsDates);
+        missingDates.removeAll(materializedDates);
+
+        List<PortfolioValueMonthly> result = new ArrayList<>();
+        for (PortfolioValueMonthly row : materialized) {
+            if (holdingsDates.contains(row.getDate())) {
+                result.add(row);
+            }
+        }
+
+        if (!missingDates.isEmpty()) {
+            logger.debug("Materializing {} of {} months for account {} in {}", missingDates.size(), holdingsDates.size(), accountId, baseCurrency);
+            result.addAll(materialize(accountId, baseCurrency, missingDates));
+        }
+
+        result.sort(Comparator.comparing(PortfolioValueMonthly::getDate));
+        return result;
+    }
+
+    /**
+     * Drops the rows of the given months in every base currency, once the current transaction commits.
+     */
+    public void invalidateMonths(UUID accountId, Collection<LocalDate> dates) {
+        if (dates.isEmpty()) {
+            return;
+        }
+        Set<LocalDate> months = new HashSet<>(dates);
+        afterCommit(() -> {
+            try {
+                invalidate(() -> portfolioCacheService.onMonthlyValuationsInvalidated(accountId), () -> {
+                    int deleted = portfolioValueMonthlyRepository.deleteByAccountIdAndDates(accountId, months);
+                    logger.debug("Invalidated {} monthly valuation rows across {} months for account {}", deleted, months.size(), accountId);
+                });
+            } catch (Exception e) {
+                // The holdings are committed already; the request must not fail on the derived rows
+                logger.error("Error invalidating {} monthly valuation months for account {}", months.size(), accountId, e);
+            }
+        });
+    }
+
+    /**
+     * Drops the months from {@code fromDate} on whose valuation depends on the given prices. Only the accounts whose
+     * monthly holdings include one of the symbols are touched. Runs in the transaction opened by {@link #invalidate}.
+     *
+     * @param symbols Non-FOREX symbols whose monthly prices changed
+     * @param forexChanged Whether any FOREX pair changed, which affects every converted month
+     */
+    private void invalidateForPrices(Collection<String> symbols, boolean forexChanged, LocalDate fromDate) {
+        int deleted = 0;
+        if (!symbols.isEmpty()) {
+            List<UUID> accountIds = holdingsMonthlyRepository.findAccountIdsHoldingSymbolsFrom(symbols, fromDate);
+            if (!accountIds.isEmpty()) {
+                deleted += portfolioValueMonthlyRepository.deleteMonthsContainingSymbols(accountIds, symbols, fromDate);
+            }
+        }
+        if (forexChanged) {
+            deleted += portfolioValueMonthlyRepository.deleteFxDependentMonthsFrom(fromDate);
+        }
+        logger.info("Invalidated {} monthly valuation rows for {} symbols from {} (forexChanged={})", deleted, symbols.size(), fromDate, forexChanged);
+    }
+
+    /**
+     * Invalidates the months holding the loaded symbols, and the FX dependent months when FOREX pairs were loaded,
+     * from the first month whose prices may have changed.
+     */
+    @Override
+    public void onHistoricalMarketData(HistoricalMarketDataEvent event) {
+        Set<String> symbols = new LinkedHashSet<>();
+        boolean forexChanged = false;
+        for (HistoricalMarketDataEvent.Asset asset : event.assets()) {
+            if (asset.assetType() == AssetType.FOREX) {
+                forexChanged = true;
+            } else {
+                symbols.add(asset.symbol());
+            }
+        }
+        if (symbols.isEmpty() && !forexChanged) {
+            return;
+        }
+
+        LocalDate firstChangedDate = event.firstChangedDate();
+        LocalDate fromDate = firstChangedDate != null ? firstChangedDate : EARLIEST_DATE;
+
+        boolean invalidateForex = forexChanged;
+        invalidate(portfolioCacheService::onHistoricalPricesChanged, () -> invalidateForPrices(symbols, invalidateForex, fromDate));
+    }
+
+    /**
+     * Runs a delete in its own transaction between two version bumps.
+     */
+    private void invalidate(Runnable bumpVersion, Runnable delete) {
+        bumpVersion.run();
+        try {
+            writeTransaction.executeWithoutResult(status -> delete.run());
+        } finally {
+            bumpVersion.run();
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private List<PortfolioValueMonthly> materialize(UUID accountId, String baseCurrency, Set<LocalDate> dates) {
+        // Read before the inputs, so any invalidation of them changes it
+        String valuationVersion = portfolioCacheService.monthlyValuationVersion(accountId);
+
+        SortedMap<LocalDate, List<HoldingsMonthly>> holdingsByDate = holdingsMonthlyRepository.findByAccountIdAndDateIn(accountId, dates).stream()
+                .collect(Collectors.groupingBy(HoldingsMonthly::getDate, TreeMap::new, Collectors.toList()));
+
+        // One range query covers the prices of every month, including the lookback fallback
+        Map<LocalDate, List<Object[]>> pairsByDate = new TreeMap<>();
+        holdingsByDate.forEach((date, monthlyHoldings) -> pairsByDate.put(date, monthlyHoldings.stream()
+                .map(holding -> new Object[]{holding.getSymbol(), holding.getAssetType()})
+                .collect(Collectors.toList())));
+        SortedMap<LocalDate, PriceSnapshot> snapshots = priceSnapshotResolver.resolveMonths(pairsByDate, baseCurrency);
+
+        LocalDateTime computedAt = LocalDateTime.now();
+        List<LocalDate> orderedDates = new ArrayList<>(holdingsByDate.keySet());
+        List<List<PortfolioValueMonthly>> monthlyRows = valueMonths(orderedDates, date ->
+                valueMonth(accountId, baseCurrency, date, holdingsByDate.get(date), snapshots.get(date), computedAt));
+
+        List<PortfolioValueMonthly> rows = new ArrayList<>();
+        monthlyRows.forEach(rows::addAll);
+
+        if (valuationVersion == null) {
+            // Stored rows could not be checked against invalidations
+            logger.debug("Monthly valuation version of account {} is unavailable, not storing {} months", accountId, holdingsByDate.size());
+            return rows;
+        }
+
+        List<PortfolioValueMonthly> stored;
+        try {
+            stored = writeTransaction.execute(status -> portfolioValueMonthlyRepository.saveAll(rows));
+        } catch (DataIntegrityViolationException e) {
+            // Another request stored the same months first; its rows are equivalent
+            logger.debug("Monthly valuations for account {} were materialized concurrently, using computed rows", accountId);
+            return rows;
+        }
+
+        if (!valuationVersion.equals(portfolioCacheService.monthlyValuationVersion(accountId))) {
+            // The inputs were invalidated while these months were valued; the next read recomputes them
+            logger.debug("Monthly valuations for account {} were invalidated while materializing, dropping {} months", accountId, holdingsByDate.size());
+            writeTransaction.executeWithoutResult(status -> portfolioValueMonthlyRepository.deleteByAccountIdAndBaseCurrencyAndDates(
+                    accountId, baseCurrency, holdingsByDate.keySet()));
+        }
+        return stored;
+    }
+
+    /**
+     * Values the months on the valuation pool when there is more than one, keeping the results in date order.
+     */
+    private List<List<PortfolioValueMonthly>> valueMonths(List<LocalDate> dates, Function<LocalDate, List<PortfolioValueMonthly>> valuation) {
+        if (!parallelValuationEnabled || dates.size() < 2) {
+            return dates.stream().map(valuation).collect(Collectors.toList());
+        }
+        try {
+            // A parallel stream submitted to a ForkJoinPool runs on that pool; collect keeps the encounter order
+            return valuationPool().submit(() -> dates.parallelStream().map(valuation).collect(Collectors.toList())).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while valuing monthly holdings", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Failed to value monthly holdings", e.getCause());
+        }
+    }
+
+    private ForkJoinPool valuationPool() {
+        ForkJoinPool pool = valuationPool;
+        if (pool == null) {
+            synchronized (this) {
+                if (valuationPool == null) {
+                    valuationPool = new ForkJoinPool(Math.max(1, valuationParallelism));
+                }
+                pool = valuationPool;
+            }
+        }
+        return pool;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (valuationPool != null) {
+            valuationPool.shutdown();
+        }
+    }
+
+    private List<PortfolioValueMonthly> valueMonth(UUID accountId, String baseCurrency, LocalDate date, List<HoldingsMonthly> monthlyHoldings, PriceSnapshot priceSnapshot, LocalDateTime computedAt) {
+        PortfolioCalculator calculator = new PortfolioCalculator(accountId,
+                monthlyHoldings.stream().map(HoldingsMonthly::getHoldings).collect(Collectors.toList()),
+                priceSnapshot, baseCurrency);
+        ValuationKernel kernel = calculator.getValuationKernel();
+
+        List<PortfolioValueMonthly> rows = new ArrayList<>(monthlyHoldings.size());
+        for (HoldingsMonthly holding : monthlyHoldings) {
+            int ordinal = kernel.ordinalOf(holding.getAssetName());
+
+            PortfolioValueMonthly row = new PortfolioValueMonthly();
+            row.setAccountId(accountId);
+            row.setDate(date);
+            row.setAssetName(holding.getAssetName());
+            row.setSymbol(holding.getSymbol());
+            row.setAssetType(holding.getAssetType());
+            row.setBaseCurrency(baseCurrency);
+            row.setQuantity(holding.getTotalBalance());
+            row.setPriceInBaseCurrency(scaled(kernel.priceInBaseCurrency(ordinal)));
+            row.setTotalValueInBaseCurrency(scaled(kernel.totalValueInBaseCurrency(ordinal)));
+            row.setComputedAt(computedAt);
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static BigDecimal scaled(BigDecimal value) {
+        return value.setScale(VALUE_SCALE, RoundingMode.HALF_EVEN);
+    }
+}
@@ -0,0 +1,320 @@
+package com.fintrack.service.finance;
+
+import com.fintrack.component.calculator.FxRateMatrix;
+import com.fintrack.component.calculator.PriceSnapshot;
+import com.fintrack.constants.finance.AssetType;
+import com.fintrack.dto.market.MarketDataDto;
+import com.fintrack.model.market.MarketData;
+import com.fintrack.repository.market.MarketDataRepository;
+import com.fintrack.service.market.FxConversionService;
+import com.fintrack.service.market.PriceHistoryStore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Resolves every price a portfolio valuation needs with a single bulk query.
+ *
+ * Non-FOREX symbols are fetched in one round trip against market_data, so the number of queries does not grow with
+ * the number of holdings. When a date is given they are looked up in the PriceHistoryStore instead, which only queries
+ * market_data_monthly for symbols that are not in memory. FX conversions come from a cross-rate matrix: the live
+ * matrix kept by FxConversionService, or for a historical date a matrix built from the FOREX pairs of the same price
+ * history. The matrix triangulates currencies that have no direct or reverse pair.
+ */
+@Service
+public class PriceSnapshotResolver {
+
+    private static final Logger logger = LoggerFactory.getLogger(PriceSnapshotResolver.class);
+
+    private static final String USD = "USD";
+
+    // How far back a historical lookup may fall back when no price exists for the exact month
+    private static final int HISTORICAL_LOOKBACK_MONTHS = 3;
+
+    private final MarketDataRepository marketDataRepository;
+    private final PriceHistoryStore priceHistoryStore;
+    private final FxConversionService fxConversionService;
+
+    public PriceSnapshotResolver(
+            MarketDataRepository marketDataRepository,
+            PriceHistoryStore priceHistoryStore,
+            FxConversionService fxConversionService) {
+        this.marketDataRepository = marketDataRepository;
+        this.priceHistoryStore = priceHistoryStore;
+        this.fxConversionService = fxConversionService;
+    }
+
+    /**
+     * Resolves prices for the given pairs.
+     *
+     * @param symbolAssetTypePairs Object[] pairs of (String symbol, AssetType assetType)
+     * @param baseCurrency The currency the portfolio is valued in
+     * @param date The month-end date to resolve historical prices for, or null for live prices
+     * @return An immutable snapshot keyed by "symbol-assetType"
+     */
+    public PriceSnapshot resolve(List<Object[]> symbolAssetTypePairs, String baseCurrency, LocalDate date) {
+        PricingRequest request = PricingRequest.of(symbolAssetTypePairs, baseCurrency);
+        if (request.isEmpty()) {
+            return PriceSnapshot.empty(date);
+        }
+
+        Set<String> symbols = request.symbols();
+
+        // Live FX rates come from the shared matrix; historical ones are fetched along with the other symbols
+        FxRateMatrix liveFxRates = null;
+        if (request.needsConversion()) {
+            liveFxRates = currentFxRates();
+            if (date != null) {
+                symbols.addAll(liveFxRates.getPairRates().keySet());
+            }
+        }
+
+        logger.debug("Resolving {} symbols for {} pairs, baseCurrency={}, date={}", symbols.size(), symbolAssetTypePairs.size(), baseCurrency, date);
+
+        PriceLookup lookup = date == null
+                ? loadLivePrices(symbols)
+                : new HistoricalPrices(priceHistoryStore.pricesOf(symbols), date);
+
+        return buildSnapshot(request, lookup, liveFxRates, baseCurrency, date);
+    }
+
+    /**
+     * Resolves historical prices for several months from one price history.
+     *
+     * Every symbol of every month, plus the FOREX pairs when a conversion is needed, is looked up once for the whole
+     * span. Each month then sees the price on its own date, or the last observation within the lookback window, the
+     * same as {@link #resolve(List, String, LocalDate)} would return for that month.
+     *
+     * @param symbolAssetTypePairsByDate Object[] pairs of (String symbol, AssetType assetType) per month-end date
+     * @return One snapshot per date, in date order
+     */
+    public SortedMap<LocalDate, PriceSnapshot> resolveMonths(Map<LocalDate, List<Object[]>> symbolAssetTypePairsByDate, String baseCurrency) {
+        SortedMap<LocalDate, PriceSnapshot> snapshots = new TreeMap<>();
+        if (symbolAssetTypePairsByDate.isEmpty()) {
+            return snapshots;
+        }
+
+        SortedMap<LocalDate, PricingRequest> requests = new TreeMap<>();
+        Set<String> symbols = new LinkedHashSet<>();
+        boolean needsConversion = false;
+        for (Map.Entry<LocalDate, List<Object[]>> entry : symbolAssetTypePairsByDate.entrySet()) {
+            PricingRequest request = PricingRequest.of(entry.getValue(), baseCurrency);
+            requests.put(entry.getKey(), request);
+            symbols.addAll(request.symbols());
+            needsConversion |= request.needsConversion();
+        }
+
+        FxRateMatrix liveFxRates = null;
+        if (needsConversion) {
+            liveFxRates = currentFxRates();
+            symbols.addAll(liveFxRates.getPairRates().keySet());
+        }
+
+        LocalDate firstDate = requests.firstKey();
+        LocalDate lastDate = requests.lastKey();
+        logger.debug("Resolving {} symbols for {} months from {} to {}, baseCurrency={}", symbols.size(), requests.size(), firstDate, lastDate, baseCurrency);
+
+        PriceHistoryStore.Prices history = priceHistoryStore.pricesOf(symbols);
+
+        for (Map.Entry<LocalDate, PricingRequest> entry : requests.entrySet()) {
+            LocalDate date = entry.getKey();
+            PricingRequest request = entry.getValue();
+            if (request.isEmpty()) {
+                snapshots.put(date, PriceSnapshot.empty(date));
+            } else {
+                FxRateMatrix monthFxRates = request.needsConversion() ? liveFxRates : null;
+                snapshots.put(date, buildSnapshot(request, new HistoricalPrices(history, date), monthFxRates, baseCurrency, date));
+            }
+        }
+        return snapshots;
+    }
+
+    private FxRateMatrix currentFxRates() {
+        FxRateMatrix liveFxRates = fxConversionService.getCurrentMatrix();
+        return liveFxRates != null ? liveFxRates : FxRateMatrix.empty();
+    }
+
+    private PriceSnapshot buildSnapshot(PricingRequest request, PriceLookup lookup, FxRateMatrix liveFxRates, String baseCurrency, LocalDate date) {
+        List<MarketDataDto> resolved = new ArrayList<>();
+        request.nonForexPairs.forEach((key, assetType) -> {
+            String symbol = symbolOf(key);
+            BigDecimal price = lookup.price(symbol, assetType);
+            if (price == null && date != null) {
+                price = lookup.mostRecentPrice(symbol, assetType);
+                if (price != null) {
+                    logger.info("No market data found for symbol={}, assetType={} on date={}. Using most recent price: {}", symbol, assetType, date, price);
+                }
+            }
+            if (price != null) {
+                resolved.add(new MarketDataDto(symbol, price, assetType));
+            } else {
+                logger.warn("No market data found for symbol={}, assetType={}, date={}", symbol, assetType, date);
+            }
+        });
+
+        FxRateMatrix fxRates = FxRateMatrix.empty();
+        if (liveFxRates != null) {
+            fxRates = date == null ? liveFxRates : historicalFxRates(lookup, liveFxRates.getPairRates().keySet(), date);
+        }
+
+        // Expose each needed conversion as its direct CCY/BASE pair, whatever path the matrix used
+        for (String currency : request.forexCurrencies) {
+            BigDecimal rate = fxRates.rate(currency, baseCurrency);
+            if (rate != null) {
+                resolved.add(new MarketDataDto(currency + "/" + baseCurrency, rate, AssetType.FOREX));
+            } else {
+                logger.warn("No FOREX conversion path found for symbol={}, baseCurrency={}, date={}", currency, baseCurrency, date);
+            }
+        }
+
+        return PriceSnapshot.of(date, resolved, fxRates, lookup.oldestUpdate());
+    }
+
+    /**
+     * Builds the cross-rate matrix for a month from the FOREX pairs of the price history, falling back to the most recent
+     * rate within the lookback window like other symbols.
+     */
+    private FxRateMatrix historicalFxRates(PriceLookup lookup, Set<String> pairSymbols, LocalDate date) {
+        Map<String, BigDecimal> pairRates = new LinkedHashMap<>();
+        for (String pair : pairSymbols) {
+            BigDecimal rate = lookup.price(pair, AssetType.FOREX);
+            if (rate == null) {
+                rate = lookup.mostRecentPrice(pair, AssetType.FOREX);
+            }
+            if (rate != null) {
+                pairRates.put(pair, rate);
+            }
+        }
+        logger.trace("Built historical FOREX matrix for date={} from {} pairs", date, pairRates.size());
+        return FxRateMatrix.build(pairRates, 0L);
+    }
+
+    private PriceLookup loadLivePrices(Set<String> symbols) {
+        Map<String, BigDecimal> prices = new HashMap<>();
+        LocalDateTime oldestUpdate = null;
+        if (!symbols.isEmpty()) {
+            for (MarketData marketData : marketDataRepository.findMarketDataBySymbols(new ArrayList<>(symbols))) {
+                prices.putIfAbsent(PriceSnapshot.key(marketData.getSymbol(), marketData.getAssetType()), marketData.getPrice());
+                if (marketData.getUpdatedAt() != null && (oldestUpdate == null || marketData.getUpdatedAt().isBefore(oldestUpdate))) {
+                    oldestUpdate = marketData.getUpdatedAt();
+                }
+            }
+        }
+        return new LivePrices(prices, oldestUpdate);
+    }
+
+    private static String symbolOf(String key) {
+        return key.substring(0, key.lastIndexOf('-'));
+    }
+
+    /**
+     * The symbols one valuation needs, split into non-FOREX prices and currencies to convert.
+     */
+    private static final class PricingRequest {
+        private final Set<String> forexCurrencies = new LinkedHashSet<>();
+        private final Map<String, AssetType> nonForexPairs = new LinkedHashMap<>(); // "symbol-assetType" -> assetType
+        private boolean needsConversion;
+
+        static PricingRequest of(List<Object[]> symbolAssetTypePairs, String baseCurrency) {
+            PricingRequest request = new PricingRequest();
+            for (Object[] pair : symbolAssetTypePairs) {
+                String symbol = (String) pair[0];
+                AssetType assetType = (AssetType) pair[1];
+                if (assetType == AssetType.FOREX) {
+                    request.forexCurrencies.add(symbol);
+                } else {
+                    request.nonForexPairs.putIfAbsent(PriceSnapshot.key(symbol, assetType), assetType);
+                }
+            }
+
+            // Non-FOREX prices are quoted in USD and need the USD/BASE rate to be converted
+            if (!request.nonForexPairs.isEmpty() && !USD.equals(baseCurrency)) {
+                request.forexCurrencies.add(USD);
+            }
+            request.needsConversion = request.forexCurrencies.stream().anyMatch(currency -> !currency.equals(baseCurrency));
+            return request;
+        }
+
+        boolean isEmpty() {
+            return nonForexPairs.isEmpty() && forexCurrencies.isEmpty();
+        }
+
+        boolean needsConversion() {
+            return needsConversion;
+        }
+
+        /**
+         * @return A new mutable set of the non-FOREX symbols to fetch
+         */
+        Set<String> symbols() {
+            Set<String> symbols = new LinkedHashSet<>();
+            nonForexPairs.keySet().forEach(key -> symbols.add(symbolOf(key)));
+            return symbols;
+        }
+    }
+
+    /**
+     * Prices of one valuation, indexed for the resolution pass.
+     */
+    private interface PriceLookup {
+
+        BigDecimal price(String symbol, AssetType assetType);
+
+        /**
+         * @return The last observation within the lookback window, for historical dates only
+         */
+        BigDecimal mostRecentPrice(String symbol, AssetType assetType);
+
+        /**
+         * @return The oldest update time of the prices, for live prices only
+         */
+        LocalDateTime oldestUpdate();
+    }
+
+    /**
+     * Live prices loaded by the bulk query.
+     */
+    private record LivePrices(Map<String, BigDecimal> prices, LocalDateTime oldestUpdate) implements PriceLookup {
+
+        @Override
+        public BigDecimal price(String symbol, AssetType assetType) {
+            return prices.get(PriceSnapshot.key(symbol, assetType));
+        }
+
+        @Override
+        public BigDecimal mostRecentPrice(String symbol, AssetType assetType) {
+            return null;
+        }
+    }
+
+    /**
+     * Prices of one month-end date, read from the price history.
+     */
+    private record HistoricalPrices(PriceHistoryStore.Prices history, LocalDate date) implements PriceLookup {
+
+        @Override
+        public BigDecimal price(String symbol, AssetType assetType) {
+            PriceHistoryStore.Observation observation = history.asOf(symbol, assetType, date);
+            return observation != null && observation.date().equals(date) ? observation.price() : null;
+        }
+
+        @Override
+        public BigDecimal mostRecentPrice(String symbol, AssetType assetType) {
+            PriceHistoryStore.Observation observation = history.asOf(symbol, assetType, date);
+            return observation != null && !observation.date().isBefore(date.minusMonths(HISTORICAL_LOOKBACK_MONTHS))
+                    ? observation.price()
+                    : null;
+        }
+
+        @Override
+        public LocalDateTime oldestUpdate() {
+            return null;
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.fintrack.repository.finance.CategoriesRepository;
 import com.fintrack.repository.finance.HoldingsCategoriesRepository;
 import com.fintrack.repository.finance.SubcategoriesRepository;
 import com.fintrack.constants.Color;
+import com.fintrack.service.cache.PortfolioCacheService;
 
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -22,14 +23,17 @@ public class SubcategoriesService {
     private final CategoriesRepository categoriesRepository;
     private final SubcategoriesRepository subcategoriesRepository;
     private final HoldingsCategoriesRepository holdingsCategoriesRepository;
+    private final PortfolioCacheService portfolioCacheService;
 
     public SubcategoriesService(
         CategoriesRepository categoriesRepository, 
         SubcategoriesRepository subcategoriesRepository,
-        HoldingsCategoriesRepository holdingsCategoriesRepository) {
+        HoldingsCategoriesRepository holdingsCategoriesRepository,
+        PortfolioCacheService portfolioCacheService) {
         this.categoriesRepository = categoriesRepository;
         this.subcategoriesRepository = subcategoriesRepository;
         this.holdingsCategoriesRepository = holdingsCategoriesRepository;
+        this.portfolioCacheService = portfolioCacheService;
     }
 
     @Transactional
@@ -76,6 +80,8 @@ public class SubcategoriesService {
                 categoriesRepository.updateCategoryColor(accountId, subcategoryId, hexCode.toUpperCase());
             }
         }
+
+        portfolioCacheService.onAccountChanged(accountId);
     }
 
     @Transactional
@@ -116,6 +122,8 @@ public class SubcategoriesService {
     
         // Update the subcategory name
         subcategoriesRepository.updateSubcategoryName(accountId, categoryName, trimmedOldSubcategoryName, trimmedNewSubcategoryName);
+
+        portfolioCacheService.onAccountChanged(accountId);
     }
 
     @Transactional
@@ -144,6 +152,8 @@ public class SubcategoriesService {
             Category subcategory = remainingSubcategories.get(priority - 1);
             categoriesRepository.updateSubcategoryPriority(subcategory.getCategoryId(), priority);
         }
+
+        portfolioCacheService.onAccountChanged(accountId);
     }
 
     @Transactional
@@ -166,6 +176,8 @@ public class SubcategoriesService {
                    accountId, categoryName, subcategoryName, subcategoryId, hexCode.toUpperCase());
         categoriesRepository.updateCategoryColor(accountId, subcategoryId, hexCode.toUpperCase());
         logger.info("Subcategory color updated successfully");
+
+        portfolioCacheService.onAccountChanged(accountId);
     }
 
     @Transactional(readOnly = true)
@@ -13,6 +13,7 @@ import com.fintrack.component.transaction.TransactionTable;
 import com.fintrack.constants.finance.AssetType;
 import com.fintrack.service.finance.HoldingsService;
 import com.fintrack.service.finance.HoldingsMonthlyService;
+import com.fintrack.service.cache.PortfolioCacheService;
 
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -36,19 +37,25 @@ public class TransactionService {
     private final HoldingsService holdingsService;
     private final HoldingsMonthlyService holdingsMonthlyService;
     private final HoldingsCategoriesService holdingsCategoriesService;
+    private final LivePortfolioStreamService livePortfolioStreamService;
+    private final PortfolioCacheService portfolioCacheService;
 
     public TransactionService(TransactionRepository transactionRepository, 
         AssetRepository assetRepository,
         HoldingsMonthlyRepository holdingsMonthlyRepository,
         HoldingsService holdingsService,
         HoldingsMonthlyService holdingsMonthlyService,
-        HoldingsCategoriesService holdingsCategoriesService) {
+        HoldingsCategoriesService holdingsCategoriesService,
+        LivePortfolioStreamService livePortfolioStreamService,
+        PortfolioCacheService portfolioCacheService) {
         this.transactionRepository = transactionRepository;
         this.assetRepository = assetRepository;
         this.holdingsMonthlyRepository = holdingsMonthlyRepository;
         this.holdingsService = holdingsService;
         this.holdingsMonthlyService = holdingsMonthlyService;
         this.holdingsCategoriesService = holdingsCategoriesService;
+        this.livePortfolioStreamService = livePortfolioStreamService;
+        this.portfolioCacheService = portfolioCacheService;
     }
 
     @Transactional(readOnly = true)
@@ -302,5 +309,9 @@ public class TransactionService {
         
         logger.info("Cleaning up orphaned holdings categories for account: {}", accountId);
         holdingsCategoriesService.cleanupOrphanedHoldingsCategories(accountId);
+
+        // Step 5: Refresh open portfolio streams and cached portfolio responses once the new holdings are committed
+        livePortfolioStreamService.onHoldingsChanged(accountId);
+        portfolioCacheService.onAccountChanged(accountId);
     }
 }
\ No newline at end of file
@@ -13,6 +13,7 @@ import org.slf4j.LoggerFactory;
 
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Abstract base class for all asset-specific market data services.
@@ -25,14 +26,17 @@ public abstract class AssetMarketDataService {
     protected final MarketDataRepository marketDataRepository;
     protected final HoldingsMonthlyRepository holdingsMonthlyRepository;
     protected final KafkaProducerService kafkaProducerService;
+    protected final MarketDataCompletionRegistry completionRegistry;
 
     public AssetMarketDataService(
             MarketDataRepository marketDataRepository,
             HoldingsMonthlyRepository holdingsMonthlyRepository,
-            KafkaProducerService kafkaProducerService) {
+            KafkaProducerService kafkaProducerService,
+            MarketDataCompletionRegistry completionRegistry) {
         this.marketDataRepository = marketDataRepository;
         this.holdingsMonthlyRepository = holdingsMonthlyRepository;
         this.kafkaProducerService = kafkaProducerService;
+        this.completionRegistry = completionRegistry;
     }
 
     /**
@@ -65,63 +69,59 @@ public abstract class AssetMarketDataService {
         // Send the request to update market data
         sendMarketDataUpdateRequest(accountId, assets);
         
-        // Fetch and return the market data with retry
-        return fetchMarketDataWithRetry(assets);
+        // Fetch the market data, waiting for the requested updates
+        return fetchMarketDataAwaitingUpdates(assets);
     }
 
     /**
-     * Fetch market data with retry mechanism.
+     * Fetch market data, waiting for the requested updates of the assets that are not stored yet.
+     * Returns what is available once the wait timeout has passed.
      * 
      * @param assets List of asset maps containing symbol and asset_type
      * @return List of MarketData objects
      */
-    protected List<MarketData> fetchMarketDataWithRetry(List<Map<String, String>> assets) {
+    protected List<MarketData> fetchMarketDataAwaitingUpdates(List<Map<String, String>> assets) {
+        Map<String, Map<String, String>> missing = new LinkedHashMap<>();
+        for (Map<String, String> asset : assets) {
+            missing.put(MarketDataCompletionRegistry.key(asset.get("asset_type"), asset.get("symbol")), asset);
+        }
         List<MarketData> result = new ArrayList<>();
-        int maxRetries = 3;
-        int retryCount = 0;
-        List<Object[]> symbolAssetTypePairs = assets.stream()
-                .map(asset -> new Object[]{asset.get("symbol"), asset.get("asset_type")})
-                .toList();
-
-        while (retryCount < maxRetries) {
-            result.clear();
-
-            // Fetch market data for the given symbols and asset type pairs
-            List<MarketData> recentMarketData = new ArrayList<>();
-            symbolAssetTypePairs.forEach(pair -> {
-                String symbol = (String) pair[0];
-                String assetType = (String) pair[1];
-                logger.info("Fetching market data for symbol: " + symbol + ", assetType: " + assetType);
-                List<MarketData> marketDataList = marketDataRepository.findMarketDataBySymbolAndAssetType(symbol, assetType);
-                recentMarketData.addAll(marketDataList);
-            });
-
-            if (recentMarketData.isEmpty()) {
-                logger.error("No data found for symbolAssetTypePairs: " + Arrays.deepToString(symbolAssetTypePairs.toArray()));
-                break; // Exit if no data is found
-            }
-
-            result.addAll(recentMarketData);
-
-            // Check if all symbolAssetTypePairs have data
-            if (result.size() == symbolAssetTypePairs.size()) {
-                break;
-            }
 
-            // Wait before retrying
-            try {
-                Thread.sleep(1000); // Wait for 1 second before retrying
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                logger.error("Retry interrupted: " + e.getMessage());
-                break;
+        // Register before the first read so an update completing in between is not missed
+        try (MarketDataCompletionRegistry.Waiter waiter = completionRegistry.register(missing.keySet())) {
+            Collection<String> toRead = new ArrayList<>(missing.keySet());
+            boolean lastRead = false;
+            while (true) {
+                List<String> found = new ArrayList<>();
+                for (String key : toRead) {
+                    Map<String, String> asset = missing.get(key);
+                    logger.info("Fetching market data for symbol: " + asset.get("symbol") + ", assetType: " + asset.get("asset_type"));
+                    List<MarketData> marketDataList = marketDataRepository.findMarketDataBySymbolAndAssetType(asset.get("symbol"), asset.get("asset_type"));
+                    if (!marketDataList.isEmpty()) {
+                        result.addAll(marketDataList);
+                        found.add(key);
+                    }
+                }
+                found.forEach(missing::remove);
+                waiter.release(found);
+                if (missing.isEmpty() || lastRead) {
+                    break;
+                }
+
+                toRead = waiter.awaitNext();
+                if (toRead.isEmpty()) {
+                    // Out of time or nothing left to wait for; an update that arrived without waking us is read here
+                    toRead = new ArrayList<>(missing.keySet());
+                    lastRead = true;
+                }
             }
-
-            retryCount++;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Waiting for market data updates interrupted: " + e.getMessage());
         }
 
-        if (result.size() < symbolAssetTypePairs.size()) {
-            logger.error("Failed to fetch data for all symbolAssetTypePairs after " + maxRetries + " retries.");
+        if (!missing.isEmpty()) {
+            logger.error("Failed to fetch data for symbolAssetTypePairs: " + missing.keySet());
         }
 
         return result;
@@ -129,23 +129,36 @@ public abstract class AssetMarketDataService {
 
     /**
      * Send a market data update request via Kafka.
+     * One update and one monthly request are sent per asset type, keyed by it, so the requests of a type are
+     * consumed in order.
      * 
      * @param accountId The account ID requesting the update
      * @param assets List of asset maps containing symbol and asset_type
      */
     public void sendMarketDataUpdateRequest(UUID accountId, List<Map<String, String>> assets) {
         try {    
-            // Create a single update request with all assets
-            Map<String, Object> updateRequestPayload = new HashMap<>();
-            updateRequestPayload.put("assets", assets);
-            
-            // Convert the payload to a JSON string
+            Map<String, List<Map<String, String>>> assetsByType = new LinkedHashMap<>();
+            for (Map<String, String> asset : assets) {
+                assetsByType.computeIfAbsent(asset.get("asset_type"), type -> new ArrayList<>()).add(asset);
+            }
+            if (assetsByType.isEmpty()) {
+                logger.debug("No assets to request market data updates for");
+                return;
+            }
+
             ObjectMapper objectMapper = new ObjectMapper();
-            String updateRequestJson = objectMapper.writeValueAsString(updateRequestPayload);
-            
-            // Publish the JSON payload to the MARKET_DATA_UPDATE_REQUEST topic
-            kafkaProducerService.publishEvent(KafkaTopics.MARKET_DATA_UPDATE_REQUEST.getTopicName(), updateRequestJson);
-            logger.info("Sent market data update request: " + updateRequestJson);
+            for (Map.Entry<String, List<Map<String, String>>> entry : assetsByType.entrySet()) {
+                // Create a single update request with all assets of the type
+                Map<String, Object> updateRequestPayload = new HashMap<>();
+                updateRequestPayload.put("assets", entry.getValue());
+                
+                // Convert the payload to a JSON string
+                String updateRequestJson = objectMapper.writeValueAsString(updateRequestPayload);
+                
+                // Publish the JSON payload to the MARKET_DATA_UPDATE_REQUEST topic
+                kafkaProducerService.publishEvent(KafkaTopics.MARKET_DATA_UPDATE_REQUEST.getTopicName(), entry.getKey(), updateRequestJson);
+                logger.info("Sent market data update request: " + updateRequestJson);
+            }
 
             // Fetch the start_date and end_date from HoldingsMonthlyRepository
             LocalDate startDate = holdingsMonthlyRepository.findEarliestDateByAccountId(accountId);
@@ -163,18 +176,23 @@ public abstract class AssetMarketDataService {
                 endDate = currentDate;
             }
     
-            // Create the payload for MARKET_DATA_MONTHLY_REQUEST
-            Map<String, Object> monthlyRequestPayload = new HashMap<>();
-            monthlyRequestPayload.put("assets", assets);
-            monthlyRequestPayload.put("start_date", startDate.toString());
-            monthlyRequestPayload.put("end_date", endDate.toString());
-    
-            // Convert the payload to a JSON string
-            String monthlyRequestJson = objectMapper.writeValueAsString(monthlyRequestPayload);
-    
-            // Publish the JSON payload to the MARKET_DATA_MONTHLY_REQUEST topic
-            kafkaProducerService.publishEvent(KafkaTopics.HISTORICAL_MARKET_DATA_REQUEST.getTopicName(), monthlyRequestJson);
-            logger.info("Sent market data monthly request: " + monthlyRequestJson);
+            for (Map.Entry<String, List<Map<String, String>>> entry : assetsByType.entrySet()) {
+                // Create the payload for MARKET_DATA_MONTHLY_REQUEST
+                Map<String, Object> monthlyRequestPayload = new HashMap<>();
+                monthlyRequestPayload.put("assets", entry.getValue());
+                monthlyRequestPayload.put("start_date", startDate.toString());
+                monthlyRequestPayload.put("end_date", endDate.toString());
+        
+                // Convert the payload to a JSON string
+                String monthlyRequestJson = objectMapper.writeValueAsString(monthlyRequestPayload);
+        
+                // Publish the JSON payload to the MARKET_DATA_MONTHLY_REQUEST topic
+                kafkaProducerService.publishEvent(KafkaTopics.HISTORICAL_MARKET_DATA_REQUEST.getTopicName(), entry.getKey(), monthlyRequestJson);
+                logger.info("Sent market data monthly request: " + monthlyRequestJson);
+            }
+        } catch (RejectedExecutionException e) {
+            // The Kafka publish queue is full; the next request for these assets tries again
+            logger.warn("Market data monthly request for account {} not sent: {}", accountId, e.getMessage());
         } catch (Exception e) {
             logger.error("Failed to send market data update or monthly request: " + e.getMessage());
         }
@@ -1,18 +1,20 @@
 package com.fintrack.service.market;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fintrack.constants.KafkaTopics;
 import com.fintrack.constants.finance.AssetType;
 import com.fintrack.model.market.MarketData;
 import com.fintrack.repository.market.MarketDataRepository;
 import com.fintrack.service.cache.MarketDataCacheService;
-import com.fintrack.util.KafkaProducerService;
+import com.fintrack.service.cache.MarketDataFreshnessPolicy;
+import com.fintrack.service.cache.PortfolioCacheService;
+import com.fintrack.service.finance.LivePortfolioStreamService;
+import com.fintrack.service.market.event.MarketDataUpdateEvent;
+import com.fintrack.service.market.event.MarketDataUpdateHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Service;
 
-import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -21,24 +23,34 @@ import java.util.stream.Collectors;
  * Uses Valkey/Redis for caching to improve performance and reduce database load.
  */
 @Service
-public class CachedMarketDataService {
+@Order(MarketDataUpdateHandler.CACHE_UPDATE_ORDER)
+public class CachedMarketDataService implements MarketDataUpdateHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(CachedMarketDataService.class);
     
     private final MarketDataCacheService cacheService;
-    private final KafkaProducerService kafkaProducerService;
+    private final MarketDataRequestCoalescer requestCoalescer;
+    private final MarketDataCompletionRegistry completionRegistry;
     private final MarketDataRepository marketDataRepository;
-    private final ObjectMapper objectMapper;
+    private final LivePortfolioStreamService livePortfolioStreamService;
+    private final PortfolioCacheService portfolioCacheService;
+    private final MarketDataFreshnessPolicy freshnessPolicy;
 
     public CachedMarketDataService(
             MarketDataCacheService cacheService,
-            KafkaProducerService kafkaProducerService,
+            MarketDataRequestCoalescer requestCoalescer,
+            MarketDataCompletionRegistry completionRegistry,
             MarketDataRepository marketDataRepository,
-            ObjectMapper objectMapper) {
+            LivePortfolioStreamService livePortfolioStreamService,
+            PortfolioCacheService portfolioCacheService,
+            MarketDataFreshnessPolicy freshnessPolicy) {
         this.cacheService = cacheService;
-        this.kafkaProducerService = kafkaProducerService;
+        this.requestCoalescer = requestCoalescer;
+        this.completionRegistry = completionRegistry;
         this.marketDataRepository = marketDataRepository;
-        this.objectMapper = objectMapper;
+        this.livePortfolioStreamService = livePortfolioStreamService;
+        this.portfolioCacheService = portfolioCacheService;
+        this.freshnessPolicy = freshnessPolicy;
     }
 
     public List<MarketData> fetchMarketData(UUID accountId, List<String> symbols) {
@@ -55,7 +67,7 @@ public class CachedMarketDataService {
             
             // 2. Identify missing or stale data
             List<String> missingSymbols = identifyMissingSymbols(assetSymbols, cachedData);
-            List<String> staleSymbols = identifyStaleSymbols(cachedData, Duration.ofMinutes(2));
+            List<String> staleSymbols = identifyStaleSymbols(cachedData);
 
             List<String> symbolsNeedingUpdate = new ArrayList<>();
             symbolsNeedingUpdate.addAll(missingSymbols);
@@ -65,8 +77,8 @@ public class CachedMarketDataService {
                 logger.info("Requesting fresh data for {} symbols (missing: {}, stale: {})", 
                     symbolsNeedingUpdate.size(), missingSymbols.size(), staleSymbols.size());
                 
-                // 3. Send Kafka request for fresh data
-                sendMarketDataUpdateRequest(accountId, symbolsNeedingUpdate, assetType);
+                // 3. Request fresh data, coalesced with the requests of other accounts
+                sendMarketDataUpdateRequest(symbolsNeedingUpdate, assetType);
             }
 
             // 4. Return cached data (even if some is stale)
@@ -88,50 +100,53 @@ public class CachedMarketDataService {
         return allResults;
     }
 
-    @KafkaListener(topics = "#{T(com.fintrack.constants.KafkaTopics).MARKET_DATA_UPDATE_COMPLETE.getTopicName()}", 
-                  groupId = "cached-market-data-group")
-    public void onMarketDataUpdateComplete(String message) {
+    @Override
+    public Set<MarketDataUpdateEvent.Kind> eventKinds() {
+        return EnumSet.allOf(MarketDataUpdateEvent.Kind.class);
+    }
+
+    @Override
+    public void onMarketDataUpdate(MarketDataUpdateEvent event) {
         logger.info("Received market data update complete message from ETL batch processing");
-        
-        try {
-            // Parse the message and extract updated market data
-            Map<String, Object> payload = parseMarketDataMessage(message);
-            
-            // Handle single completion message with all batch results
-            if (payload.containsKey("assets")) {
-                @SuppressWarnings("unchecked")
-                List<Map<String, Object>> assets = (List<Map<String, Object>>) payload.get("assets");
-                
-                // Convert to MarketData objects and update cache in single batch
-                List<MarketData> marketDataList = convertToMarketData(assets);
-                
-                if (!marketDataList.isEmpty()) {
-                    // Single bulk cache update for all processed transactions
-                    cacheService.setMarketDataBatch(marketDataList);
-                    
-                    logger.info("Successfully updated cache with {} market data entries from ETL batch processing", 
-                               marketDataList.size());
-                    
-                    // Log performance metrics
-                    logBatchProcessingMetrics(marketDataList.size(), payload);
-                    
-                    // TODO: Implement real-time notification logic
-                    notifyClientsOfUpdate(marketDataList);
-                } else {
-                    logger.warn("No market data entries found in completion message");
-                }
-            } else if (payload.containsKey("error")) {
-                // Handle ETL processing errors
-                String error = (String) payload.get("error");
-                logger.error("ETL batch processing failed: {}", error);
-                handleETLProcessingError(payload);
-            } else {
-                logger.warn("Unexpected message format in market data update completion: {}", payload.keySet());
-            }
-        } catch (Exception e) {
-            logger.error("Error processing market data update complete message", e);
-            // Consider implementing retry logic or dead letter queue
+
+        if (event.kind() == MarketDataUpdateEvent.Kind.FAILED) {
+            // Handle ETL processing errors
+            logger.error("ETL batch processing failed: {}", event.error());
+            handleETLProcessingError(event.metadata());
+            return;
         }
+
+        List<MarketData> marketDataList = event.marketData();
+        if (marketDataList.isEmpty()) {
+            logger.warn("No market data entries found in completion message");
+            return;
+        }
+
+        // Every node receives the update, so each one applies it to its own near cache without notifying the
+        // others; the shared cache is written once per cluster by updateSharedMarketDataCache
+        cacheService.setLocalMarketDataBatch(marketDataList);
+
+        logger.info("Successfully updated cache with {} market data entries from ETL batch processing", 
+                   marketDataList.size());
+
+        // Log performance metrics
+        logBatchProcessingMetrics(marketDataList.size(), event.metadata());
+
+        // Updated symbols may be requested again; wake the requests waiting for them, then push the new
+        // prices to open streams
+        requestCoalescer.complete(marketDataList);
+        completionRegistry.completeMarketData(marketDataList);
+        notifyClientsOfUpdate(marketDataList);
+    }
+
+    /**
+     * Writes the values of a market data update to the cache shared by the cluster and drops the cached portfolios
+     * holding them. Called on one node for each update, while every node applies it to its own cache in
+     * {@link #onMarketDataUpdate}.
+     */
+    public void updateSharedMarketDataCache(List<MarketData> marketDataList) {
+        cacheService.setSharedMarketDataBatch(marketDataList);
+        portfolioCacheService.onPriceUpdates(marketDataList);
     }
 
     private Map<AssetType, List<String>> groupSymbolsByAssetType(List<String> symbols) {
@@ -166,27 +181,22 @@ public class CachedMarketDataService {
             .collect(Collectors.toList());
     }
 
-    private List<String> identifyStaleSymbols(List<MarketData> cachedData, Duration maxAge) {
+    // Decided on the cached values themselves, without another round trip per symbol
+    private List<String> identifyStaleSymbols(List<MarketData> cachedData) {
+        LocalDateTime now = LocalDateTime.now();
         return cachedData.stream()
-            .filter(data -> !cacheService.isDataFresh(data.getSymbol(), data.getAssetType(), maxAge))
+            .filter(data -> !freshnessPolicy.isFresh(data, now))
             .map(MarketData::getSymbol)
             .collect(Collectors.toList());
     }
 
-    private void sendMarketDataUpdateRequest(UUID accountId, List<String> symbols, AssetType assetType) {
-        try {
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("accountId", accountId.toString());
-            payload.put("symbols", symbols);
-            payload.put("assetType", assetType.getAssetTypeName());
-            
-            String jsonPayload = objectMapper.writeValueAsString(payload);
-            kafkaProducerService.publishEvent(KafkaTopics.MARKET_DATA_UPDATE_REQUEST.getTopicName(), jsonPayload);
-            
-            logger.debug("Sent market data update request for {} symbols", symbols.size());
-        } catch (Exception e) {
-            logger.error("Error sending market data update request", e);
+    private void sendMarketDataUpdateRequest(List<String> symbols, AssetType assetType) {
+        List<Map<String, String>> assets = new ArrayList<>(symbols.size());
+        for (String symbol : symbols) {
+            assets.add(Map.of("symbol", symbol, "asset_type", assetType.getAssetTypeName()));
         }
+        int queued = requestCoalescer.request(assets);
+        logger.debug("Queued market data update request for {} of {} symbols", queued, symbols.size());
     }
 
     private List<MarketData> fetchFromDatabase(List<String> symbols, AssetType assetType) {
@@ -198,41 +208,13 @@ public class CachedMarketDataService {
         return results;
     }
 
-    private Map<String, Object> parseMarketDataMessage(String message) {
+    private void notifyClientsOfUpdate(List<MarketData> marketDataList) {
         try {
-            Map<String, Object> payload = objectMapper.readValue(message, Map.class);
-            
-            // Validate expected fields for ETL batch completion message
-            if (payload.containsKey("assets") || payload.containsKey("error")) {
-                logger.debug("Successfully parsed ETL batch completion message");
-                return payload;
-            } else {
-                logger.warn("Message missing expected fields (assets or error): {}", payload.keySet());
-                return payload;
-            }
+            livePortfolioStreamService.onPriceUpdates(marketDataList);
         } catch (Exception e) {
-            logger.error("Error parsing market data message: {}", e.getMessage(), e);
-            return new HashMap<>();
-        }
-    }
-
-    private List<MarketData> convertToMarketData(List<Map<String, Object>> assets) {
-        List<MarketData> marketDataList = new ArrayList<>();
-        for (Map<String, Object> asset : assets) {
-            try {
-                MarketData marketData = objectMapper.convertValue(asset, MarketData.class);
-                marketDataList.add(marketData);
-            } catch (Exception e) {
-                logger.error("Error converting asset to MarketData: {}", asset, e);
-            }
+            // The cache is already updated; a failed push must not fail the batch
+            logger.error("Error pushing {} market data updates to portfolio streams", marketDataList.size(), e);
         }
-        return marketDataList;
-    }
-
-    private void notifyClientsOfUpdate(List<MarketData> marketDataList) {
-        // TODO: Implement real-time notification logic
-        // This would notify connected frontend clients of data updates
-        logger.debug("Would notify {} clients of market data updates", marketDataList.size());
     }
 
     /**
@@ -326,11 +308,32 @@ public class CachedMarketDataService {
         }
     }
 
+    /**
+     * Evicts the given symbols in one round trip.
+     *
+     * @param symbolsByAssetType Symbols keyed by asset type name; unknown asset types are skipped
+     */
+    public void evictMarketDataCache(Map<String, List<String>> symbolsByAssetType) {
+        Map<AssetType, List<String>> symbols = new EnumMap<>(AssetType.class);
+        symbolsByAssetType.forEach((assetType, assetSymbols) -> {
+            try {
+                symbols.computeIfAbsent(AssetType.valueOf(assetType.toUpperCase()), type -> new ArrayList<>()).addAll(assetSymbols);
+            } catch (IllegalArgumentException e) {
+                logger.error("Invalid asset type for cache eviction: {}", assetType);
+            }
+        });
+        if (!symbols.isEmpty()) {
+            cacheService.invalidateMarketDataBatch(symbols);
+        }
+    }
+
     public void evictMarketDataCache(String symbol) {
         // Evict for all asset types
+        Map<AssetType, List<String>> symbols = new EnumMap<>(AssetType.class);
         for (AssetType assetType : AssetType.values()) {
-            cacheService.invalidateMarketData(symbol, assetType);
+            symbols.put(assetType, List.of(symbol));
         }
+        cacheService.invalidateMarketDataBatch(symbols);
     }
 
     public void evictAllMarketDataCache() {
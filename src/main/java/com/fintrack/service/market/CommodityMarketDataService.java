@@ -1,13 +1,11 @@
 package com.fintrack.service.market;
 
-import com.fintrack.constants.KafkaTopics;
 import com.fintrack.constants.finance.AssetType;
 import com.fintrack.repository.finance.HoldingsMonthlyRepository;
 import com.fintrack.service.market.CachedMarketDataService;
 import com.fintrack.service.market.base.AssetMarketDataProviderBase;
 import com.fintrack.util.KafkaProducerService;
 
-import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
@@ -21,8 +19,12 @@ public class CommodityMarketDataService extends AssetMarketDataProviderBase {
     public CommodityMarketDataService(
             CachedMarketDataService cachedMarketDataService,
             HoldingsMonthlyRepository holdingsMonthlyRepository,
-            KafkaProducerService kafkaProducerService) {
-        super(cachedMarketDataService, holdingsMonthlyRepository, kafkaProducerService);
+            KafkaProducerService kafkaProducerService,
+            MarketDataRequestCoalescer requestCoalescer,
+            MarketDataCompletionRegistry completionRegistry,
+            HistoricalCoverageIndex historicalCoverageIndex) {
+        super(cachedMarketDataService, holdingsMonthlyRepository, kafkaProducerService, requestCoalescer, completionRegistry,
+                historicalCoverageIndex);
     }
 
     @Override
@@ -46,26 +48,4 @@ public class CommodityMarketDataService extends AssetMarketDataProviderBase {
         logger.debug("Processed commodity symbols: {}", assets);
         return assets;
     }
-
-    @Override
-    @KafkaListener(topics = "#{T(com.fintrack.constants.KafkaTopics).MARKET_DATA_UPDATE_COMPLETE.getTopicName()}", 
-                  groupId = "commodity-market-data-group", 
-                  properties = "#{{'spring.json.value.default.type=java.util.Map'}}")
-    public void onMarketDataUpdateComplete(String message) {
-        logger.info("Received market data update complete message for COMMODITY: {}", message);
-        
-        try {
-            Map<String, Object> payload = objectMapper.readValue(message, Map.class);
-            
-            // Process only if it contains commodity assets
-            if (payload.containsKey("assets")) {
-                List<Map<String, Object>> assets = (List<Map<String, Object>>) payload.get("assets");
-                assets.stream()
-                    .filter(asset -> getAssetType().getAssetTypeName().equals(asset.get("asset_type")))
-                    .forEach(asset -> logger.debug("Processed COMMODITY update for: {}", asset.get("symbol")));
-            }
-        } catch (Exception e) {
-            logger.error("Failed to process market data update complete message: {}", e.getMessage());
-        }
-    }
-} 
\ No newline at end of file
+}
@@ -1,13 +1,11 @@
 package com.fintrack.service.market;
 
-import com.fintrack.constants.KafkaTopics;
 import com.fintrack.constants.finance.AssetType;
 import com.fintrack.repository.finance.HoldingsMonthlyRepository;
 import com.fintrack.service.market.CachedMarketDataService;
 import com.fintrack.service.market.base.AssetMarketDataProviderBase;
 import com.fintrack.util.KafkaProducerService;
 
-import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
@@ -23,8 +21,12 @@ public class CryptoMarketDataService extends AssetMarketDataProviderBase {
     public CryptoMarketDataService(
             CachedMarketDataService cachedMarketDataService,
             HoldingsMonthlyRepository holdingsMonthlyRepository,
-            KafkaProducerService kafkaProducerService) {
-        super(cachedMarketDataService, holdingsMonthlyRepository, kafkaProducerService);
+            KafkaProducerService kafkaProducerService,
+            MarketDataRequestCoalescer requestCoalescer,
+            MarketDataCompletionRegistry completionRegistry,
+            HistoricalCoverageIndex historicalCoverageIndex) {
+        super(cachedMarketDataService, holdingsMonthlyRepository, kafkaProducerService, requestCoalescer, completionRegistry,
+                historicalCoverageIndex);
     }
 
     @Override
@@ -47,26 +49,4 @@ public class CryptoMarketDataService extends AssetMarketDataProviderBase {
         logger.debug("Processed crypto symbols: {}", assets);
         return assets;
     }
-
-    @Override
-    @KafkaListener(topics = "#{T(com.fintrack.constants.KafkaTopics).MARKET_DATA_UPDATE_COMPLETE.getTopicName()}", 
-                  groupId = "crypto-market-data-group", 
-                  properties = "#{{'spring.json.value.default.type=java.util.Map'}}")
-    public void onMarketDataUpdateComplete(String message) {
-        logger.info("Received market data update complete message for CRYPTO: {}", message);
-        
-        try {
-            Map<String, Object> payload = objectMapper.readValue(message, Map.class);
-            
-            // Process only if it contains crypto assets
-            if (payload.containsKey("assets")) {
-                List<Map<String, Object>> assets = (List<Map<String, Object>>) payload.get("assets");
-                assets.stream()
-                    .filter(asset -> getAssetType().getAssetTypeName().equals(asset.get("asset_type")))
-                    .forEach(asset -> logger.debug("Processed CRYPTO update for: {}", asset.get("symbol")));
-            }
-        } catch (Exception e) {
-            logger.error("Failed to process market data update complete message: {}", e.getMessage());
-        }
-    }
-} 
\ No newline at end of file
+}
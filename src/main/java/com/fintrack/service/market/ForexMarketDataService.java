@@ -1,6 +1,5 @@
 package com.fintrack.service.market;
 
-import com.fintrack.constants.KafkaTopics;
 import com.fintrack.constants.finance.AssetType;
 import com.fintrack.model.finance.AccountCurrency;
 import com.fintrack.repository.finance.AccountCurrenciesRepository;
@@ -9,7 +8,6 @@ import com.fintrack.service.market.CachedMarketDataService;
 import com.fintrack.service.market.base.AssetMarketDataProviderBase;
 import com.fintrack.util.KafkaProducerService;
 
-import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
@@ -27,8 +25,12 @@ public class ForexMarketDataService extends AssetMarketDataProviderBase {
             CachedMarketDataService cachedMarketDataService,
             HoldingsMonthlyRepository holdingsMonthlyRepository,
             KafkaProducerService kafkaProducerService,
-            AccountCurrenciesRepository accountCurrenciesRepository) {
-        super(cachedMarketDataService, holdingsMonthlyRepository, kafkaProducerService);
+            AccountCurrenciesRepository accountCurrenciesRepository,
+            MarketDataRequestCoalescer requestCoalescer,
+            MarketDataCompletionRegistry completionRegistry,
+            HistoricalCoverageIndex historicalCoverageIndex) {
+        super(cachedMarketDataService, holdingsMonthlyRepository, kafkaProducerService, requestCoalescer, completionRegistry,
+                historicalCoverageIndex);
         this.accountCurrenciesRepository = accountCurrenciesRepository;
     }
 
@@ -133,26 +135,4 @@ public class ForexMarketDataService extends AssetMarketDataProviderBase {
         // Default to USD if no default currency found
         return DEFAULT_BASE_CURRENCY;
     }
-
-    @Override
-    @KafkaListener(topics = "#{T(com.fintrack.constants.KafkaTopics).MARKET_DATA_UPDATE_COMPLETE.getTopicName()}", 
-                  groupId = "forex-market-data-group", 
-                  properties = "#{{'spring.json.value.default.type=java.util.Map'}}")
-    public void onMarketDataUpdateComplete(String message) {
-        logger.info("Received market data update complete message for FOREX: {}", message);
-        
-        try {
-            Map<String, Object> payload = objectMapper.readValue(message, Map.class);
-            
-            // Process only if it contains forex assets
-            if (payload.containsKey("assets")) {
-                List<Map<String, Object>> assets = (List<Map<String, Object>>) payload.get("assets");
-                assets.stream()
-                    .filter(asset -> getAssetType().getAssetTypeName().equals(asset.get("asset_type")))
-                    .forEach(asset -> logger.debug("Processed FOREX update for: {}", asset.get("symbol")));
-            }
-        } catch (Exception e) {
-            logger.error("Failed to process market data update complete message: {}", e.getMessage());
-        }
-    }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,135 @@
+package com.fintrack.service.market;
+
+import com.fintrack.component.calculator.FxRateMatrix;
+import com.fintrack.constants.finance.AssetType;
+import com.fintrack.model.market.MarketData;
+import com.fintrack.repository.market.MarketDataRepository;
+import com.fintrack.service.market.event.MarketDataUpdateEvent;
+import com.fintrack.service.market.event.MarketDataUpdateHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the cross-rate matrix for live FOREX prices.
+ *
+ * The matrix is built from every FOREX row in market_data the first time it is needed. When a market data update
+ * completes, the FOREX pairs in the message are reloaded and applied on top of the current matrix, which only
+ * recomputes the rows that depend on the changed pairs. Each applied update produces a new matrix with a higher
+ * version; readers always see a complete, immutable matrix.
+ */
+@Service
+@Order(MarketDataUpdateHandler.DERIVED_STATE_ORDER)
+public class FxConversionService implements MarketDataUpdateHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(FxConversionService.class);
+
+    private final MarketDataRepository marketDataRepository;
+    private final AtomicLong versionCounter = new AtomicLong();
+    private final Object updateLock = new Object();
+
+    private volatile FxRateMatrix currentMatrix;
+
+    public FxConversionService(MarketDataRepository marketDataRepository) {
+        this.marketDataRepository = marketDataRepository;
+    }
+
+    /**
+     * @return The current live cross-rate matrix, loading it from market_data on first use
+     */
+    public FxRateMatrix getCurrentMatrix() {
+        FxRateMatrix matrix = currentMatrix;
+        if (matrix != null) {
+            return matrix;
+        }
+        synchronized (updateLock) {
+            if (currentMatrix == null) {
+                currentMatrix = loadMatrix();
+            }
+            return currentMatrix;
+        }
+    }
+
+    /**
+     * @return The FOREX pair symbols known to the live matrix, e.g. to fetch the same pairs for a historical month
+     */
+    public Set<String> getPairSymbols() {
+        return getCurrentMatrix().getPairRates().keySet();
+    }
+
+    /**
+     * Applies updated FOREX prices to the live matrix.
+     */
+    public void applyRates(Map<String, BigDecimal> updatedRates) {
+        if (updatedRates.isEmpty()) {
+            return;
+        }
+        synchronized (updateLock) {
+            if (currentMatrix == null) {
+                // Nothing built yet; the first reader will load the latest prices
+                return;
+            }
+            currentMatrix = currentMatrix.withRates(updatedRates, versionCounter.incrementAndGet());
+            logger.debug("Applied {} FOREX rates, matrix is now {}", updatedRates.size(), currentMatrix);
+        }
+    }
+
+    /**
+     * Drops the live matrix so it is rebuilt from market_data on next use.
+     */
+    public void reload() {
+        synchronized (updateLock) {
+            currentMatrix = null;
+        }
+    }
+
+    @Override
+    public Set<MarketDataUpdateEvent.Kind> eventKinds() {
+        return EnumSet.of(MarketDataUpdateEvent.Kind.UPDATED, MarketDataUpdateEvent.Kind.FULL_REFRESH);
+    }
+
+    @Override
+    public Set<AssetType> assetTypes() {
+        return EnumSet.of(AssetType.FOREX);
+    }
+
+    @Override
+    public void onMarketDataUpdate(MarketDataUpdateEvent event) {
+        if (event.kind() == MarketDataUpdateEvent.Kind.FULL_REFRESH) {
+            logger.info("Full market data refresh completed, rebuilding FOREX matrix on next use");
+            reload();
+            return;
+        }
+
+        List<String> forexSymbols = event.marketData().stream()
+            .filter(marketData -> marketData.getAssetType() == AssetType.FOREX)
+            .map(MarketData::getSymbol)
+            .toList();
+        if (forexSymbols.isEmpty()) {
+            return;
+        }
+
+        Map<String, BigDecimal> updatedRates = new LinkedHashMap<>();
+        for (MarketData marketData : marketDataRepository.findMarketDataBySymbols(forexSymbols)) {
+            if (marketData.getAssetType() == AssetType.FOREX) {
+                updatedRates.put(marketData.getSymbol(), marketData.getPrice());
+            }
+        }
+        applyRates(updatedRates);
+    }
+
+    private FxRateMatrix loadMatrix() {
+        Map<String, BigDecimal> pairRates = new LinkedHashMap<>();
+        for (MarketData marketData : marketDataRepository.findMarketDataByAssetType(AssetType.FOREX.getAssetTypeName())) {
+            pairRates.putIfAbsent(marketData.getSymbol(), marketData.getPrice());
+        }
+        FxRateMatrix matrix = FxRateMatrix.build(pairRates, versionCounter.incrementAndGet());
+        logger.info("Loaded FOREX conversion matrix: {}", matrix);
+        return matrix;
+    }
+}
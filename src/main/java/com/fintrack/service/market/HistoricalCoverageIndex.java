@@ -0,0 +1,303 @@
+package com.fintrack.service.market;
+
+import com.fintrack.constants.finance.AssetType;
+import com.fintrack.repository.market.MarketDataMonthlyRepository;
+import com.fintrack.service.market.event.HistoricalMarketDataEvent;
+import com.fintrack.service.market.event.HistoricalMarketDataHandler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Knows which months of historical market data are stored for each (symbol, asset type), so that a
+ * HISTORICAL_MARKET_DATA_REQUEST only asks the ETL for the months that are missing.
+ *
+ * The covered months of an asset are loaded from market_data_monthly the first time it is asked for, and extended by
+ * the ranges of HISTORICAL_MARKET_DATA_COMPLETE messages, received from the HistoricalMarketDataDispatcher; a completed range counts as covered even where the ETL found
+ * no price, e.g. before a listing, so it is not requested again. The current month is covered for
+ * {@code market-data.historical.current-month-refresh-ms} after its last load, since its price still changes.
+ *
+ * Missing months are claimed by the caller that finds them, so concurrent callers of the same assets do not request
+ * them twice. A claim that sees no completion within {@code market-data.historical.pending-ttl-ms}, e.g. because the
+ * ETL failed or the node missed it while its consumer was rebalancing, is dropped and the asset is read from
+ * market_data_monthly again on its next request.
+ */
+@Service
+@Order(HistoricalMarketDataHandler.COVERAGE_ORDER)
+public class HistoricalCoverageIndex implements HistoricalMarketDataHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(HistoricalCoverageIndex.class);
+
+    private final MarketDataMonthlyRepository marketDataMonthlyRepository;
+
+    private final Counter requestedMonths;
+    private final Counter coveredMonths;
+
+    // "ASSET_TYPE:symbol" -> coverage, each guarded by itself
+    private final Map<String, Coverage> coverages = new ConcurrentHashMap<>();
+
+    @Value("${market-data.historical.pending-ttl-ms:600000}")
+    private long pendingTtlMillis = 600000;
+
+    @Value("${market-data.historical.current-month-refresh-ms:3600000}")
+    private long currentMonthRefreshMillis = 3600000;
+
+    public HistoricalCoverageIndex(MarketDataMonthlyRepository marketDataMonthlyRepository, MeterRegistry meterRegistry) {
+        this.marketDataMonthlyRepository = marketDataMonthlyRepository;
+        this.requestedMonths = monthCounter(meterRegistry, "requested");
+        this.coveredMonths = monthCounter(meterRegistry, "covered");
+    }
+
+    /**
+     * A date range to request, from the first day of its first month to the end of its last month or today.
+     */
+    public record Gap(LocalDate startDate, LocalDate endDate) {
+    }
+
+    /**
+     * Claims the months between the given dates that are neither stored nor requested yet.
+     *
+     * @param assetType The asset type of all assets
+     * @param assets    Maps with "symbol" and "asset_type", as in the HISTORICAL_MARKET_DATA_REQUEST payload
+     * @return The assets to request, grouped by missing range; empty if every month is covered
+     */
+    public Map<Gap, List<Map<String, String>>> claimGaps(AssetType assetType, List<Map<String, String>> assets,
+                                                         LocalDate startDate, LocalDate endDate) {
+        long now = System.currentTimeMillis();
+        LocalDate today = LocalDate.now();
+        YearMonth currentMonth = YearMonth.from(today);
+        YearMonth from = YearMonth.from(startDate);
+        YearMonth to = YearMonth.from(endDate.isAfter(today) ? today : endDate);
+
+        Map<String, Map<String, String>> bySymbol = new LinkedHashMap<>();
+        for (Map<String, String> asset : assets) {
+            if (asset.get("symbol") != null) {
+                bySymbol.putIfAbsent(asset.get("symbol"), asset);
+            }
+        }
+        load(assetType, bySymbol.keySet(), now, currentMonth);
+
+        Map<Gap, List<Map<String, String>>> gaps = new LinkedHashMap<>();
+        long requested = 0;
+        long total = 0;
+        for (Map.Entry<String, Map<String, String>> entry : bySymbol.entrySet()) {
+            Coverage coverage = coverage(assetType, entry.getKey());
+            List<MonthRange> missing;
+            synchronized (coverage) {
+                missing = coverage.claimMissing(from, to, currentMonth, now, pendingTtlMillis, currentMonthRefreshMillis);
+            }
+            for (MonthRange range : missing) {
+                LocalDate end = range.end().equals(currentMonth) ? today : range.end().atEndOfMonth();
+                gaps.computeIfAbsent(new Gap(range.start().atDay(1), end), gap -> new ArrayList<>()).add(entry.getValue());
+                requested += range.start().until(range.end(), ChronoUnit.MONTHS) + 1;
+            }
+            total += from.until(to, ChronoUnit.MONTHS) + 1;
+        }
+        requestedMonths.increment(requested);
+        coveredMonths.increment(total - requested);
+        return gaps;
+    }
+
+    /**
+     * Drops the claim of the given assets on one gap, so that its months are requested again by the next caller. Their
+     * claims on other gaps are kept.
+     */
+    public void release(AssetType assetType, Gap gap, List<Map<String, String>> assets) {
+        MonthRange range = new MonthRange(YearMonth.from(gap.startDate()), YearMonth.from(gap.endDate()));
+        for (Map<String, String> asset : assets) {
+            Coverage coverage = coverages.get(key(assetType.getAssetTypeName(), asset.get("symbol")));
+            if (coverage != null) {
+                synchronized (coverage) {
+                    coverage.pending.remove(range);
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the loaded range of each asset as covered and ends its claims within the range.
+     */
+    @Override
+    public void onHistoricalMarketData(HistoricalMarketDataEvent event) {
+        long now = System.currentTimeMillis();
+        YearMonth currentMonth = YearMonth.now();
+        YearMonth from = event.startDate() != null ? YearMonth.from(event.startDate()) : null;
+        YearMonth to = event.endDate() != null ? YearMonth.from(event.endDate()) : currentMonth;
+        for (HistoricalMarketDataEvent.Asset asset : event.assets()) {
+            Coverage coverage = coverage(asset.assetType(), asset.symbol());
+            synchronized (coverage) {
+                coverage.complete(from, to, currentMonth, now);
+            }
+        }
+    }
+
+    /**
+     * Reads the stored months of the assets that are not loaded yet, in one query.
+     */
+    private void load(AssetType assetType, Collection<String> symbols, long now, YearMonth currentMonth) {
+        List<String> unloaded = new ArrayList<>();
+        for (String symbol : symbols) {
+            Coverage coverage = coverage(assetType, symbol);
+            synchronized (coverage) {
+                coverage.expire(now, pendingTtlMillis);
+                if (!coverage.loaded) {
+                    unloaded.add(symbol);
+                }
+            }
+        }
+        if (unloaded.isEmpty()) {
+            return;
+        }
+
+        Map<String, List<YearMonth>> stored = new HashMap<>();
+        for (Object[] row : marketDataMonthlyRepository.findSymbolsAndDatesBySymbolsAndAssetType(unloaded, assetType)) {
+            stored.computeIfAbsent((String) row[0], symbol -> new ArrayList<>()).add(YearMonth.from((LocalDate) row[1]));
+        }
+        for (String symbol : unloaded) {
+            Coverage coverage = coverage(assetType, symbol);
+            synchronized (coverage) {
+                for (YearMonth month : stored.getOrDefault(symbol, List.of())) {
+                    // The current month's row is refreshed on its own schedule, see Coverage#isCovered
+                    if (month.isBefore(currentMonth)) {
+                        coverage.covered.add(month, month);
+                    }
+                }
+                coverage.loaded = true;
+            }
+        }
+        logger.debug("Loaded historical coverage of {} {} assets", unloaded.size(), assetType);
+    }
+
+    private Coverage coverage(AssetType assetType, String symbol) {
+        return coverages.computeIfAbsent(key(assetType.getAssetTypeName(), symbol), key -> new Coverage());
+    }
+
+    private static String key(String assetType, String symbol) {
+        return assetType + ":" + symbol;
+    }
+
+    private static Counter monthCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("market.data.historical.months")
+                .description("Months of historical market data asked for, by whether they were requested or already covered")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * The months of one asset that are stored or requested.
+     */
+    private static final class Coverage {
+        private final MonthRanges covered = new MonthRanges();
+        // Requested ranges that have not completed yet, with when they were requested
+        private final Map<MonthRange, Long> pending = new LinkedHashMap<>();
+        // When the current month was last loaded, or null if it never was
+        private Long currentMonthLoadedAt;
+        private boolean loaded;
+
+        private void expire(long now, long pendingTtlMillis) {
+            if (pending.values().removeIf(since -> now - since >= pendingTtlMillis)) {
+                // The completion may have been missed; what the ETL loaded is in market_data_monthly
+                loaded = false;
+            }
+        }
+
+        private List<MonthRange> claimMissing(YearMonth from, YearMonth to, YearMonth currentMonth, long now,
+                                               long pendingTtlMillis, long currentMonthRefreshMillis) {
+            expire(now, pendingTtlMillis);
+            List<MonthRange> missing = new ArrayList<>();
+            YearMonth start = null;
+            for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+                boolean needed = !isCovered(month, currentMonth, now, currentMonthRefreshMillis) && !isPending(month);
+                if (needed && start == null) {
+                    start = month;
+                } else if (!needed && start != null) {
+                    missing.add(new MonthRange(start, month.minusMonths(1)));
+                    start = null;
+                }
+            }
+            if (start != null) {
+                missing.add(new MonthRange(start, to));
+            }
+            missing.forEach(range -> pending.put(range, now));
+            return missing;
+        }
+
+        private void complete(YearMonth from, YearMonth to, YearMonth currentMonth, long now) {
+            List<MonthRange> ranges = new ArrayList<>();
+            if (from != null) {
+                ranges.add(new MonthRange(from, to));
+                pending.keySet().removeIf(range -> !range.start().isBefore(from) && !range.end().isAfter(to));
+            } else {
+                // The message does not say which months it loaded; take it as the answer to what was requested
+                ranges.addAll(pending.keySet());
+                pending.clear();
+            }
+            for (MonthRange range : ranges) {
+                YearMonth end = range.end().isBefore(currentMonth) ? range.end() : currentMonth.minusMonths(1);
+                if (!end.isBefore(range.start())) {
+                    covered.add(range.start(), end);
+                }
+                if (!range.end().isBefore(currentMonth)) {
+                    currentMonthLoadedAt = now;
+                }
+            }
+        }
+
+        private boolean isCovered(YearMonth month, YearMonth currentMonth, long now, long currentMonthRefreshMillis) {
+            if (month.equals(currentMonth)) {
+                return currentMonthLoadedAt != null && now - currentMonthLoadedAt < currentMonthRefreshMillis;
+            }
+            return covered.contains(month);
+        }
+
+        private boolean isPending(YearMonth month) {
+            for (MonthRange range : pending.keySet()) {
+                if (!month.isBefore(range.start()) && !month.isAfter(range.end())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private record MonthRange(YearMonth start, YearMonth end) {
+    }
+
+    /**
+     * Disjoint, non-adjacent month ranges, keyed by their first month.
+     */
+    private static final class MonthRanges {
+        private final TreeMap<YearMonth, YearMonth> ranges = new TreeMap<>();
+
+        private void add(YearMonth start, YearMonth end) {
+            Map.Entry<YearMonth, YearMonth> before = ranges.floorEntry(start);
+            if (before != null && !before.getValue().plusMonths(1).isBefore(start)) {
+                start = before.getKey();
+                end = before.getValue().isAfter(end) ? before.getValue() : end;
+            }
+            Iterator<Map.Entry<YearMonth, YearMonth>> overlapping =
+                    ranges.subMap(start, true, end.plusMonths(1), true).entrySet().iterator();
+            while (overlapping.hasNext()) {
+                YearMonth overlappingEnd = overlapping.next().getValue();
+                end = overlappingEnd.isAfter(end) ? overlappingEnd : end;
+                overlapping.remove();
+            }
+            ranges.put(start, end);
+        }
+
+        private boolean contains(YearMonth month) {
+            Map.Entry<YearMonth, YearMonth> range = ranges.floorEntry(month);
+            return range != null && !range.getValue().isBefore(month);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.fintrack.service.market;
+
+import com.fintrack.model.market.MarketData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Lets request threads wait for the market data updates they asked for instead of polling for them.
+ *
+ * A caller registers the keys it is missing before it reads them, then waits on the returned {@link Waiter} until
+ * the MARKET_DATA_UPDATE_COMPLETE / MARKET_INDEX_DATA_UPDATE_COMPLETE listeners report those keys, or until
+ * {@code market-data.fetch.wait-timeout-ms} has passed. Both listeners read every completion on every node, in a
+ * consumer group of the node's own. A completion can still be missed, e.g. while a node starts, so callers read
+ * whatever is still missing once more when the deadline passes.
+ */
+@Service
+public class MarketDataCompletionRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(MarketDataCompletionRegistry.class);
+
+    public static final String MARKET_INDEX = "MARKET_INDEX";
+
+    // "ASSET_TYPE:symbol" -> futures of the callers waiting for it
+    private final Map<String, Set<CompletableFuture<String>>> waiters = new ConcurrentHashMap<>();
+
+    @Value("${market-data.fetch.wait-timeout-ms:3000}")
+    private long waitTimeoutMillis = 3000;
+
+    /**
+     * Registers interest in the given keys; register before reading them so no completion is missed.
+     *
+     * @param keys Keys built with {@link #key(String, String)}
+     * @return The waiter, which must be closed once the caller stops waiting
+     */
+    public Waiter register(Collection<String> keys) {
+        Map<String, CompletableFuture<String>> futures = new HashMap<>();
+        for (String key : keys) {
+            CompletableFuture<String> future = new CompletableFuture<>();
+            if (futures.putIfAbsent(key, future) == null) {
+                waiters.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(future);
+            }
+        }
+        return new Waiter(futures, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitTimeoutMillis));
+    }
+
+    /**
+     * Wakes the callers waiting for the given keys.
+     */
+    public void complete(Collection<String> keys) {
+        int woken = 0;
+        for (String key : keys) {
+            Set<CompletableFuture<String>> futures = waiters.remove(key);
+            if (futures != null) {
+                for (CompletableFuture<String> future : futures) {
+                    woken += future.complete(key) ? 1 : 0;
+                }
+            }
+        }
+        if (woken > 0) {
+            logger.debug("Woke {} waiters for {} completed keys", woken, keys.size());
+        }
+    }
+
+    /**
+     * Wakes the callers waiting for the given market data.
+     */
+    public void completeMarketData(Collection<MarketData> updated) {
+        List<String> keys = new ArrayList<>(updated.size());
+        for (MarketData marketData : updated) {
+            if (marketData.getSymbol() != null && marketData.getAssetType() != null) {
+                keys.add(key(marketData.getAssetType().getAssetTypeName(), marketData.getSymbol()));
+            }
+        }
+        complete(keys);
+    }
+
+    public static String key(String assetType, String symbol) {
+        return assetType + ":" + symbol;
+    }
+
+    int waitingKeys() {
+        return waiters.size();
+    }
+
+    private void unregister(String key, CompletableFuture<String> future) {
+        waiters.computeIfPresent(key, (k, futures) -> {
+            futures.remove(future);
+            return futures.isEmpty() ? null : futures;
+        });
+    }
+
+    /**
+     * The keys one caller is waiting for, with the caller's deadline.
+     */
+    public final class Waiter implements AutoCloseable {
+
+        private final Map<String, CompletableFuture<String>> pending;
+        private final long deadlineNanos;
+
+        private Waiter(Map<String, CompletableFuture<String>> pending, long deadlineNanos) {
+            this.pending = pending;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /**
+         * Stops waiting for keys the caller already has.
+         */
+        public void release(Collection<String> keys) {
+            for (String key : keys) {
+                CompletableFuture<String> future = pending.remove(key);
+                if (future != null) {
+                    unregister(key, future);
+                }
+            }
+        }
+
+        /**
+         * Blocks until at least one pending key completes or the deadline passes.
+         *
+         * @return The keys completed since the last call, which are no longer pending; empty once the deadline has
+         *         passed or nothing is pending
+         * @throws InterruptedException If the calling thread is interrupted while waiting
+         */
+        public Set<String> awaitNext() throws InterruptedException {
+            long remaining = deadlineNanos - System.nanoTime();
+            if (pending.isEmpty() || remaining <= 0) {
+                return Set.of();
+            }
+            try {
+                CompletableFuture.anyOf(pending.values().toArray(new CompletableFuture<?>[0]))
+                        .get(remaining, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                return Set.of();
+            } catch (ExecutionException e) {
+                // The futures are only ever completed normally
+                throw new IllegalStateException(e);
+            }
+
+            Set<String> completed = new LinkedHashSet<>();
+            pending.entrySet().removeIf(entry -> entry.getValue().isDone() && completed.add(entry.getKey()));
+            return completed;
+        }
+
+        @Override
+        public void close() {
+            release(new ArrayList<>(pending.keySet()));
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.fintrack.service.market;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Refreshes the market data of an account in the background, so a portfolio request can be answered from the prices
+ * already stored instead of waiting for the Kafka round trip and the retry sleeps of the asset providers.
+ *
+ * At most one refresh per account runs or waits at a time; requests arriving meanwhile join the pending one. The
+ * queue is bounded, and a refresh that does not fit is dropped: the next request for the account will try again.
+ */
+@Service
+public class MarketDataRefreshService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MarketDataRefreshService.class);
+
+    private final MarketDataService marketDataService;
+    private final Set<UUID> pendingAccounts = ConcurrentHashMap.newKeySet();
+
+    @Value("${portfolio.market-data.refresh.threads:2}")
+    private int refreshThreads = 2;
+
+    @Value("${portfolio.market-data.refresh.queue-capacity:100}")
+    private int queueCapacity = 100;
+
+    private volatile ThreadPoolExecutor refreshExecutor;
+
+    public MarketDataRefreshService(MarketDataService marketDataService) {
+        this.marketDataService = marketDataService;
+    }
+
+    /**
+     * Schedules a refresh of the given symbols for the account, unless one is already pending.
+     *
+     * @param accountId The account whose holdings are refreshed
+     * @param entities Symbol and assetType entries, as expected by {@link MarketDataService#fetchMarketData}
+     * @return true if a refresh for the account is pending when this method returns
+     */
+    public boolean refreshAsync(UUID accountId, List<Map<String, String>> entities) {
+        if (entities.isEmpty()) {
+            return isRefreshPending(accountId);
+        }
+        if (!pendingAccounts.add(accountId)) {
+            logger.debug("Market data refresh already pending for account {}", accountId);
+            return true;
+        }
+
+        try {
+            refreshExecutor().execute(() -> refresh(accountId, entities));
+            return true;
+        } catch (RejectedExecutionException e) {
+            pendingAccounts.remove(accountId);
+            logger.warn("Market data refresh queue is full, skipping refresh for account {}", accountId);
+            return false;
+        }
+    }
+
+    /**
+     * @return true if a refresh for the account is queued or running
+     */
+    public boolean isRefreshPending(UUID accountId) {
+        return pendingAccounts.contains(accountId);
+    }
+
+    private void refresh(UUID accountId, List<Map<String, String>> entities) {
+        try {
+            List<?> refreshedData = marketDataService.fetchMarketData(accountId, entities);
+            logger.info("Refreshed market data for {} assets of account {} in the background", refreshedData.size(), accountId);
+        } catch (Exception e) {
+            logger.error("Error refreshing market data for account {}: {}", accountId, e.getMessage(), e);
+        } finally {
+            pendingAccounts.remove(accountId);
+        }
+    }
+
+    private ThreadPoolExecutor refreshExecutor() {
+        ThreadPoolExecutor executor = refreshExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                if (refreshExecutor == null) {
+                    int threads = Math.max(1, refreshThreads);
+                    refreshExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                            new LinkedBlockingQueue<>(Math.max(1, queueCapacity)), runnable -> {
+                                Thread thread = new Thread(runnable, "market-data-refresh");
+                                thread.setDaemon(true);
+                                return thread;
+                            });
+                }
+                executor = refreshExecutor;
+            }
+        }
+        return executor;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.fintrack.service.market;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fintrack.constants.KafkaTopics;
+import com.fintrack.model.market.MarketData;
+import com.fintrack.util.KafkaProducerService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Coalesces market data update requests of all accounts before they go to Kafka.
+ *
+ * A (symbol, asset type) pair that was already requested is not requested again until its update completes, or until
+ * {@code market-data.update-request.in-flight-ttl-ms} passes without a completion. New pairs are collected for
+ * {@code market-data.update-request.batch-window-ms} and then sent as one MARKET_DATA_UPDATE_REQUEST per asset type.
+ */
+@Service
+public class MarketDataRequestCoalescer {
+
+    private static final Logger logger = LoggerFactory.getLogger(MarketDataRequestCoalescer.class);
+
+    private final KafkaProducerService kafkaProducerService;
+    private final ObjectMapper objectMapper;
+
+    private final Counter queuedSymbols;
+    private final Counter suppressedSymbols;
+    private final Counter mergedRequests;
+    private final Counter sentMessages;
+
+    // "ASSET_TYPE:symbol" -> when it was requested
+    private final Map<String, Long> inFlight = new ConcurrentHashMap<>();
+
+    // Asset type -> symbol -> asset, guarded by this
+    private Map<String, Map<String, Map<String, String>>> pendingAssets = new LinkedHashMap<>();
+    private int pendingRequests;
+    private boolean flushScheduled;
+
+    @Value("${market-data.update-request.batch-window-ms:100}")
+    private long batchWindowMillis = 100;
+
+    @Value("${market-data.update-request.in-flight-ttl-ms:30000}")
+    private long inFlightTtlMillis = 30000;
+
+    private volatile ScheduledExecutorService flushScheduler;
+
+    public MarketDataRequestCoalescer(KafkaProducerService kafkaProducerService, ObjectMapper objectMapper,
+                                      MeterRegistry meterRegistry) {
+        this.kafkaProducerService = kafkaProducerService;
+        this.objectMapper = objectMapper;
+        this.queuedSymbols = symbolCounter(meterRegistry, "queued");
+        this.suppressedSymbols = symbolCounter(meterRegistry, "suppressed");
+        this.mergedRequests = Counter.builder("market.data.update.request.merged")
+                .description("Update requests merged into a batch that was already waiting to be sent")
+                .register(meterRegistry);
+        this.sentMessages = Counter.builder("market.data.update.request.messages")
+                .description("MARKET_DATA_UPDATE_REQUEST messages sent")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues an update of the given assets, skipping the ones already in flight.
+     *
+     * @param assets Maps with "symbol" and "asset_type", as in the MARKET_DATA_UPDATE_REQUEST payload
+     * @return The number of assets queued by this call
+     */
+    public int request(List<Map<String, String>> assets) {
+        long now = System.currentTimeMillis();
+        List<Map<String, String>> queued = new ArrayList<>();
+        for (Map<String, String> asset : assets) {
+            String symbol = asset.get("symbol");
+            String assetType = asset.get("asset_type");
+            if (symbol == null || assetType == null) {
+                continue;
+            }
+            boolean[] claimed = {false};
+            inFlight.compute(key(symbol, assetType), (key, since) -> {
+                if (since != null && now - since < inFlightTtlMillis) {
+                    return since;
+                }
+                claimed[0] = true;
+                return now;
+            });
+            if (claimed[0]) {
+                queued.add(Map.of("symbol", symbol, "asset_type", assetType));
+            }
+        }
+        queuedSymbols.increment(queued.size());
+        suppressedSymbols.increment(assets.size() - queued.size());
+        if (queued.isEmpty()) {
+            logger.debug("All {} requested assets are already being updated", assets.size());
+            return 0;
+        }
+
+        boolean scheduleFlush;
+        synchronized (this) {
+            for (Map<String, String> asset : queued) {
+                pendingAssets.computeIfAbsent(asset.get("asset_type"), type -> new LinkedHashMap<>())
+                        .put(asset.get("symbol"), asset);
+            }
+            if (pendingRequests++ > 0) {
+                mergedRequests.increment();
+            }
+            scheduleFlush = !flushScheduled;
+            flushScheduled = true;
+        }
+        if (scheduleFlush) {
+            scheduleFlush();
+        }
+        return queued.size();
+    }
+
+    /**
+     * Ends the in-flight period of the updated assets, so the next request for them is sent again.
+     */
+    public void complete(Collection<MarketData> updated) {
+        for (MarketData marketData : updated) {
+            if (marketData.getSymbol() != null && marketData.getAssetType() != null) {
+                inFlight.remove(key(marketData.getSymbol(), marketData.getAssetType().getAssetTypeName()));
+            }
+        }
+    }
+
+    /**
+     * Sends the collected assets, one message per asset type.
+     */
+    void flush() {
+        Map<String, Map<String, Map<String, String>>> batch;
+        int requests;
+        synchronized (this) {
+            batch = pendingAssets;
+            requests = pendingRequests;
+            pendingAssets = new LinkedHashMap<>();
+            pendingRequests = 0;
+            flushScheduled = false;
+        }
+
+        for (Map.Entry<String, Map<String, Map<String, String>>> entry : batch.entrySet()) {
+            List<Map<String, String>> assets = new ArrayList<>(entry.getValue().values());
+            String payload;
+            try {
+                payload = objectMapper.writeValueAsString(Map.of("assets", assets));
+            } catch (Exception e) {
+                logger.error("Error serializing market data update request for {} {} assets", assets.size(), entry.getKey(), e);
+                release(entry.getKey(), assets);
+                continue;
+            }
+            // Keyed by asset type, so the requests of a type are handled in order
+            kafkaProducerService.publishEventAsync(KafkaTopics.MARKET_DATA_UPDATE_REQUEST.getTopicName(), entry.getKey(), payload)
+                    .whenComplete((sent, ex) -> {
+                        if (ex == null) {
+                            sentMessages.increment();
+                            logger.info("Sent market data update request for {} {} assets from {} requests", assets.size(), entry.getKey(), requests);
+                            return;
+                        }
+                        // Let the next request for these assets try again instead of waiting for the in-flight TTL
+                        logger.error("Error sending market data update request for {} {} assets: {}", assets.size(), entry.getKey(), ex.getMessage());
+                        release(entry.getKey(), assets);
+                    });
+        }
+
+        long now = System.currentTimeMillis();
+        inFlight.values().removeIf(since -> now - since >= inFlightTtlMillis);
+    }
+
+    private void release(String assetType, List<Map<String, String>> assets) {
+        for (Map<String, String> asset : assets) {
+            inFlight.remove(key(asset.get("symbol"), assetType));
+        }
+    }
+
+    private void scheduleFlush() {
+        try {
+            flushScheduler().schedule(this::flush, batchWindowMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            flush();
+        }
+    }
+
+    private ScheduledExecutorService flushScheduler() {
+        ScheduledExecutorService scheduler = flushScheduler;
+        if (scheduler == null) {
+            synchronized (this) {
+                if (flushScheduler == null) {
+                    flushScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, "market-data-request-flush");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+                scheduler = flushScheduler;
+            }
+        }
+        return scheduler;
+    }
+
+    /**
+     * Stops the scheduler; a batch that is still waiting is sent before it terminates.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (flushScheduler != null) {
+            flushScheduler.shutdown();
+        }
+    }
+
+    private static Counter symbolCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("market.data.update.request.symbols")
+                .description("Symbols asked for by market data update requests, by whether they were queued or already in flight")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static String key(String symbol, String assetType) {
+        return assetType + ":" + symbol;
+    }
+}
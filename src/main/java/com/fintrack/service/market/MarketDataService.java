@@ -10,7 +10,6 @@ import com.fintrack.util.KafkaProducerService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
@@ -153,8 +152,10 @@ public class MarketDataService extends AbstractMarketDataProvider {
         return data;
     }
 
+    /**
+     * Logs a raw completion message. The topic itself is consumed by MarketDataUpdateDispatcher.
+     */
     @Override
-    @KafkaListener(topics = "#{T(com.fintrack.constants.KafkaTopics).MARKET_DATA_UPDATE_COMPLETE.getTopicName()}", groupId = "market-data-group")
     public void onMarketDataUpdateComplete(String message) {
         logger.info("Received " + KafkaTopics.MARKET_DATA_UPDATE_COMPLETE.getTopicName() + " message: " + message);
 
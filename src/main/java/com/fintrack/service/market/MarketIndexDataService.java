@@ -1,6 +1,8 @@
 package com.fintrack.service.market;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fintrack.config.KafkaConfig;
 import com.fintrack.constants.KafkaTopics;
 import com.fintrack.model.market.MarketIndexData;
 import com.fintrack.repository.market.MarketIndexDataRepository;
@@ -10,11 +12,13 @@ import com.fintrack.util.KafkaProducerService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -23,10 +27,15 @@ public class MarketIndexDataService extends AbstractMarketDataProvider {
     private static final Logger logger = LoggerFactory.getLogger(MarketIndexDataService.class);
 
     private final MarketIndexDataRepository marketIndexDataRepository;
+    private final MarketDataCompletionRegistry completionRegistry;
+    private final ObjectReader indexUpdatesReader;
 
-    public MarketIndexDataService(KafkaProducerService kafkaProducerService, MarketIndexDataRepository marketIndexDataRepository) {
+    public MarketIndexDataService(KafkaProducerService kafkaProducerService, MarketIndexDataRepository marketIndexDataRepository,
+                                  MarketDataCompletionRegistry completionRegistry) {
         super(kafkaProducerService);
         this.marketIndexDataRepository = marketIndexDataRepository;
+        this.completionRegistry = completionRegistry;
+        this.indexUpdatesReader = objectMapper.readerForListOf(MarketIndexUpdate.class);
     }
 
     public Map<String, Object> getMostRecentMarketIndexData(List<String> symbols) {
@@ -36,50 +45,54 @@ public class MarketIndexDataService extends AbstractMarketDataProvider {
             decodedSymbols.add(URLDecoder.decode(encodedSymbol, StandardCharsets.UTF_8));
         }
 
-        // Request an update via the superclass method
-        requestMarketDataUpdate(decodedSymbols);
-
-        // Retry mechanism to fetch data until all symbols are available
+        // Register before requesting the update so its completion is not missed
         Map<String, Object> result = new HashMap<>();
-        int maxRetries = 3;
-        int retryCount = 0;
-        while (retryCount < maxRetries) {
-            result.clear();
-            List<MarketIndexData> recentMarketIndexData = marketIndexDataRepository.findMarketIndexDataBySymbols(decodedSymbols);
-            if(recentMarketIndexData.isEmpty()) {
-                logger.error("No data found for symbols: " + decodedSymbols);
-                break; // Exit if no data is found
-            }
-
-            for (MarketIndexData data : recentMarketIndexData) {
-                result.put(data.getSymbol(), Map.of(
-                    "price", data.getPrice(),
-                    "price_change", data.getPriceChange(),
-                    "percent_change", data.getPercentChange(),
-                    "price_low", data.getPriceLow(),
-                    "price_high", data.getPriceHigh()
-                ));
-            }
-
-            // Check if all symbols have data
-            if (result.size() == decodedSymbols.size()) {
-                break;
-            }
-
-            // Wait before retrying
-            try {
-                Thread.sleep(1000); // Wait for 1 second before retrying
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                logger.error("Retry interrupted: " + e.getMessage());
-                break;
+        Map<String, String> missing = new LinkedHashMap<>();
+        for (String symbol : decodedSymbols) {
+            missing.put(MarketDataCompletionRegistry.key(MarketDataCompletionRegistry.MARKET_INDEX, symbol), symbol);
+        }
+        try (MarketDataCompletionRegistry.Waiter waiter = completionRegistry.register(missing.keySet())) {
+            // Request an update via the superclass method
+            requestMarketDataUpdate(decodedSymbols);
+
+            List<String> toRead = decodedSymbols;
+            boolean lastRead = false;
+            while (true) {
+                List<String> found = new ArrayList<>();
+                for (MarketIndexData data : marketIndexDataRepository.findMarketIndexDataBySymbols(toRead)) {
+                    result.put(data.getSymbol(), Map.of(
+                        "price", data.getPrice(),
+                        "price_change", data.getPriceChange(),
+                        "percent_change", data.getPercentChange(),
+                        "price_low", data.getPriceLow(),
+                        "price_high", data.getPriceHigh()
+                    ));
+                    String key = MarketDataCompletionRegistry.key(MarketDataCompletionRegistry.MARKET_INDEX, data.getSymbol());
+                    if (missing.remove(key) != null) {
+                        found.add(key);
+                    }
+                }
+                waiter.release(found);
+                if (missing.isEmpty() || lastRead) {
+                    break;
+                }
+
+                // Wait for the update of the missing symbols instead of polling the repository
+                Set<String> completed = waiter.awaitNext();
+                if (completed.isEmpty()) {
+                    // Out of time or nothing left to wait for; an update consumed by another node is read here
+                    completed = missing.keySet();
+                    lastRead = true;
+                }
+                toRead = completed.stream().map(missing::get).filter(Objects::nonNull).toList();
             }
-
-            retryCount++;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Waiting for market index data interrupted: " + e.getMessage());
         }
 
-        if (result.size() < decodedSymbols.size()) {
-            logger.error("Failed to fetch data for all symbols after " + maxRetries + " retries.");
+        if (!missing.isEmpty()) {
+            logger.error("Failed to fetch data for symbols: " + missing.values());
         }
 
         return result;
@@ -91,18 +104,59 @@ public class MarketIndexDataService extends AbstractMarketDataProvider {
     }
 
     @Override
-    @KafkaListener(topics = "#{T(com.fintrack.constants.KafkaTopics).MARKET_INDEX_DATA_UPDATE_COMPLETE.getTopicName()}", groupId = "market-index-data-group")
+    protected String getMessageKey() {
+        return MarketDataCompletionRegistry.MARKET_INDEX;
+    }
+
+    // Every node reads every completion in its own group, so requests waiting on any node are woken
+    @KafkaListener(topics = "#{T(com.fintrack.constants.KafkaTopics).MARKET_INDEX_DATA_UPDATE_COMPLETE.getTopicName()}",
+                   groupId = "${market-data.index-events.group-id:market-index-data-group}-${market-data.node-id:${random.uuid}}",
+                   containerFactory = KafkaConfig.MARKET_DATA_BATCH_LISTENER_FACTORY)
+    public void onMarketIndexDataUpdateBatch(List<byte[]> messages, Acknowledgment acknowledgment) {
+        logger.info("Received {} {} messages", messages.size(), KafkaTopics.MARKET_INDEX_DATA_UPDATE_COMPLETE.getTopicName());
+
+        // No need to save the data; wake the requests waiting for it
+        List<String> completed = new ArrayList<>();
+        for (byte[] message : messages) {
+            try {
+                completed.addAll(completedKeys(message != null ? indexUpdatesReader.readValue(message) : null));
+            } catch (IOException e) {
+                logger.error("Failed to process market index data update complete message: " + e.getMessage());
+            }
+        }
+        completionRegistry.complete(completed);
+        acknowledgment.acknowledge();
+    }
+
+    @Override
     public void onMarketDataUpdateComplete(String message) {
         logger.info("Received " + KafkaTopics.MARKET_INDEX_DATA_UPDATE_COMPLETE.getTopicName() + " message: " + message);
 
-        // No need to save the data; just log the message
         try {
-            List<Map<String, Object>> indexDataList = objectMapper.readValue(message, List.class);
-            for (Map<String, Object> indexData : indexDataList) {
-                logger.trace("MarketIndexData: " + indexData);
-            }
+            completionRegistry.complete(completedKeys(indexUpdatesReader.readValue(message)));
         } catch (Exception e) {
             logger.error("Failed to process market index data update complete message: " + e.getMessage());
         }
     }
+
+    private static List<String> completedKeys(List<MarketIndexUpdate> updates) {
+        List<String> completed = new ArrayList<>();
+        if (updates == null) {
+            return completed;
+        }
+        for (MarketIndexUpdate update : updates) {
+            logger.trace("MarketIndexData: " + update);
+            if (update != null && update.symbol() != null) {
+                completed.add(MarketDataCompletionRegistry.key(MarketDataCompletionRegistry.MARKET_INDEX, update.symbol()));
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * An entry of a MARKET_INDEX_DATA_UPDATE_COMPLETE message; only the symbol is needed to wake the waiting requests.
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record MarketIndexUpdate(String symbol) {
+    }
 }
@@ -0,0 +1,326 @@
+package com.fintrack.service.market;
+
+import com.fintrack.constants.finance.AssetType;
+import com.fintrack.model.market.MarketDataMonthly;
+import com.fintrack.repository.market.MarketDataMonthlyRepository;
+import com.fintrack.service.market.event.HistoricalMarketDataEvent;
+import com.fintrack.service.market.event.HistoricalMarketDataHandler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * In-process copy of market_data_monthly, answering "the price of a symbol as of a date" without a query.
+ *
+ * The whole history of a symbol is read with one bulk query the first time it is asked for, and kept as one series per
+ * asset type: a sorted int array of epoch days and a long array of prices in cents, the scale of the price column.
+ * A lookup is a binary search for the last observation on or before the date. Series are never changed in place; a
+ * HISTORICAL_MARKET_DATA_COMPLETE message received from the HistoricalMarketDataDispatcher replaces the series of the
+ * loaded symbols with copies holding the stored prices.
+ *
+ * Resident symbols are bounded by an estimate of their size, {@code market-data.price-history.max-bytes}, and evicted
+ * least recently used first. A symbol is read again after {@code market-data.price-history.refresh-ms}, so rows stored
+ * without a completion message are picked up too. A load that overlaps a completion is returned to its caller but not
+ * kept, so rows read before the ETL stored the new months cannot be put back afterwards.
+ */
+@Service
+@Order(HistoricalMarketDataHandler.PRICE_HISTORY_ORDER)
+public class PriceHistoryStore implements HistoricalMarketDataHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(PriceHistoryStore.class);
+
+    // The scale of market_data_monthly.price; a finer price is rounded to it, as the column would
+    private static final int PRICE_SCALE = 2;
+
+    // Rough heap cost of a resident symbol, its series and each observation (an int day and a long price, or a
+    // BigDecimal price in a series too large for longs)
+    private static final long SYMBOL_OVERHEAD_BYTES = 96;
+    private static final long SERIES_OVERHEAD_BYTES = 64;
+    private static final long OBSERVATION_BYTES = Integer.BYTES + Long.BYTES;
+    private static final long DECIMAL_OBSERVATION_BYTES = Integer.BYTES + 72;
+
+    private final MarketDataMonthlyRepository marketDataMonthlyRepository;
+
+    private final Counter loadedSymbols;
+    private final Counter evictedSymbols;
+
+    @Value("${market-data.price-history.max-bytes:67108864}")
+    private long maxBytes = 67108864;
+
+    @Value("${market-data.price-history.refresh-ms:3600000}")
+    private long refreshMillis = 3600000;
+
+    // Access-ordered, so iteration starts at the least recently used symbol; guarded by itself
+    private final LinkedHashMap<String, SymbolHistory> resident = new LinkedHashMap<>(256, 0.75f, true);
+    private long residentBytes;
+    private long completions;
+
+    public PriceHistoryStore(MarketDataMonthlyRepository marketDataMonthlyRepository, MeterRegistry meterRegistry) {
+        this.marketDataMonthlyRepository = marketDataMonthlyRepository;
+        this.loadedSymbols = Counter.builder("market.data.price.history.loads")
+                .description("Symbols whose price history was read from market_data_monthly")
+                .register(meterRegistry);
+        this.evictedSymbols = Counter.builder("market.data.price.history.evictions")
+                .description("Symbols evicted from the price history to stay within its memory budget")
+                .register(meterRegistry);
+        Gauge.builder("market.data.price.history.bytes", this, PriceHistoryStore::residentBytes)
+                .description("Estimated heap used by the resident price history")
+                .register(meterRegistry);
+    }
+
+    /**
+     * A price and the date it was observed on.
+     */
+    public record Observation(LocalDate date, BigDecimal price) {
+    }
+
+    /**
+     * Returns the price history of the given symbols, reading the symbols that are not resident with one query.
+     * The returned view does not change, so one valuation sees the same prices throughout.
+     */
+    public Prices pricesOf(Collection<String> symbols) {
+        Map<String, SymbolHistory> histories = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        long completionsBeforeLoad;
+        synchronized (resident) {
+            completionsBeforeLoad = completions;
+            for (String symbol : new LinkedHashSet<>(symbols)) {
+                SymbolHistory history = resident.get(symbol);
+                if (history != null && now - history.loadedAt() < refreshMillis) {
+                    histories.put(symbol, history);
+                } else {
+                    missing.add(symbol);
+                }
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            Map<String, SymbolHistory> loaded = load(missing, now);
+            histories.putAll(loaded);
+            synchronized (resident) {
+                if (completions == completionsBeforeLoad) {
+                    loaded.forEach(this::putResident);
+                    evictOverBudget();
+                }
+            }
+        }
+        return new Prices(histories);
+    }
+
+    /**
+     * Applies the stored prices of a completed load to the resident symbols. Symbols that are not resident are read
+     * in full on their next lookup.
+     */
+    @Override
+    public void onHistoricalMarketData(HistoricalMarketDataEvent event) {
+        Map<String, List<MarketDataMonthly>> rowsBySymbol = new HashMap<>();
+        for (MarketDataMonthly row : event.prices()) {
+            if (isValid(row)) {
+                rowsBySymbol.computeIfAbsent(row.getSymbol(), symbol -> new ArrayList<>()).add(row);
+            }
+        }
+
+        int updated = 0;
+        synchronized (resident) {
+            completions++;
+            for (Map.Entry<String, List<MarketDataMonthly>> entry : rowsBySymbol.entrySet()) {
+                SymbolHistory history = resident.get(entry.getKey());
+                if (history != null) {
+                    putResident(entry.getKey(), history.merge(entry.getValue()));
+                    updated++;
+                }
+            }
+            evictOverBudget();
+        }
+        logger.debug("Applied {} historical prices to {} resident symbols", event.prices().size(), updated);
+    }
+
+    private Map<String, SymbolHistory> load(List<String> symbols, long loadedAt) {
+        Map<String, List<MarketDataMonthly>> rowsBySymbol = new HashMap<>();
+        for (MarketDataMonthly row : marketDataMonthlyRepository.findBySymbols(symbols)) {
+            if (isValid(row)) {
+                rowsBySymbol.computeIfAbsent(row.getSymbol(), symbol -> new ArrayList<>()).add(row);
+            }
+        }
+
+        // Symbols without rows are kept as well, so they are not read again on every lookup
+        Map<String, SymbolHistory> loaded = new HashMap<>();
+        for (String symbol : symbols) {
+            loaded.put(symbol, SymbolHistory.of(symbol, rowsBySymbol.getOrDefault(symbol, List.of()), loadedAt));
+        }
+        loadedSymbols.increment(symbols.size());
+        logger.debug("Loaded the price history of {} symbols", symbols.size());
+        return loaded;
+    }
+
+    private void putResident(String symbol, SymbolHistory history) {
+        SymbolHistory previous = resident.put(symbol, history);
+        residentBytes += history.bytes() - (previous != null ? previous.bytes() : 0);
+    }
+
+    private void evictOverBudget() {
+        Iterator<SymbolHistory> eldest = resident.values().iterator();
+        int evicted = 0;
+        while (residentBytes > maxBytes && resident.size() > 1 && eldest.hasNext()) {
+            residentBytes -= eldest.next().bytes();
+            eldest.remove();
+            evicted++;
+        }
+        if (evicted > 0) {
+            evictedSymbols.increment(evicted);
+            logger.debug("Evicted {} symbols from the price history, {} bytes resident", evicted, residentBytes);
+        }
+    }
+
+    private long residentBytes() {
+        synchronized (resident) {
+            return residentBytes;
+        }
+    }
+
+    private static boolean isValid(MarketDataMonthly row) {
+        return row.getSymbol() != null && row.getAssetType() != null && row.getDate() != null && row.getPrice() != null;
+    }
+
+    /**
+     * The price history of a set of symbols, as returned by {@link #pricesOf(Collection)}.
+     */
+    public static final class Prices {
+        private final Map<String, SymbolHistory> histories;
+
+        private Prices(Map<String, SymbolHistory> histories) {
+            this.histories = histories;
+        }
+
+        /**
+         * @return The last observation of the symbol on or before the date, or null if there is none
+         */
+        public Observation asOf(String symbol, AssetType assetType, LocalDate date) {
+            SymbolHistory history = histories.get(symbol);
+            Series series = history != null ? history.series().get(assetType) : null;
+            return series != null ? series.asOf(date) : null;
+        }
+    }
+
+    /**
+     * The series of one symbol per asset type; a symbol usually has one.
+     */
+    private record SymbolHistory(Map<AssetType, Series> series, long loadedAt, long bytes) {
+
+        static SymbolHistory of(String symbol, List<MarketDataMonthly> rows, long loadedAt) {
+            Map<AssetType, NavigableMap<LocalDate, BigDecimal>> pricesByAssetType = new EnumMap<>(AssetType.class);
+            for (MarketDataMonthly row : rows) {
+                pricesByAssetType.computeIfAbsent(row.getAssetType(), assetType -> new TreeMap<>()).put(row.getDate(), row.getPrice());
+            }
+            Map<AssetType, Series> series = new EnumMap<>(AssetType.class);
+            long bytes = SYMBOL_OVERHEAD_BYTES + 2L * symbol.length();
+            for (Map.Entry<AssetType, NavigableMap<LocalDate, BigDecimal>> entry : pricesByAssetType.entrySet()) {
+                Series assetSeries = Series.of(entry.getValue());
+                series.put(entry.getKey(), assetSeries);
+                bytes += assetSeries.bytes();
+            }
+            return new SymbolHistory(series, loadedAt, bytes);
+        }
+
+        /**
+         * @return A copy with the given rows added, replacing the prices of the same dates
+         */
+        SymbolHistory merge(List<MarketDataMonthly> rows) {
+            Map<AssetType, NavigableMap<LocalDate, BigDecimal>> pricesByAssetType = new EnumMap<>(AssetType.class);
+            series.forEach((assetType, assetSeries) -> pricesByAssetType.put(assetType, assetSeries.toMap()));
+            for (MarketDataMonthly row : rows) {
+                pricesByAssetType.computeIfAbsent(row.getAssetType(), assetType -> new TreeMap<>()).put(row.getDate(), row.getPrice());
+            }
+
+            Map<AssetType, Series> merged = new EnumMap<>(AssetType.class);
+            long mergedBytes = bytes;
+            for (Map.Entry<AssetType, NavigableMap<LocalDate, BigDecimal>> entry : pricesByAssetType.entrySet()) {
+                Series assetSeries = Series.of(entry.getValue());
+                Series previous = series.get(entry.getKey());
+                merged.put(entry.getKey(), assetSeries);
+                mergedBytes += assetSeries.bytes() - (previous != null ? previous.bytes() : 0);
+            }
+            return new SymbolHistory(merged, loadedAt, mergedBytes);
+        }
+    }
+
+    /**
+     * Observations of one (symbol, asset type), sorted by date. Prices are stored as unscaled values of
+     * {@link #PRICE_SCALE}, or as BigDecimals if one of them does not fit a long.
+     */
+    private static final class Series {
+        private final int[] epochDays;
+        private final long[] scaledPrices;
+        private final BigDecimal[] decimalPrices;
+
+        private Series(int[] epochDays, long[] scaledPrices, BigDecimal[] decimalPrices) {
+            this.epochDays = epochDays;
+            this.scaledPrices = scaledPrices;
+            this.decimalPrices = decimalPrices;
+        }
+
+        static Series of(NavigableMap<LocalDate, BigDecimal> prices) {
+            int[] epochDays = new int[prices.size()];
+            BigDecimal[] decimalPrices = new BigDecimal[prices.size()];
+            boolean fitsLong = true;
+            int i = 0;
+            for (Map.Entry<LocalDate, BigDecimal> entry : prices.entrySet()) {
+                epochDays[i] = (int) entry.getKey().toEpochDay();
+                decimalPrices[i] = entry.getValue().setScale(PRICE_SCALE, RoundingMode.HALF_UP);
+                fitsLong &= decimalPrices[i].unscaledValue().bitLength() < Long.SIZE;
+                i++;
+            }
+            if (!fitsLong) {
+                // Kept exact rather than failing the whole history of the symbol
+                return new Series(epochDays, null, decimalPrices);
+            }
+            long[] scaledPrices = new long[decimalPrices.length];
+            for (int j = 0; j < decimalPrices.length; j++) {
+                scaledPrices[j] = decimalPrices[j].unscaledValue().longValue();
+            }
+            return new Series(epochDays, scaledPrices, null);
+        }
+
+        int size() {
+            return epochDays.length;
+        }
+
+        long bytes() {
+            return SERIES_OVERHEAD_BYTES + (scaledPrices != null ? OBSERVATION_BYTES : DECIMAL_OBSERVATION_BYTES) * size();
+        }
+
+        Observation asOf(LocalDate date) {
+            int index = Arrays.binarySearch(epochDays, (int) date.toEpochDay());
+            if (index < 0) {
+                // The insertion point is the first later observation; carry the one before it forward
+                index = -index - 2;
+            }
+            return index >= 0 ? observation(index) : null;
+        }
+
+        NavigableMap<LocalDate, BigDecimal> toMap() {
+            NavigableMap<LocalDate, BigDecimal> prices = new TreeMap<>();
+            for (int i = 0; i < epochDays.length; i++) {
+                Observation observation = observation(i);
+                prices.put(observation.date(), observation.price());
+            }
+            return prices;
+        }
+
+        private Observation observation(int index) {
+            BigDecimal price = scaledPrices != null ? BigDecimal.valueOf(scaledPrices[index], PRICE_SCALE) : decimalPrices[index];
+            return new Observation(LocalDate.ofEpochDay(epochDays[index]), price);
+        }
+    }
+}
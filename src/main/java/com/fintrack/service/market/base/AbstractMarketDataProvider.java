@@ -12,6 +12,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Abstract base class implementing common functionality for market data providers
@@ -46,6 +47,8 @@ public abstract class AbstractMarketDataProvider implements KafkaMarketDataProvi
             sendKafkaMessage(getUpdateRequestTopic().getTopicName(), jsonPayload);
             
             logger.info("Requested market data update for {} symbols", symbols.size());
+        } catch (RejectedExecutionException e) {
+            logger.warn("Market data update for {} symbols not requested: {}", symbols.size(), e.getMessage());
         } catch (Exception e) {
             logger.error("Failed to request market data update: {}", e.getMessage());
         }
@@ -68,16 +71,29 @@ public abstract class AbstractMarketDataProvider implements KafkaMarketDataProvi
             sendKafkaMessage(getUpdateRequestTopic().getTopicName(), jsonPayload);
             
             logger.info("Requested market data update for account {} with {} symbols", accountId, symbols.size());
+        } catch (RejectedExecutionException e) {
+            logger.warn("Market data update for account {} not requested: {}", accountId, e.getMessage());
         } catch (Exception e) {
             logger.error("Failed to request market data update for account {}: {}", accountId, e.getMessage());
         }
     }
     
+    /**
+     * @return The key of the messages this provider sends. Messages with the same key go to one partition and are
+     *         consumed in order; by default every message of the provider shares its update request topic's name.
+     */
+    protected String getMessageKey() {
+        return getUpdateRequestTopic().name();
+    }
+
     @Override
     public void sendKafkaMessage(String topic, String payload) {
         try {
-            kafkaProducerService.publishEvent(topic, payload);
+            kafkaProducerService.publishEvent(topic, getMessageKey(), payload);
             logger.debug("Sent message to Kafka topic {}: {}", topic, payload);
+        } catch (RejectedExecutionException e) {
+            // The publish queue is full; left to the caller, which decides whether the message can be skipped
+            throw e;
         } catch (Exception e) {
             logger.error("Failed to send Kafka message to topic {}: {}", topic, e.getMessage());
             throw e; // Re-throw to allow method-specific handling
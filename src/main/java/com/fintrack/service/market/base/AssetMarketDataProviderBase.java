@@ -1,11 +1,15 @@
 package com.fintrack.service.market.base;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fintrack.constants.KafkaTopics;
 import com.fintrack.constants.finance.AssetType;
 import com.fintrack.model.market.MarketData;
 import com.fintrack.repository.finance.HoldingsMonthlyRepository;
 import com.fintrack.service.market.CachedMarketDataService;
+import com.fintrack.service.market.HistoricalCoverageIndex;
+import com.fintrack.service.market.MarketDataCompletionRegistry;
+import com.fintrack.service.market.MarketDataRequestCoalescer;
+import com.fintrack.service.market.event.MarketDataUpdateEvent;
+import com.fintrack.service.market.event.MarketDataUpdateHandler;
 import com.fintrack.util.KafkaProducerService;
 
 import java.time.LocalDate;
@@ -14,19 +18,29 @@ import java.util.*;
 /**
  * Abstract base class for asset-specific market data providers.
  * Extends AbstractMarketDataProvider and adds asset-specific functionality.
+ * Receives the market data updates of its asset type from the MarketDataUpdateDispatcher.
  */
-public abstract class AssetMarketDataProviderBase extends AbstractMarketDataProvider {
+public abstract class AssetMarketDataProviderBase extends AbstractMarketDataProvider implements MarketDataUpdateHandler {
 
     protected final CachedMarketDataService cachedMarketDataService;
     protected final HoldingsMonthlyRepository holdingsMonthlyRepository;
+    protected final MarketDataRequestCoalescer requestCoalescer;
+    protected final MarketDataCompletionRegistry completionRegistry;
+    protected final HistoricalCoverageIndex historicalCoverageIndex;
 
     protected AssetMarketDataProviderBase(
             CachedMarketDataService cachedMarketDataService,
             HoldingsMonthlyRepository holdingsMonthlyRepository,
-            KafkaProducerService kafkaProducerService) {
+            KafkaProducerService kafkaProducerService,
+            MarketDataRequestCoalescer requestCoalescer,
+            MarketDataCompletionRegistry completionRegistry,
+            HistoricalCoverageIndex historicalCoverageIndex) {
         super(kafkaProducerService);
         this.cachedMarketDataService = cachedMarketDataService;
         this.holdingsMonthlyRepository = holdingsMonthlyRepository;
+        this.requestCoalescer = requestCoalescer;
+        this.completionRegistry = completionRegistry;
+        this.historicalCoverageIndex = historicalCoverageIndex;
     }
 
     /**
@@ -36,6 +50,11 @@ public abstract class AssetMarketDataProviderBase extends AbstractMarketDataProv
      */
     public abstract AssetType getAssetType();
 
+    @Override
+    protected String getMessageKey() {
+        return getAssetType().getAssetTypeName();
+    }
+
     /**
      * Process symbols for the specific asset type.
      * Subclasses should implement this to handle asset-specific processing.
@@ -59,29 +78,23 @@ public abstract class AssetMarketDataProviderBase extends AbstractMarketDataProv
         // Send the request to update market data
         sendMarketDataUpdateRequest(accountId, assets);
         
-        // Fetch and return the market data with retry
-        return fetchMarketDataWithRetry(assets);
+        // Fetch the market data, waiting for the requested updates
+        return fetchMarketDataAwaitingUpdates(assets);
     }
 
     /**
      * Send a market data update request via Kafka.
+     * The update request is coalesced with those of other accounts; the historical request only asks for the months
+     * that are not stored or requested yet, see {@link HistoricalCoverageIndex}.
      * 
      * @param accountId The account ID requesting the update
      * @param assets List of asset maps containing symbol and asset_type
      */
     public void sendMarketDataUpdateRequest(UUID accountId, List<Map<String, String>> assets) {
         try {    
-            // Create a single update request with all assets
-            Map<String, Object> updateRequestPayload = new HashMap<>();
-            updateRequestPayload.put("assets", assets);
-            
-            // Convert the payload to a JSON string
-            ObjectMapper objectMapper = new ObjectMapper();
-            String updateRequestJson = objectMapper.writeValueAsString(updateRequestPayload);
-            
-            // Publish the JSON payload to the MARKET_DATA_UPDATE_REQUEST topic
-            kafkaProducerService.publishEvent(KafkaTopics.MARKET_DATA_UPDATE_REQUEST.getTopicName(), updateRequestJson);
-            logger.info("Sent market data update request: " + updateRequestJson);
+            // Queue the assets for the next MARKET_DATA_UPDATE_REQUEST, skipping those already requested
+            int queued = requestCoalescer.request(assets);
+            logger.info("Queued market data update request for {} of {} assets", queued, assets.size());
 
             // Fetch the start_date and end_date from HoldingsMonthlyRepository
             LocalDate startDate = holdingsMonthlyRepository.findEarliestDateByAccountId(accountId);
@@ -98,18 +111,13 @@ public abstract class AssetMarketDataProviderBase extends AbstractMarketDataProv
                 endDate = currentDate;
             }
             
-            // Create monthly update request payload
-            Map<String, Object> monthlyUpdateRequestPayload = new HashMap<>();
-            monthlyUpdateRequestPayload.put("assets", assets);
-            monthlyUpdateRequestPayload.put("start_date", startDate.toString());
-            monthlyUpdateRequestPayload.put("end_date", endDate.toString());
-            
-            // Convert the monthly payload to a JSON string
-            String monthlyUpdateRequestJson = objectMapper.writeValueAsString(monthlyUpdateRequestPayload);
-            
-            // Publish the monthly JSON payload to the HISTORICAL_MARKET_DATA_REQUEST topic
-            kafkaProducerService.publishEvent(KafkaTopics.HISTORICAL_MARKET_DATA_REQUEST.getTopicName(), monthlyUpdateRequestJson);
-            logger.info("Sent market data monthly update request: " + monthlyUpdateRequestJson);
+            Map<HistoricalCoverageIndex.Gap, List<Map<String, String>>> gaps =
+                    historicalCoverageIndex.claimGaps(getAssetType(), assets, startDate, endDate);
+            if (gaps.isEmpty()) {
+                logger.debug("Historical market data of {} assets from {} to {} is already covered", assets.size(), startDate, endDate);
+                return;
+            }
+            gaps.forEach(this::sendHistoricalMarketDataRequest);
             
         } catch (Exception e) {
             logger.error("Error sending market data update request: " + e.getMessage(), e);
@@ -117,69 +125,128 @@ public abstract class AssetMarketDataProviderBase extends AbstractMarketDataProv
     }
 
     /**
-     * Fetch market data with retry mechanism.
+     * Publish a HISTORICAL_MARKET_DATA_REQUEST for the missing range of the given assets.
+     * The claim is released if the request cannot be sent, so the next caller asks again.
+     */
+    private void sendHistoricalMarketDataRequest(HistoricalCoverageIndex.Gap gap, List<Map<String, String>> assets) {
+        String monthlyUpdateRequestJson;
+        try {
+            Map<String, Object> monthlyUpdateRequestPayload = new HashMap<>();
+            monthlyUpdateRequestPayload.put("assets", assets);
+            monthlyUpdateRequestPayload.put("start_date", gap.startDate().toString());
+            monthlyUpdateRequestPayload.put("end_date", gap.endDate().toString());
+            monthlyUpdateRequestJson = objectMapper.writeValueAsString(monthlyUpdateRequestPayload);
+        } catch (Exception e) {
+            logger.error("Error serializing historical market data request: " + e.getMessage(), e);
+            historicalCoverageIndex.release(getAssetType(), gap, assets);
+            return;
+        }
+
+        // Publish the monthly JSON payload to the HISTORICAL_MARKET_DATA_REQUEST topic
+        kafkaProducerService.publishEventAsync(KafkaTopics.HISTORICAL_MARKET_DATA_REQUEST.getTopicName(),
+                        getAssetType().getAssetTypeName(), monthlyUpdateRequestJson)
+                .whenComplete((sent, ex) -> {
+                    if (ex == null) {
+                        logger.info("Sent market data monthly update request: " + monthlyUpdateRequestJson);
+                        return;
+                    }
+                    logger.error("Error sending market data monthly update request: " + ex.getMessage());
+                    historicalCoverageIndex.release(getAssetType(), gap, assets);
+                });
+    }
+
+    /**
+     * Fetch market data, waiting for the requested updates of the assets that are not available yet.
+     * Returns what is available once the wait timeout has passed.
      * 
      * @param assets List of asset maps containing symbol and asset_type
      * @return List of MarketData objects
      */
-    protected List<MarketData> fetchMarketDataWithRetry(List<Map<String, String>> assets) {
+    protected List<MarketData> fetchMarketDataAwaitingUpdates(List<Map<String, String>> assets) {
+        Map<String, Map<String, String>> missing = new LinkedHashMap<>();
+        for (Map<String, String> asset : assets) {
+            missing.put(MarketDataCompletionRegistry.key(asset.get("asset_type"), asset.get("symbol")), asset);
+        }
         List<MarketData> result = new ArrayList<>();
-        int maxRetries = 3;
-        int retryCount = 0;
-        List<Object[]> symbolAssetTypePairs = assets.stream()
-                .map(asset -> new Object[]{asset.get("symbol"), asset.get("asset_type")})
-                .toList();
-
-        logger.info("🔄 Starting market data fetch with retry for {} assets", assets.size());
-        logger.debug("Asset pairs to fetch: {}", symbolAssetTypePairs);
-
-        while (retryCount < maxRetries) {
-            result.clear();
-            logger.info("🔄 Retry attempt {}/{}", retryCount + 1, maxRetries);
-
-            // Fetch market data for the given symbols and asset type pairs
-            List<MarketData> recentMarketData = new ArrayList<>();
-            symbolAssetTypePairs.forEach(pair -> {
-                String symbol = (String) pair[0];
-                String assetType = (String) pair[1];
-                logger.info("🔍 Fetching market data for symbol: {} assetType: {}", symbol, assetType);
-                List<MarketData> marketDataList = cachedMarketDataService.findMarketDataBySymbolAndAssetType(symbol, assetType);
-                logger.info("📊 Found {} market data entries for {}/{}", marketDataList.size(), symbol, assetType);
-                if (!marketDataList.isEmpty()) {
-                    logger.debug("Market data details: {}", marketDataList);
-                }
-                recentMarketData.addAll(marketDataList);
-            });
 
-            if (recentMarketData.isEmpty()) {
-                logger.error("No data found for symbolAssetTypePairs: " + Arrays.deepToString(symbolAssetTypePairs.toArray()));
-                break; // Exit if no data is found
+        logger.info("🔄 Starting market data fetch for {} assets", assets.size());
+
+        // Register before the first read so an update completing in between is not missed
+        try (MarketDataCompletionRegistry.Waiter waiter = completionRegistry.register(missing.keySet())) {
+            Collection<String> toRead = new ArrayList<>(missing.keySet());
+            boolean lastRead = false;
+            while (true) {
+                waiter.release(readAvailable(toRead, missing, result));
+                if (missing.isEmpty() || lastRead) {
+                    break;
+                }
+                toRead = waiter.awaitNext();
+                if (toRead.isEmpty()) {
+                    // Out of time or nothing left to wait for; an update that arrived without waking us is read here
+                    toRead = new ArrayList<>(missing.keySet());
+                    lastRead = true;
+                }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Waiting for market data updates interrupted: " + e.getMessage());
+        }
 
-            result.addAll(recentMarketData);
+        if (!missing.isEmpty()) {
+            logger.warn("Returning market data without {} of {} assets: {}", missing.size(), assets.size(), missing.keySet());
+        }
 
-            // Check if all symbolAssetTypePairs have data
-            if (result.size() == symbolAssetTypePairs.size()) {
-                break;
-            }
+        return result;
+    }
 
-            // Wait before retrying
-            try {
-                Thread.sleep(1000); // Wait for 1 second before retrying
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                logger.error("Retry interrupted: " + e.getMessage());
-                break;
+    /**
+     * Read the given assets and move the ones that have data from missing to result.
+     * 
+     * @return The keys that were found
+     */
+    private List<String> readAvailable(Collection<String> keys, Map<String, Map<String, String>> missing, List<MarketData> result) {
+        List<String> found = new ArrayList<>();
+        for (String key : keys) {
+            Map<String, String> asset = missing.get(key);
+            List<MarketData> marketDataList = cachedMarketDataService.findMarketDataBySymbolAndAssetType(
+                    asset.get("symbol"), asset.get("asset_type"));
+            logger.debug("📊 Found {} market data entries for {}", marketDataList.size(), key);
+            if (!marketDataList.isEmpty()) {
+                result.addAll(marketDataList);
+                found.add(key);
             }
-
-            retryCount++;
         }
+        found.forEach(missing::remove);
+        return found;
+    }
+
+    @Override
+    public Set<MarketDataUpdateEvent.Kind> eventKinds() {
+        return EnumSet.of(MarketDataUpdateEvent.Kind.UPDATED);
+    }
+
+    @Override
+    public Set<AssetType> assetTypes() {
+        return EnumSet.of(getAssetType());
+    }
 
-        if (result.size() < symbolAssetTypePairs.size()) {
-            logger.error("Failed to fetch data for all symbolAssetTypePairs after " + maxRetries + " retries.");
+    @Override
+    public void onMarketDataUpdate(MarketDataUpdateEvent event) {
+        for (MarketData marketData : event.marketData()) {
+            logger.debug("Processed {} update for: {}", getAssetType(), marketData.getSymbol());
         }
+    }
 
-        return result;
+    /**
+     * Handles a raw MARKET_DATA_UPDATE_COMPLETE message; the dispatcher calls {@link #onMarketDataUpdate} instead.
+     */
+    @Override
+    public void onMarketDataUpdateComplete(String message) {
+        try {
+            onMarketDataUpdate(MarketDataUpdateEvent.fromJson(objectMapper, message).forAssetTypes(assetTypes()));
+        } catch (Exception e) {
+            logger.error("Failed to process market data update complete message: {}", e.getMessage());
+        }
     }
 
     @Override
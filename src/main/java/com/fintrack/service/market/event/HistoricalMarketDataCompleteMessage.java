@@ -0,0 +1,42 @@
+package com.fintrack.service.market.event;
+
+import com.fasterxml.jackson.annotation.JsonAlias;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * The HISTORICAL_MARKET_DATA_COMPLETE message as sent by the ETL once it stored the monthly prices of a
+ * HISTORICAL_MARKET_DATA_REQUEST, bound directly from the record bytes.
+ */
+@Data
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class HistoricalMarketDataCompleteMessage {
+
+    /** The loaded assets, or null if the message has none */
+    private List<Asset> assets;
+
+    @JsonProperty("start_date")
+    @JsonAlias("startDate")
+    private String startDate;
+
+    @JsonProperty("end_date")
+    @JsonAlias("endDate")
+    private String endDate;
+
+    @Data
+    @NoArgsConstructor
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Asset {
+
+        private String symbol;
+
+        @JsonProperty("asset_type")
+        @JsonAlias("assetType")
+        private String assetType;
+    }
+}
@@ -0,0 +1,142 @@
+package com.fintrack.service.market.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fintrack.config.KafkaConfig;
+import com.fintrack.model.market.MarketDataMonthly;
+import com.fintrack.repository.market.MarketDataMonthlyRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Service;
+import org.springframework.util.ClassUtils;
+
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The single consumer of HISTORICAL_MARKET_DATA_COMPLETE on a node.
+ *
+ * Records are received in batches and bound from their bytes straight into
+ * {@link HistoricalMarketDataCompleteMessage}s. The monthly prices the ETL stored for each message are read back with
+ * one query, and the resulting {@link HistoricalMarketDataEvent} is handed to every {@link HistoricalMarketDataHandler}
+ * bean in order: coverage first, then price history, then derived state such as monthly valuations. Offsets are
+ * acknowledged once the whole batch has been handled. Each handler call is timed as
+ * {@code market.data.historical.handler}, tagged with the handler and its outcome.
+ *
+ * Like the {@link MarketDataUpdateDispatcher}, every node reads every completion in a consumer group of its own, since
+ * coverage and price history are kept in memory. Each node then also drops the monthly valuations built from the old
+ * prices; it does so after its own price history has the new ones, so a valuation it stores meanwhile is dropped too.
+ */
+@Service
+public class HistoricalMarketDataDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(HistoricalMarketDataDispatcher.class);
+
+    // Used when a message does not say which months it loaded
+    private static final LocalDate EARLIEST_DATE = LocalDate.of(1900, 1, 1);
+
+    private final ObjectReader messageReader;
+    private final MarketDataMonthlyRepository marketDataMonthlyRepository;
+    private final List<RegisteredHandler> handlers = new ArrayList<>();
+    private final Counter unreadableMessages;
+
+    public HistoricalMarketDataDispatcher(ObjectMapper objectMapper, MarketDataMonthlyRepository marketDataMonthlyRepository,
+                                          List<HistoricalMarketDataHandler> handlers, MeterRegistry meterRegistry) {
+        this.messageReader = objectMapper.readerFor(HistoricalMarketDataCompleteMessage.class);
+        this.marketDataMonthlyRepository = marketDataMonthlyRepository;
+        List<HistoricalMarketDataHandler> ordered = new ArrayList<>(handlers);
+        AnnotationAwareOrderComparator.sort(ordered);
+        for (HistoricalMarketDataHandler handler : ordered) {
+            String name = ClassUtils.getUserClass(handler).getSimpleName();
+            this.handlers.add(new RegisteredHandler(handler, name,
+                    handlerTimer(meterRegistry, name, "success"), handlerTimer(meterRegistry, name, "error")));
+        }
+        this.unreadableMessages = Counter.builder("market.data.historical.unreadable")
+                .description("HISTORICAL_MARKET_DATA_COMPLETE messages that could not be parsed")
+                .register(meterRegistry);
+        logger.info("Dispatching historical market data to {}", this.handlers.stream().map(RegisteredHandler::name).toList());
+    }
+
+    @KafkaListener(topics = "#{T(com.fintrack.constants.KafkaTopics).HISTORICAL_MARKET_DATA_COMPLETE.getTopicName()}",
+                   groupId = "${market-data.historical-events.group-id:historical-market-data-dispatcher}-${market-data.node-id:${random.uuid}}",
+                   containerFactory = KafkaConfig.MARKET_DATA_BATCH_LISTENER_FACTORY)
+    public void onHistoricalMarketDataBatch(List<byte[]> messages, Acknowledgment acknowledgment) {
+        logger.info("Received {} historical market data complete messages", messages.size());
+        for (byte[] message : messages) {
+            HistoricalMarketDataEvent event;
+            try {
+                event = read(message);
+            } catch (IOException | IllegalArgumentException | DateTimeException e) {
+                unreadableMessages.increment();
+                logger.error("Could not read historical market data complete message: {}", e.getMessage());
+                continue;
+            }
+            if (!event.assets().isEmpty()) {
+                dispatch(event.withPrices(storedPrices(event)));
+            }
+        }
+        acknowledgment.acknowledge();
+    }
+
+    /**
+     * Calls every handler, in order.
+     */
+    public void dispatch(HistoricalMarketDataEvent event) {
+        for (RegisteredHandler registered : handlers) {
+            long start = System.nanoTime();
+            try {
+                registered.handler().onHistoricalMarketData(event);
+                registered.succeeded().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            } catch (Exception e) {
+                registered.failed().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                logger.error("Historical market data handler {} failed for {} assets", registered.name(), event.assets().size(), e);
+            }
+        }
+    }
+
+    private HistoricalMarketDataEvent read(byte[] message) throws IOException {
+        if (message == null || message.length == 0) {
+            throw new IllegalArgumentException("Empty historical market data complete message");
+        }
+        return HistoricalMarketDataEvent.from(messageReader.readValue(message));
+    }
+
+    /**
+     * Reads the rows the ETL stored for the assets of the event within its range.
+     */
+    private List<MarketDataMonthly> storedPrices(HistoricalMarketDataEvent event) {
+        Set<HistoricalMarketDataEvent.Asset> assets = new HashSet<>(event.assets());
+        List<String> symbols = assets.stream().map(HistoricalMarketDataEvent.Asset::symbol).distinct().toList();
+        LocalDate startDate = event.startDate() != null ? event.startDate() : EARLIEST_DATE;
+        LocalDate endDate = event.endDate() != null ? event.endDate() : LocalDate.now();
+        try {
+            return marketDataMonthlyRepository.findBySymbolsAndDateRange(symbols, startDate, endDate).stream()
+                    .filter(row -> assets.contains(new HistoricalMarketDataEvent.Asset(row.getSymbol(), row.getAssetType())))
+                    .toList();
+        } catch (Exception e) {
+            // The handlers still learn which assets were loaded
+            logger.error("Could not read the stored historical prices of {} assets: {}", symbols.size(), e.getMessage());
+            return List.of();
+        }
+    }
+
+    private static Timer handlerTimer(MeterRegistry meterRegistry, String handler, String outcome) {
+        return Timer.builder("market.data.historical.handler")
+                .description("Time spent by each handler on a historical market data load")
+                .tag("handler", handler)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private record RegisteredHandler(HistoricalMarketDataHandler handler, String name, Timer succeeded, Timer failed) {
+    }
+}
@@ -0,0 +1,81 @@
+package com.fintrack.service.market.event;
+
+import com.fintrack.constants.finance.AssetType;
+import com.fintrack.model.market.MarketDataMonthly;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * A HISTORICAL_MARKET_DATA_COMPLETE message, parsed once for all {@link HistoricalMarketDataHandler}s.
+ *
+ * @param assets    The loaded assets; assets without a symbol or a known asset type are left out
+ * @param startDate The first date of the loaded range, or null if the message does not say
+ * @param endDate   The last date of the loaded range, or null if the message does not say
+ * @param prices    The market_data_monthly rows of the assets within the range, as stored by the ETL
+ */
+public record HistoricalMarketDataEvent(List<Asset> assets, LocalDate startDate, LocalDate endDate,
+                                        List<MarketDataMonthly> prices) {
+
+    private static final Logger logger = LoggerFactory.getLogger(HistoricalMarketDataEvent.class);
+
+    public record Asset(String symbol, AssetType assetType) {
+    }
+
+    public HistoricalMarketDataEvent {
+        assets = List.copyOf(assets);
+        prices = List.copyOf(prices);
+    }
+
+    /**
+     * @return The same event with the given stored prices
+     */
+    public HistoricalMarketDataEvent withPrices(List<MarketDataMonthly> prices) {
+        return new HistoricalMarketDataEvent(assets, startDate, endDate, prices);
+    }
+
+    /**
+     * @return The first date whose prices may have changed: the start date, else the first stored price, else null
+     */
+    public LocalDate firstChangedDate() {
+        if (startDate != null) {
+            return startDate;
+        }
+        return prices.stream().map(MarketDataMonthly::getDate).filter(Objects::nonNull).min(LocalDate::compareTo).orElse(null);
+    }
+
+    /**
+     * Builds the event of a message read from Kafka, without prices.
+     *
+     * @throws IllegalArgumentException If there is no message, e.g. for a JSON null
+     * @throws DateTimeParseException   If a date is not an ISO date
+     */
+    public static HistoricalMarketDataEvent from(HistoricalMarketDataCompleteMessage message) {
+        if (message == null) {
+            throw new IllegalArgumentException("Empty historical market data complete message");
+        }
+
+        List<Asset> assets = new ArrayList<>();
+        if (message.getAssets() != null) {
+            for (HistoricalMarketDataCompleteMessage.Asset asset : message.getAssets()) {
+                if (asset == null || asset.getSymbol() == null || asset.getAssetType() == null) {
+                    logger.warn("Skipping loaded asset without symbol or asset type: {}", asset);
+                    continue;
+                }
+                try {
+                    assets.add(new Asset(asset.getSymbol(), AssetType.valueOf(asset.getAssetType().toUpperCase())));
+                } catch (IllegalArgumentException e) {
+                    logger.warn("Skipping loaded asset of unknown asset type: {}", asset);
+                }
+            }
+        }
+        return new HistoricalMarketDataEvent(assets, date(message.getStartDate()), date(message.getEndDate()), List.of());
+    }
+
+    private static LocalDate date(String value) {
+        return value != null ? LocalDate.parse(value) : null;
+    }
+}
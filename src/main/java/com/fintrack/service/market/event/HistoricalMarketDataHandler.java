@@ -0,0 +1,21 @@
+package com.fintrack.service.market.event;
+
+/**
+ * Receives HISTORICAL_MARKET_DATA_COMPLETE messages from the {@link HistoricalMarketDataDispatcher}.
+ *
+ * Handlers are called one after another on the listener thread, in {@link org.springframework.core.annotation.Order}
+ * order; a handler that throws does not stop the others.
+ */
+public interface HistoricalMarketDataHandler {
+
+    /** The loaded months are recorded as covered, so they are not requested again */
+    int COVERAGE_ORDER = 0;
+
+    /** The stored prices are applied to in-memory price history */
+    int PRICE_HISTORY_ORDER = 100;
+
+    /** State derived from historical prices, which is recomputed from the price history */
+    int DERIVED_STATE_ORDER = 200;
+
+    void onHistoricalMarketData(HistoricalMarketDataEvent event);
+}
@@ -0,0 +1,259 @@
+package com.fintrack.service.market.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fintrack.config.KafkaConfig;
+import com.fintrack.model.market.MarketData;
+import com.fintrack.service.market.event.MarketDataUpdateHandler.Scope;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Service;
+import org.springframework.util.ClassUtils;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The single consumer of MARKET_DATA_UPDATE_COMPLETE on a node.
+ *
+ * Updates are read twice. The {@link MarketDataUpdateHandler.Scope#CLUSTER} handlers, which write Valkey, run in the
+ * consumer group shared by the cluster, so each message is handled by one node. The
+ * {@link MarketDataUpdateHandler.Scope#NODE} handlers keep state of their node, such as the near cache, the FX matrix,
+ * the fetches waiting for an update and the open portfolio streams; they run in a consumer group of the node's own,
+ * named after {@code market-data.node-id}, so every node sees every update. The two groups read at their own pace:
+ * a node applies new values to its near cache itself rather than waiting for them to reach Valkey.
+ *
+ * Records are received in batches and bound from their bytes straight into {@link MarketDataUpdateMessage}s. Each
+ * message becomes one {@link MarketDataUpdateEvent} and is handed to every {@link MarketDataUpdateHandler} bean that
+ * wants its kind and asset types; consecutive UPDATED events of a batch are merged, so the handlers write the cache once
+ * per batch rather than once per record. Offsets are acknowledged once the whole batch has been handled.
+ * Each handler call is timed as {@code market.data.update.handler}, tagged with the handler and its outcome.
+ *
+ * Kafka keeps the records of a key in order within its partition, and each partition is read by one consumer, so
+ * updates of a symbol arrive in order as long as the ETL keys them by symbol. Redelivered batches, replays and
+ * unkeyed records can still bring an older update after a newer one; an asset update whose updated_at is before the
+ * last one applied for that asset is dropped and counted as {@code market.data.update.stale}.
+ */
+@Service
+public class MarketDataUpdateDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(MarketDataUpdateDispatcher.class);
+
+    private final ObjectReader messageReader;
+    private final Map<Scope, List<RegisteredHandler>> handlers = new EnumMap<>(Scope.class);
+    private final Counter unreadableMessages;
+    private final Counter staleUpdates;
+    /** The updated_at of the last update applied per asset, keyed as ASSET_TYPE:SYMBOL, for each consumer group */
+    private final Map<Scope, Map<String, LocalDateTime>> lastAppliedUpdates = new EnumMap<>(Scope.class);
+
+    public MarketDataUpdateDispatcher(ObjectMapper objectMapper, List<MarketDataUpdateHandler> handlers,
+                                      MeterRegistry meterRegistry) {
+        this.messageReader = objectMapper.readerFor(MarketDataUpdateMessage.class);
+        List<MarketDataUpdateHandler> ordered = new ArrayList<>(handlers);
+        AnnotationAwareOrderComparator.sort(ordered);
+        for (Scope scope : Scope.values()) {
+            this.handlers.put(scope, new ArrayList<>());
+            this.lastAppliedUpdates.put(scope, new ConcurrentHashMap<>());
+        }
+        for (MarketDataUpdateHandler handler : ordered) {
+            String name = ClassUtils.getUserClass(handler).getSimpleName();
+            this.handlers.get(handler.scope()).add(new RegisteredHandler(handler, name,
+                    handlerTimer(meterRegistry, name, "success"), handlerTimer(meterRegistry, name, "error")));
+        }
+        this.unreadableMessages = Counter.builder("market.data.update.unreadable")
+                .description("MARKET_DATA_UPDATE_COMPLETE messages that could not be parsed")
+                .register(meterRegistry);
+        this.staleUpdates = Counter.builder("market.data.update.stale")
+                .description("Asset updates dropped because a newer update of the asset was already applied")
+                .register(meterRegistry);
+        this.handlers.forEach((scope, registered) -> logger.info("Dispatching market data updates to {} handlers {}",
+                scope, registered.stream().map(RegisteredHandler::name).toList()));
+    }
+
+    /**
+     * Reads the updates handled once per cluster.
+     */
+    @KafkaListener(topics = "#{T(com.fintrack.constants.KafkaTopics).MARKET_DATA_UPDATE_COMPLETE.getTopicName()}",
+                   groupId = "${market-data.update-events.group-id:market-data-update-dispatcher}",
+                   containerFactory = KafkaConfig.MARKET_DATA_BATCH_LISTENER_FACTORY)
+    public void onSharedMarketDataUpdateBatch(List<byte[]> messages, Acknowledgment acknowledgment) {
+        receive(Scope.CLUSTER, messages, acknowledgment);
+    }
+
+    /**
+     * Reads the updates handled by every node.
+     */
+    @KafkaListener(topics = "#{T(com.fintrack.constants.KafkaTopics).MARKET_DATA_UPDATE_COMPLETE.getTopicName()}",
+                   groupId = "${market-data.update-events.group-id:market-data-update-dispatcher}-${market-data.node-id:${random.uuid}}",
+                   containerFactory = KafkaConfig.MARKET_DATA_BATCH_LISTENER_FACTORY)
+    public void onMarketDataUpdateBatch(List<byte[]> messages, Acknowledgment acknowledgment) {
+        receive(Scope.NODE, messages, acknowledgment);
+    }
+
+    private void receive(Scope scope, List<byte[]> messages, Acknowledgment acknowledgment) {
+        List<MarketDataUpdateEvent> events = new ArrayList<>(messages.size());
+        for (byte[] message : messages) {
+            try {
+                events.add(read(message));
+            } catch (IOException | IllegalArgumentException e) {
+                unreadableMessages.increment();
+                logger.error("Could not read market data update complete message: {}", e.getMessage());
+            }
+        }
+
+        List<MarketDataUpdateEvent> merged = mergeUpdates(events);
+        logger.info("Received {} market data update complete messages, dispatching {} events to {} handlers",
+                messages.size(), merged.size(), scope);
+        for (MarketDataUpdateEvent event : merged) {
+            MarketDataUpdateEvent current = withoutStaleUpdates(scope, event);
+            if (current != null) {
+                dispatch(scope, current);
+            }
+        }
+        acknowledgment.acknowledge();
+    }
+
+    /**
+     * Calls every handler that wants the event, in order, whatever its scope.
+     */
+    public void dispatch(MarketDataUpdateEvent event) {
+        for (Scope scope : Scope.values()) {
+            dispatch(scope, event);
+        }
+    }
+
+    private void dispatch(Scope scope, MarketDataUpdateEvent event) {
+        for (RegisteredHandler registered : handlers.get(scope)) {
+            MarketDataUpdateHandler handler = registered.handler();
+            if (!handler.eventKinds().contains(event.kind())) {
+                continue;
+            }
+            MarketDataUpdateEvent handlerEvent = event;
+            if (!handler.assetTypes().isEmpty()) {
+                handlerEvent = event.forAssetTypes(handler.assetTypes());
+                if (event.kind() == MarketDataUpdateEvent.Kind.UPDATED && handlerEvent.marketData().isEmpty()) {
+                    continue;
+                }
+            }
+
+            long start = System.nanoTime();
+            try {
+                handler.onMarketDataUpdate(handlerEvent);
+                registered.succeeded().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            } catch (Exception e) {
+                registered.failed().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                logger.error("Market data update handler {} failed on {} event", registered.name(), event.kind(), e);
+            }
+        }
+    }
+
+    /**
+     * Drops the asset updates of an UPDATED event that are older than the last update applied for their asset.
+     * Updates without an updated_at are always applied.
+     *
+     * @return The event with only the current updates, or null if none is left
+     */
+    private MarketDataUpdateEvent withoutStaleUpdates(Scope scope, MarketDataUpdateEvent event) {
+        if (event.kind() != MarketDataUpdateEvent.Kind.UPDATED) {
+            return event;
+        }
+        List<MarketData> current = new ArrayList<>(event.marketData().size());
+        for (MarketData marketData : event.marketData()) {
+            LocalDateTime updatedAt = marketData.getUpdatedAt();
+            if (updatedAt == null) {
+                current.add(marketData);
+                continue;
+            }
+            LocalDateTime applied = lastAppliedUpdates.get(scope).merge(assetKey(marketData), updatedAt,
+                    (previous, next) -> next.isBefore(previous) ? previous : next);
+            if (applied.equals(updatedAt)) {
+                current.add(marketData);
+            } else {
+                staleUpdates.increment();
+                logger.debug("Dropping {} update of {} from {}, already applied the one from {}",
+                        marketData.getAssetType(), marketData.getSymbol(), updatedAt, applied);
+            }
+        }
+        if (current.size() == event.marketData().size()) {
+            return event;
+        }
+        return current.isEmpty() ? null : new MarketDataUpdateEvent(event.kind(), current, event.metadata());
+    }
+
+    private MarketDataUpdateEvent read(byte[] message) throws IOException {
+        if (message == null || message.length == 0) {
+            throw new IllegalArgumentException("Empty market data update message");
+        }
+        return MarketDataUpdateEvent.from(messageReader.readValue(message));
+    }
+
+    /**
+     * Merges each run of UPDATED events into one; for an asset updated more than once, the latest value wins, or the
+     * last one received when they have no updated_at.
+     * FULL_REFRESH and FAILED events are kept as they are and in place.
+     */
+    static List<MarketDataUpdateEvent> mergeUpdates(List<MarketDataUpdateEvent> events) {
+        List<MarketDataUpdateEvent> merged = new ArrayList<>();
+        Map<String, MarketData> run = new LinkedHashMap<>();
+        MarketDataUpdateEvent last = null;
+        int runLength = 0;
+        for (MarketDataUpdateEvent event : events) {
+            if (event.kind() != MarketDataUpdateEvent.Kind.UPDATED) {
+                flushRun(merged, run, last, runLength);
+                runLength = 0;
+                merged.add(event);
+                continue;
+            }
+            for (MarketData marketData : event.marketData()) {
+                run.merge(assetKey(marketData), marketData, (previous, next) -> isOlder(next, previous) ? previous : next);
+            }
+            last = event;
+            runLength++;
+        }
+        flushRun(merged, run, last, runLength);
+        return merged;
+    }
+
+    private static void flushRun(List<MarketDataUpdateEvent> merged, Map<String, MarketData> run,
+                                 MarketDataUpdateEvent last, int runLength) {
+        if (runLength == 1) {
+            merged.add(last);
+        } else if (runLength > 1) {
+            merged.add(new MarketDataUpdateEvent(MarketDataUpdateEvent.Kind.UPDATED, new ArrayList<>(run.values()), last.metadata()));
+        }
+        run.clear();
+    }
+
+    private static String assetKey(MarketData marketData) {
+        return marketData.getAssetType() + ":" + marketData.getSymbol();
+    }
+
+    private static boolean isOlder(MarketData marketData, MarketData other) {
+        return marketData.getUpdatedAt() != null && other.getUpdatedAt() != null
+                && marketData.getUpdatedAt().isBefore(other.getUpdatedAt());
+    }
+
+    private static Timer handlerTimer(MeterRegistry meterRegistry, String handler, String outcome) {
+        return Timer.builder("market.data.update.handler")
+                .description("Time spent by each handler on a market data update")
+                .tag("handler", handler)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private record RegisteredHandler(MarketDataUpdateHandler handler, String name, Timer succeeded, Timer failed) {
+    }
+}
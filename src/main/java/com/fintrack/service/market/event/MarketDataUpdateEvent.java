@@ -0,0 +1,133 @@
+package com.fintrack.service.market.event;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fintrack.constants.finance.AssetType;
+import com.fintrack.model.market.MarketData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * A MARKET_DATA_UPDATE_COMPLETE message, parsed once for all {@link MarketDataUpdateHandler}s.
+ *
+ * @param kind       What the ETL reported
+ * @param marketData The updated assets; assets without a symbol or a known asset type are left out
+ * @param metadata   The other fields of the message, e.g. totalBatches, processingTimeMs or the error details
+ */
+public record MarketDataUpdateEvent(Kind kind, List<MarketData> marketData, Map<String, Object> metadata) {
+
+    private static final Logger logger = LoggerFactory.getLogger(MarketDataUpdateEvent.class);
+
+    public enum Kind {
+        /** Prices of the listed assets were updated */
+        UPDATED,
+        /** All market data was refreshed; the listed assets, if any, are part of it */
+        FULL_REFRESH,
+        /** The ETL batch failed; see the metadata */
+        FAILED
+    }
+
+    public MarketDataUpdateEvent {
+        marketData = List.copyOf(marketData);
+        metadata = Collections.unmodifiableMap(new LinkedHashMap<>(metadata));
+    }
+
+    public String error() {
+        Object error = metadata.get("error");
+        return error != null ? error.toString() : null;
+    }
+
+    /**
+     * @return The same event with only the market data of the given asset types
+     */
+    public MarketDataUpdateEvent forAssetTypes(Set<AssetType> assetTypes) {
+        List<MarketData> filtered = marketData.stream()
+                .filter(data -> assetTypes.contains(data.getAssetType()))
+                .toList();
+        return filtered.size() == marketData.size() ? this : new MarketDataUpdateEvent(kind, filtered, metadata);
+    }
+
+    /**
+     * Parses a completion message. Asset fields are accepted in snake_case (asset_type, updated_at) and camelCase.
+     *
+     * @throws JsonProcessingException  If the message is not a JSON object
+     * @throws IllegalArgumentException If the message is empty
+     */
+    public static MarketDataUpdateEvent fromJson(ObjectMapper objectMapper, String message) throws JsonProcessingException {
+        if (message == null || message.isBlank()) {
+            throw new IllegalArgumentException("Empty market data update message");
+        }
+        return from(objectMapper.readValue(message, MarketDataUpdateMessage.class));
+    }
+
+    /**
+     * Builds the event of a message read from Kafka.
+     *
+     * @throws IllegalArgumentException If there is no message, e.g. for a JSON null
+     */
+    public static MarketDataUpdateEvent from(MarketDataUpdateMessage message) {
+        if (message == null) {
+            throw new IllegalArgumentException("Empty market data update message");
+        }
+
+        List<MarketData> marketData = new ArrayList<>();
+        if (message.getAssets() != null) {
+            for (MarketDataUpdateMessage.Asset asset : message.getAssets()) {
+                MarketData converted = asset != null ? toMarketData(asset) : null;
+                if (converted != null) {
+                    marketData.add(converted);
+                }
+            }
+        }
+
+        Kind kind;
+        if (message.isFullRefresh()) {
+            kind = Kind.FULL_REFRESH;
+        } else if (message.getAssets() == null && message.getMetadata().containsKey("error")) {
+            kind = Kind.FAILED;
+        } else {
+            kind = Kind.UPDATED;
+        }
+        return new MarketDataUpdateEvent(kind, marketData, message.getMetadata());
+    }
+
+    private static MarketData toMarketData(MarketDataUpdateMessage.Asset asset) {
+        if (asset.getSymbol() == null || asset.getAssetType() == null) {
+            logger.warn("Skipping updated asset without symbol or asset type: {}", asset);
+            return null;
+        }
+
+        MarketData marketData = new MarketData();
+        try {
+            marketData.setSymbol(asset.getSymbol());
+            marketData.setAssetType(AssetType.valueOf(asset.getAssetType().toUpperCase()));
+            marketData.setPrice(asset.getPrice());
+            marketData.setPercentChange(asset.getPercentChange());
+            marketData.setChange(asset.getChange());
+            marketData.setHigh(asset.getHigh());
+            marketData.setLow(asset.getLow());
+            marketData.setUpdatedAt(dateTime(asset.getUpdatedAt()));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            logger.warn("Skipping updated asset that could not be read: {}", asset, e);
+            return null;
+        }
+        return marketData;
+    }
+
+    private static LocalDateTime dateTime(String value) {
+        if (value == null) {
+            return null;
+        }
+        String text = value.replace(' ', 'T');
+        try {
+            return LocalDateTime.parse(text);
+        } catch (DateTimeParseException e) {
+            return OffsetDateTime.parse(text).toLocalDateTime();
+        }
+    }
+}
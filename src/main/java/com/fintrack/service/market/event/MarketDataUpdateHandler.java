@@ -0,0 +1,53 @@
+package com.fintrack.service.market.event;
+
+import com.fintrack.constants.finance.AssetType;
+
+import java.util.Set;
+
+/**
+ * Receives MARKET_DATA_UPDATE_COMPLETE messages from the {@link MarketDataUpdateDispatcher}.
+ *
+ * Handlers are called one after another on the listener thread, in {@link org.springframework.core.annotation.Order}
+ * order; a handler that throws does not stop the others. A {@link Scope#NODE} handler is called on every node, a
+ * {@link Scope#CLUSTER} handler on one node of the cluster for each message.
+ */
+public interface MarketDataUpdateHandler {
+
+    /** Cache entries of updated assets are dropped before anything else runs */
+    int CACHE_INVALIDATION_ORDER = 0;
+
+    /** The new values are written to the cache and pushed to clients */
+    int CACHE_UPDATE_ORDER = 100;
+
+    /** State derived from prices, which may read them back from the cache */
+    int DERIVED_STATE_ORDER = 200;
+
+    enum Scope {
+        /** Writes state shared by the cluster, such as Valkey, which must change once per message */
+        CLUSTER,
+        /** Keeps state of its own node, such as the near cache, waiters and open streams */
+        NODE
+    }
+
+    /**
+     * @return The event kinds this handler is called for
+     */
+    Set<MarketDataUpdateEvent.Kind> eventKinds();
+
+    /**
+     * @return The asset types this handler is interested in, or an empty set for all. The handler only sees market
+     *         data of these types, and is not called for an UPDATED event without any.
+     */
+    default Set<AssetType> assetTypes() {
+        return Set.of();
+    }
+
+    /**
+     * @return Whether this handler is called once per cluster or on every node
+     */
+    default Scope scope() {
+        return Scope.NODE;
+    }
+
+    void onMarketDataUpdate(MarketDataUpdateEvent event);
+}
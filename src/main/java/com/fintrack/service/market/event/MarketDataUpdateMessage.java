@@ -0,0 +1,65 @@
+package com.fintrack.service.market.event;
+
+import com.fasterxml.jackson.annotation.JsonAlias;
+import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The MARKET_DATA_UPDATE_COMPLETE message as sent by the ETL, bound directly from the record bytes.
+ * Fields other than full_refresh and assets are kept in the metadata.
+ */
+@Data
+@NoArgsConstructor
+public class MarketDataUpdateMessage {
+
+    @JsonProperty("full_refresh")
+    private boolean fullRefresh;
+
+    /** The updated assets, or null if the message has none */
+    private List<Asset> assets;
+
+    private final Map<String, Object> metadata = new LinkedHashMap<>();
+
+    @JsonAnySetter
+    public void putMetadata(String name, Object value) {
+        metadata.put(name, value);
+    }
+
+    /**
+     * An updated asset. Field names are accepted in snake_case and camelCase; the asset type and timestamp are kept
+     * as sent and checked when the event is built, so one bad asset does not make the whole message unreadable.
+     */
+    @Data
+    @NoArgsConstructor
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Asset {
+
+        private String symbol;
+
+        @JsonProperty("asset_type")
+        @JsonAlias("assetType")
+        private String assetType;
+
+        private BigDecimal price;
+
+        @JsonProperty("percent_change")
+        @JsonAlias("percentChange")
+        private BigDecimal percentChange;
+
+        private BigDecimal change;
+        private BigDecimal high;
+        private BigDecimal low;
+
+        @JsonProperty("updated_at")
+        @JsonAlias("updatedAt")
+        private String updatedAt;
+    }
+}
@@ -15,12 +15,15 @@ public interface KafkaMarketDataProvider extends MarketDataProvider {
      * 
      * @param topic The Kafka topic to send the message to
      * @param payload The payload to send
+     * @throws java.util.concurrent.RejectedExecutionException If the Kafka publish queue is full and the topic is not
+     *         best-effort
      */
     void sendKafkaMessage(String topic, String payload);
     
     /**
      * Handles market data update completion messages from Kafka.
-     * This method will typically be annotated with @KafkaListener in implementations.
+     * The topic is consumed by MarketDataUpdateDispatcher, which hands typed events to the registered handlers;
+     * this method takes a raw message, e.g. for replays.
      * 
      * @param message The received Kafka message
      */
@@ -1,7 +1,19 @@
 package com.fintrack.util;
 
+import com.fintrack.constants.KafkaTopics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.kafka.support.converter.StringJsonMessageConverter;
 import org.springframework.stereotype.Service;
 import org.springframework.context.annotation.Primary;
 
@@ -9,67 +21,129 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
-import java.util.concurrent.atomic.AtomicInteger;
-
 public interface KafkaProducerService {
+    /**
+     * Queues a message and returns without waiting for the broker. Delivery failures are logged.
+     *
+     * Callers on request threads must catch the rejection, or use {@link #publishEventAsync(String, String)} and
+     * handle the returned future instead.
+     *
+     * @throws RejectedExecutionException If the publish queue stays full and the topic is not best-effort
+     */
     void publishEvent(String topic, String message);
+
+    /**
+     * Like {@link #publishEvent(String, String)}, with a record key. Messages with the same key go to the same
+     * partition and are consumed in the order they were published; use the symbol or the asset type.
+     *
+     * @throws RejectedExecutionException If the publish queue stays full and the topic is not best-effort
+     */
+    void publishEvent(String topic, String key, String message);
+
+    /**
+     * Like {@link #publishEvent(String, String)}, with the given number of send attempts.
+     *
+     * @throws RejectedExecutionException If the publish queue stays full and the topic is not best-effort
+     */
     void publishEventWithRetry(String topic, String message, int maxRetries, long retryIntervalMillis);
+
+    /**
+     * Queues a message without blocking the caller.
+     *
+     * @return Completes when the broker acknowledged the message, or exceptionally when it was dropped, rejected or
+     *         could not be sent
+     */
+    CompletableFuture<Void> publishEventAsync(String topic, String message);
+
+    /**
+     * Like {@link #publishEventAsync(String, String)}, with a record key; see {@link #publishEvent(String, String, String)}.
+     */
+    CompletableFuture<Void> publishEventAsync(String topic, String key, String message);
+
     void publishEventsAtomically(List<Map.Entry<String, String>> events);
 }
 
+/**
+ * Publishes through a bounded in-memory queue drained by one sender thread, so a slow or unreachable broker never
+ * holds a request thread.
+ *
+ * When the queue is full, messages to best-effort topics (see {@link KafkaTopics#isBestEffort()}) are dropped right
+ * away; other callers wait up to {@code kafka.publish.offer-timeout-ms} for room and are rejected after that.
+ * Failed sends are retried after a delay without blocking. Each topic can override the producer batching and
+ * compression settings with {@code kafka.publish.topics.<TOPIC>.linger-ms}, {@code .batch-size} and
+ * {@code .compression-type}, and choose its queue policy with {@code .drop-when-full}.
+ */
 @Service
 @Primary
 @ConditionalOnProperty(name = "spring.kafka.bootstrap-servers")
 class KafkaProducerServiceImpl implements KafkaProducerService {
     private static final Logger logger = LoggerFactory.getLogger(KafkaProducerServiceImpl.class);
+
     private final KafkaTemplate<String, String> kafkaTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Environment environment;
+
+    private final Map<String, TopicSettings> topicSettings = new ConcurrentHashMap<>();
+    private final Map<Map<String, Object>, KafkaTemplate<String, String>> templatesByOverrides = new ConcurrentHashMap<>();
+
+    @Value("${kafka.publish.queue-capacity:1000}")
+    private int queueCapacity = 1000;
+
+    @Value("${kafka.publish.offer-timeout-ms:100}")
+    private long offerTimeoutMillis = 100;
+
+    @Value("${kafka.publish.max-retries:3}")
+    private int maxRetries = 3;
+
+    @Value("${kafka.publish.retry-interval-ms:500}")
+    private long retryIntervalMillis = 500;
+
+    private volatile BlockingQueue<PendingPublish> queue;
+    private volatile ExecutorService sender;
 
-    public KafkaProducerServiceImpl(KafkaTemplate<String, String> kafkaTemplate) {
+    public KafkaProducerServiceImpl(KafkaTemplate<String, String> kafkaTemplate, MeterRegistry meterRegistry,
+                                    Environment environment) {
         this.kafkaTemplate = kafkaTemplate;
+        this.meterRegistry = meterRegistry;
+        this.environment = environment;
+        Gauge.builder("kafka.publish.queue.depth", this, KafkaProducerServiceImpl::queueDepth)
+                .description("Messages waiting to be handed to the Kafka producer")
+                .register(meterRegistry);
         logger.info("Using KafkaProducerServiceImpl - Kafka is configured with bootstrap servers: {}", kafkaTemplate.getDefaultTopic());
     }
 
     @Override
     public void publishEvent(String topic, String message) {
-        publishEventWithRetry(topic, message, 3, 500);
+        publishEvent(topic, null, message);
+    }
+
+    @Override
+    public void publishEvent(String topic, String key, String message) {
+        rejectIfNotQueued(topic, publish(topic, key, message, maxRetries, retryIntervalMillis));
     }
 
     @Override
     public void publishEventWithRetry(String topic, String message, int maxRetries, long retryIntervalMillis) {
-        AtomicInteger attempt = new AtomicInteger(0);
-        boolean success = false;
-    
-        while (attempt.get() < maxRetries && !success) {
-            try {
-                attempt.incrementAndGet();
-                CompletableFuture<Void> future = kafkaTemplate.send(topic, message)
-                        .thenAccept(result -> {
-                            logger.info("Message sent successfully to topic: " + topic + ", partition: " + result.getRecordMetadata().partition() + ", offset: " + result.getRecordMetadata().offset());
-                        })
-                        .exceptionally(ex -> {
-                            logger.error("Failed to send message to topic: " + topic + ", error: " + ex.getMessage());
-                            return null;
-                        });
-    
-                future.get(10, TimeUnit.SECONDS);
-                success = true;
-            } catch (Exception e) {
-                logger.error("Attempt {}: Exception occurred while sending message to topic: {}, error: {}", attempt.get(), topic, e.getMessage());
-                if (attempt.get() < maxRetries) {
-                    try {
-                        Thread.sleep(retryIntervalMillis);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        throw new RuntimeException("Retry interrupted", ie);
-                    }
-                } else {
-                    throw new RuntimeException("Failed to send message after " + maxRetries + " attempts", e);
-                }
-            }
-        }
+        rejectIfNotQueued(topic, publish(topic, null, message, maxRetries, retryIntervalMillis));
+    }
+
+    @Override
+    public CompletableFuture<Void> publishEventAsync(String topic, String message) {
+        return publishEventAsync(topic, null, message);
+    }
+
+    @Override
+    public CompletableFuture<Void> publishEventAsync(String topic, String key, String message) {
+        return publish(topic, key, message, maxRetries, retryIntervalMillis);
     }
 
     @Override
@@ -83,6 +157,225 @@ class KafkaProducerServiceImpl implements KafkaProducerService {
             return null;
         });
     }
+
+    private void rejectIfNotQueued(String topic, CompletableFuture<Void> future) {
+        if (future.isCompletedExceptionally() && !settings(topic).dropWhenFull()) {
+            throw new RejectedExecutionException("Kafka publish queue is full, message to topic " + topic + " was not sent");
+        }
+    }
+
+    private CompletableFuture<Void> publish(String topic, String key, String message, int maxRetries, long retryIntervalMillis) {
+        PendingPublish publish = new PendingPublish(topic, key, message, maxRetries, retryIntervalMillis);
+        boolean queued;
+        if (settings(topic).dropWhenFull()) {
+            queued = queue().offer(publish);
+        } else {
+            try {
+                queued = queue().offer(publish, offerTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queued = false;
+            }
+        }
+
+        if (!queued) {
+            settings(topic).dropped().increment();
+            logger.warn("Kafka publish queue is full, dropping message to topic: {}", topic);
+            publish.future.completeExceptionally(
+                    new RejectedExecutionException("Kafka publish queue is full, message to topic " + topic + " was dropped"));
+            return publish.future;
+        }
+
+        sender();
+        return publish.future;
+    }
+
+    /**
+     * Hands queued messages to the producer, one at a time; send() itself may block while the broker is unreachable.
+     */
+    private void drain() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                send(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void send(PendingPublish publish) {
+        publish.attempts++;
+        CompletableFuture<SendResult<String, String>> sent;
+        try {
+            sent = template(publish.topic).send(publish.topic, publish.key, publish.message);
+        } catch (Exception e) {
+            sent = CompletableFuture.failedFuture(e);
+        }
+
+        sent.whenComplete((result, ex) -> {
+            if (ex == null) {
+                recordLatency(publish, "success");
+                logger.debug("Message sent successfully to topic: {}, partition: {}, offset: {}", publish.topic,
+                        result.getRecordMetadata().partition(), result.getRecordMetadata().offset());
+                publish.future.complete(null);
+            } else if (publish.attempts < publish.maxRetries) {
+                logger.warn("Attempt {}: failed to send message to topic: {}, error: {}", publish.attempts, publish.topic, ex.getMessage());
+                CompletableFuture.runAsync(() -> retry(publish),
+                        CompletableFuture.delayedExecutor(publish.retryIntervalMillis, TimeUnit.MILLISECONDS));
+            } else {
+                recordLatency(publish, "failure");
+                logger.error("Failed to send message to topic: {} after {} attempts, error: {}", publish.topic, publish.attempts, ex.getMessage());
+                publish.future.completeExceptionally(ex);
+            }
+        });
+    }
+
+    private void retry(PendingPublish publish) {
+        if (!queue.offer(publish)) {
+            recordLatency(publish, "failure");
+            logger.error("Kafka publish queue is full, giving up on message to topic: {}", publish.topic);
+            publish.future.completeExceptionally(
+                    new RejectedExecutionException("Kafka publish queue is full, message to topic " + publish.topic + " was dropped"));
+        }
+    }
+
+    private void recordLatency(PendingPublish publish, String outcome) {
+        TopicSettings settings = settings(publish.topic);
+        Timer timer = "success".equals(outcome) ? settings.succeeded() : settings.failed();
+        timer.record(System.nanoTime() - publish.queuedAtNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private TopicSettings settings(String topic) {
+        return topicSettings.computeIfAbsent(topic, name -> {
+            String prefix = "kafka.publish.topics." + name + ".";
+            boolean bestEffort = KafkaTopics.fromTopicName(name).map(KafkaTopics::isBestEffort).orElse(false);
+            Map<String, Object> overrides = new HashMap<>();
+            Integer lingerMs = environment.getProperty(prefix + "linger-ms", Integer.class);
+            if (lingerMs != null) {
+                overrides.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+            }
+            Integer batchSize = environment.getProperty(prefix + "batch-size", Integer.class);
+            if (batchSize != null) {
+                overrides.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+            }
+            String compressionType = environment.getProperty(prefix + "compression-type");
+            if (compressionType != null) {
+                overrides.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+            }
+            return new TopicSettings(environment.getProperty(prefix + "drop-when-full", Boolean.class, bestEffort), overrides,
+                    Counter.builder("kafka.publish.dropped")
+                            .description("Messages not queued because the publish queue was full")
+                            .tag("topic", name)
+                            .register(meterRegistry),
+                    latencyTimer(name, "success"), latencyTimer(name, "failure"));
+        });
+    }
+
+    private Timer latencyTimer(String topic, String outcome) {
+        return Timer.builder("kafka.publish.latency")
+                .description("Time from queueing a message until the broker acknowledged it or sending gave up")
+                .tag("topic", topic)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return The default template, or one with its own producer for topics that override producer settings;
+     *         topics with the same overrides share a producer
+     */
+    private KafkaTemplate<String, String> template(String topic) {
+        Map<String, Object> overrides = settings(topic).producerOverrides();
+        if (overrides.isEmpty()) {
+            return kafkaTemplate;
+        }
+        return templatesByOverrides.computeIfAbsent(overrides, config -> {
+            logger.info("Creating Kafka producer with {} for topic {}", config, topic);
+            ProducerFactory<String, String> producerFactory = kafkaTemplate.getProducerFactory().copyWithConfigurationOverride(config);
+            KafkaTemplate<String, String> template = new KafkaTemplate<>(producerFactory);
+            template.setMessageConverter(new StringJsonMessageConverter());
+            return template;
+        });
+    }
+
+    private BlockingQueue<PendingPublish> queue() {
+        BlockingQueue<PendingPublish> current = queue;
+        if (current == null) {
+            synchronized (this) {
+                current = queue;
+                if (current == null) {
+                    current = new ArrayBlockingQueue<>(queueCapacity);
+                    queue = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private ExecutorService sender() {
+        ExecutorService current = sender;
+        if (current == null) {
+            synchronized (this) {
+                current = sender;
+                if (current == null) {
+                    current = Executors.newSingleThreadExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, "kafka-publish-sender");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    current.execute(this::drain);
+                    sender = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private int queueDepth() {
+        BlockingQueue<PendingPublish> current = queue;
+        return current != null ? current.size() : 0;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ExecutorService current = sender;
+        if (current != null) {
+            current.shutdownNow();
+        }
+        // Hand what is still queued to the producers, which flush it when they are closed
+        BlockingQueue<PendingPublish> remaining = queue;
+        if (remaining != null) {
+            List<PendingPublish> unsent = new ArrayList<>();
+            remaining.drainTo(unsent);
+            unsent.forEach(this::send);
+        }
+        templatesByOverrides.values().forEach(template -> template.getProducerFactory().reset());
+    }
+
+    /**
+     * The settings of a topic, with its meters registered once instead of on every send
+     */
+    private record TopicSettings(boolean dropWhenFull, Map<String, Object> producerOverrides,
+                                 Counter dropped, Timer succeeded, Timer failed) {
+    }
+
+    private static final class PendingPublish {
+        private final String topic;
+        private final String key;
+        private final String message;
+        private final int maxRetries;
+        private final long retryIntervalMillis;
+        private final long queuedAtNanos = System.nanoTime();
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private int attempts;
+
+        private PendingPublish(String topic, String key, String message, int maxRetries, long retryIntervalMillis) {
+            this.topic = topic;
+            this.key = key;
+            this.message = message;
+            this.maxRetries = maxRetries;
+            this.retryIntervalMillis = retryIntervalMillis;
+        }
+    }
 }
 
 @Service
@@ -99,13 +392,30 @@ class NoOpKafkaProducerService implements KafkaProducerService {
         logger.debug("Kafka not configured - message not sent to topic: {}", topic);
     }
 
+    @Override
+    public void publishEvent(String topic, String key, String message) {
+        logger.debug("Kafka not configured - message not sent to topic: {}", topic);
+    }
+
     @Override
     public void publishEventWithRetry(String topic, String message, int maxRetries, long retryIntervalMillis) {
         logger.debug("Kafka not configured - message not sent to topic: {}", topic);
     }
 
+    @Override
+    public CompletableFuture<Void> publishEventAsync(String topic, String message) {
+        logger.debug("Kafka not configured - message not sent to topic: {}", topic);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> publishEventAsync(String topic, String key, String message) {
+        logger.debug("Kafka not configured - message not sent to topic: {}", topic);
+        return CompletableFuture.completedFuture(null);
+    }
+
     @Override
     public void publishEventsAtomically(List<Map.Entry<String, String>> events) {
         logger.debug("Kafka not configured - messages not sent");
     }
-}
\ No newline at end of file
+}
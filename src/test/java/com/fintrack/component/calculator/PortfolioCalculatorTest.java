@@ -0,0 +1,124 @@
+package com.fintrack.component.calculator;
+
+import com.fintrack.constants.finance.AssetType;
+import com.fintrack.dto.market.MarketDataDto;
+import com.fintrack.model.finance.Holdings;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("PortfolioCalculator Tests")
+class PortfolioCalculatorTest {
+
+    private static final UUID ACCOUNT_ID = UUID.randomUUID();
+
+    @Test
+    @DisplayName("Should match BigDecimal arithmetic exactly, including scale")
+    void shouldMatchBigDecimalArithmeticExactly() {
+        // Given
+        List<Holdings> holdings = List.of(
+            createHolding("Apple", "AAPL", AssetType.STOCK, 12.5),
+            createHolding("Bitcoin", "BTC", AssetType.CRYPTO, 0.00012345),
+            createHolding("Gold", "GC=F", AssetType.COMMODITY, 1.0E10),
+            createHolding("Cash", "EUR", AssetType.FOREX, 1234.56)
+        );
+        Map<String, MarketDataDto> marketDataMap = new HashMap<>();
+        put(marketDataMap, "AAPL", AssetType.STOCK, new BigDecimal("189.8400"));
+        put(marketDataMap, "BTC", AssetType.CRYPTO, new BigDecimal("67123.4567"));
+        put(marketDataMap, "GC=F", AssetType.COMMODITY, new BigDecimal("2345.10"));
+        put(marketDataMap, "EUR/GBP", AssetType.FOREX, new BigDecimal("0.8543"));
+        put(marketDataMap, "USD/GBP", AssetType.FOREX, new BigDecimal("0.7900"));
+
+        // When
+        PortfolioCalculator calculator = new PortfolioCalculator(ACCOUNT_ID, holdings, marketDataMap, "GBP");
+
+        // Then
+        BigDecimal usdToGbp = new BigDecimal("0.7900");
+        assertExact(calculator, "Apple", new BigDecimal("189.8400").multiply(usdToGbp), 12.5);
+        assertExact(calculator, "Bitcoin", new BigDecimal("67123.4567").multiply(usdToGbp), 0.00012345);
+        assertExact(calculator, "Gold", new BigDecimal("2345.10").multiply(usdToGbp), 1.0E10);
+        assertExact(calculator, "Cash", new BigDecimal("0.8543"), 1234.56);
+    }
+
+    @Test
+    @DisplayName("Should fall back to BigDecimal when the fixed-point product overflows")
+    void shouldFallBackWhenFixedPointOverflows() {
+        // Given
+        BigDecimal price = new BigDecimal("123456789012.123456");
+        List<Holdings> holdings = List.of(createHolding("Large", "LRG", AssetType.STOCK, 98765432.123));
+        Map<String, MarketDataDto> marketDataMap = new HashMap<>();
+        put(marketDataMap, "LRG", AssetType.STOCK, price);
+
+        // When
+        PortfolioCalculator calculator = new PortfolioCalculator(ACCOUNT_ID, holdings, marketDataMap, "USD");
+
+        // Then
+        assertExact(calculator, "Large", price, 98765432.123);
+    }
+
+    @Test
+    @DisplayName("Should keep missing prices at zero without conversion")
+    void shouldKeepMissingPricesAtZero() {
+        // Given
+        List<Holdings> holdings = List.of(createHolding("Unknown", "UNK", AssetType.STOCK, 10.0));
+        Map<String, MarketDataDto> marketDataMap = new HashMap<>();
+        put(marketDataMap, "USD/EUR", AssetType.FOREX, new BigDecimal("0.9200"));
+
+        // When
+        PortfolioCalculator calculator = new PortfolioCalculator(ACCOUNT_ID, holdings, marketDataMap, "EUR");
+
+        // Then
+        assertExact(calculator, "Unknown", BigDecimal.ZERO, 10.0);
+    }
+
+    @Test
+    @DisplayName("Should iterate the kernel in the same order as the asset value map")
+    void shouldIterateKernelInMapOrder() {
+        // Given
+        List<Holdings> holdings = new ArrayList<>();
+        Map<String, MarketDataDto> marketDataMap = new HashMap<>();
+        for (int i = 0; i < 40; i++) {
+            holdings.add(createHolding("Asset " + i, "SYM" + i, AssetType.STOCK, i + 0.5));
+            put(marketDataMap, "SYM" + i, AssetType.STOCK, BigDecimal.valueOf(i * 3L + 1, 2));
+        }
+
+        // When
+        PortfolioCalculator calculator = new PortfolioCalculator(ACCOUNT_ID, holdings, marketDataMap, "USD");
+        ValuationKernel kernel = calculator.getValuationKernel();
+
+        // Then
+        List<String> kernelOrder = new ArrayList<>();
+        for (int ordinal : kernel.iterationOrder()) {
+            kernelOrder.add(kernel.assetName(ordinal));
+        }
+        assertEquals(new ArrayList<>(calculator.getAssetValuesMap().keySet()), kernelOrder);
+    }
+
+    private void assertExact(PortfolioCalculator calculator, String assetName, BigDecimal expectedPrice, double quantity) {
+        BigDecimal expectedValue = expectedPrice.multiply(BigDecimal.valueOf(quantity));
+        ValuationKernel kernel = calculator.getValuationKernel();
+        int ordinal = kernel.ordinalOf(assetName);
+
+        assertEquals(expectedPrice, kernel.priceInBaseCurrency(ordinal));
+        assertEquals(expectedValue, kernel.totalValueInBaseCurrency(ordinal));
+        assertEquals(expectedValue.doubleValue(), kernel.totalValueAsDouble(ordinal));
+        assertEquals(expectedValue, calculator.getAssetValuesMap().get(assetName).get("totalValueInBaseCurrency"));
+    }
+
+    private void put(Map<String, MarketDataDto> marketDataMap, String symbol, AssetType assetType, BigDecimal price) {
+        marketDataMap.put(PriceSnapshot.key(symbol, assetType), new MarketDataDto(symbol, price, assetType));
+    }
+
+    private Holdings createHolding(String assetName, String symbol, AssetType assetType, double totalBalance) {
+        Holdings holding = new Holdings();
+        holding.setAssetName(assetName);
+        holding.setSymbol(symbol);
+        holding.setAssetType(assetType);
+        holding.setTotalBalance(totalBalance);
+        return holding;
+    }
+}
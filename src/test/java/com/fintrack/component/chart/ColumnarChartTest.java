@@ -0,0 +1,62 @@
+package com.fintrack.component.chart;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ColumnarChart Tests")
+class ColumnarChartTest {
+
+    @Test
+    @DisplayName("Should send the column names once and one value array per row")
+    void shouldConvertPieChartRowsToColumns() {
+        // Given
+        List<ChartRow> rows = List.of(
+            row("Apple", "AAPL", 1500.0, 2000.0),
+            row("Microsoft", "MSFT", 500.0, 2000.0)
+        );
+
+        // When
+        ColumnarChart chart = ColumnarChart.fromPieChart(rows);
+
+        // Then
+        assertEquals(ChartRow.COLUMNS, chart.columns());
+        assertEquals(1, chart.series().size());
+        ColumnarChart.Series series = chart.series().get(0);
+        assertNull(series.date());
+        assertEquals(2000.0, series.totalValue());
+        assertEquals(2, series.rows().size());
+        Object[] apple = series.rows().get(0);
+        assertEquals(ChartRow.COLUMNS.size(), apple.length);
+        assertEquals("Apple", apple[ChartRow.COLUMNS.indexOf("assetName")]);
+        assertEquals(1500.0, apple[ChartRow.COLUMNS.indexOf("value")]);
+    }
+
+    @Test
+    @DisplayName("Should keep one series per bar chart date with its own total")
+    void shouldConvertBarChartSeriesToColumns() {
+        // Given
+        List<BarChartSeries> barCharts = List.of(
+            new BarChartSeries("2024-01-31", List.of(row("Apple", "AAPL", 1400.0, 1400.0))),
+            new BarChartSeries("2024-02-29", List.of(row("Apple", "AAPL", 1500.0, 1500.0))),
+            new BarChartSeries("2024-03-31", List.of())
+        );
+
+        // When
+        ColumnarChart chart = ColumnarChart.fromBarCharts(barCharts);
+
+        // Then
+        assertEquals(List.of("2024-01-31", "2024-02-29", "2024-03-31"),
+            chart.series().stream().map(ColumnarChart.Series::date).toList());
+        assertEquals(1500.0, chart.series().get(1).totalValue());
+        assertTrue(chart.series().get(2).rows().isEmpty());
+    }
+
+    private ChartRow row(String assetName, String symbol, double value, double totalValue) {
+        return new ChartRow(assetName, symbol, "None", value, "#000000", 0, totalValue, 0.0,
+            value / totalValue * 100, 100.0);
+    }
+}
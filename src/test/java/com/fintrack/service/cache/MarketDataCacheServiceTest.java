@@ -3,14 +3,25 @@ package com.fintrack.service.cache;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fintrack.constants.finance.AssetType;
 import com.fintrack.model.market.MarketData;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisKeyCommands;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.SetOperations;
 import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
 import java.time.Duration;
@@ -33,6 +44,21 @@ class MarketDataCacheServiceTest {
     @Mock
     private ValueOperations<String, Object> valueOperations;
 
+    @Mock
+    private SetOperations<String, Object> setOperations;
+
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+
+    @Mock
+    private RedisConnection redisConnection;
+
+    @Mock
+    private RedisKeyCommands keyCommands;
+
+    @Mock
+    private Cursor<byte[]> cursor;
+
     private ValkeyMarketDataCacheService marketDataCacheService;
 
     private static final String TEST_SYMBOL = "AAPL";
@@ -44,12 +70,17 @@ class MarketDataCacheServiceTest {
         marketDataCacheService = new ValkeyMarketDataCacheService(valkeyTemplate, objectMapper);
     }
 
+    @AfterEach
+    void tearDown() {
+        marketDataCacheService.shutdown();
+    }
+
     @Test
     @DisplayName("Should get market data successfully when cached")
     void shouldGetMarketDataSuccessfullyWhenCached() {
         // Given
         MarketData expectedMarketData = createTestMarketData();
-        String expectedKey = "market_data:STOCK:AAPL";
+        String expectedKey = "market_data:0:STOCK:AAPL";
         
         when(valkeyTemplate.opsForValue()).thenReturn(valueOperations);
         when(valueOperations.get(expectedKey)).thenReturn(expectedMarketData);
@@ -67,7 +98,7 @@ class MarketDataCacheServiceTest {
     @DisplayName("Should return empty when market data not cached")
     void shouldReturnEmptyWhenMarketDataNotCached() {
         // Given
-        String expectedKey = "market_data:STOCK:AAPL";
+        String expectedKey = "market_data:0:STOCK:AAPL";
         when(valkeyTemplate.opsForValue()).thenReturn(valueOperations);
         when(valueOperations.get(expectedKey)).thenReturn(null);
 
@@ -84,7 +115,7 @@ class MarketDataCacheServiceTest {
     void shouldSetMarketDataSuccessfully() {
         // Given
         MarketData marketData = createTestMarketData();
-        String expectedKey = "market_data:STOCK:AAPL";
+        String expectedKey = "market_data:0:STOCK:AAPL";
         when(valkeyTemplate.opsForValue()).thenReturn(valueOperations);
 
         // When
@@ -106,9 +137,9 @@ class MarketDataCacheServiceTest {
         );
         
         List<String> expectedKeys = Arrays.asList(
-            "market_data:STOCK:AAPL",
-            "market_data:STOCK:GOOGL",
-            "market_data:STOCK:MSFT"
+            "market_data:0:STOCK:AAPL",
+            "market_data:0:STOCK:GOOGL",
+            "market_data:0:STOCK:MSFT"
         );
         
         when(valkeyTemplate.opsForValue()).thenReturn(valueOperations);
@@ -131,9 +162,9 @@ class MarketDataCacheServiceTest {
         // Given
         List<String> symbols = Arrays.asList("AAPL", "GOOGL", "MSFT");
         List<String> expectedKeys = Arrays.asList(
-            "market_data:STOCK:AAPL",
-            "market_data:STOCK:GOOGL",
-            "market_data:STOCK:MSFT"
+            "market_data:0:STOCK:AAPL",
+            "market_data:0:STOCK:GOOGL",
+            "market_data:0:STOCK:MSFT"
         );
         
         MarketData cachedData = createTestMarketData("AAPL");
@@ -159,14 +190,38 @@ class MarketDataCacheServiceTest {
             createTestMarketData("AAPL"),
             createTestMarketData("GOOGL")
         );
-        when(valkeyTemplate.opsForValue()).thenReturn(valueOperations);
+        RedisOperations<String, Object> pipeline = runPipelinesOn();
+        when(pipeline.opsForValue()).thenReturn(valueOperations);
+
+        // When
+        marketDataCacheService.setMarketDataBatch(marketDataList);
+
+        // Then: One pipeline of SET ... EX, no separate EXPIRE calls
+        verify(valkeyTemplate, times(1)).executePipelined(any(SessionCallback.class));
+        verify(valueOperations).set(eq("market_data:0:STOCK:AAPL"), eq(marketDataList.get(0)), eq(Duration.ofMinutes(5)));
+        verify(valueOperations).set(eq("market_data:0:STOCK:GOOGL"), eq(marketDataList.get(1)), eq(Duration.ofMinutes(5)));
+        verify(valueOperations, never()).multiSet(any(Map.class));
+        verify(valkeyTemplate, never()).expire(anyString(), any(Duration.class));
+    }
+
+    @Test
+    @DisplayName("Should split large batch writes into chunks")
+    void shouldChunkLargeBatchWrites() {
+        // Given
+        ReflectionTestUtils.setField(marketDataCacheService, "batchChunkSize", 500);
+        List<MarketData> marketDataList = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            marketDataList.add(createTestMarketData("SYM" + i));
+        }
+        RedisOperations<String, Object> pipeline = runPipelinesOn();
+        when(pipeline.opsForValue()).thenReturn(valueOperations);
 
         // When
         marketDataCacheService.setMarketDataBatch(marketDataList);
 
         // Then
-        verify(valueOperations).multiSet(any(Map.class));
-        verify(valkeyTemplate, times(2)).expire(anyString(), eq(Duration.ofMinutes(5)));
+        verify(valkeyTemplate, times(3)).executePipelined(any(SessionCallback.class));
+        verify(valueOperations, times(1200)).set(anyString(), any(), eq(Duration.ofMinutes(5)));
     }
 
     @Test
@@ -228,7 +283,7 @@ class MarketDataCacheServiceTest {
     @DisplayName("Should invalidate market data successfully")
     void shouldInvalidateMarketDataSuccessfully() {
         // Given
-        String expectedKey = "market_data:STOCK:AAPL";
+        String expectedKey = "market_data:0:STOCK:AAPL";
 
         // When
         marketDataCacheService.invalidateMarketData(TEST_SYMBOL, TEST_ASSET_TYPE);
@@ -238,47 +293,113 @@ class MarketDataCacheServiceTest {
     }
 
     @Test
-    @DisplayName("Should clear cache successfully")
+    @DisplayName("Should clear the cache by moving to a new generation instead of deleting keys")
     void shouldClearCacheSuccessfully() {
         // Given
-        Set<String> cacheKeys = new HashSet<>(Arrays.asList(
-            "market_data:STOCK:AAPL",
-            "market_data:STOCK:GOOGL"
-        ));
-        
-        when(valkeyTemplate.keys("market_data:*")).thenReturn(cacheKeys);
+        when(valkeyTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.increment("market_data_generation")).thenReturn(1L);
 
         // When
         marketDataCacheService.clearCache();
+        marketDataCacheService.getMarketData(TEST_SYMBOL, TEST_ASSET_TYPE);
+
+        // Then: Reads go to the new generation and nothing is looked up with KEYS
+        verify(valueOperations).get("market_data:1:STOCK:AAPL");
+        verify(valkeyTemplate, never()).keys(anyString());
+        verify(valkeyTemplate, never()).delete(anyCollection());
+    }
+
+    @Test
+    @DisplayName("Should pick up a clear by another node when refreshing the generation")
+    void shouldRefreshGeneration() {
+        // Given
+        when(valkeyTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get("market_data_generation")).thenReturn(3L);
+
+        // When
+        marketDataCacheService.refreshGeneration();
+        marketDataCacheService.setMarketData(createTestMarketData());
+
+        // Then
+        verify(valueOperations).set(eq("market_data:3:STOCK:AAPL"), any(MarketData.class), eq(Duration.ofMinutes(5)));
+    }
+
+    @Test
+    @DisplayName("Should read a missing generation as 0 without writing it")
+    void shouldReadMissingGenerationAsZero() {
+        // Given: No clear has happened yet, so the generation key does not exist
+        when(valkeyTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get("market_data_generation")).thenReturn(null);
+
+        // When
+        marketDataCacheService.refreshGeneration();
+        marketDataCacheService.setMarketData(createTestMarketData());
 
         // Then
-        verify(valkeyTemplate).keys("market_data:*");
-        verify(valkeyTemplate).delete(cacheKeys);
+        verify(valueOperations).set(eq("market_data:0:STOCK:AAPL"), any(MarketData.class), eq(Duration.ofMinutes(5)));
+        verify(valueOperations, never()).increment(anyString(), anyLong());
+    }
+
+    @Test
+    @DisplayName("Should unlink only keys outside the current generation when reaping")
+    void shouldReapOldGenerations() {
+        // Given: The cache is at generation 1; keys of generation 0 and from before generations are left over
+        when(valkeyTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get("market_data_generation")).thenReturn(1L);
+        when(valkeyTemplate.execute(any(RedisCallback.class)))
+            .thenAnswer(invocation -> ((RedisCallback<?>) invocation.getArgument(0)).doInRedis(redisConnection));
+        when(redisConnection.keyCommands()).thenReturn(keyCommands);
+        when(keyCommands.scan(any(ScanOptions.class))).thenReturn(cursor);
+        when(cursor.hasNext()).thenReturn(true, true, true, false);
+        when(cursor.next()).thenReturn(
+            "market_data:0:STOCK:AAPL".getBytes(),
+            "market_data:1:STOCK:AAPL".getBytes(),
+            "market_data:STOCK:MSFT".getBytes());
+        List<String> unlinked = new ArrayList<>();
+        when(keyCommands.unlink(any(byte[][].class))).thenAnswer(invocation -> {
+            for (Object key : invocation.getArguments()) {
+                unlinked.add(new String((byte[]) key));
+            }
+            return (long) invocation.getArguments().length;
+        });
+
+        // When
+        long reaped = marketDataCacheService.reapOldGenerations();
+
+        // Then
+        assertEquals(2, reaped);
+        assertEquals(List.of("market_data:0:STOCK:AAPL", "market_data:STOCK:MSFT"), unlinked);
+        verify(cursor).close();
+    }
+
+    @Test
+    @DisplayName("Should invalidate a batch of symbols in one pipelined round trip")
+    void shouldInvalidateBatchInOnePipeline() {
+        // Given
+        Map<AssetType, List<String>> symbols = new EnumMap<>(AssetType.class);
+        symbols.put(AssetType.STOCK, List.of("AAPL", "GOOGL"));
+        symbols.put(AssetType.CRYPTO, List.of("BTC"));
+        RedisOperations<String, Object> pipeline = runPipelinesOn();
+
+        // When
+        marketDataCacheService.invalidateMarketDataBatch(symbols);
+
+        // Then
+        verify(valkeyTemplate, times(1)).executePipelined(any(SessionCallback.class));
+        verify(pipeline).unlink(List.of("market_data:0:STOCK:AAPL", "market_data:0:STOCK:GOOGL", "market_data:0:CRYPTO:BTC"));
+        verify(valkeyTemplate, never()).delete(anyString());
     }
 
     @Test
     @DisplayName("Should get cache stats successfully")
     void shouldGetCacheStatsSuccessfully() {
-        // Given
-        Set<String> hitKeys = new HashSet<>(Arrays.asList(
-            "cache_stats:STOCK:AAPL:hits",
-            "cache_stats:STOCK:GOOGL:hits"
-        ));
-        Set<String> missKeys = new HashSet<>(Arrays.asList(
-            "cache_stats:STOCK:MSFT:misses"
-        ));
-        Set<String> marketDataKeys = new HashSet<>(Arrays.asList(
-            "market_data:STOCK:AAPL",
-            "market_data:STOCK:GOOGL"
-        ));
-        
-        when(valkeyTemplate.keys("cache_stats:*:hits")).thenReturn(hitKeys);
-        when(valkeyTemplate.keys("cache_stats:*:misses")).thenReturn(missKeys);
-        when(valkeyTemplate.keys("market_data:*")).thenReturn(marketDataKeys);
-        when(valkeyTemplate.opsForValue()).thenReturn(valueOperations);
-        when(valueOperations.get("cache_stats:STOCK:AAPL:hits")).thenReturn("100");
-        when(valueOperations.get("cache_stats:STOCK:GOOGL:hits")).thenReturn("50");
-        when(valueOperations.get("cache_stats:STOCK:MSFT:misses")).thenReturn("25");
+        // Given: Two nodes have flushed their counters
+        when(valkeyTemplate.opsForSet()).thenReturn(setOperations);
+        when(valkeyTemplate.opsForHash()).thenReturn(hashOperations);
+        when(setOperations.members("cache_stats:nodes")).thenReturn(new HashSet<>(Arrays.asList("node-1", "node-2")));
+        when(hashOperations.entries("cache_stats:node:node-1")).thenReturn(Map.of("STOCK:hits", 100, "STOCK:misses", 25));
+        when(hashOperations.entries("cache_stats:node:node-2")).thenReturn(Map.of("STOCK:hits", 50));
+        when(valkeyTemplate.execute(any(RedisCallback.class))).thenReturn(2L);
 
         // When
         Map<String, Object> stats = marketDataCacheService.getCacheStats();
@@ -288,61 +409,115 @@ class MarketDataCacheServiceTest {
         assertEquals(150L, stats.get("totalHits"));
         assertEquals(25L, stats.get("totalMisses"));
         assertEquals(0.857, (Double) stats.get("hitRate"), 0.001);
-        assertEquals(2, stats.get("cacheSize"));
+        assertEquals(2L, stats.get("cacheSize"));
+        verify(valkeyTemplate, never()).keys(anyString());
+        assertEquals(2, stats.get("nodes"));
+    }
+
+    @Test
+    @DisplayName("Should count batch hits and misses in memory instead of one INCR per symbol")
+    void shouldCountBatchStatsLocally() {
+        // Given
+        List<String> symbols = Arrays.asList("AAPL", "GOOGL", "MSFT");
+        when(valkeyTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.multiGet(anyList())).thenReturn(Arrays.asList(createTestMarketData("AAPL"), null, null));
+        when(valkeyTemplate.opsForSet()).thenReturn(setOperations);
+
+        // When
+        marketDataCacheService.getMarketDataBatch(symbols, TEST_ASSET_TYPE);
+        Map<String, Object> stats = marketDataCacheService.getCacheStats();
+
+        // Then: Unflushed counts of this node are part of the stats
+        verify(valueOperations, never()).increment(anyString());
+        assertEquals(1L, stats.get("totalHits"));
+        assertEquals(2L, stats.get("totalMisses"));
+    }
+
+    @Test
+    @DisplayName("Should flush the counters in one pipelined write and only when there is something to flush")
+    void shouldFlushCountersInOnePipeline() {
+        // Given
+        when(valkeyTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get("market_data:0:STOCK:AAPL")).thenReturn(createTestMarketData());
+        marketDataCacheService.getMarketData(TEST_SYMBOL, TEST_ASSET_TYPE);
+
+        // When
+        marketDataCacheService.flushCacheStats();
+        marketDataCacheService.flushCacheStats();
+
+        // Then
+        verify(valkeyTemplate, times(1)).executePipelined(any(SessionCallback.class));
     }
 
     @Test
-    @DisplayName("Should check data freshness successfully")
+    @DisplayName("Should check data freshness from the cache-write time of the entry")
     void shouldCheckDataFreshnessSuccessfully() {
         // Given
-        String expectedKey = "market_data:STOCK:AAPL";
+        String expectedKey = "market_data:0:STOCK:AAPL";
         Duration maxAge = Duration.ofMinutes(2);
-        
-        when(valkeyTemplate.getExpire(expectedKey, java.util.concurrent.TimeUnit.SECONDS))
-            .thenReturn(180L); // 3 minutes remaining
+        MarketData cached = createTestMarketData(TEST_SYMBOL);
+        cached.setCachedAt(LocalDateTime.now().minusMinutes(1));
+
+        when(valkeyTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(expectedKey)).thenReturn(cached);
 
         // When
         boolean isFresh = marketDataCacheService.isDataFresh(TEST_SYMBOL, TEST_ASSET_TYPE, maxAge);
 
         // Then
         assertTrue(isFresh);
-        verify(valkeyTemplate).getExpire(expectedKey, java.util.concurrent.TimeUnit.SECONDS);
+        verify(valkeyTemplate, never()).getExpire(anyString(), any(java.util.concurrent.TimeUnit.class));
     }
 
     @Test
     @DisplayName("Should return false for stale data")
     void shouldReturnFalseForStaleData() {
         // Given
-        String expectedKey = "market_data:STOCK:AAPL";
+        String expectedKey = "market_data:0:STOCK:AAPL";
         Duration maxAge = Duration.ofMinutes(2);
-        
-        when(valkeyTemplate.getExpire(expectedKey, java.util.concurrent.TimeUnit.SECONDS))
-            .thenReturn(60L); // 1 minute remaining (stale)
+        MarketData cached = createTestMarketData(TEST_SYMBOL);
+        cached.setCachedAt(LocalDateTime.now().minusMinutes(4));
+
+        when(valkeyTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(expectedKey)).thenReturn(cached);
 
         // When
         boolean isFresh = marketDataCacheService.isDataFresh(TEST_SYMBOL, TEST_ASSET_TYPE, maxAge);
 
         // Then
         assertFalse(isFresh);
-        verify(valkeyTemplate).getExpire(expectedKey, java.util.concurrent.TimeUnit.SECONDS);
     }
 
     @Test
     @DisplayName("Should return false when data not found")
     void shouldReturnFalseWhenDataNotFound() {
         // Given
-        String expectedKey = "market_data:STOCK:AAPL";
+        String expectedKey = "market_data:0:STOCK:AAPL";
         Duration maxAge = Duration.ofMinutes(2);
-        
-        when(valkeyTemplate.getExpire(expectedKey, java.util.concurrent.TimeUnit.SECONDS))
-            .thenReturn(null);
+
+        when(valkeyTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(expectedKey)).thenReturn(null);
 
         // When
         boolean isFresh = marketDataCacheService.isDataFresh(TEST_SYMBOL, TEST_ASSET_TYPE, maxAge);
 
         // Then
         assertFalse(isFresh);
-        verify(valkeyTemplate).getExpire(expectedKey, java.util.concurrent.TimeUnit.SECONDS);
+    }
+
+    @Test
+    @DisplayName("Should stamp the cache-write time on written entries")
+    void shouldStampCachedAtOnWrite() {
+        // Given
+        MarketData marketData = createTestMarketData(TEST_SYMBOL);
+        when(valkeyTemplate.opsForValue()).thenReturn(valueOperations);
+
+        // When
+        marketDataCacheService.setMarketData(marketData);
+
+        // Then
+        assertNotNull(marketData.getCachedAt());
+        verify(valueOperations).set("market_data:0:STOCK:AAPL", marketData, Duration.ofMinutes(5));
     }
 
     @Test
@@ -352,7 +527,7 @@ class MarketDataCacheServiceTest {
         AssetType cryptoType = AssetType.CRYPTO;
         String cryptoSymbol = "BTC";
         MarketData cryptoData = createTestMarketData(cryptoSymbol, cryptoType);
-        String expectedKey = "market_data:CRYPTO:BTC";
+        String expectedKey = "market_data:0:CRYPTO:BTC";
         
         when(valkeyTemplate.opsForValue()).thenReturn(valueOperations);
         when(valueOperations.get(expectedKey)).thenReturn(cryptoData);
@@ -389,7 +564,7 @@ class MarketDataCacheServiceTest {
     @DisplayName("Should handle cache operations with null values gracefully")
     void shouldHandleCacheOperationsWithNullValuesGracefully() {
         // Given
-        String expectedKey = "market_data:STOCK:AAPL";
+        String expectedKey = "market_data:0:STOCK:AAPL";
         when(valkeyTemplate.opsForValue()).thenReturn(valueOperations);
         when(valueOperations.get(expectedKey)).thenThrow(new RuntimeException("Cache error"));
 
@@ -406,7 +581,7 @@ class MarketDataCacheServiceTest {
         // Given
         String symbol = "TEST";
         AssetType assetType = AssetType.FOREX;
-        String expectedKey = "market_data:FOREX:TEST";
+        String expectedKey = "market_data:0:FOREX:TEST";
         
         when(valkeyTemplate.opsForValue()).thenReturn(valueOperations);
         when(valueOperations.get(expectedKey)).thenReturn(null);
@@ -435,6 +610,19 @@ class MarketDataCacheServiceTest {
         verify(valueOperations).get(expectedKey);
     }
 
+    /**
+     * Makes executePipelined run its callback against a mocked connection, as the template would.
+     */
+    @SuppressWarnings("unchecked")
+    private RedisOperations<String, Object> runPipelinesOn() {
+        RedisOperations<String, Object> pipeline = mock(RedisOperations.class);
+        when(valkeyTemplate.executePipelined(any(SessionCallback.class))).thenAnswer(invocation -> {
+            invocation.<SessionCallback<Object>>getArgument(0).execute(pipeline);
+            return List.of();
+        });
+        return pipeline;
+    }
+
     private MarketData createTestMarketData() {
         return createTestMarketData(TEST_SYMBOL, TEST_ASSET_TYPE);
     }
@@ -0,0 +1,110 @@
+package com.fintrack.service.cache;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fintrack.constants.finance.AssetType;
+import com.fintrack.model.market.MarketData;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares size and decode time of cached market data in the binary codec and in the former JSON format.
+ *
+ * Only runs when RUN_BENCHMARKS=true, e.g. RUN_BENCHMARKS=true mvn test -Dtest=MarketDataCodecBenchmarkTest
+ */
+@EnabledIfEnvironmentVariable(named = "RUN_BENCHMARKS", matches = "true")
+@DisplayName("Market data codec benchmark")
+class MarketDataCodecBenchmarkTest {
+
+    private static final int ENTRIES = 1000;
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int ROUNDS = 50;
+
+    @Test
+    @DisplayName("The codec should store and decode entries in less space and time than JSON")
+    void compareCodecWithJson() {
+        List<MarketData> entries = createEntries();
+        RedisSerializer<Object> json = jsonSerializer();
+        RedisSerializer<Object> codec = new MarketDataRedisSerializer(json);
+
+        List<byte[]> jsonBytes = new ArrayList<>(ENTRIES);
+        List<byte[]> codecBytes = new ArrayList<>(ENTRIES);
+        long jsonSize = 0;
+        long codecSize = 0;
+        for (MarketData marketData : entries) {
+            byte[] asJson = json.serialize(marketData);
+            byte[] asCodec = codec.serialize(marketData);
+            assertTrue(MarketDataCodec.isEncoded(asCodec));
+            jsonBytes.add(asJson);
+            codecBytes.add(asCodec);
+            jsonSize += asJson.length;
+            codecSize += asCodec.length;
+        }
+
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            decodeAll(json, jsonBytes);
+            decodeAll(codec, codecBytes);
+        }
+        long jsonNanos = 0;
+        long codecNanos = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            jsonNanos += decodeAll(json, jsonBytes);
+            codecNanos += decodeAll(codec, codecBytes);
+        }
+
+        long decodes = (long) ENTRIES * ROUNDS;
+        System.out.printf("Market data values: JSON %d bytes/entry, %d ns/op decode; codec %d bytes/entry, %d ns/op decode%n",
+            jsonSize / ENTRIES, jsonNanos / decodes, codecSize / ENTRIES, codecNanos / decodes);
+
+        assertTrue(codecSize < jsonSize, "The codec should be smaller than JSON");
+        assertTrue(codecNanos < jsonNanos, "The codec should decode faster than JSON");
+    }
+
+    private static long decodeAll(RedisSerializer<Object> serializer, List<byte[]> values) {
+        long start = System.nanoTime();
+        for (byte[] value : values) {
+            assertNotNull(serializer.deserialize(value));
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * The JSON format as the template wrote it before the codec, with java.time support so updatedAt is included.
+     */
+    private static RedisSerializer<Object> jsonSerializer() {
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        objectMapper.activateDefaultTyping(objectMapper.getPolymorphicTypeValidator(),
+            ObjectMapper.DefaultTyping.EVERYTHING, JsonTypeInfo.As.PROPERTY);
+        return new GenericJackson2JsonRedisSerializer(objectMapper);
+    }
+
+    private static List<MarketData> createEntries() {
+        List<MarketData> entries = new ArrayList<>(ENTRIES);
+        LocalDateTime updatedAt = LocalDateTime.of(2024, 3, 1, 9, 30);
+        for (int i = 0; i < ENTRIES; i++) {
+            MarketData marketData = new MarketData();
+            marketData.setId((long) i);
+            marketData.setSymbol("SYM" + i);
+            marketData.setAssetType(AssetType.STOCK);
+            marketData.setPrice(new BigDecimal("100.0000").add(BigDecimal.valueOf(i, 2)));
+            marketData.setPercentChange(new BigDecimal("1.2345"));
+            marketData.setChange(new BigDecimal("1.230000"));
+            marketData.setHigh(new BigDecimal("101.000000"));
+            marketData.setLow(new BigDecimal("99.000000"));
+            marketData.setUpdatedAt(updatedAt.plusSeconds(i));
+            entries.add(marketData);
+        }
+        return entries;
+    }
+}
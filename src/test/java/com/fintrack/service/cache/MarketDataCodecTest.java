@@ -0,0 +1,151 @@
+package com.fintrack.service.cache;
+
+import com.fintrack.constants.finance.AssetType;
+import com.fintrack.model.market.MarketData;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("MarketDataCodec Tests")
+class MarketDataCodecTest {
+
+    private final MarketDataRedisSerializer serializer = new MarketDataRedisSerializer();
+
+    @Test
+    @DisplayName("Should decode exactly what was encoded, including decimal scales")
+    void shouldRoundTripMarketData() {
+        // Given
+        MarketData marketData = createMarketData("AAPL", AssetType.STOCK, "189.8400");
+        marketData.setId(42L);
+        marketData.setChange(new BigDecimal("-1.250000"));
+        marketData.setPercentChange(new BigDecimal("-0.6541"));
+
+        // When
+        Object decoded = MarketDataCodec.decode(MarketDataCodec.encode(marketData));
+
+        // Then
+        assertEquals(marketData, decoded);
+    }
+
+    @Test
+    @DisplayName("Should keep unset fields unset")
+    void shouldRoundTripNullFields() {
+        // Given
+        MarketData marketData = new MarketData();
+        marketData.setSymbol("EUR/USD");
+        marketData.setAssetType(AssetType.FOREX);
+        marketData.setPrice(new BigDecimal("1.0842"));
+
+        // When
+        MarketData decoded = (MarketData) MarketDataCodec.decode(MarketDataCodec.encode(marketData));
+
+        // Then
+        assertEquals(marketData, decoded);
+        assertNull(decoded.getUpdatedAt());
+        assertNull(decoded.getHigh());
+    }
+
+    @Test
+    @DisplayName("Should keep the cache-write time")
+    void shouldRoundTripCachedAt() {
+        // Given
+        MarketData marketData = createMarketData("AAPL", AssetType.STOCK, "189.8400");
+        marketData.setCachedAt(LocalDateTime.of(2024, 3, 1, 9, 31, 0, 456_000_000));
+
+        // When
+        MarketData decoded = (MarketData) MarketDataCodec.decode(MarketDataCodec.encode(marketData));
+
+        // Then
+        assertEquals(marketData.getCachedAt(), decoded.getCachedAt());
+    }
+
+    @Test
+    @DisplayName("Should decode version 1 entries, which carry no cache-write time")
+    void shouldDecodeVersionOneEntries() {
+        // Given: Without cachedAt, a version 2 entry has the version 1 layout
+        MarketData marketData = createMarketData("AAPL", AssetType.STOCK, "189.8400");
+        byte[] bytes = MarketDataCodec.encode(marketData);
+        bytes[2] = 1;
+
+        // When
+        MarketData decoded = (MarketData) MarketDataCodec.decode(bytes);
+
+        // Then
+        assertEquals(marketData, decoded);
+        assertNull(decoded.getCachedAt());
+    }
+
+    @Test
+    @DisplayName("Should encode account market data lists")
+    void shouldRoundTripMarketDataLists() {
+        // Given
+        List<MarketData> marketDataList = List.of(
+            createMarketData("AAPL", AssetType.STOCK, "189.8400"),
+            createMarketData("BTC", AssetType.CRYPTO, "67123.45670000")
+        );
+
+        // When
+        Object decoded = serializer.deserialize(serializer.serialize(marketDataList));
+
+        // Then
+        assertEquals(marketDataList, decoded);
+    }
+
+    @Test
+    @DisplayName("Should store values the codec cannot represent as JSON")
+    void shouldFallBackToJsonForOversizedDecimals() {
+        // Given: The unscaled value needs more than 63 bits
+        MarketData marketData = createMarketData("HUGE", AssetType.STOCK, "123456789012345678901234567890.1234");
+        marketData.setUpdatedAt(null);
+
+        // When
+        byte[] bytes = serializer.serialize(marketData);
+
+        // Then
+        assertFalse(MarketDataCodec.isEncoded(bytes));
+        assertEquals(marketData, serializer.deserialize(bytes));
+    }
+
+    @Test
+    @DisplayName("Should read entries written as JSON before the codec existed")
+    void shouldReadLegacyJsonEntries() {
+        // Given
+        MarketData marketData = createMarketData("MSFT", AssetType.STOCK, "410.1200");
+        marketData.setUpdatedAt(null);
+        byte[] legacy = new GenericJackson2JsonRedisSerializer().serialize(marketData);
+
+        // When
+        Object decoded = serializer.deserialize(legacy);
+
+        // Then
+        assertEquals(marketData, decoded);
+    }
+
+    @Test
+    @DisplayName("Should leave other values to the JSON serializer")
+    void shouldSerializeOtherValuesAsJson() {
+        // When
+        byte[] bytes = serializer.serialize("node-1|STOCK:AAPL");
+
+        // Then
+        assertFalse(MarketDataCodec.isEncoded(bytes));
+        assertEquals("node-1|STOCK:AAPL", serializer.deserialize(bytes));
+    }
+
+    private MarketData createMarketData(String symbol, AssetType assetType, String price) {
+        MarketData marketData = new MarketData();
+        marketData.setSymbol(symbol);
+        marketData.setAssetType(assetType);
+        marketData.setPrice(new BigDecimal(price));
+        marketData.setHigh(new BigDecimal(price));
+        marketData.setLow(new BigDecimal(price));
+        marketData.setUpdatedAt(LocalDateTime.of(2024, 3, 1, 9, 30, 15, 123_000_000));
+        return marketData;
+    }
+}
@@ -0,0 +1,70 @@
+package com.fintrack.service.cache;
+
+import com.fintrack.constants.finance.AssetType;
+import com.fintrack.model.market.MarketData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("MarketDataFreshnessPolicy Tests")
+class MarketDataFreshnessPolicyTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 3, 1, 12, 0);
+
+    private MarketDataFreshnessPolicy freshnessPolicy;
+
+    @BeforeEach
+    void setUp() {
+        freshnessPolicy = new MarketDataFreshnessPolicy();
+        ReflectionTestUtils.setField(freshnessPolicy, "cryptoMaxAgeMillis", 30000L);
+        ReflectionTestUtils.setField(freshnessPolicy, "commodityMaxAgeMillis", 240000L);
+    }
+
+    @Test
+    @DisplayName("Should apply the threshold of the asset type")
+    void shouldUseThresholdPerAssetType() {
+        // Given: Both entries were cached a minute ago
+        MarketData crypto = createMarketData(AssetType.CRYPTO, NOW.minusMinutes(1));
+        MarketData commodity = createMarketData(AssetType.COMMODITY, NOW.minusMinutes(1));
+
+        // When & Then
+        assertFalse(freshnessPolicy.isFresh(crypto, NOW));
+        assertTrue(freshnessPolicy.isFresh(commodity, NOW));
+        assertEquals(Duration.ofMinutes(2), freshnessPolicy.maxAge(AssetType.STOCK));
+    }
+
+    @Test
+    @DisplayName("Should fall back to updatedAt for entries cached without a cache-write time")
+    void shouldFallBackToUpdatedAt() {
+        // Given
+        MarketData marketData = createMarketData(AssetType.STOCK, null);
+        marketData.setUpdatedAt(NOW.minusMinutes(1));
+
+        // When & Then
+        assertTrue(freshnessPolicy.isFresh(marketData, NOW));
+    }
+
+    @Test
+    @DisplayName("Should treat entries without timestamps as stale")
+    void shouldTreatEntriesWithoutTimestampsAsStale() {
+        // Given
+        MarketData marketData = createMarketData(AssetType.STOCK, null);
+
+        // When & Then
+        assertFalse(freshnessPolicy.isFresh(marketData, NOW));
+    }
+
+    private MarketData createMarketData(AssetType assetType, LocalDateTime cachedAt) {
+        MarketData marketData = new MarketData();
+        marketData.setSymbol("SYM");
+        marketData.setAssetType(assetType);
+        marketData.setCachedAt(cachedAt);
+        return marketData;
+    }
+}
@@ -0,0 +1,218 @@
+package com.fintrack.service.cache;
+
+import com.fintrack.constants.finance.AssetType;
+import com.fintrack.model.market.MarketData;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("NearMarketDataCacheService Tests")
+class NearMarketDataCacheServiceTest {
+
+    @Mock
+    private ValkeyMarketDataCacheService valkeyCache;
+
+    @Mock
+    private RedisTemplate<String, Object> valkeyTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+    private NearMarketDataCacheService nearCache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        nearCache = new NearMarketDataCacheService(valkeyCache, valkeyTemplate, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Should read a symbol from Valkey once and then from memory")
+    void shouldServeRepeatedReadsFromNearCache() {
+        // Given
+        MarketData apple = marketData("AAPL", AssetType.STOCK, "150.00");
+        when(valkeyCache.getMarketData("AAPL", AssetType.STOCK)).thenReturn(Optional.of(apple));
+
+        // When
+        nearCache.getMarketData("AAPL", AssetType.STOCK);
+        Optional<MarketData> second = nearCache.getMarketData("AAPL", AssetType.STOCK);
+
+        // Then
+        assertSame(apple, second.orElseThrow());
+        verify(valkeyCache, times(1)).getMarketData("AAPL", AssetType.STOCK);
+        assertEquals(1.0, requests("near", "hit"));
+        assertEquals(1.0, requests("near", "miss"));
+        assertEquals(1.0, requests("valkey", "hit"));
+    }
+
+    @Test
+    @DisplayName("Should only ask Valkey for the symbols missing from memory and keep the requested order")
+    void shouldFetchOnlyMissingSymbolsInBatch() {
+        // Given
+        MarketData apple = marketData("AAPL", AssetType.STOCK, "150.00");
+        MarketData microsoft = marketData("MSFT", AssetType.STOCK, "400.00");
+        when(valkeyCache.getMarketData("AAPL", AssetType.STOCK)).thenReturn(Optional.of(apple));
+        when(valkeyCache.getMarketDataBatch(List.of("MSFT", "TSLA"), AssetType.STOCK)).thenReturn(List.of(microsoft));
+        nearCache.getMarketData("AAPL", AssetType.STOCK);
+
+        // When
+        List<MarketData> result = nearCache.getMarketDataBatch(List.of("MSFT", "AAPL", "TSLA"), AssetType.STOCK);
+
+        // Then
+        assertEquals(List.of(microsoft, apple), result);
+        assertEquals(1.0, requests("valkey", "miss"));
+    }
+
+    @Test
+    @DisplayName("Should drop keys invalidated by another node")
+    void shouldDropKeysInvalidatedByOtherNodes() {
+        // Given
+        MarketData apple = marketData("AAPL", AssetType.STOCK, "150.00");
+        when(valkeyCache.getMarketData("AAPL", AssetType.STOCK)).thenReturn(Optional.of(apple));
+        doReturn(new StringRedisSerializer()).when(valkeyTemplate).getValueSerializer();
+        nearCache.getMarketData("AAPL", AssetType.STOCK);
+
+        // When
+        nearCache.onMessage(message("other-node|STOCK:AAPL"), null);
+        nearCache.getMarketData("AAPL", AssetType.STOCK);
+
+        // Then
+        verify(valkeyCache, times(2)).getMarketData("AAPL", AssetType.STOCK);
+    }
+
+    @Test
+    @DisplayName("Should re-read the Valkey generation when another node clears the cache")
+    void shouldRefreshGenerationOnClearByOtherNode() {
+        // Given
+        nearCache.setMarketData(marketData("AAPL", AssetType.STOCK, "150.00"));
+        doReturn(new StringRedisSerializer()).when(valkeyTemplate).getValueSerializer();
+
+        // When
+        nearCache.onMessage(message("other-node|*"), null);
+
+        // Then
+        verify(valkeyCache).refreshGeneration();
+        assertEquals(0, nearCache.size());
+    }
+
+    @Test
+    @DisplayName("Should invalidate a batch with one Valkey call and one message")
+    void shouldInvalidateBatchWithOneMessage() {
+        // Given
+        nearCache.setMarketData(marketData("AAPL", AssetType.STOCK, "150.00"));
+        nearCache.setMarketData(marketData("BTC", AssetType.CRYPTO, "60000.00"));
+        Map<AssetType, List<String>> symbols = Map.of(AssetType.STOCK, List.of("AAPL"), AssetType.CRYPTO, List.of("BTC"));
+
+        // When
+        nearCache.invalidateMarketDataBatch(symbols);
+
+        // Then
+        assertEquals(0, nearCache.size());
+        verify(valkeyCache).invalidateMarketDataBatch(symbols);
+        verify(valkeyTemplate, times(3)).convertAndSend(eq(NearMarketDataCacheService.INVALIDATION_CHANNEL), anyString());
+    }
+
+    @Test
+    @DisplayName("Should keep written values in memory and tell the other nodes")
+    void shouldPublishInvalidationOnWrite() {
+        // Given
+        MarketData apple = marketData("AAPL", AssetType.STOCK, "151.00");
+
+        // When
+        nearCache.setMarketData(apple);
+        Optional<MarketData> result = nearCache.getMarketData("AAPL", AssetType.STOCK);
+
+        // Then
+        assertSame(apple, result.orElseThrow());
+        verify(valkeyCache).setMarketData(apple);
+        verify(valkeyCache, never()).getMarketData(anyString(), any());
+        verify(valkeyTemplate).convertAndSend(eq(NearMarketDataCacheService.INVALIDATION_CHANNEL), endsWith("|STOCK:AAPL"));
+    }
+
+    @Test
+    @DisplayName("Should split updates every node receives into a local and a shared write, without messages")
+    void shouldWriteUpdatesReceivedByEveryNodeWithoutPublishing() {
+        // Given
+        List<MarketData> updates = List.of(marketData("AAPL", AssetType.STOCK, "152.00"));
+
+        // When
+        nearCache.setLocalMarketDataBatch(updates);
+        nearCache.setSharedMarketDataBatch(updates);
+        Optional<MarketData> result = nearCache.getMarketData("AAPL", AssetType.STOCK);
+
+        // Then
+        assertSame(updates.get(0), result.orElseThrow());
+        verify(valkeyCache).setMarketDataBatch(updates);
+        verify(valkeyCache, never()).getMarketData(anyString(), any());
+        verifyNoInteractions(valkeyTemplate);
+    }
+
+    @Test
+    @DisplayName("Should expire an entry with the Valkey entry it was read from")
+    void shouldExpireWithValkeyEntry() {
+        // Given: Valkey returns an entry cached just before its TTL runs out
+        MarketData apple = marketData("AAPL", AssetType.STOCK, "150.00");
+        apple.setCachedAt(LocalDateTime.now().minus(ValkeyMarketDataCacheService.MARKET_DATA_TTL));
+        when(valkeyCache.getMarketData("AAPL", AssetType.STOCK)).thenReturn(Optional.of(apple));
+
+        // When
+        nearCache.getMarketData("AAPL", AssetType.STOCK);
+        nearCache.getMarketData("AAPL", AssetType.STOCK);
+
+        // Then: The second read goes back to Valkey
+        verify(valkeyCache, times(2)).getMarketData("AAPL", AssetType.STOCK);
+    }
+
+    @Test
+    @DisplayName("Should evict the least recently used entry when full")
+    void shouldEvictLeastRecentlyUsedEntry() {
+        // Given
+        NearMarketDataCacheService smallCache = new NearMarketDataCacheService(valkeyCache, valkeyTemplate, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(smallCache, "maxEntries", 2);
+        smallCache.setMarketData(marketData("AAPL", AssetType.STOCK, "150.00"));
+        smallCache.setMarketData(marketData("MSFT", AssetType.STOCK, "400.00"));
+
+        // When: AAPL is read, so MSFT becomes the least recently used entry
+        smallCache.getMarketData("AAPL", AssetType.STOCK);
+        smallCache.setMarketData(marketData("TSLA", AssetType.STOCK, "250.00"));
+        smallCache.getMarketData("MSFT", AssetType.STOCK);
+
+        // Then
+        assertEquals(2, smallCache.size());
+        verify(valkeyCache, never()).getMarketData("AAPL", AssetType.STOCK);
+        verify(valkeyCache).getMarketData("MSFT", AssetType.STOCK);
+    }
+
+    private double requests(String tier, String result) {
+        return meterRegistry.get("market.data.cache.requests").tag("tier", tier).tag("result", result).counter().count();
+    }
+
+    private DefaultMessage message(String payload) {
+        return new DefaultMessage(NearMarketDataCacheService.INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+            payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private MarketData marketData(String symbol, AssetType assetType, String price) {
+        MarketData marketData = new MarketData();
+        marketData.setSymbol(symbol);
+        marketData.setAssetType(assetType);
+        marketData.setPrice(new BigDecimal(price));
+        return marketData;
+    }
+}
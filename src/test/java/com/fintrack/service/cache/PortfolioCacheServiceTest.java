@@ -0,0 +1,196 @@
+package com.fintrack.service.cache;
+
+import com.fintrack.constants.finance.AssetType;
+import com.fintrack.model.market.MarketData;
+import com.fintrack.repository.finance.HoldingsRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("PortfolioCacheService Tests")
+class PortfolioCacheServiceTest {
+
+    @Mock
+    private RedisTemplate<String, Object> valkeyTemplate;
+
+    @Mock
+    private ValueOperations<String, Object> valueOperations;
+
+    @Mock
+    private HoldingsRepository holdingsRepository;
+
+    private ConcurrentMapCacheManager cacheManager;
+    private PortfolioCacheService portfolioCacheService;
+    private UUID testAccountId;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager = new ConcurrentMapCacheManager(PortfolioCacheService.PORTFOLIO_CACHE, PortfolioCacheService.PORTFOLIO_HISTORY_CACHE);
+        portfolioCacheService = new PortfolioCacheService(cacheManager, valkeyTemplate, holdingsRepository);
+        testAccountId = UUID.randomUUID();
+        lenient().when(valkeyTemplate.opsForValue()).thenReturn(valueOperations);
+    }
+
+    @Test
+    @DisplayName("Should compute a response once while the versions are unchanged")
+    void shouldServeRepeatedRequestsFromCache() {
+        // Given
+        when(valueOperations.multiGet(anyList())).thenReturn(Arrays.asList(null, null, null, null));
+        AtomicInteger computations = new AtomicInteger();
+
+        // When
+        for (int i = 0; i < 3; i++) {
+            portfolioCacheService.getPortfolioResponse("portfolio-data", testAccountId, "USD", null, () -> response(computations.incrementAndGet()));
+        }
+
+        // Then
+        assertEquals(1, computations.get());
+    }
+
+    @Test
+    @DisplayName("Should recompute after the price version of the account changes")
+    void shouldRecomputeAfterVersionBump() {
+        // Given: The price version moves from 0 to 1 between the requests
+        when(valueOperations.multiGet(anyList()))
+            .thenReturn(Arrays.asList(null, null, null, null))
+            .thenReturn(Arrays.asList(null, 1, null, null));
+        AtomicInteger computations = new AtomicInteger();
+
+        // When
+        List<Map<String, Object>> first = portfolioCacheService.getPortfolioResponse("portfolio-data", testAccountId, "USD", null,
+            () -> response(computations.incrementAndGet()));
+        List<Map<String, Object>> second = portfolioCacheService.getPortfolioResponse("portfolio-data", testAccountId, "USD", null,
+            () -> response(computations.incrementAndGet()));
+
+        // Then
+        assertEquals(2, computations.get());
+        assertNotEquals(first, second);
+    }
+
+    @Test
+    @DisplayName("Should keep USD responses when only the FX version changes")
+    void shouldIgnoreFxVersionForUsdResponses() {
+        // Given
+        when(valueOperations.multiGet(anyList()))
+            .thenReturn(Arrays.asList(null, null, null, null))
+            .thenReturn(Arrays.asList(null, null, 5, null));
+        AtomicInteger computations = new AtomicInteger();
+
+        // When
+        portfolioCacheService.getPortfolioResponse("portfolio-data", testAccountId, "USD", null, () -> response(computations.incrementAndGet()));
+        portfolioCacheService.getPortfolioResponse("portfolio-data", testAccountId, "USD", null, () -> response(computations.incrementAndGet()));
+
+        // Then
+        assertEquals(1, computations.get());
+    }
+
+    @Test
+    @DisplayName("Should compute the response when the version store is unavailable")
+    void shouldFallBackToComputationOnCacheFailure() {
+        // Given
+        when(valueOperations.multiGet(anyList())).thenThrow(new RuntimeException("connection refused"));
+
+        // When
+        List<Map<String, Object>> result = portfolioCacheService.getPortfolioResponse("portfolio-data", testAccountId, "USD", null, () -> response(1));
+
+        // Then
+        assertEquals(response(1), result);
+    }
+
+    @Test
+    @DisplayName("Should bump the price version of the accounts holding an updated symbol")
+    void shouldBumpPriceVersionsOfHolders() {
+        // Given
+        UUID otherAccountId = UUID.randomUUID();
+        when(holdingsRepository.findAccountIdsHoldingSymbols(Set.of("AAPL", "EUR", "USD"))).thenReturn(List.of(testAccountId, otherAccountId));
+        ValueOperations<String, Object> pipelined = runPipelinesOn();
+
+        // When
+        portfolioCacheService.onPriceUpdates(List.of(marketData("AAPL", AssetType.STOCK), marketData("EUR/USD", AssetType.FOREX)));
+
+        // Then: All versions are bumped in one round trip
+        verify(valkeyTemplate, times(1)).executePipelined(any(SessionCallback.class));
+        verify(pipelined).increment("portfolio_version:" + testAccountId + ":prices");
+        verify(pipelined).increment("portfolio_version:" + otherAccountId + ":prices");
+        verify(pipelined).increment("portfolio_version:fx");
+        verify(valueOperations, never()).increment(anyString());
+    }
+
+    @Test
+    @DisplayName("Should bump the account version when holdings or categories change")
+    void shouldBumpAccountVersion() {
+        // When: No transaction is active, so the bump happens immediately
+        portfolioCacheService.onAccountChanged(testAccountId);
+
+        // Then
+        verify(valueOperations).increment("portfolio_version:" + testAccountId + ":account");
+    }
+
+    @Test
+    @DisplayName("Should change the monthly valuation version with the account and history versions only")
+    void shouldTrackMonthlyValuationVersion() {
+        // Given: The price and FX versions move, then the history version
+        when(valueOperations.multiGet(anyList()))
+            .thenReturn(Arrays.asList(1, 1, 1, 1))
+            .thenReturn(Arrays.asList(1, 2, 2, 1))
+            .thenReturn(Arrays.asList(1, 2, 2, 2))
+            .thenThrow(new RuntimeException("Valkey down"));
+
+        // When
+        String first = portfolioCacheService.monthlyValuationVersion(testAccountId);
+        String second = portfolioCacheService.monthlyValuationVersion(testAccountId);
+        String third = portfolioCacheService.monthlyValuationVersion(testAccountId);
+        String unavailable = portfolioCacheService.monthlyValuationVersion(testAccountId);
+
+        // Then
+        assertEquals(first, second);
+        assertNotEquals(second, third);
+        assertNull(unavailable);
+    }
+
+    private List<Map<String, Object>> response(int computation) {
+        return List.of(Map.of("computation", computation));
+    }
+
+    /**
+     * Makes executePipelined run its callback against a mocked connection, as the template would.
+     *
+     * @return The value operations of the pipeline
+     */
+    @SuppressWarnings("unchecked")
+    private ValueOperations<String, Object> runPipelinesOn() {
+        RedisOperations<String, Object> pipeline = mock(RedisOperations.class);
+        ValueOperations<String, Object> pipelined = mock(ValueOperations.class);
+        when(pipeline.opsForValue()).thenReturn(pipelined);
+        when(valkeyTemplate.executePipelined(any(SessionCallback.class))).thenAnswer(invocation -> {
+            invocation.<SessionCallback<Object>>getArgument(0).execute(pipeline);
+            return List.of();
+        });
+        return pipelined;
+    }
+
+    private MarketData marketData(String symbol, AssetType assetType) {
+        MarketData marketData = new MarketData();
+        marketData.setSymbol(symbol);
+        marketData.setAssetType(assetType);
+        marketData.setPrice(BigDecimal.ONE);
+        return marketData;
+    }
+}
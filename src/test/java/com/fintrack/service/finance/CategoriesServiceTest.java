@@ -5,6 +5,7 @@ import com.fintrack.repository.finance.CategoriesRepository;
 import com.fintrack.repository.finance.SubcategoriesRepository;
 import com.fintrack.repository.finance.HoldingsCategoriesRepository;
 import com.fintrack.constants.Color;
+import com.fintrack.service.cache.PortfolioCacheService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
@@ -32,6 +33,9 @@ class CategoriesServiceTest {
     @Mock
     private HoldingsCategoriesRepository holdingsCategoriesRepository;
 
+    @Mock
+    private PortfolioCacheService portfolioCacheService;
+
     private CategoriesService categoriesService;
     private UUID testAccountId;
 
@@ -40,7 +44,8 @@ class CategoriesServiceTest {
         categoriesService = new CategoriesService(
             categoriesRepository,
             subcategoriesRepository,
-            holdingsCategoriesRepository
+            holdingsCategoriesRepository,
+            portfolioCacheService
         );
         testAccountId = UUID.randomUUID();
     }
@@ -5,6 +5,7 @@ import com.fintrack.repository.finance.HoldingsCategoriesRepository;
 import com.fintrack.repository.finance.CategoriesRepository;
 import com.fintrack.repository.finance.SubcategoriesRepository;
 import com.fintrack.repository.finance.AssetRepository;
+import com.fintrack.service.cache.PortfolioCacheService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
@@ -34,6 +35,9 @@ class HoldingsCategoriesServiceTest {
     @Mock
     private AssetRepository assetRepository;
 
+    @Mock
+    private PortfolioCacheService portfolioCacheService;
+
     private HoldingsCategoriesService holdingsCategoriesService;
     private UUID testAccountId;
 
@@ -43,7 +47,8 @@ class HoldingsCategoriesServiceTest {
             holdingsCategoriesRepository,
             categoriesRepository,
             subcategoriesRepository,
-            assetRepository
+            assetRepository,
+            portfolioCacheService
         );
         testAccountId = UUID.randomUUID();
     }
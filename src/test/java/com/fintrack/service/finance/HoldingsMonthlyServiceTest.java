@@ -30,6 +30,9 @@ class HoldingsMonthlyServiceTest {
     @Mock
     private TransactionRepository transactionRepository;
 
+    @Mock
+    private PortfolioValueMonthlyService portfolioValueMonthlyService;
+
     private HoldingsMonthlyService holdingsMonthlyService;
     private UUID testAccountId;
 
@@ -37,7 +40,8 @@ class HoldingsMonthlyServiceTest {
     void setUp() {
         holdingsMonthlyService = new HoldingsMonthlyService(
             holdingsMonthlyRepository,
-            transactionRepository
+            transactionRepository,
+            portfolioValueMonthlyService
         );
         testAccountId = UUID.randomUUID();
     }
@@ -134,6 +138,33 @@ class HoldingsMonthlyServiceTest {
         verify(holdingsMonthlyRepository, times(3)).save(any(HoldingsMonthly.class));
     }
 
+    @Test
+    @DisplayName("Should invalidate monthly valuations only for months whose holdings changed")
+    void shouldInvalidateMonthlyValuationsOnlyForChangedMonths() {
+        // Given: January is recalculated unchanged and a December month disappears
+        List<HoldingsMonthly> previousHoldings = new ArrayList<>(createSampleMonthlyHoldings());
+        HoldingsMonthly removed = new HoldingsMonthly();
+        removed.setAccountId(testAccountId);
+        removed.setAssetName("AAPL");
+        removed.setSymbol("AAPL");
+        removed.setUnit("USD");
+        removed.setAssetType(AssetType.STOCK);
+        removed.setDate(LocalDate.of(2023, 12, 31));
+        removed.setTotalBalance(new BigDecimal("10.00"));
+        previousHoldings.add(removed);
+
+        when(transactionRepository.findByAccountIdOrderByDateDesc(testAccountId))
+            .thenReturn(createSampleTransactionsSingleMonth());
+        when(holdingsMonthlyRepository.findByAccountId(testAccountId))
+            .thenReturn(previousHoldings);
+
+        // When: Updating monthly holdings
+        holdingsMonthlyService.updateMonthlyHoldingsForAccount(testAccountId);
+
+        // Then: Only the removed month is invalidated
+        verify(portfolioValueMonthlyService).invalidateMonths(testAccountId, Set.of(LocalDate.of(2023, 12, 31)));
+    }
+
     @Test
     @DisplayName("Should handle update monthly holdings with no transactions")
     void shouldHandleUpdateMonthlyHoldingsWithNoTransactions() {
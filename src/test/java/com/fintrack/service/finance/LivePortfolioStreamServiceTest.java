@@ -0,0 +1,274 @@
+package com.fintrack.service.finance;
+
+import com.fintrack.component.calculator.FxRateMatrix;
+import com.fintrack.component.calculator.PriceSnapshot;
+import com.fintrack.constants.finance.AssetType;
+import com.fintrack.dto.market.MarketDataDto;
+import com.fintrack.model.finance.Holdings;
+import com.fintrack.model.market.MarketData;
+import com.fintrack.repository.finance.HoldingsRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("LivePortfolioStreamService Tests")
+class LivePortfolioStreamServiceTest {
+
+    @Mock
+    private HoldingsRepository holdingsRepository;
+
+    @Mock
+    private PriceSnapshotResolver priceSnapshotResolver;
+
+    private final List<RecordingEmitter> emitters = new ArrayList<>();
+    // Events are written on the calling thread unless a test says otherwise
+    private Executor sendExecutor = Runnable::run;
+    private LivePortfolioStreamService livePortfolioStreamService;
+    private UUID testAccountId;
+
+    @BeforeEach
+    void setUp() {
+        livePortfolioStreamService = new LivePortfolioStreamService(holdingsRepository, priceSnapshotResolver) {
+            @Override
+            SseEmitter createEmitter() {
+                RecordingEmitter emitter = new RecordingEmitter();
+                emitters.add(emitter);
+                return emitter;
+            }
+
+            @Override
+            Executor sendExecutor() {
+                return sendExecutor;
+            }
+        };
+        testAccountId = UUID.randomUUID();
+    }
+
+    @Test
+    @DisplayName("Should send the current valuation when a stream opens")
+    void shouldSendSnapshotOnSubscribe() {
+        // Given
+        when(holdingsRepository.findHoldingsByAccount(testAccountId)).thenReturn(List.of(createHolding("Apple", "AAPL", 10.0)));
+        when(priceSnapshotResolver.resolve(anyList(), eq("USD"), isNull())).thenReturn(prices(null, stockPrice("AAPL", "150.00")));
+
+        // When
+        livePortfolioStreamService.subscribe(testAccountId, "USD");
+
+        // Then
+        RecordingEmitter emitter = emitters.get(0);
+        assertEquals(List.of(LivePortfolioStreamService.SNAPSHOT_EVENT), emitter.eventNames);
+        List<Map<String, Object>> rows = emitter.rows(0);
+        assertEquals(1, rows.size());
+        assertEquals(0, new BigDecimal("1500").compareTo((BigDecimal) rows.get(0).get("totalValueInBaseCurrency")));
+        assertEquals(1, livePortfolioStreamService.getLiveValuationCount());
+    }
+
+    @Test
+    @DisplayName("Should push only the rows whose values changed")
+    void shouldPushOnlyChangedRows() {
+        // Given: Two holdings, only Apple moves
+        when(holdingsRepository.findHoldingsByAccount(testAccountId))
+            .thenReturn(List.of(createHolding("Apple", "AAPL", 10.0), createHolding("Microsoft", "MSFT", 2.0)));
+        when(priceSnapshotResolver.resolve(anyList(), eq("USD"), isNull()))
+            .thenReturn(prices(null, stockPrice("AAPL", "150.00"), stockPrice("MSFT", "400.00")));
+        livePortfolioStreamService.subscribe(testAccountId, "USD");
+
+        // When
+        livePortfolioStreamService.onPriceUpdates(List.of(marketData("AAPL", AssetType.STOCK, "151.00"), marketData("MSFT", AssetType.STOCK, "400.00")));
+
+        // Then
+        RecordingEmitter emitter = emitters.get(0);
+        assertEquals(List.of(LivePortfolioStreamService.SNAPSHOT_EVENT, LivePortfolioStreamService.UPDATE_EVENT), emitter.eventNames);
+        List<Map<String, Object>> rows = emitter.rows(1);
+        assertEquals(1, rows.size());
+        assertEquals("Apple", rows.get(0).get("assetName"));
+        assertEquals(0, new BigDecimal("1510").compareTo((BigDecimal) rows.get(0).get("totalValueInBaseCurrency")));
+    }
+
+    @Test
+    @DisplayName("Should not push anything for symbols the account does not hold")
+    void shouldIgnoreUnheldSymbols() {
+        // Given
+        when(holdingsRepository.findHoldingsByAccount(testAccountId)).thenReturn(List.of(createHolding("Apple", "AAPL", 10.0)));
+        when(priceSnapshotResolver.resolve(anyList(), eq("USD"), isNull())).thenReturn(prices(null, stockPrice("AAPL", "150.00")));
+        livePortfolioStreamService.subscribe(testAccountId, "USD");
+
+        // When
+        livePortfolioStreamService.onPriceUpdates(List.of(marketData("TSLA", AssetType.STOCK, "250.00"), marketData("EUR/USD", AssetType.FOREX, "1.10")));
+
+        // Then: A USD account holding only US stocks does not depend on FX either
+        assertEquals(List.of(LivePortfolioStreamService.SNAPSHOT_EVENT), emitters.get(0).eventNames);
+    }
+
+    @Test
+    @DisplayName("Should revalue accounts in another base currency when FX rates move")
+    void shouldPushFxUpdatesToNonUsdValuations() {
+        // Given
+        when(holdingsRepository.findHoldingsByAccount(testAccountId)).thenReturn(List.of(createHolding("Apple", "AAPL", 10.0)));
+        when(priceSnapshotResolver.resolve(anyList(), eq("EUR"), isNull()))
+            .thenReturn(prices(FxRateMatrix.build(Map.of("EUR/USD", new BigDecimal("1.25")), 0L), stockPrice("AAPL", "150.00")));
+        livePortfolioStreamService.subscribe(testAccountId, "EUR");
+        BigDecimal before = (BigDecimal) emitters.get(0).rows(0).get(0).get("totalValueInBaseCurrency");
+
+        // When
+        livePortfolioStreamService.onPriceUpdates(List.of(marketData("EUR/USD", AssetType.FOREX, "1.60")));
+
+        // Then
+        RecordingEmitter emitter = emitters.get(0);
+        assertEquals(List.of(LivePortfolioStreamService.SNAPSHOT_EVENT, LivePortfolioStreamService.UPDATE_EVENT), emitter.eventNames);
+        BigDecimal after = (BigDecimal) emitter.rows(1).get(0).get("totalValueInBaseCurrency");
+        assertEquals(0, new BigDecimal("1200").compareTo(before));
+        assertEquals(0, new BigDecimal("937.5").compareTo(after));
+    }
+
+    @Test
+    @DisplayName("Should send a new snapshot with removed assets when holdings change")
+    void shouldReloadOnHoldingsChange() {
+        // Given
+        when(holdingsRepository.findHoldingsByAccount(testAccountId))
+            .thenReturn(List.of(createHolding("Apple", "AAPL", 10.0), createHolding("Microsoft", "MSFT", 2.0)))
+            .thenReturn(List.of(createHolding("Apple", "AAPL", 12.0)));
+        when(priceSnapshotResolver.resolve(anyList(), eq("USD"), isNull()))
+            .thenReturn(prices(null, stockPrice("AAPL", "150.00"), stockPrice("MSFT", "400.00")));
+        livePortfolioStreamService.subscribe(testAccountId, "USD");
+
+        // When: No transaction is active, so the reload happens immediately
+        livePortfolioStreamService.onHoldingsChanged(testAccountId);
+
+        // Then
+        RecordingEmitter emitter = emitters.get(0);
+        assertEquals(List.of(LivePortfolioStreamService.SNAPSHOT_EVENT, LivePortfolioStreamService.SNAPSHOT_EVENT), emitter.eventNames);
+        assertEquals(List.of("Microsoft"), emitter.payloads.get(1).get("removedAssets"));
+        assertEquals(1, emitter.rows(1).size());
+
+        // And: Microsoft updates no longer reach the stream
+        livePortfolioStreamService.onPriceUpdates(List.of(marketData("MSFT", AssetType.STOCK, "410.00")));
+        assertEquals(2, emitter.eventNames.size());
+    }
+
+    @Test
+    @DisplayName("Should apply a price updated while the stream opens")
+    void shouldApplyPricesUpdatedWhileSubscribing() throws Exception {
+        // Given: AAPL moves in the cache right after the prices are read, and the update arrives on the listener thread
+        List<Thread> listeners = new ArrayList<>();
+        when(holdingsRepository.findHoldingsByAccount(testAccountId)).thenReturn(List.of(createHolding("Apple", "AAPL", 10.0)));
+        when(priceSnapshotResolver.resolve(anyList(), eq("USD"), isNull())).thenAnswer(invocation -> {
+            Thread listener = new Thread(() ->
+                livePortfolioStreamService.onPriceUpdates(List.of(marketData("AAPL", AssetType.STOCK, "151.00"))));
+            listener.start();
+            listeners.add(listener);
+            return prices(null, stockPrice("AAPL", "150.00"));
+        });
+
+        // When
+        livePortfolioStreamService.subscribe(testAccountId, "USD");
+        listeners.get(0).join();
+
+        // Then: The client ends up with the new price, whichever event carries it
+        RecordingEmitter emitter = emitters.get(0);
+        Map<String, Object> lastRow = emitter.rows(emitter.payloads.size() - 1).get(0);
+        assertEquals(0, new BigDecimal("1510").compareTo((BigDecimal) lastRow.get("totalValueInBaseCurrency")));
+    }
+
+    @Test
+    @DisplayName("Should close a stream whose client falls too far behind")
+    void shouldCloseStreamsOfSlowClients() {
+        // Given: Queued events are never written, as for a client that stopped reading
+        List<Runnable> sends = new ArrayList<>();
+        sendExecutor = sends::add;
+        ReflectionTestUtils.setField(livePortfolioStreamService, "queueCapacity", 1);
+        when(holdingsRepository.findHoldingsByAccount(testAccountId)).thenReturn(List.of(createHolding("Apple", "AAPL", 10.0)));
+        when(priceSnapshotResolver.resolve(anyList(), eq("USD"), isNull())).thenReturn(prices(null, stockPrice("AAPL", "150.00")));
+        livePortfolioStreamService.subscribe(testAccountId, "USD");
+
+        // When: The update does not fit behind the snapshot
+        livePortfolioStreamService.onPriceUpdates(List.of(marketData("AAPL", AssetType.STOCK, "151.00")));
+
+        // Then: The listener was not held up, and the stream is dropped
+        assertEquals(1, sends.size());
+        assertTrue(emitters.get(0).eventNames.isEmpty());
+        assertEquals(0, livePortfolioStreamService.getLiveValuationCount());
+    }
+
+    @Test
+    @DisplayName("Should not load holdings for accounts without an open stream")
+    void shouldIgnoreAccountsWithoutStreams() {
+        // When
+        livePortfolioStreamService.onHoldingsChanged(testAccountId);
+        livePortfolioStreamService.onPriceUpdates(List.of(marketData("AAPL", AssetType.STOCK, "151.00")));
+
+        // Then
+        verifyNoInteractions(holdingsRepository, priceSnapshotResolver);
+        assertEquals(0, livePortfolioStreamService.getLiveValuationCount());
+    }
+
+    private PriceSnapshot prices(FxRateMatrix fxRates, MarketDataDto... marketDataDtos) {
+        return fxRates == null
+            ? PriceSnapshot.of(null, List.of(marketDataDtos))
+            : PriceSnapshot.of(null, List.of(marketDataDtos), fxRates);
+    }
+
+    private MarketDataDto stockPrice(String symbol, String price) {
+        return new MarketDataDto(symbol, new BigDecimal(price), AssetType.STOCK);
+    }
+
+    private MarketData marketData(String symbol, AssetType assetType, String price) {
+        MarketData marketData = new MarketData();
+        marketData.setSymbol(symbol);
+        marketData.setAssetType(assetType);
+        marketData.setPrice(new BigDecimal(price));
+        return marketData;
+    }
+
+    private Holdings createHolding(String assetName, String symbol, double balance) {
+        Holdings holding = new Holdings();
+        holding.setAccountId(testAccountId);
+        holding.setAssetName(assetName);
+        holding.setSymbol(symbol);
+        holding.setUnit("shares");
+        holding.setAssetType(AssetType.STOCK);
+        holding.setTotalBalance(balance);
+        return holding;
+    }
+
+    /**
+     * Keeps the events sent to the client instead of writing them to a response.
+     */
+    private static class RecordingEmitter extends SseEmitter {
+        private final List<String> eventNames = new ArrayList<>();
+        private final List<Map<String, Object>> payloads = new ArrayList<>();
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void send(SseEventBuilder builder) {
+            for (ResponseBodyEmitter.DataWithMediaType part : builder.build()) {
+                Object data = part.getData();
+                if (data instanceof Map) {
+                    payloads.add((Map<String, Object>) data);
+                } else if (data instanceof String text && text.startsWith("event:")) {
+                    eventNames.add(text.substring("event:".length(), text.indexOf('\n')));
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> rows(int eventIndex) {
+            return (List<Map<String, Object>>) payloads.get(eventIndex).get("rows");
+        }
+    }
+}
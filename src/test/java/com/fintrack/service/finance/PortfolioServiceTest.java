@@ -1,19 +1,25 @@
 package com.fintrack.service.finance;
 
+import com.fintrack.component.chart.BarChartSeries;
 import com.fintrack.dto.market.MarketDataDto;
 import com.fintrack.model.finance.Category;
 import com.fintrack.model.finance.Holdings;
 import com.fintrack.model.finance.HoldingsCategory;
-import com.fintrack.model.finance.HoldingsMonthly;
+import com.fintrack.model.finance.PortfolioValueMonthly;
+import com.fintrack.model.market.MarketData;
 import com.fintrack.repository.finance.CategoriesRepository;
 import com.fintrack.repository.finance.HoldingsCategoriesRepository;
-import com.fintrack.repository.finance.HoldingsMonthlyRepository;
 import com.fintrack.repository.finance.HoldingsRepository;
 import com.fintrack.repository.finance.SubcategoriesRepository;
 import com.fintrack.repository.market.MarketDataMonthlyRepository;
 import com.fintrack.repository.market.MarketDataRepository;
+import com.fintrack.service.cache.PortfolioCacheService;
+import com.fintrack.service.market.FxConversionService;
+import com.fintrack.service.market.MarketDataRefreshService;
 import com.fintrack.service.market.MarketDataService;
+import com.fintrack.service.market.PriceHistoryStore;
 import com.fintrack.constants.finance.AssetType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
@@ -23,7 +29,9 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Supplier;
 
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
@@ -36,9 +44,6 @@ class PortfolioServiceTest {
     @Mock
     private HoldingsRepository holdingsRepository;
     
-    @Mock
-    private HoldingsMonthlyRepository holdingsMonthlyRepository;
-    
     @Mock
     private HoldingsCategoriesRepository holdingsCategoriesRepository;
     
@@ -54,9 +59,21 @@ class PortfolioServiceTest {
     @Mock
     private MarketDataMonthlyRepository marketDataMonthlyRepository;
     
+    @Mock
+    private FxConversionService fxConversionService;
+
+    @Mock
+    private PortfolioValueMonthlyService portfolioValueMonthlyService;
+
     @Mock
     private MarketDataService marketDataService;
 
+    @Mock
+    private PortfolioCacheService portfolioCacheService;
+
+    @Mock
+    private MarketDataRefreshService marketDataRefreshService;
+
     private PortfolioService portfolioService;
     private UUID testAccountId;
     private String testBaseCurrency;
@@ -65,15 +82,23 @@ class PortfolioServiceTest {
     void setUp() {
         portfolioService = new PortfolioService(
             holdingsRepository,
-            holdingsMonthlyRepository,
             holdingsCategoriesRepository,
-            marketDataRepository,
-            marketDataMonthlyRepository,
             categoriesRepository,
             subcategoriesRepository,
-            marketDataService
+            new PriceSnapshotResolver(marketDataRepository,
+                new PriceHistoryStore(marketDataMonthlyRepository, new SimpleMeterRegistry()), fxConversionService),
+            portfolioValueMonthlyService,
+            marketDataService,
+            portfolioCacheService,
+            marketDataRefreshService
         );
         testAccountId = UUID.randomUUID();
+
+        // Cache misses by default: every response is computed
+        lenient().when(portfolioCacheService.getPortfolioResponse(anyString(), any(), anyString(), any(), any()))
+            .thenAnswer(invocation -> invocation.<Supplier<List<Map<String, Object>>>>getArgument(4).get());
+        lenient().when(portfolioCacheService.getClosedMonths(any(), anyString(), any(), any()))
+            .thenAnswer(invocation -> invocation.<Supplier<List<Map<String, Object>>>>getArgument(3).get());
         testBaseCurrency = "USD";
     }
 
@@ -243,7 +268,164 @@ class PortfolioServiceTest {
         verify(holdingsRepository).findHoldingsByAccount(testAccountId);
     }
 
+    @Test
+    @DisplayName("Should load category data once across all months of the bar chart")
+    void shouldLoadCategoryDataOnceAcrossAllMonthsOfBarChart() {
+        // Given: Three materialized months and a category with one subcategory
+        List<PortfolioValueMonthly> monthlyValues = List.of(
+            createMonthlyValue(LocalDate.of(2024, 1, 31)),
+            createMonthlyValue(LocalDate.of(2024, 2, 29)),
+            createMonthlyValue(LocalDate.of(2024, 3, 31))
+        );
+        Category category = createCategory(7, "Sector", 0);
+        Category subcategory = createCategory(8, "Technology", 1);
+        HoldingsCategory holdingsCategory = new HoldingsCategory();
+        holdingsCategory.setAssetName("Apple");
+        holdingsCategory.setCategory("Sector");
+        holdingsCategory.setSubcategory("Technology");
+
+        when(portfolioValueMonthlyService.getMonthlyValues(testAccountId, testBaseCurrency)).thenReturn(monthlyValues);
+        when(categoriesRepository.findCategoryIdByAccountIdAndCategoryName(testAccountId, "Sector")).thenReturn(7);
+        when(subcategoriesRepository.findSubcategoriesByParentId(testAccountId, 7)).thenReturn(List.of(subcategory));
+        when(holdingsCategoriesRepository.findHoldingsCategoryByAccountId(testAccountId)).thenReturn(List.of(holdingsCategory));
+        when(categoriesRepository.findById(7)).thenReturn(Optional.of(category));
+        lenient().when(holdingsRepository.findHoldingsByAccount(testAccountId)).thenReturn(new ArrayList<>());
+
+        PortfolioComputationContext context = new PortfolioComputationContext();
+
+        // When
+        List<BarChartSeries> result = portfolioService.calculatePortfolioBarChartsData(testAccountId, "Sector", testBaseCurrency, context);
+
+        // Then: Each category lookup happens once; two monthly charts and the combined chart reuse it
+        assertEquals(3, result.size());
+        verify(categoriesRepository, times(1)).findCategoryIdByAccountIdAndCategoryName(testAccountId, "Sector");
+        verify(subcategoriesRepository, times(1)).findSubcategoriesByParentId(testAccountId, 7);
+        verify(holdingsCategoriesRepository, times(1)).findHoldingsCategoryByAccountId(testAccountId);
+        verify(categoriesRepository, times(1)).findById(7);
+        assertEquals(2 * 4 + 2, context.getLookupsSaved());
+        // Closed months are read from the materialized series without any price lookups
+        verifyNoInteractions(marketDataMonthlyRepository, marketDataRepository);
+    }
+
+    @Test
+    @DisplayName("Should serve a cached portfolio response without resolving prices")
+    void shouldServeCachedPortfolioResponse() {
+        // Given
+        List<Map<String, Object>> cached = List.of(Map.of("assetName", "Apple"));
+        doReturn(cached).when(portfolioCacheService)
+            .getPortfolioResponse(eq(PortfolioService.PORTFOLIO_DATA), eq(testAccountId), eq(testBaseCurrency), isNull(), any());
+
+        // When
+        List<Map<String, Object>> result = portfolioService.calculatePortfolioData(testAccountId, testBaseCurrency);
+
+        // Then
+        assertSame(cached, result);
+        verifyNoInteractions(marketDataService, marketDataRepository);
+    }
+
+    @Test
+    @DisplayName("Should still request fresh prices in the background on a cache hit")
+    void shouldRequestMarketDataRefreshOnCacheHit() {
+        // Given: A cached response, in the default synchronous refresh mode
+        Holdings holding = new Holdings();
+        holding.setAccountId(testAccountId);
+        holding.setSymbol("AAPL");
+        holding.setAssetType(AssetType.STOCK);
+        holding.setTotalBalance(10.0);
+        when(holdingsRepository.findHoldingsByAccount(testAccountId)).thenReturn(List.of(holding));
+        doReturn(List.of(Map.of("assetName", "Apple"))).when(portfolioCacheService)
+            .getPortfolioResponse(eq(PortfolioService.PORTFOLIO_DATA), eq(testAccountId), eq(testBaseCurrency), isNull(), any());
+        doReturn(List.of()).when(portfolioCacheService)
+            .getPortfolioResponse(eq(PortfolioService.PIECHART_DATA), eq(testAccountId), eq(testBaseCurrency), eq("None"), any());
+        when(marketDataRefreshService.refreshAsync(eq(testAccountId), anyList())).thenReturn(true);
+        PortfolioComputationContext context = new PortfolioComputationContext();
+
+        // When: Two cached responses are served in the same request
+        portfolioService.calculatePortfolioData(testAccountId, testBaseCurrency, context);
+        portfolioService.calculatePortfolioPieChartData(testAccountId, "None", testBaseCurrency, context);
+
+        // Then: One background refresh of the holdings, without waiting for it
+        verify(marketDataRefreshService, times(1)).refreshAsync(testAccountId,
+            List.of(Map.of("symbol", "AAPL", "assetType", AssetType.STOCK.getAssetTypeName())));
+        verifyNoInteractions(marketDataService);
+        assertTrue(context.isRefreshPending());
+    }
+
+    @Test
+    @DisplayName("Should reuse cached closed months and only value the current month")
+    void shouldReuseCachedClosedMonthsOfBarChart() {
+        // Given
+        BarChartSeries january = new BarChartSeries("2024-01-31", List.of());
+        doReturn(List.of(january)).when(portfolioCacheService)
+            .getClosedMonths(eq(testAccountId), eq(testBaseCurrency), eq("None"), any());
+        lenient().when(holdingsRepository.findHoldingsByAccount(testAccountId)).thenReturn(new ArrayList<>());
+
+        // When
+        List<BarChartSeries> result = portfolioService.calculatePortfolioBarChartsData(testAccountId, "None", testBaseCurrency);
+
+        // Then
+        assertEquals(List.of(january), result);
+        verifyNoInteractions(portfolioValueMonthlyService);
+    }
+
+    @Test
+    @DisplayName("Should answer from stored prices and refresh in the background in async refresh mode")
+    void shouldRefreshInBackgroundInAsyncMode() {
+        // Given
+        Holdings holding = new Holdings();
+        holding.setAccountId(testAccountId);
+        holding.setAssetName("Apple");
+        holding.setSymbol("AAPL");
+        holding.setUnit("shares");
+        holding.setAssetType(AssetType.STOCK);
+        holding.setTotalBalance(10.0);
+        LocalDateTime updatedAt = LocalDateTime.of(2024, 3, 1, 9, 30);
+        MarketData storedPrice = new MarketData();
+        storedPrice.setSymbol("AAPL");
+        storedPrice.setAssetType(AssetType.STOCK);
+        storedPrice.setPrice(new BigDecimal("150.00"));
+        storedPrice.setUpdatedAt(updatedAt);
+
+        when(holdingsRepository.findHoldingsByAccount(testAccountId)).thenReturn(List.of(holding));
+        when(marketDataRepository.findMarketDataBySymbols(anyList())).thenReturn(List.of(storedPrice));
+        when(marketDataRefreshService.refreshAsync(eq(testAccountId), anyList())).thenReturn(true);
+
+        PortfolioComputationContext context = new PortfolioComputationContext(true);
+
+        // When
+        List<Map<String, Object>> result = portfolioService.calculatePortfolioData(testAccountId, testBaseCurrency, context);
+
+        // Then: The response uses the stored price and reports its age and the pending refresh
+        assertEquals(1, result.size());
+        verify(marketDataRefreshService).refreshAsync(eq(testAccountId), anyList());
+        verifyNoInteractions(marketDataService);
+        assertTrue(context.isRefreshPending());
+        assertEquals(updatedAt, context.getPricesAsOf());
+    }
+
     // Helper methods to create test data
+    private PortfolioValueMonthly createMonthlyValue(LocalDate date) {
+        PortfolioValueMonthly monthlyValue = new PortfolioValueMonthly();
+        monthlyValue.setAccountId(testAccountId);
+        monthlyValue.setDate(date);
+        monthlyValue.setAssetName("Apple");
+        monthlyValue.setSymbol("AAPL");
+        monthlyValue.setAssetType(AssetType.STOCK);
+        monthlyValue.setBaseCurrency(testBaseCurrency);
+        monthlyValue.setQuantity(new BigDecimal("10"));
+        monthlyValue.setPriceInBaseCurrency(new BigDecimal("150"));
+        monthlyValue.setTotalValueInBaseCurrency(new BigDecimal("1500"));
+        return monthlyValue;
+    }
+
+    private Category createCategory(Integer categoryId, String categoryName, Integer priority) {
+        Category category = new Category();
+        category.setCategoryId(categoryId);
+        category.setCategoryName(categoryName);
+        category.setPriority(priority);
+        return category;
+    }
+
     private List<Holdings> createLargeHoldingsDataset() {
         List<Holdings> holdings = new ArrayList<>();
         
@@ -0,0 +1,277 @@
+package com.fintrack.service.finance;
+
+import com.fintrack.component.calculator.PriceSnapshot;
+import com.fintrack.constants.finance.AssetType;
+import com.fintrack.dto.market.MarketDataDto;
+import com.fintrack.model.finance.HoldingsMonthly;
+import com.fintrack.model.finance.PortfolioValueMonthly;
+import com.fintrack.repository.finance.HoldingsMonthlyRepository;
+import com.fintrack.repository.finance.PortfolioValueMonthlyRepository;
+import com.fintrack.service.cache.PortfolioCacheService;
+import com.fintrack.service.market.event.HistoricalMarketDataEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("PortfolioValueMonthlyService Tests")
+class PortfolioValueMonthlyServiceTest {
+
+    private static final LocalDate JANUARY = LocalDate.of(2024, 1, 31);
+    private static final LocalDate FEBRUARY = LocalDate.of(2024, 2, 29);
+
+    @Mock
+    private PortfolioValueMonthlyRepository portfolioValueMonthlyRepository;
+
+    @Mock
+    private HoldingsMonthlyRepository holdingsMonthlyRepository;
+
+    @Mock
+    private PriceSnapshotResolver priceSnapshotResolver;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private PortfolioCacheService portfolioCacheService;
+
+    private PortfolioValueMonthlyService portfolioValueMonthlyService;
+    private UUID testAccountId;
+
+    @BeforeEach
+    void setUp() {
+        portfolioValueMonthlyService = new PortfolioValueMonthlyService(
+            portfolioValueMonthlyRepository,
+            holdingsMonthlyRepository,
+            priceSnapshotResolver,
+            transactionManager,
+            portfolioCacheService
+        );
+        testAccountId = UUID.randomUUID();
+        lenient().when(portfolioCacheService.monthlyValuationVersion(any())).thenReturn("a1.h1");
+    }
+
+    @Test
+    @DisplayName("Should value and store only the months that are not materialized yet")
+    void shouldMaterializeOnlyMissingMonths() {
+        // Given: January is materialized, February is not
+        when(holdingsMonthlyRepository.findDistinctDatesByAccountId(testAccountId)).thenReturn(List.of(JANUARY, FEBRUARY));
+        when(portfolioValueMonthlyRepository.findByAccountIdAndBaseCurrencyOrderByDateAsc(testAccountId, "USD"))
+            .thenReturn(List.of(createMonthlyValue(JANUARY, "140.0000000000")));
+        when(holdingsMonthlyRepository.findByAccountIdAndDateIn(testAccountId, Set.of(FEBRUARY)))
+            .thenReturn(List.of(createMonthlyHolding(FEBRUARY, "10.00")));
+        when(priceSnapshotResolver.resolveMonths(argThat(pairsByDate -> pairsByDate.keySet().equals(Set.of(FEBRUARY))), eq("USD")))
+            .thenReturn(new TreeMap<>(Map.of(FEBRUARY, applePrice(FEBRUARY, "150.25"))));
+        when(portfolioValueMonthlyRepository.saveAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        List<PortfolioValueMonthly> result = portfolioValueMonthlyService.getMonthlyValues(testAccountId, "USD");
+
+        // Then
+        assertEquals(2, result.size());
+        assertEquals(JANUARY, result.get(0).getDate());
+        PortfolioValueMonthly february = result.get(1);
+        assertEquals(FEBRUARY, february.getDate());
+        assertEquals(new BigDecimal("150.2500000000"), february.getPriceInBaseCurrency());
+        assertEquals(new BigDecimal("1502.5000000000"), february.getTotalValueInBaseCurrency());
+        verify(portfolioValueMonthlyRepository, times(1)).saveAll(any());
+    }
+
+    @Test
+    @DisplayName("Should value several missing months from one price resolution and keep them in date order")
+    void shouldValueMissingMonthsInDateOrder() {
+        // Given: Twelve months, none materialized
+        List<LocalDate> dates = new ArrayList<>();
+        List<HoldingsMonthly> holdings = new ArrayList<>();
+        SortedMap<LocalDate, PriceSnapshot> snapshots = new TreeMap<>();
+        for (int month = 1; month <= 12; month++) {
+            LocalDate date = LocalDate.of(2023, month, 1).withDayOfMonth(LocalDate.of(2023, month, 1).lengthOfMonth());
+            dates.add(date);
+            holdings.add(createMonthlyHolding(date, "10.00"));
+            snapshots.put(date, applePrice(date, month + ".00"));
+        }
+        Collections.reverse(dates);
+        when(holdingsMonthlyRepository.findDistinctDatesByAccountId(testAccountId)).thenReturn(dates);
+        when(portfolioValueMonthlyRepository.findByAccountIdAndBaseCurrencyOrderByDateAsc(testAccountId, "USD")).thenReturn(List.of());
+        when(holdingsMonthlyRepository.findByAccountIdAndDateIn(eq(testAccountId), anyCollection())).thenReturn(holdings);
+        when(priceSnapshotResolver.resolveMonths(anyMap(), eq("USD"))).thenReturn(snapshots);
+        when(portfolioValueMonthlyRepository.saveAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        List<PortfolioValueMonthly> result = portfolioValueMonthlyService.getMonthlyValues(testAccountId, "USD");
+
+        // Then
+        assertEquals(12, result.size());
+        for (int month = 1; month <= 12; month++) {
+            PortfolioValueMonthly row = result.get(month - 1);
+            assertEquals(month, row.getDate().getMonthValue());
+            assertEquals(new BigDecimal(month * 10 + ".0000000000"), row.getTotalValueInBaseCurrency());
+        }
+        verify(priceSnapshotResolver, times(1)).resolveMonths(anyMap(), eq("USD"));
+    }
+
+    @Test
+    @DisplayName("Should drop stored months whose inputs were invalidated while they were valued")
+    void shouldDropMonthsInvalidatedWhileMaterializing() {
+        // Given: The holdings of February change after they were read
+        when(portfolioCacheService.monthlyValuationVersion(testAccountId)).thenReturn("a1.h1", "a2.h1");
+        when(holdingsMonthlyRepository.findDistinctDatesByAccountId(testAccountId)).thenReturn(List.of(FEBRUARY));
+        when(portfolioValueMonthlyRepository.findByAccountIdAndBaseCurrencyOrderByDateAsc(testAccountId, "USD")).thenReturn(List.of());
+        when(holdingsMonthlyRepository.findByAccountIdAndDateIn(testAccountId, Set.of(FEBRUARY)))
+            .thenReturn(List.of(createMonthlyHolding(FEBRUARY, "10.00")));
+        when(priceSnapshotResolver.resolveMonths(anyMap(), eq("USD")))
+            .thenReturn(new TreeMap<>(Map.of(FEBRUARY, applePrice(FEBRUARY, "150.25"))));
+        when(portfolioValueMonthlyRepository.saveAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        List<PortfolioValueMonthly> result = portfolioValueMonthlyService.getMonthlyValues(testAccountId, "USD");
+
+        // Then: This response still uses the computed rows, but the next read recomputes them
+        assertEquals(1, result.size());
+        verify(portfolioValueMonthlyRepository).deleteByAccountIdAndBaseCurrencyAndDates(testAccountId, "USD", Set.of(FEBRUARY));
+    }
+
+    @Test
+    @DisplayName("Should not store months when the valuation version cannot be read")
+    void shouldNotStoreMonthsWithoutValuationVersion() {
+        // Given
+        when(portfolioCacheService.monthlyValuationVersion(testAccountId)).thenReturn(null);
+        when(holdingsMonthlyRepository.findDistinctDatesByAccountId(testAccountId)).thenReturn(List.of(FEBRUARY));
+        when(portfolioValueMonthlyRepository.findByAccountIdAndBaseCurrencyOrderByDateAsc(testAccountId, "USD")).thenReturn(List.of());
+        when(holdingsMonthlyRepository.findByAccountIdAndDateIn(testAccountId, Set.of(FEBRUARY)))
+            .thenReturn(List.of(createMonthlyHolding(FEBRUARY, "10.00")));
+        when(priceSnapshotResolver.resolveMonths(anyMap(), eq("USD")))
+            .thenReturn(new TreeMap<>(Map.of(FEBRUARY, applePrice(FEBRUARY, "150.25"))));
+
+        // When
+        List<PortfolioValueMonthly> result = portfolioValueMonthlyService.getMonthlyValues(testAccountId, "USD");
+
+        // Then
+        assertEquals(1, result.size());
+        verify(portfolioValueMonthlyRepository, never()).saveAll(any());
+    }
+
+    @Test
+    @DisplayName("Should serve fully materialized months without price lookups")
+    void shouldServeMaterializedMonthsWithoutPriceLookups() {
+        // Given
+        when(holdingsMonthlyRepository.findDistinctDatesByAccountId(testAccountId)).thenReturn(List.of(JANUARY));
+        when(portfolioValueMonthlyRepository.findByAccountIdAndBaseCurrencyOrderByDateAsc(testAccountId, "USD"))
+            .thenReturn(List.of(createMonthlyValue(JANUARY, "140.0000000000")));
+
+        // When
+        List<PortfolioValueMonthly> result = portfolioValueMonthlyService.getMonthlyValues(testAccountId, "USD");
+
+        // Then
+        assertEquals(1, result.size());
+        verifyNoInteractions(priceSnapshotResolver);
+        verify(portfolioValueMonthlyRepository, never()).saveAll(any());
+    }
+
+    @Test
+    @DisplayName("Should leave the current month to live valuation")
+    void shouldNotMaterializeCurrentMonth() {
+        // Given: The only month ends after today
+        LocalDate endOfMonth = LocalDate.now().withDayOfMonth(LocalDate.now().lengthOfMonth()).plusMonths(1);
+        when(holdingsMonthlyRepository.findDistinctDatesByAccountId(testAccountId)).thenReturn(List.of(endOfMonth));
+
+        // When
+        List<PortfolioValueMonthly> result = portfolioValueMonthlyService.getMonthlyValues(testAccountId, "USD");
+
+        // Then
+        assertTrue(result.isEmpty());
+        verifyNoInteractions(portfolioValueMonthlyRepository, priceSnapshotResolver);
+    }
+
+    @Test
+    @DisplayName("Should invalidate months of the accounts holding updated symbols and FX dependent months")
+    void shouldInvalidateMonthsForHistoricalPriceUpdate() {
+        // Given
+        when(holdingsMonthlyRepository.findAccountIdsHoldingSymbolsFrom(Set.of("AAPL"), LocalDate.of(2024, 1, 1)))
+            .thenReturn(List.of(testAccountId));
+        HistoricalMarketDataEvent event = new HistoricalMarketDataEvent(List.of(
+            new HistoricalMarketDataEvent.Asset("AAPL", AssetType.STOCK),
+            new HistoricalMarketDataEvent.Asset("EUR/USD", AssetType.FOREX)), LocalDate.of(2024, 1, 1), null, List.of());
+
+        // When
+        portfolioValueMonthlyService.onHistoricalMarketData(event);
+
+        // Then: The history version is bumped before and after the delete
+        InOrder inOrder = inOrder(portfolioCacheService, portfolioValueMonthlyRepository);
+        inOrder.verify(portfolioCacheService).onHistoricalPricesChanged();
+        inOrder.verify(portfolioValueMonthlyRepository).deleteMonthsContainingSymbols(List.of(testAccountId), Set.of("AAPL"), LocalDate.of(2024, 1, 1));
+        inOrder.verify(portfolioValueMonthlyRepository).deleteFxDependentMonthsFrom(LocalDate.of(2024, 1, 1));
+        inOrder.verify(portfolioCacheService).onHistoricalPricesChanged();
+    }
+
+    @Test
+    @DisplayName("Should not delete by symbol when no account held the updated symbols")
+    void shouldSkipSymbolDeleteWithoutHoldingAccounts() {
+        // Given
+        when(holdingsMonthlyRepository.findAccountIdsHoldingSymbolsFrom(anyCollection(), any())).thenReturn(List.of());
+        HistoricalMarketDataEvent event = new HistoricalMarketDataEvent(List.of(
+            new HistoricalMarketDataEvent.Asset("AAPL", AssetType.STOCK)), LocalDate.of(2024, 1, 1), null, List.of());
+
+        // When
+        portfolioValueMonthlyService.onHistoricalMarketData(event);
+
+        // Then
+        verify(portfolioValueMonthlyRepository, never()).deleteMonthsContainingSymbols(anyCollection(), anyCollection(), any());
+    }
+
+    @Test
+    @DisplayName("Should bracket the delete of invalidated months with account version bumps")
+    void shouldBracketMonthInvalidationWithVersionBumps() {
+        // When: No transaction is active, so the months are dropped right away
+        portfolioValueMonthlyService.invalidateMonths(testAccountId, List.of(JANUARY));
+
+        // Then
+        InOrder inOrder = inOrder(portfolioCacheService, portfolioValueMonthlyRepository);
+        inOrder.verify(portfolioCacheService).onMonthlyValuationsInvalidated(testAccountId);
+        inOrder.verify(portfolioValueMonthlyRepository).deleteByAccountIdAndDates(testAccountId, Set.of(JANUARY));
+        inOrder.verify(portfolioCacheService).onMonthlyValuationsInvalidated(testAccountId);
+    }
+
+    private PriceSnapshot applePrice(LocalDate date, String price) {
+        return PriceSnapshot.of(date, List.of(new MarketDataDto("AAPL", new BigDecimal(price), AssetType.STOCK)));
+    }
+
+    private HoldingsMonthly createMonthlyHolding(LocalDate date, String balance) {
+        HoldingsMonthly holdingsMonthly = new HoldingsMonthly();
+        holdingsMonthly.setAccountId(testAccountId);
+        holdingsMonthly.setDate(date);
+        holdingsMonthly.setAssetName("Apple");
+        holdingsMonthly.setSymbol("AAPL");
+        holdingsMonthly.setUnit("shares");
+        holdingsMonthly.setAssetType(AssetType.STOCK);
+        holdingsMonthly.setTotalBalance(new BigDecimal(balance));
+        return holdingsMonthly;
+    }
+
+    private PortfolioValueMonthly createMonthlyValue(LocalDate date, String price) {
+        PortfolioValueMonthly monthlyValue = new PortfolioValueMonthly();
+        monthlyValue.setAccountId(testAccountId);
+        monthlyValue.setDate(date);
+        monthlyValue.setAssetName("Apple");
+        monthlyValue.setSymbol("AAPL");
+        monthlyValue.setAssetType(AssetType.STOCK);
+        monthlyValue.setBaseCurrency("USD");
+        monthlyValue.setQuantity(new BigDecimal("10.00"));
+        monthlyValue.setPriceInBaseCurrency(new BigDecimal(price));
+        monthlyValue.setTotalValueInBaseCurrency(new BigDecimal(price).multiply(new BigDecimal("10.00")));
+        return monthlyValue;
+    }
+}
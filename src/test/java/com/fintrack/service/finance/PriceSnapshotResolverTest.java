@@ -0,0 +1,265 @@
+package com.fintrack.service.finance;
+
+import com.fintrack.component.calculator.FxRateMatrix;
+import com.fintrack.component.calculator.PriceSnapshot;
+import com.fintrack.constants.finance.AssetType;
+import com.fintrack.model.market.MarketData;
+import com.fintrack.model.market.MarketDataMonthly;
+import com.fintrack.repository.market.MarketDataMonthlyRepository;
+import com.fintrack.repository.market.MarketDataRepository;
+import com.fintrack.service.market.FxConversionService;
+import com.fintrack.service.market.PriceHistoryStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("PriceSnapshotResolver Tests")
+class PriceSnapshotResolverTest {
+
+    @Mock
+    private MarketDataRepository marketDataRepository;
+
+    @Mock
+    private MarketDataMonthlyRepository marketDataMonthlyRepository;
+
+    @Mock
+    private FxConversionService fxConversionService;
+
+    private PriceSnapshotResolver priceSnapshotResolver;
+
+    @BeforeEach
+    void setUp() {
+        priceSnapshotResolver = new PriceSnapshotResolver(marketDataRepository,
+            new PriceHistoryStore(marketDataMonthlyRepository, new SimpleMeterRegistry()), fxConversionService);
+    }
+
+    @Test
+    @DisplayName("Should resolve all live prices with a single query regardless of holdings count")
+    void shouldResolveAllLivePricesWithSingleQuery() {
+        // Given: 150 stock holdings plus a FOREX holding
+        List<Object[]> pairs = new ArrayList<>();
+        List<MarketData> rows = new ArrayList<>();
+        for (int i = 1; i <= 150; i++) {
+            pairs.add(new Object[]{"STOCK" + i, AssetType.STOCK});
+            rows.add(createMarketData("STOCK" + i, AssetType.STOCK, new BigDecimal("10.0000")));
+        }
+        pairs.add(new Object[]{"EUR", AssetType.FOREX});
+
+        when(marketDataRepository.findMarketDataBySymbols(anyList())).thenReturn(rows);
+        when(fxConversionService.getCurrentMatrix()).thenReturn(matrix("EUR/USD", "1.1000"));
+
+        // When
+        PriceSnapshot snapshot = priceSnapshotResolver.resolve(pairs, "USD", null);
+
+        // Then
+        assertEquals(151, snapshot.size());
+        assertEquals(new BigDecimal("1.1000"), snapshot.get("EUR/USD", AssetType.FOREX).getPrice());
+        verify(marketDataRepository, times(1)).findMarketDataBySymbols(anyList());
+        verifyNoInteractions(marketDataMonthlyRepository);
+    }
+
+    @Test
+    @DisplayName("Should invert the reverse FOREX pair exactly once when the direct pair is missing")
+    void shouldInvertReversePairWhenDirectPairMissing() {
+        // Given
+        List<Object[]> pairs = new ArrayList<>();
+        pairs.add(new Object[]{"JPY", AssetType.FOREX});
+        when(fxConversionService.getCurrentMatrix()).thenReturn(matrix("USD/JPY", "150.0000"));
+
+        // When
+        PriceSnapshot snapshot = priceSnapshotResolver.resolve(pairs, "USD", null);
+
+        // Then: The rate is stored under the direct pair, so consumers never invert it again
+        BigDecimal expected = BigDecimal.ONE.divide(new BigDecimal("150.0000"), MathContext.DECIMAL64);
+        assertEquals(expected, snapshot.get("JPY/USD", AssetType.FOREX).getPrice());
+        assertNull(snapshot.get("USD/JPY", AssetType.FOREX));
+        verifyNoInteractions(marketDataRepository);
+    }
+
+    @Test
+    @DisplayName("Should triangulate a cross currency through a pivot currency")
+    void shouldTriangulateCrossCurrencyThroughPivot() {
+        // Given: CHF/USD and USD/SGD exist, but no pair links CHF and SGD directly
+        List<Object[]> pairs = new ArrayList<>();
+        pairs.add(new Object[]{"CHF", AssetType.FOREX});
+        Map<String, BigDecimal> pairRates = new LinkedHashMap<>();
+        pairRates.put("CHF/USD", new BigDecimal("1.1200"));
+        pairRates.put("USD/SGD", new BigDecimal("1.3500"));
+        when(fxConversionService.getCurrentMatrix()).thenReturn(FxRateMatrix.build(pairRates, 1L));
+
+        // When
+        PriceSnapshot snapshot = priceSnapshotResolver.resolve(pairs, "SGD", null);
+
+        // Then
+        assertEquals(new BigDecimal("1.51200000"), snapshot.get("CHF/SGD", AssetType.FOREX).getPrice());
+    }
+
+    @Test
+    @DisplayName("Should include the USD conversion pair for non-USD base currencies")
+    void shouldIncludeUsdConversionPairForNonUsdBaseCurrency() {
+        // Given
+        List<Object[]> pairs = new ArrayList<>();
+        pairs.add(new Object[]{"AAPL", AssetType.STOCK});
+        when(marketDataRepository.findMarketDataBySymbols(anyList())).thenReturn(List.of(
+            createMarketData("AAPL", AssetType.STOCK, new BigDecimal("200.0000"))
+        ));
+        when(fxConversionService.getCurrentMatrix()).thenReturn(matrix("USD/EUR", "0.9000"));
+
+        // When
+        PriceSnapshot snapshot = priceSnapshotResolver.resolve(pairs, "EUR", null);
+
+        // Then
+        assertEquals(new BigDecimal("0.9000"), snapshot.get("USD/EUR", AssetType.FOREX).getPrice());
+        assertEquals(new BigDecimal("200.0000"), snapshot.get("AAPL", AssetType.STOCK).getPrice());
+    }
+
+    @Test
+    @DisplayName("Should fall back to the most recent monthly price within the lookback window")
+    void shouldFallBackToMostRecentMonthlyPrice() {
+        // Given
+        LocalDate date = LocalDate.of(2024, 3, 31);
+        List<Object[]> pairs = new ArrayList<>();
+        pairs.add(new Object[]{"AAPL", AssetType.STOCK});
+        when(marketDataMonthlyRepository.findBySymbols(anyCollection()))
+            .thenReturn(List.of(
+                createMarketDataMonthly("AAPL", LocalDate.of(2024, 1, 31), new BigDecimal("180.00")),
+                createMarketDataMonthly("AAPL", LocalDate.of(2024, 2, 29), new BigDecimal("185.00"))
+            ));
+
+        // When
+        PriceSnapshot snapshot = priceSnapshotResolver.resolve(pairs, "USD", date);
+
+        // Then
+        assertTrue(snapshot.isHistorical());
+        assertEquals(new BigDecimal("185.00"), snapshot.get("AAPL", AssetType.STOCK).getPrice());
+        verify(marketDataMonthlyRepository, times(1)).findBySymbols(anyCollection());
+        verifyNoInteractions(marketDataRepository);
+    }
+
+    @Test
+    @DisplayName("Should fall back to the most recent monthly price of the same asset type")
+    void shouldFallBackToMostRecentPriceOfSameAssetType() {
+        // Given: A later row of the same symbol exists for another asset type
+        LocalDate date = LocalDate.of(2024, 3, 31);
+        List<Object[]> pairs = new ArrayList<>();
+        pairs.add(new Object[]{"AAPL", AssetType.STOCK});
+        MarketDataMonthly otherAssetType = createMarketDataMonthly("AAPL", LocalDate.of(2024, 2, 29), new BigDecimal("1.00"));
+        otherAssetType.setAssetType(AssetType.CRYPTO);
+        when(marketDataMonthlyRepository.findBySymbols(anyCollection())).thenReturn(List.of(
+            createMarketDataMonthly("AAPL", LocalDate.of(2024, 1, 31), new BigDecimal("180.00")),
+            otherAssetType
+        ));
+
+        // When
+        PriceSnapshot snapshot = priceSnapshotResolver.resolve(pairs, "USD", date);
+
+        // Then
+        assertEquals(new BigDecimal("180.00"), snapshot.get("AAPL", AssetType.STOCK).getPrice());
+    }
+
+    @Test
+    @DisplayName("Should return an empty snapshot without querying when there are no holdings")
+    void shouldReturnEmptySnapshotWithoutQuerying() {
+        // When
+        PriceSnapshot snapshot = priceSnapshotResolver.resolve(new ArrayList<>(), "USD", null);
+
+        // Then
+        assertEquals(0, snapshot.size());
+        verifyNoInteractions(marketDataRepository, marketDataMonthlyRepository, fxConversionService);
+    }
+
+    @Test
+    @DisplayName("Should build the historical FOREX matrix from the same bulk query")
+    void shouldBuildHistoricalFxMatrixFromSameQuery() {
+        // Given
+        LocalDate date = LocalDate.of(2024, 3, 31);
+        List<Object[]> pairs = new ArrayList<>();
+        pairs.add(new Object[]{"AAPL", AssetType.STOCK});
+        when(fxConversionService.getCurrentMatrix()).thenReturn(matrix("USD/EUR", "0.9000"));
+        MarketDataMonthly historicalRate = createMarketDataMonthly("USD/EUR", date, new BigDecimal("0.93"));
+        historicalRate.setAssetType(AssetType.FOREX);
+        when(marketDataMonthlyRepository.findBySymbols(anyCollection())).thenReturn(List.of(
+            createMarketDataMonthly("AAPL", date, new BigDecimal("170.00")),
+            historicalRate
+        ));
+
+        // When
+        PriceSnapshot snapshot = priceSnapshotResolver.resolve(pairs, "EUR", date);
+
+        // Then: The month's rate is used, not the live one
+        assertEquals(new BigDecimal("0.93"), snapshot.getFxRates().rate("USD", "EUR"));
+        assertEquals(new BigDecimal("0.93"), snapshot.get("USD/EUR", AssetType.FOREX).getPrice());
+        verify(marketDataMonthlyRepository, times(1)).findBySymbols(anyCollection());
+    }
+
+    @Test
+    @DisplayName("Should resolve many months with one query, carrying prices forward within the lookback window")
+    void shouldResolveMonthsWithSingleQuery() {
+        // Given: AAPL is priced in January only; MSFT in every month
+        LocalDate january = LocalDate.of(2024, 1, 31);
+        LocalDate march = LocalDate.of(2024, 3, 31);
+        LocalDate june = LocalDate.of(2024, 6, 30);
+        Map<LocalDate, List<Object[]>> pairsByDate = new HashMap<>();
+        for (LocalDate date : List.of(january, march, june)) {
+            List<Object[]> pairs = new ArrayList<>();
+            pairs.add(new Object[]{"AAPL", AssetType.STOCK});
+            pairs.add(new Object[]{"MSFT", AssetType.STOCK});
+            pairsByDate.put(date, pairs);
+        }
+        when(marketDataMonthlyRepository.findBySymbols(anyCollection()))
+            .thenReturn(List.of(
+                createMarketDataMonthly("AAPL", january, new BigDecimal("180.00")),
+                createMarketDataMonthly("MSFT", january, new BigDecimal("390.00")),
+                createMarketDataMonthly("MSFT", march, new BigDecimal("420.00")),
+                createMarketDataMonthly("MSFT", june, new BigDecimal("445.00"))
+            ));
+
+        // When
+        SortedMap<LocalDate, PriceSnapshot> snapshots = priceSnapshotResolver.resolveMonths(pairsByDate, "USD");
+
+        // Then
+        assertEquals(List.of(january, march, june), new ArrayList<>(snapshots.keySet()));
+        assertEquals(new BigDecimal("180.00"), snapshots.get(january).get("AAPL", AssetType.STOCK).getPrice());
+        assertEquals(new BigDecimal("180.00"), snapshots.get(march).get("AAPL", AssetType.STOCK).getPrice());
+        assertNull(snapshots.get(june).get("AAPL", AssetType.STOCK));
+        assertEquals(new BigDecimal("420.00"), snapshots.get(march).get("MSFT", AssetType.STOCK).getPrice());
+        assertEquals(new BigDecimal("445.00"), snapshots.get(june).get("MSFT", AssetType.STOCK).getPrice());
+        verify(marketDataMonthlyRepository, times(1)).findBySymbols(anyCollection());
+        verifyNoInteractions(marketDataRepository, fxConversionService);
+    }
+
+    private FxRateMatrix matrix(String pair, String rate) {
+        return FxRateMatrix.build(Map.of(pair, new BigDecimal(rate)), 1L);
+    }
+
+    private MarketData createMarketData(String symbol, AssetType assetType, BigDecimal price) {
+        MarketData marketData = new MarketData();
+        marketData.setSymbol(symbol);
+        marketData.setAssetType(assetType);
+        marketData.setPrice(price);
+        return marketData;
+    }
+
+    private MarketDataMonthly createMarketDataMonthly(String symbol, LocalDate date, BigDecimal price) {
+        MarketDataMonthly marketDataMonthly = new MarketDataMonthly();
+        marketDataMonthly.setSymbol(symbol);
+        marketDataMonthly.setAssetType(AssetType.STOCK);
+        marketDataMonthly.setDate(date);
+        marketDataMonthly.setPrice(price);
+        return marketDataMonthly;
+    }
+}
@@ -5,6 +5,7 @@ import com.fintrack.repository.finance.CategoriesRepository;
 import com.fintrack.repository.finance.SubcategoriesRepository;
 import com.fintrack.repository.finance.HoldingsCategoriesRepository;
 import com.fintrack.constants.Color;
+import com.fintrack.service.cache.PortfolioCacheService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
@@ -31,6 +32,9 @@ class SubcategoriesServiceTest {
     @Mock
     private HoldingsCategoriesRepository holdingsCategoriesRepository;
 
+    @Mock
+    private PortfolioCacheService portfolioCacheService;
+
     private SubcategoriesService subcategoriesService;
     private UUID testAccountId;
 
@@ -39,7 +43,8 @@ class SubcategoriesServiceTest {
         subcategoriesService = new SubcategoriesService(
             categoriesRepository,
             subcategoriesRepository,
-            holdingsCategoriesRepository
+            holdingsCategoriesRepository,
+            portfolioCacheService
         );
         testAccountId = UUID.randomUUID();
     }
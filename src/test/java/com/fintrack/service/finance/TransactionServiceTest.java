@@ -7,6 +7,7 @@ import com.fintrack.component.transaction.OverviewTransaction;
 import com.fintrack.repository.finance.TransactionRepository;
 import com.fintrack.repository.finance.AssetRepository;
 import com.fintrack.repository.finance.HoldingsMonthlyRepository;
+import com.fintrack.service.cache.PortfolioCacheService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
@@ -46,6 +47,12 @@ class TransactionServiceTest {
     @Mock
     private HoldingsCategoriesService holdingsCategoriesService;
 
+    @Mock
+    private LivePortfolioStreamService livePortfolioStreamService;
+
+    @Mock
+    private PortfolioCacheService portfolioCacheService;
+
     private TransactionService transactionService;
     private UUID testAccountId;
 
@@ -57,7 +64,9 @@ class TransactionServiceTest {
             holdingsMonthlyRepository,
             holdingsService,
             holdingsMonthlyService,
-            holdingsCategoriesService
+            holdingsCategoriesService,
+            livePortfolioStreamService,
+            portfolioCacheService
         );
         testAccountId = UUID.randomUUID();
     }
@@ -165,6 +174,8 @@ class TransactionServiceTest {
         verify(holdingsMonthlyService).updateMonthlyHoldingsForAccount(testAccountId);
         verify(holdingsCategoriesService).cleanupOrphanedAssets(testAccountId);
         verify(holdingsCategoriesService).cleanupOrphanedHoldingsCategories(testAccountId);
+        verify(livePortfolioStreamService).onHoldingsChanged(testAccountId);
+        verify(portfolioCacheService).onAccountChanged(testAccountId);
     }
 
     @Test
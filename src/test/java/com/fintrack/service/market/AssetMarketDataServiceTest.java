@@ -18,6 +18,9 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -39,6 +42,8 @@ class AssetMarketDataServiceTest {
     @Mock
     private KafkaProducerService kafkaProducerService;
 
+    private MarketDataCompletionRegistry completionRegistry;
+
     private TestAssetMarketDataService assetMarketDataService;
 
     /**
@@ -48,8 +53,9 @@ class AssetMarketDataServiceTest {
         public TestAssetMarketDataService(
                 MarketDataRepository marketDataRepository,
                 HoldingsMonthlyRepository holdingsMonthlyRepository,
-                KafkaProducerService kafkaProducerService) {
-            super(marketDataRepository, holdingsMonthlyRepository, kafkaProducerService);
+                KafkaProducerService kafkaProducerService,
+                MarketDataCompletionRegistry completionRegistry) {
+            super(marketDataRepository, holdingsMonthlyRepository, kafkaProducerService, completionRegistry);
         }
 
         @Override
@@ -72,10 +78,13 @@ class AssetMarketDataServiceTest {
 
     @BeforeEach
     void setUp() {
+        completionRegistry = new MarketDataCompletionRegistry();
+        ReflectionTestUtils.setField(completionRegistry, "waitTimeoutMillis", 50L);
         assetMarketDataService = new TestAssetMarketDataService(
                 marketDataRepository,
                 holdingsMonthlyRepository,
-                kafkaProducerService
+                kafkaProducerService,
+                completionRegistry
         );
     }
 
@@ -121,7 +130,7 @@ class AssetMarketDataServiceTest {
         List<MarketData> result = assetMarketDataService.fetchMarketData(accountId, symbols);
 
         assertEquals(2, result.size());
-        verify(kafkaProducerService, times(2)).publishEvent(anyString(), anyString());
+        verify(kafkaProducerService, times(2)).publishEvent(anyString(), anyString(), anyString());
     }
 
     @Test
@@ -132,7 +141,7 @@ class AssetMarketDataServiceTest {
         List<MarketData> result = assetMarketDataService.fetchMarketData(accountId, symbols);
 
         assertTrue(result.isEmpty());
-        verify(kafkaProducerService, times(1)).publishEvent(anyString(), anyString());
+        verify(kafkaProducerService, never()).publishEvent(anyString(), anyString(), anyString());
     }
 
     @Test
@@ -145,11 +154,11 @@ class AssetMarketDataServiceTest {
     }
 
     @Test
-    void shouldRetryWhenNoDataFoundInitially() {
+    void shouldReadMissingDataAgainWhenTheWaitTimesOut() {
         UUID accountId = UUID.randomUUID();
         List<String> symbols = Arrays.asList("AAPL");
         
-        // First call returns empty, second call returns data
+        // First call returns empty; the update completes on another node, so the data is there after the wait
         when(marketDataRepository.findMarketDataBySymbolAndAssetType("AAPL", AssetType.STOCK.name()))
                 .thenReturn(new ArrayList<>())
                 .thenReturn(Arrays.asList(createTestMarketData("AAPL", AssetType.STOCK)));
@@ -161,8 +170,35 @@ class AssetMarketDataServiceTest {
 
         List<MarketData> result = assetMarketDataService.fetchMarketData(accountId, symbols);
 
-        assertEquals(0, result.size()); // The service exits early when no data is found
+        assertEquals(1, result.size());
+        verify(marketDataRepository, times(2)).findMarketDataBySymbolAndAssetType("AAPL", AssetType.STOCK.name());
+    }
+
+    @Test
+    void shouldReadDataAsSoonAsItsUpdateCompletes() {
+        UUID accountId = UUID.randomUUID();
+        List<String> symbols = Arrays.asList("AAPL", "GOOGL");
+        ReflectionTestUtils.setField(completionRegistry, "waitTimeoutMillis", 10000L);
+
+        when(marketDataRepository.findMarketDataBySymbolAndAssetType("AAPL", AssetType.STOCK.name()))
+                .thenReturn(Arrays.asList(createTestMarketData("AAPL", AssetType.STOCK)));
+        when(marketDataRepository.findMarketDataBySymbolAndAssetType("GOOGL", AssetType.STOCK.name()))
+                .thenAnswer(invocation -> {
+                    // The update completes shortly after the first read
+                    CompletableFuture.runAsync(() -> completionRegistry.completeMarketData(
+                                    List.of(createTestMarketData("GOOGL", AssetType.STOCK))),
+                            CompletableFuture.delayedExecutor(20, TimeUnit.MILLISECONDS));
+                    return new ArrayList<>();
+                })
+                .thenReturn(Arrays.asList(createTestMarketData("GOOGL", AssetType.STOCK)));
+
+        long start = System.nanoTime();
+        List<MarketData> result = assetMarketDataService.fetchMarketData(accountId, symbols);
+
+        assertEquals(2, result.size());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5), "Should not wait for the deadline");
         verify(marketDataRepository, times(1)).findMarketDataBySymbolAndAssetType("AAPL", AssetType.STOCK.name());
+        verify(marketDataRepository, times(2)).findMarketDataBySymbolAndAssetType("GOOGL", AssetType.STOCK.name());
     }
 
     @Test
@@ -205,7 +241,7 @@ class AssetMarketDataServiceTest {
         List<MarketData> result = assetMarketDataService.fetchMarketData(accountId, symbols);
 
         assertEquals(1, result.size());
-        verify(kafkaProducerService, times(1)).publishEvent(anyString(), anyString());
+        verify(kafkaProducerService, times(1)).publishEvent(anyString(), anyString(), anyString());
     }
 
     @Test
@@ -225,7 +261,7 @@ class AssetMarketDataServiceTest {
         List<MarketData> result = assetMarketDataService.fetchMarketData(accountId, symbols);
 
         assertEquals(1, result.size());
-        verify(kafkaProducerService, times(2)).publishEvent(anyString(), anyString());
+        verify(kafkaProducerService, times(2)).publishEvent(anyString(), anyString(), anyString());
     }
 
     @Test
@@ -244,7 +280,25 @@ class AssetMarketDataServiceTest {
 
         assetMarketDataService.sendMarketDataUpdateRequest(accountId, assets);
 
-        verify(kafkaProducerService, times(2)).publishEvent(anyString(), anyString());
+        verify(kafkaProducerService, times(2)).publishEvent(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void shouldSendOneKeyedRequestPerAssetType() {
+        UUID accountId = UUID.randomUUID();
+        List<Map<String, String>> assets = Arrays.asList(
+                Map.of("symbol", "AAPL", "asset_type", AssetType.STOCK.name()),
+                Map.of("symbol", "BTC", "asset_type", AssetType.CRYPTO.name()),
+                Map.of("symbol", "MSFT", "asset_type", AssetType.STOCK.name())
+        );
+
+        assetMarketDataService.sendMarketDataUpdateRequest(accountId, assets);
+
+        verify(kafkaProducerService).publishEvent(eq(KafkaTopics.MARKET_DATA_UPDATE_REQUEST.getTopicName()), eq(AssetType.STOCK.name()),
+                argThat(json -> json.contains("AAPL") && json.contains("MSFT") && !json.contains("BTC")));
+        verify(kafkaProducerService).publishEvent(eq(KafkaTopics.MARKET_DATA_UPDATE_REQUEST.getTopicName()), eq(AssetType.CRYPTO.name()),
+                argThat(json -> json.contains("BTC") && !json.contains("AAPL")));
+        verify(kafkaProducerService, never()).publishEvent(anyString(), anyString());
     }
 
     @Test
@@ -255,7 +309,7 @@ class AssetMarketDataServiceTest {
         );
 
         doThrow(new RuntimeException("Kafka error"))
-                .when(kafkaProducerService).publishEvent(anyString(), anyString());
+                .when(kafkaProducerService).publishEvent(anyString(), anyString(), anyString());
 
         // Should not throw exception
         assertDoesNotThrow(() -> {
@@ -264,7 +318,26 @@ class AssetMarketDataServiceTest {
     }
 
     @Test
-    void shouldHandleInterruptedExceptionDuringRetry() {
+    void shouldNotThrowWhenPublishQueueRejectsMonthlyRequest() {
+        UUID accountId = UUID.randomUUID();
+        List<Map<String, String>> assets = Arrays.asList(
+                Map.of("symbol", "AAPL", "asset_type", AssetType.STOCK.name())
+        );
+        when(holdingsMonthlyRepository.findEarliestDateByAccountId(accountId))
+                .thenReturn(LocalDate.now().minusDays(30));
+        when(holdingsMonthlyRepository.findLatestDateByAccountId(accountId))
+                .thenReturn(LocalDate.now());
+
+        // The update request is best-effort; the monthly request is rejected by a full publish queue
+        doThrow(new RejectedExecutionException("Kafka publish queue is full"))
+                .when(kafkaProducerService).publishEvent(eq(KafkaTopics.HISTORICAL_MARKET_DATA_REQUEST.getTopicName()), anyString(), anyString());
+
+        assertDoesNotThrow(() -> assetMarketDataService.sendMarketDataUpdateRequest(accountId, assets));
+        verify(kafkaProducerService).publishEvent(eq(KafkaTopics.MARKET_DATA_UPDATE_REQUEST.getTopicName()), anyString(), anyString());
+    }
+
+    @Test
+    void shouldHandleInterruptedExceptionWhileWaiting() {
         UUID accountId = UUID.randomUUID();
         List<String> symbols = Arrays.asList("AAPL");
         
@@ -276,31 +349,32 @@ class AssetMarketDataServiceTest {
         when(holdingsMonthlyRepository.findLatestDateByAccountId(accountId))
                 .thenReturn(LocalDate.now());
 
-        // Interrupt the current thread to simulate interruption during retry
+        // Interrupt the current thread to simulate interruption while waiting for the update
         Thread.currentThread().interrupt();
 
         List<MarketData> result = assetMarketDataService.fetchMarketData(accountId, symbols);
 
         assertTrue(result.isEmpty());
+        verify(marketDataRepository, times(1)).findMarketDataBySymbolAndAssetType("AAPL", AssetType.STOCK.name());
         
-        // Clear the interrupt status
-        Thread.interrupted();
+        // The interrupt status is restored; clear it
+        assertTrue(Thread.interrupted());
     }
 
     @Test
-    void shouldHandleEmptyAssetsListInFetchMarketDataWithRetry() {
+    void shouldHandleEmptyAssetsListInFetchMarketDataAwaitingUpdates() {
         List<Map<String, String>> assets = new ArrayList<>();
         
-        List<MarketData> result = assetMarketDataService.fetchMarketDataWithRetry(assets);
+        List<MarketData> result = assetMarketDataService.fetchMarketDataAwaitingUpdates(assets);
 
         assertTrue(result.isEmpty());
         verify(marketDataRepository, never()).findMarketDataBySymbolAndAssetType(anyString(), anyString());
     }
 
     @Test
-    void shouldHandleNullAssetsListInFetchMarketDataWithRetry() {
+    void shouldHandleNullAssetsListInFetchMarketDataAwaitingUpdates() {
         assertThrows(NullPointerException.class, () -> {
-            assetMarketDataService.fetchMarketDataWithRetry(null);
+            assetMarketDataService.fetchMarketDataAwaitingUpdates(null);
         });
     }
 
@@ -309,7 +383,7 @@ class AssetMarketDataServiceTest {
         UUID accountId = UUID.randomUUID();
         List<String> symbols = Arrays.asList("AAPL", "GOOGL", "MSFT");
         
-        // AAPL has data immediately, GOOGL has data after retry, MSFT never has data
+        // AAPL has data immediately, GOOGL has data after the wait, MSFT never has data
         when(marketDataRepository.findMarketDataBySymbolAndAssetType("AAPL", AssetType.STOCK.name()))
                 .thenReturn(Arrays.asList(createTestMarketData("AAPL", AssetType.STOCK)));
         when(marketDataRepository.findMarketDataBySymbolAndAssetType("GOOGL", AssetType.STOCK.name()))
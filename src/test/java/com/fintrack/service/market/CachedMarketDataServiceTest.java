@@ -6,7 +6,10 @@ import com.fintrack.constants.finance.AssetType;
 import com.fintrack.model.market.MarketData;
 import com.fintrack.repository.market.MarketDataRepository;
 import com.fintrack.service.cache.MarketDataCacheService;
-import com.fintrack.util.KafkaProducerService;
+import com.fintrack.service.cache.MarketDataFreshnessPolicy;
+import com.fintrack.service.cache.PortfolioCacheService;
+import com.fintrack.service.finance.LivePortfolioStreamService;
+import com.fintrack.service.market.event.MarketDataUpdateEvent;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -17,8 +20,10 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.*;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -28,10 +33,19 @@ class CachedMarketDataServiceTest {
     private MarketDataCacheService cacheService;
     
     @Mock
-    private KafkaProducerService kafkaProducerService;
+    private MarketDataRequestCoalescer requestCoalescer;
+
+    @Mock
+    private MarketDataCompletionRegistry completionRegistry;
     
     @Mock
     private MarketDataRepository marketDataRepository;
+
+    @Mock
+    private LivePortfolioStreamService livePortfolioStreamService;
+
+    @Mock
+    private PortfolioCacheService portfolioCacheService;
     
     private ObjectMapper objectMapper;
     private CachedMarketDataService cachedMarketDataService;
@@ -41,7 +55,8 @@ class CachedMarketDataServiceTest {
         objectMapper = new ObjectMapper();
         objectMapper.registerModule(new JavaTimeModule()); // Fix for LocalDateTime serialization
         cachedMarketDataService = new CachedMarketDataService(
-            cacheService, kafkaProducerService, marketDataRepository, objectMapper
+            cacheService, requestCoalescer, completionRegistry, marketDataRepository, livePortfolioStreamService, portfolioCacheService,
+            new MarketDataFreshnessPolicy()
         );
     }
 
@@ -63,11 +78,30 @@ class CachedMarketDataServiceTest {
         String messageJson = objectMapper.writeValueAsString(etlMessage);
         
         // When: Processing the ETL batch completion message
-        cachedMarketDataService.onMarketDataUpdateComplete(messageJson);
+        cachedMarketDataService.onMarketDataUpdate(MarketDataUpdateEvent.fromJson(objectMapper, messageJson));
         
-        // Then: Cache should be updated with all market data entries
-        verify(cacheService, times(1)).setMarketDataBatch(anyList());
+        // Then: The node cache should be updated with all market data entries, leaving the shared state alone
+        verify(cacheService, times(1)).setLocalMarketDataBatch(anyList());
+        verify(cacheService, never()).setMarketDataBatch(anyList());
         verify(cacheService, never()).setMarketData(any(MarketData.class));
+        verify(livePortfolioStreamService, times(1)).onPriceUpdates(anyList());
+        verifyNoInteractions(portfolioCacheService);
+        verify(requestCoalescer, times(1)).complete(anyList());
+        verify(completionRegistry, times(1)).completeMarketData(anyList());
+    }
+
+    @Test
+    void testSharedCacheUpdateWritesValuesAndPortfolioVersions() {
+        // Given
+        List<MarketData> marketData = List.of(createMarketData("AAPL", LocalDateTime.now()));
+
+        // When
+        cachedMarketDataService.updateSharedMarketDataCache(marketData);
+
+        // Then
+        verify(cacheService).setSharedMarketDataBatch(marketData);
+        verify(portfolioCacheService).onPriceUpdates(marketData);
+        verify(cacheService, never()).setLocalMarketDataBatch(anyList());
     }
 
     @Test
@@ -82,10 +116,10 @@ class CachedMarketDataServiceTest {
         String messageJson = objectMapper.writeValueAsString(errorMessage);
         
         // When: Processing the ETL error message
-        cachedMarketDataService.onMarketDataUpdateComplete(messageJson);
+        cachedMarketDataService.onMarketDataUpdate(MarketDataUpdateEvent.fromJson(objectMapper, messageJson));
         
         // Then: Cache should not be updated
-        verify(cacheService, never()).setMarketDataBatch(anyList());
+        verify(cacheService, never()).setLocalMarketDataBatch(anyList());
         verify(cacheService, never()).setMarketData(any(MarketData.class));
     }
 
@@ -101,10 +135,37 @@ class CachedMarketDataServiceTest {
         String messageJson = objectMapper.writeValueAsString(emptyMessage);
         
         // When: Processing the ETL batch completion message
-        cachedMarketDataService.onMarketDataUpdateComplete(messageJson);
+        cachedMarketDataService.onMarketDataUpdate(MarketDataUpdateEvent.fromJson(objectMapper, messageJson));
         
         // Then: Cache should not be updated
-        verify(cacheService, never()).setMarketDataBatch(anyList());
+        verify(cacheService, never()).setLocalMarketDataBatch(anyList());
+        verifyNoInteractions(livePortfolioStreamService);
+    }
+
+    @Test
+    void testStaleSymbolsAreDetectedFromCachedTimestamps() {
+        // Given: One entry cached just now, one cached ten minutes ago
+        MarketData fresh = createMarketData("AAPL", LocalDateTime.now());
+        MarketData stale = createMarketData("MSFT", LocalDateTime.now().minusMinutes(10));
+        when(cacheService.getMarketDataBatch(anyList(), eq(AssetType.STOCK))).thenReturn(List.of(fresh, stale));
+
+        // When: Fetching both symbols
+        List<MarketData> results = cachedMarketDataService.fetchMarketData(UUID.randomUUID(), List.of("AAPL", "MSFT"));
+
+        // Then: Only the stale symbol is requested again, without asking the cache per symbol
+        verify(requestCoalescer).request(List.of(Map.of("symbol", "MSFT", "asset_type", "STOCK")));
+        verify(cacheService, never()).isDataFresh(any(), any(), any());
+        assertEquals(2, results.size());
+    }
+
+    private MarketData createMarketData(String symbol, LocalDateTime cachedAt) {
+        MarketData marketData = new MarketData();
+        marketData.setSymbol(symbol);
+        marketData.setAssetType(AssetType.STOCK);
+        marketData.setPrice(new BigDecimal("100.00"));
+        marketData.setUpdatedAt(cachedAt);
+        marketData.setCachedAt(cachedAt);
+        return marketData;
     }
 
     private Map<String, Object> createAssetData(String symbol, String assetType, BigDecimal price) {
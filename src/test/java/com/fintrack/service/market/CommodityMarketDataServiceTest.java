@@ -28,6 +28,15 @@ class CommodityMarketDataServiceTest {
     @Mock
     private KafkaProducerService kafkaProducerService;
 
+    @Mock
+    private MarketDataRequestCoalescer requestCoalescer;
+
+    @Mock
+    private MarketDataCompletionRegistry completionRegistry;
+
+    @Mock
+    private HistoricalCoverageIndex historicalCoverageIndex;
+
     private CommodityMarketDataService commodityMarketDataService;
 
     @BeforeEach
@@ -35,7 +44,10 @@ class CommodityMarketDataServiceTest {
         commodityMarketDataService = new CommodityMarketDataService(
             cachedMarketDataService, 
             holdingsMonthlyRepository, 
-            kafkaProducerService
+            kafkaProducerService,
+            requestCoalescer,
+            completionRegistry,
+            historicalCoverageIndex
         );
     }
 
@@ -28,6 +28,15 @@ class CryptoMarketDataServiceTest {
     @Mock
     private KafkaProducerService kafkaProducerService;
 
+    @Mock
+    private MarketDataRequestCoalescer requestCoalescer;
+
+    @Mock
+    private MarketDataCompletionRegistry completionRegistry;
+
+    @Mock
+    private HistoricalCoverageIndex historicalCoverageIndex;
+
     private CryptoMarketDataService cryptoMarketDataService;
 
     @BeforeEach
@@ -35,7 +44,10 @@ class CryptoMarketDataServiceTest {
         cryptoMarketDataService = new CryptoMarketDataService(
             cachedMarketDataService, 
             holdingsMonthlyRepository, 
-            kafkaProducerService
+            kafkaProducerService,
+            requestCoalescer,
+            completionRegistry,
+            historicalCoverageIndex
         );
     }
 
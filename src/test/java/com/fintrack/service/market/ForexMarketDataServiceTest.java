@@ -30,6 +30,15 @@ class ForexMarketDataServiceTest {
     @Mock
     private KafkaProducerService kafkaProducerService;
 
+    @Mock
+    private MarketDataRequestCoalescer requestCoalescer;
+
+    @Mock
+    private MarketDataCompletionRegistry completionRegistry;
+
+    @Mock
+    private HistoricalCoverageIndex historicalCoverageIndex;
+
     @Mock
     private AccountCurrenciesRepository accountCurrenciesRepository;
 
@@ -43,7 +52,10 @@ class ForexMarketDataServiceTest {
             cachedMarketDataService, 
             holdingsMonthlyRepository, 
             kafkaProducerService,
-            accountCurrenciesRepository
+            accountCurrenciesRepository,
+            requestCoalescer,
+            completionRegistry,
+            historicalCoverageIndex
         );
     }
 
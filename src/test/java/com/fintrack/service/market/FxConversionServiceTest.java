@@ -0,0 +1,141 @@
+package com.fintrack.service.market;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fintrack.component.calculator.FxRateMatrix;
+import com.fintrack.constants.finance.AssetType;
+import com.fintrack.model.market.MarketData;
+import com.fintrack.repository.market.MarketDataRepository;
+import com.fintrack.service.market.event.MarketDataUpdateEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("FxConversionService Tests")
+class FxConversionServiceTest {
+
+    @Mock
+    private MarketDataRepository marketDataRepository;
+
+    private FxConversionService fxConversionService;
+
+    @BeforeEach
+    void setUp() {
+        fxConversionService = new FxConversionService(marketDataRepository);
+    }
+
+    @Test
+    @DisplayName("Should load the matrix once and resolve direct, reverse and cross rates")
+    void shouldLoadMatrixOnceAndResolveRates() {
+        // Given
+        when(marketDataRepository.findMarketDataByAssetType("FOREX")).thenReturn(List.of(
+            createForex("EUR/USD", "1.1000"),
+            createForex("USD/JPY", "150.0000")
+        ));
+
+        // When
+        FxRateMatrix matrix = fxConversionService.getCurrentMatrix();
+        fxConversionService.getCurrentMatrix();
+
+        // Then
+        assertEquals(new BigDecimal("1.1000"), matrix.rate("EUR", "USD"));
+        assertEquals(BigDecimal.ONE.divide(new BigDecimal("150.0000"), MathContext.DECIMAL64), matrix.rate("JPY", "USD"));
+        assertEquals(new BigDecimal("165.00000000"), matrix.rate("EUR", "JPY"));
+        assertNull(matrix.rate("EUR", "GBP"));
+        verify(marketDataRepository, times(1)).findMarketDataByAssetType("FOREX");
+    }
+
+    @Test
+    @DisplayName("Should apply FOREX updates from the completion message without reloading everything")
+    void shouldApplyForexUpdatesIncrementally() throws Exception {
+        // Given
+        when(marketDataRepository.findMarketDataByAssetType("FOREX")).thenReturn(List.of(
+            createForex("EUR/USD", "1.1000"),
+            createForex("GBP/USD", "1.2500")
+        ));
+        FxRateMatrix before = fxConversionService.getCurrentMatrix();
+        when(marketDataRepository.findMarketDataBySymbols(List.of("EUR/USD")))
+            .thenReturn(List.of(createForex("EUR/USD", "1.2000")));
+        String message = "{\"assets\":[{\"symbol\":\"EUR/USD\",\"asset_type\":\"FOREX\"},{\"symbol\":\"AAPL\",\"asset_type\":\"STOCK\"}]}";
+
+        // When
+        fxConversionService.onMarketDataUpdate(event(message));
+        FxRateMatrix after = fxConversionService.getCurrentMatrix();
+
+        // Then
+        assertTrue(after.getVersion() > before.getVersion());
+        assertEquals(new BigDecimal("1.1000"), before.rate("EUR", "USD"));
+        assertEquals(new BigDecimal("1.2000"), after.rate("EUR", "USD"));
+        assertEquals(new BigDecimal("1.2500"), after.rate("GBP", "USD"));
+        assertEquals(new BigDecimal("1.2000").multiply(BigDecimal.ONE.divide(new BigDecimal("1.2500"), MathContext.DECIMAL64), MathContext.DECIMAL64),
+            after.rate("EUR", "GBP"));
+        verify(marketDataRepository, times(1)).findMarketDataByAssetType("FOREX");
+    }
+
+    @Test
+    @DisplayName("Should rebuild the matrix when a new pair arrives")
+    void shouldRebuildMatrixWhenNewPairArrives() throws Exception {
+        // Given
+        when(marketDataRepository.findMarketDataByAssetType("FOREX")).thenReturn(List.of(createForex("EUR/USD", "1.1000")));
+        fxConversionService.getCurrentMatrix();
+        when(marketDataRepository.findMarketDataBySymbols(List.of("USD/CAD")))
+            .thenReturn(List.of(createForex("USD/CAD", "1.3600")));
+
+        // When
+        fxConversionService.onMarketDataUpdate(event("{\"assets\":[{\"symbol\":\"USD/CAD\",\"asset_type\":\"FOREX\"}]}"));
+
+        // Then
+        assertEquals(new BigDecimal("1.49600000"), fxConversionService.getCurrentMatrix().rate("EUR", "CAD"));
+    }
+
+    @Test
+    @DisplayName("Should ignore messages without FOREX assets")
+    void shouldIgnoreMessagesWithoutForexAssets() throws Exception {
+        // When
+        fxConversionService.onMarketDataUpdate(event("{\"assets\":[{\"symbol\":\"AAPL\",\"asset_type\":\"STOCK\"}]}"));
+        fxConversionService.onMarketDataUpdate(event("{\"assets\":[]}"));
+
+        // Then
+        verifyNoInteractions(marketDataRepository);
+    }
+
+    @Test
+    @DisplayName("Should rebuild the matrix on next use after a full refresh")
+    void shouldReloadAfterFullRefresh() throws Exception {
+        // Given
+        when(marketDataRepository.findMarketDataByAssetType("FOREX"))
+            .thenReturn(List.of(createForex("EUR/USD", "1.1000")))
+            .thenReturn(List.of(createForex("EUR/USD", "1.3000")));
+        fxConversionService.getCurrentMatrix();
+
+        // When
+        fxConversionService.onMarketDataUpdate(event("{\"full_refresh\": true}"));
+
+        // Then
+        assertEquals(new BigDecimal("1.3000"), fxConversionService.getCurrentMatrix().rate("EUR", "USD"));
+        assertEquals(Set.of(AssetType.FOREX), fxConversionService.assetTypes());
+    }
+
+    private MarketDataUpdateEvent event(String message) throws Exception {
+        return MarketDataUpdateEvent.fromJson(new ObjectMapper(), message);
+    }
+
+    private MarketData createForex(String symbol, String price) {
+        MarketData marketData = new MarketData();
+        marketData.setSymbol(symbol);
+        marketData.setAssetType(AssetType.FOREX);
+        marketData.setPrice(new BigDecimal(price));
+        return marketData;
+    }
+}
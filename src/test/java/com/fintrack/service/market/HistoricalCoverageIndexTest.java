@@ -0,0 +1,181 @@
+package com.fintrack.service.market;
+
+import com.fintrack.constants.finance.AssetType;
+import com.fintrack.repository.market.MarketDataMonthlyRepository;
+import com.fintrack.service.market.event.HistoricalMarketDataEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("HistoricalCoverageIndex Tests")
+class HistoricalCoverageIndexTest {
+
+    private static final LocalDate START = LocalDate.of(2023, 1, 1);
+    private static final LocalDate END = LocalDate.of(2023, 12, 31);
+
+    @Mock
+    private MarketDataMonthlyRepository marketDataMonthlyRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private HistoricalCoverageIndex index;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        index = new HistoricalCoverageIndex(marketDataMonthlyRepository, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Should request the whole range once when nothing is stored")
+    void shouldClaimMissingRangeOnce() {
+        // Given
+        storedMonths();
+
+        // When: Two accounts holding AAPL load their portfolios
+        Map<HistoricalCoverageIndex.Gap, List<Map<String, String>>> first =
+            index.claimGaps(AssetType.STOCK, List.of(asset("AAPL"), asset("MSFT")), START, END);
+        Map<HistoricalCoverageIndex.Gap, List<Map<String, String>>> second =
+            index.claimGaps(AssetType.STOCK, List.of(asset("AAPL")), START, END);
+
+        // Then: Both assets share one request, and the second caller finds it already claimed
+        assertEquals(Map.of(new HistoricalCoverageIndex.Gap(START, END), List.of(asset("AAPL"), asset("MSFT"))), first);
+        assertTrue(second.isEmpty());
+        assertEquals(24, meterRegistry.get("market.data.historical.months").tag("result", "requested").counter().count());
+        assertEquals(12, meterRegistry.get("market.data.historical.months").tag("result", "covered").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should only request the months missing from market_data_monthly")
+    void shouldRequestOnlyGaps() {
+        // Given: AAPL is stored up to June, except March
+        storedMonths(row("AAPL", 2023, 1), row("AAPL", 2023, 2), row("AAPL", 2023, 4), row("AAPL", 2023, 5), row("AAPL", 2023, 6));
+
+        // When
+        Map<HistoricalCoverageIndex.Gap, List<Map<String, String>>> gaps =
+            index.claimGaps(AssetType.STOCK, List.of(asset("AAPL")), START, END);
+
+        // Then
+        assertEquals(List.of(
+            new HistoricalCoverageIndex.Gap(LocalDate.of(2023, 3, 1), LocalDate.of(2023, 3, 31)),
+            new HistoricalCoverageIndex.Gap(LocalDate.of(2023, 7, 1), END)), new ArrayList<>(gaps.keySet()));
+    }
+
+    @Test
+    @DisplayName("Should take a completed range as covered even without stored prices")
+    void shouldCoverCompletedRange() {
+        // Given: A claim, and pending claims that expire right away
+        storedMonths();
+        ReflectionTestUtils.setField(index, "pendingTtlMillis", 0L);
+        index.claimGaps(AssetType.STOCK, List.of(asset("AAPL")), START, END);
+
+        // When: The ETL completes the range, e.g. finding no prices before a listing
+        index.onHistoricalMarketData(loaded("AAPL", START, END));
+
+        // Then
+        assertTrue(index.claimGaps(AssetType.STOCK, List.of(asset("AAPL")), START, END).isEmpty());
+        verify(marketDataMonthlyRepository, times(1)).findSymbolsAndDatesBySymbolsAndAssetType(anyCollection(), eq(AssetType.STOCK));
+    }
+
+    @Test
+    @DisplayName("Should read market_data_monthly again when a claim expires without a completion")
+    void shouldReloadAfterExpiredClaim() {
+        // Given: Another node receives the completion and stores the months
+        List<Object[]> storedRows = new ArrayList<>();
+        for (int month = 1; month <= 12; month++) {
+            storedRows.add(row("AAPL", 2023, month));
+        }
+        when(marketDataMonthlyRepository.findSymbolsAndDatesBySymbolsAndAssetType(anyCollection(), eq(AssetType.STOCK)))
+            .thenReturn(List.of(), storedRows);
+        ReflectionTestUtils.setField(index, "pendingTtlMillis", 0L);
+        assertEquals(1, index.claimGaps(AssetType.STOCK, List.of(asset("AAPL")), START, END).size());
+
+        // When
+        Map<HistoricalCoverageIndex.Gap, List<Map<String, String>>> gaps =
+            index.claimGaps(AssetType.STOCK, List.of(asset("AAPL")), START, END);
+
+        // Then
+        assertTrue(gaps.isEmpty());
+        verify(marketDataMonthlyRepository, times(2)).findSymbolsAndDatesBySymbolsAndAssetType(anyCollection(), eq(AssetType.STOCK));
+    }
+
+    @Test
+    @DisplayName("Should refresh the current month until it has been loaded recently")
+    void shouldRefreshCurrentMonth() {
+        // Given: Every month up to the previous one is stored
+        LocalDate today = LocalDate.now();
+        YearMonth previousMonth = YearMonth.from(today).minusMonths(1);
+        storedMonths(row("AAPL", previousMonth.getYear(), previousMonth.getMonthValue()));
+
+        // When
+        Map<HistoricalCoverageIndex.Gap, List<Map<String, String>>> gaps =
+            index.claimGaps(AssetType.STOCK, List.of(asset("AAPL")), previousMonth.atDay(1), today.plusDays(30));
+        index.onHistoricalMarketData(loaded("AAPL", today.withDayOfMonth(1), today));
+        ReflectionTestUtils.setField(index, "pendingTtlMillis", 0L);
+
+        // Then: Only the current month is asked for, up to today, and not again once it is loaded
+        assertEquals(Set.of(new HistoricalCoverageIndex.Gap(today.withDayOfMonth(1), today)), gaps.keySet());
+        assertTrue(index.claimGaps(AssetType.STOCK, List.of(asset("AAPL")), previousMonth.atDay(1), today).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should request released claims again")
+    void shouldRequestReleasedClaimsAgain() {
+        // Given: A claim whose request could not be sent
+        storedMonths();
+        index.claimGaps(AssetType.STOCK, List.of(asset("AAPL")), START, END);
+
+        // When
+        index.release(AssetType.STOCK, new HistoricalCoverageIndex.Gap(START, END), List.of(asset("AAPL")));
+
+        // Then
+        assertEquals(Set.of(new HistoricalCoverageIndex.Gap(START, END)),
+            index.claimGaps(AssetType.STOCK, List.of(asset("AAPL")), START, END).keySet());
+    }
+
+    @Test
+    @DisplayName("Should keep the other claims of an asset when one is released")
+    void shouldOnlyReleaseTheFailedGap() {
+        // Given: Two gaps of AAPL are claimed, and only the March request could not be sent
+        storedMonths(row("AAPL", 2023, 1), row("AAPL", 2023, 2), row("AAPL", 2023, 4), row("AAPL", 2023, 5), row("AAPL", 2023, 6));
+        index.claimGaps(AssetType.STOCK, List.of(asset("AAPL")), START, END);
+        HistoricalCoverageIndex.Gap march = new HistoricalCoverageIndex.Gap(LocalDate.of(2023, 3, 1), LocalDate.of(2023, 3, 31));
+
+        // When
+        index.release(AssetType.STOCK, march, List.of(asset("AAPL")));
+
+        // Then: March is requested again, July onwards is still pending
+        assertEquals(Set.of(march), index.claimGaps(AssetType.STOCK, List.of(asset("AAPL")), START, END).keySet());
+    }
+
+    private void storedMonths(Object[]... rows) {
+        when(marketDataMonthlyRepository.findSymbolsAndDatesBySymbolsAndAssetType(anyCollection(), eq(AssetType.STOCK)))
+            .thenReturn(Arrays.asList(rows));
+    }
+
+    private static Object[] row(String symbol, int year, int month) {
+        return new Object[]{symbol, YearMonth.of(year, month).atEndOfMonth()};
+    }
+
+    private static HistoricalMarketDataEvent loaded(String symbol, LocalDate startDate, LocalDate endDate) {
+        return new HistoricalMarketDataEvent(List.of(new HistoricalMarketDataEvent.Asset(symbol, AssetType.STOCK)),
+            startDate, endDate, List.of());
+    }
+
+    private static Map<String, String> asset(String symbol) {
+        return Map.of("symbol", symbol, "asset_type", "STOCK");
+    }
+}
@@ -0,0 +1,118 @@
+package com.fintrack.service.market;
+
+import com.fintrack.constants.finance.AssetType;
+import com.fintrack.model.market.MarketData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("MarketDataCompletionRegistry Tests")
+class MarketDataCompletionRegistryTest {
+
+    private static final String AAPL = MarketDataCompletionRegistry.key("STOCK", "AAPL");
+    private static final String MSFT = MarketDataCompletionRegistry.key("STOCK", "MSFT");
+
+    private MarketDataCompletionRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new MarketDataCompletionRegistry();
+        ReflectionTestUtils.setField(registry, "waitTimeoutMillis", 50L);
+    }
+
+    @Test
+    @DisplayName("Should return the keys completed while waiting")
+    void shouldReturnCompletedKeys() throws Exception {
+        // Given
+        ReflectionTestUtils.setField(registry, "waitTimeoutMillis", 10000L);
+        try (MarketDataCompletionRegistry.Waiter waiter = registry.register(List.of(AAPL, MSFT))) {
+            CompletableFuture.runAsync(() -> registry.completeMarketData(List.of(marketData("AAPL"))),
+                    CompletableFuture.delayedExecutor(20, TimeUnit.MILLISECONDS));
+
+            // When
+            long start = System.nanoTime();
+            Set<String> completed = waiter.awaitNext();
+
+            // Then
+            assertEquals(Set.of(AAPL), completed);
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5), "Should wake on completion, not on the deadline");
+        }
+    }
+
+    @Test
+    @DisplayName("Should return nothing once the deadline has passed")
+    void shouldReturnNothingAfterDeadline() throws Exception {
+        try (MarketDataCompletionRegistry.Waiter waiter = registry.register(List.of(AAPL))) {
+            // When
+            Set<String> completed = waiter.awaitNext();
+
+            // Then
+            assertTrue(completed.isEmpty());
+        }
+    }
+
+    @Test
+    @DisplayName("Should wake every caller waiting for the same key")
+    void shouldWakeAllWaitersOfAKey() throws Exception {
+        try (MarketDataCompletionRegistry.Waiter first = registry.register(List.of(AAPL));
+             MarketDataCompletionRegistry.Waiter second = registry.register(List.of(AAPL, MSFT))) {
+            // When
+            registry.complete(List.of(AAPL));
+
+            // Then
+            assertEquals(Set.of(AAPL), first.awaitNext());
+            assertEquals(Set.of(AAPL), second.awaitNext());
+        }
+    }
+
+    @Test
+    @DisplayName("Should not wait for released keys")
+    void shouldNotWaitForReleasedKeys() throws Exception {
+        try (MarketDataCompletionRegistry.Waiter waiter = registry.register(List.of(AAPL))) {
+            // When
+            waiter.release(List.of(AAPL));
+
+            // Then
+            assertTrue(waiter.awaitNext().isEmpty());
+            assertEquals(0, registry.waitingKeys());
+        }
+    }
+
+    @Test
+    @DisplayName("Should unregister the pending keys when the waiter is closed")
+    void shouldUnregisterOnClose() {
+        // When
+        registry.register(List.of(AAPL, MSFT)).close();
+
+        // Then
+        assertEquals(0, registry.waitingKeys());
+    }
+
+    @Test
+    @DisplayName("Should throw when the waiting thread is interrupted")
+    void shouldThrowWhenInterrupted() {
+        try (MarketDataCompletionRegistry.Waiter waiter = registry.register(List.of(AAPL))) {
+            // Given
+            Thread.currentThread().interrupt();
+
+            // When & Then
+            assertThrows(InterruptedException.class, waiter::awaitNext);
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    private MarketData marketData(String symbol) {
+        MarketData marketData = new MarketData();
+        marketData.setSymbol(symbol);
+        marketData.setAssetType(AssetType.STOCK);
+        return marketData;
+    }
+}
@@ -0,0 +1,119 @@
+package com.fintrack.service.market;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("MarketDataRefreshService Tests")
+class MarketDataRefreshServiceTest {
+
+    @Mock
+    private MarketDataService marketDataService;
+
+    private MarketDataRefreshService marketDataRefreshService;
+    private UUID testAccountId;
+    private List<Map<String, String>> entities;
+
+    @BeforeEach
+    void setUp() {
+        marketDataRefreshService = new MarketDataRefreshService(marketDataService);
+        testAccountId = UUID.randomUUID();
+        entities = List.of(Map.of("symbol", "AAPL", "assetType", "STOCK"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        marketDataRefreshService.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should return before the refresh completes and report it as pending")
+    void shouldRefreshInBackground() throws Exception {
+        // Given: The refresh blocks until released
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+        when(marketDataService.fetchMarketData(eq(testAccountId), anyList())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            finished.countDown();
+            return List.of();
+        });
+
+        // When
+        boolean pending = marketDataRefreshService.refreshAsync(testAccountId, entities);
+
+        // Then
+        assertTrue(pending);
+        assertTrue(marketDataRefreshService.isRefreshPending(testAccountId));
+
+        release.countDown();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        awaitNotPending();
+        assertFalse(marketDataRefreshService.isRefreshPending(testAccountId));
+    }
+
+    @Test
+    @DisplayName("Should join the pending refresh of an account instead of starting another")
+    void shouldDeduplicateRefreshesPerAccount() throws Exception {
+        // Given
+        CountDownLatch release = new CountDownLatch(1);
+        when(marketDataService.fetchMarketData(eq(testAccountId), anyList())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return List.of();
+        });
+
+        // When
+        marketDataRefreshService.refreshAsync(testAccountId, entities);
+        boolean secondPending = marketDataRefreshService.refreshAsync(testAccountId, entities);
+        release.countDown();
+        awaitNotPending();
+
+        // Then
+        assertTrue(secondPending);
+        verify(marketDataService, times(1)).fetchMarketData(eq(testAccountId), anyList());
+    }
+
+    @Test
+    @DisplayName("Should clear the pending flag when the refresh fails")
+    void shouldClearPendingFlagOnFailure() throws Exception {
+        // Given
+        when(marketDataService.fetchMarketData(eq(testAccountId), anyList())).thenThrow(new RuntimeException("Kafka unavailable"));
+
+        // When
+        marketDataRefreshService.refreshAsync(testAccountId, entities);
+        awaitNotPending();
+
+        // Then
+        assertFalse(marketDataRefreshService.isRefreshPending(testAccountId));
+    }
+
+    @Test
+    @DisplayName("Should not schedule anything for an account without symbols")
+    void shouldIgnoreEmptyRefresh() {
+        // When
+        boolean pending = marketDataRefreshService.refreshAsync(testAccountId, List.of());
+
+        // Then
+        assertFalse(pending);
+        verifyNoInteractions(marketDataService);
+    }
+
+    private void awaitNotPending() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (marketDataRefreshService.isRefreshPending(testAccountId) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
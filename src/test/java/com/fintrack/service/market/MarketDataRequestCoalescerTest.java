@@ -0,0 +1,161 @@
+package com.fintrack.service.market;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fintrack.constants.KafkaTopics;
+import com.fintrack.constants.finance.AssetType;
+import com.fintrack.model.market.MarketData;
+import com.fintrack.util.KafkaProducerService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("MarketDataRequestCoalescer Tests")
+class MarketDataRequestCoalescerTest {
+
+    private static final String TOPIC = KafkaTopics.MARKET_DATA_UPDATE_REQUEST.getTopicName();
+
+    @Mock
+    private KafkaProducerService kafkaProducerService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private SimpleMeterRegistry meterRegistry;
+    private MarketDataRequestCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        lenient().when(kafkaProducerService.publishEventAsync(anyString(), anyString(), anyString()))
+            .thenReturn(CompletableFuture.completedFuture(null));
+        coalescer = new MarketDataRequestCoalescer(kafkaProducerService, objectMapper, meterRegistry);
+        // Batches are flushed by the tests
+        ReflectionTestUtils.setField(coalescer, "batchWindowMillis", 60000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        coalescer.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should merge overlapping requests of several accounts into one message")
+    void shouldMergeOverlappingRequests() throws Exception {
+        // When
+        int first = coalescer.request(List.of(asset("AAPL", "STOCK"), asset("MSFT", "STOCK")));
+        int second = coalescer.request(List.of(asset("AAPL", "STOCK"), asset("TSLA", "STOCK")));
+        coalescer.flush();
+
+        // Then
+        assertEquals(2, first);
+        assertEquals(1, second);
+        assertEquals(List.of("AAPL", "MSFT", "TSLA"), sentSymbols().get(0));
+        assertEquals(1.0, meterRegistry.get("market.data.update.request.symbols").tag("result", "suppressed").counter().count());
+        assertEquals(1.0, meterRegistry.get("market.data.update.request.merged").counter().count());
+        assertEquals(1.0, meterRegistry.get("market.data.update.request.messages").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should send one message per asset type")
+    void shouldSendOneMessagePerAssetType() throws Exception {
+        // When
+        coalescer.request(List.of(asset("AAPL", "STOCK"), asset("BTC", "CRYPTO"), asset("MSFT", "STOCK")));
+        coalescer.flush();
+
+        // Then
+        assertEquals(List.of(List.of("AAPL", "MSFT"), List.of("BTC")), sentSymbols());
+    }
+
+    @Test
+    @DisplayName("Should suppress a symbol until its update completes")
+    void shouldSuppressInFlightSymbolsUntilCompleted() {
+        // Given
+        coalescer.request(List.of(asset("AAPL", "STOCK")));
+        coalescer.flush();
+
+        // When
+        int whileInFlight = coalescer.request(List.of(asset("AAPL", "STOCK")));
+        coalescer.complete(List.of(marketData("AAPL", AssetType.STOCK)));
+        int afterCompletion = coalescer.request(List.of(asset("AAPL", "STOCK")));
+
+        // Then
+        assertEquals(0, whileInFlight);
+        assertEquals(1, afterCompletion);
+    }
+
+    @Test
+    @DisplayName("Should request a symbol again once its in-flight period has expired")
+    void shouldRetryAfterInFlightTtl() {
+        // Given
+        ReflectionTestUtils.setField(coalescer, "inFlightTtlMillis", 0L);
+        coalescer.request(List.of(asset("AAPL", "STOCK")));
+
+        // When
+        int again = coalescer.request(List.of(asset("AAPL", "STOCK")));
+
+        // Then
+        assertEquals(1, again);
+    }
+
+    @Test
+    @DisplayName("Should release symbols whose request could not be sent")
+    void shouldReleaseSymbolsWhenSendingFails() {
+        // Given
+        when(kafkaProducerService.publishEventAsync(eq(TOPIC), anyString(), anyString()))
+            .thenReturn(CompletableFuture.failedFuture(new RuntimeException("Kafka unavailable")));
+        coalescer.request(List.of(asset("AAPL", "STOCK")));
+
+        // When
+        coalescer.flush();
+        int again = coalescer.request(List.of(asset("AAPL", "STOCK")));
+
+        // Then
+        assertEquals(1, again);
+    }
+
+    @Test
+    @DisplayName("Should not send anything when there is nothing to flush")
+    void shouldNotSendEmptyBatches() {
+        // When
+        coalescer.flush();
+
+        // Then
+        verifyNoInteractions(kafkaProducerService);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<List<String>> sentSymbols() throws Exception {
+        ArgumentCaptor<String> payloads = ArgumentCaptor.forClass(String.class);
+        verify(kafkaProducerService, atLeastOnce()).publishEventAsync(eq(TOPIC), anyString(), payloads.capture());
+        List<List<String>> symbols = new ArrayList<>();
+        for (String payload : payloads.getAllValues()) {
+            List<Map<String, String>> assets = (List<Map<String, String>>) objectMapper.readValue(payload, Map.class).get("assets");
+            symbols.add(assets.stream().map(asset -> asset.get("symbol")).toList());
+        }
+        return symbols;
+    }
+
+    private Map<String, String> asset(String symbol, String assetType) {
+        return Map.of("symbol", symbol, "asset_type", assetType);
+    }
+
+    private MarketData marketData(String symbol, AssetType assetType) {
+        MarketData marketData = new MarketData();
+        marketData.setSymbol(symbol);
+        marketData.setAssetType(assetType);
+        return marketData;
+    }
+}
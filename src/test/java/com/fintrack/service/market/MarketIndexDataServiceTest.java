@@ -10,9 +10,14 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -27,11 +32,15 @@ class MarketIndexDataServiceTest {
     @Mock
     private MarketIndexDataRepository marketIndexDataRepository;
 
+    private MarketDataCompletionRegistry completionRegistry;
+
     private MarketIndexDataService marketIndexDataService;
 
     @BeforeEach
     void setUp() {
-        marketIndexDataService = new MarketIndexDataService(kafkaProducerService, marketIndexDataRepository);
+        completionRegistry = new MarketDataCompletionRegistry();
+        ReflectionTestUtils.setField(completionRegistry, "waitTimeoutMillis", 50L);
+        marketIndexDataService = new MarketIndexDataService(kafkaProducerService, marketIndexDataRepository, completionRegistry);
     }
 
     @Test
@@ -85,7 +94,7 @@ class MarketIndexDataServiceTest {
         assertEquals(185.0, iwmData.get("price_high"));
         
         verify(marketIndexDataRepository).findMarketIndexDataBySymbols(symbols);
-        verify(kafkaProducerService).publishEvent(anyString(), anyString());
+        verify(kafkaProducerService).publishEvent(anyString(), eq(MarketDataCompletionRegistry.MARKET_INDEX), anyString());
     }
 
     @Test
@@ -169,7 +178,8 @@ class MarketIndexDataServiceTest {
 
         // Then
         assertTrue(result.isEmpty());
-        verify(marketIndexDataRepository).findMarketIndexDataBySymbols(symbols);
+        // Read once, then once more when the wait times out
+        verify(marketIndexDataRepository, times(2)).findMarketIndexDataBySymbols(symbols);
     }
 
     @Test
@@ -191,8 +201,9 @@ class MarketIndexDataServiceTest {
         assertTrue(result.containsKey("QQQ"));
         assertFalse(result.containsKey("IWM"));
         
-        // The service will retry up to 3 times, so we expect 3 calls
-        verify(marketIndexDataRepository, times(3)).findMarketIndexDataBySymbols(symbols);
+        // Only the missing symbol is read again when the wait times out
+        verify(marketIndexDataRepository).findMarketIndexDataBySymbols(symbols);
+        verify(marketIndexDataRepository).findMarketIndexDataBySymbols(List.of("IWM"));
     }
 
     @Test
@@ -207,6 +218,29 @@ class MarketIndexDataServiceTest {
         });
     }
 
+    @Test
+    @DisplayName("Should complete the symbols of a whole batch and acknowledge it")
+    void shouldCompleteSymbolsOfBatch() throws Exception {
+        // Given
+        Acknowledgment acknowledgment = mock(Acknowledgment.class);
+        Set<String> keys = Set.of(
+            MarketDataCompletionRegistry.key(MarketDataCompletionRegistry.MARKET_INDEX, "SPY"),
+            MarketDataCompletionRegistry.key(MarketDataCompletionRegistry.MARKET_INDEX, "QQQ"));
+
+        try (MarketDataCompletionRegistry.Waiter waiter = completionRegistry.register(keys)) {
+            // When: One record of the batch cannot be read
+            marketIndexDataService.onMarketIndexDataUpdateBatch(List.of(
+                "[{\"symbol\":\"SPY\",\"price\":450.00}]".getBytes(StandardCharsets.UTF_8),
+                "invalid".getBytes(StandardCharsets.UTF_8),
+                "[{\"symbol\":\"QQQ\",\"price\":380.00,\"percent_change\":1.12}]".getBytes(StandardCharsets.UTF_8)
+            ), acknowledgment);
+
+            // Then
+            assertEquals(keys, waiter.awaitNext());
+        }
+        verify(acknowledgment).acknowledge();
+    }
+
     @Test
     @DisplayName("Should handle null message gracefully")
     void shouldHandleNullMessageGracefully() {
@@ -337,45 +371,65 @@ class MarketIndexDataServiceTest {
     }
 
     @Test
-    @DisplayName("Should handle retry mechanism when data is not available initially")
-    void shouldHandleRetryMechanismWhenDataIsNotAvailableInitially() {
+    @DisplayName("Should read the symbols whose update completed while waiting")
+    void shouldReadSymbolsWhoseUpdateCompleted() {
+        // Given
+        ReflectionTestUtils.setField(completionRegistry, "waitTimeoutMillis", 10000L);
+        List<String> symbols = Arrays.asList("SPY", "QQQ");
+        when(marketIndexDataRepository.findMarketIndexDataBySymbols(symbols))
+            .thenAnswer(invocation -> {
+                // The update completes shortly after the first read
+                CompletableFuture.runAsync(() -> marketIndexDataService.onMarketDataUpdateComplete(
+                        "[{\"symbol\":\"QQQ\",\"price\":380.00}]"),
+                    CompletableFuture.delayedExecutor(20, TimeUnit.MILLISECONDS));
+                return createMockMarketIndexData(Arrays.asList("SPY"));
+            });
+        when(marketIndexDataRepository.findMarketIndexDataBySymbols(List.of("QQQ")))
+            .thenReturn(createMockMarketIndexData(Arrays.asList("QQQ")));
+
+        // When
+        long start = System.nanoTime();
+        Map<String, Object> result = marketIndexDataService.getMostRecentMarketIndexData(symbols);
+
+        // Then
+        assertEquals(Set.of("SPY", "QQQ"), result.keySet());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5), "Should not wait for the deadline");
+    }
+
+    @Test
+    @DisplayName("Should read the missing symbols again when the wait times out")
+    void shouldReadMissingSymbolsAgainWhenTheWaitTimesOut() {
         // Given
         List<String> symbols = Arrays.asList("SPY", "QQQ", "IWM");
-        List<MarketIndexData> emptyData = new ArrayList<>();
-        List<MarketIndexData> partialData = createMockMarketIndexData(Arrays.asList("SPY"));
-        List<MarketIndexData> fullData = createMockMarketIndexData(symbols);
-        
         when(marketIndexDataRepository.findMarketIndexDataBySymbols(symbols))
-            .thenReturn(emptyData)
-            .thenReturn(partialData)
-            .thenReturn(fullData);
+            .thenReturn(createMockMarketIndexData(Arrays.asList("SPY")));
+        when(marketIndexDataRepository.findMarketIndexDataBySymbols(List.of("QQQ", "IWM")))
+            .thenReturn(createMockMarketIndexData(Arrays.asList("QQQ")));
 
         // When
         Map<String, Object> result = marketIndexDataService.getMostRecentMarketIndexData(symbols);
 
         // Then
-        // The service exits early when no data is found, so we expect only 1 call
-        verify(marketIndexDataRepository, times(1)).findMarketIndexDataBySymbols(symbols);
-        
-        // The result should be empty because the service exits early when no data is found
-        assertTrue(result.isEmpty());
+        assertEquals(Set.of("SPY", "QQQ"), result.keySet());
+        verify(marketIndexDataRepository, times(2)).findMarketIndexDataBySymbols(anyList());
     }
 
     @Test
-    @DisplayName("Should handle interrupted retry")
-    void shouldHandleInterruptedRetry() {
+    @DisplayName("Should return what was found when interrupted while waiting")
+    void shouldHandleInterruptedWait() {
         // Given
         List<String> symbols = Arrays.asList("SPY", "QQQ", "IWM");
-        
         when(marketIndexDataRepository.findMarketIndexDataBySymbols(symbols))
-            .thenReturn(new ArrayList<>());
+            .thenReturn(createMockMarketIndexData(Arrays.asList("SPY")));
+        Thread.currentThread().interrupt();
 
         // When
         Map<String, Object> result = marketIndexDataService.getMostRecentMarketIndexData(symbols);
 
         // Then
-        assertTrue(result.isEmpty());
-        verify(marketIndexDataRepository, atLeastOnce()).findMarketIndexDataBySymbols(symbols);
+        assertEquals(Set.of("SPY"), result.keySet());
+        verify(marketIndexDataRepository, times(1)).findMarketIndexDataBySymbols(anyList());
+        assertTrue(Thread.interrupted());
     }
 
     private List<MarketIndexData> createMockMarketIndexData(List<String> symbols) {
@@ -0,0 +1,165 @@
+package com.fintrack.service.market;
+
+import com.fintrack.constants.finance.AssetType;
+import com.fintrack.model.market.MarketDataMonthly;
+import com.fintrack.repository.market.MarketDataMonthlyRepository;
+import com.fintrack.service.market.event.HistoricalMarketDataEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("PriceHistoryStore Tests")
+class PriceHistoryStoreTest {
+
+    private static final LocalDate JANUARY = LocalDate.of(2024, 1, 31);
+    private static final LocalDate FEBRUARY = LocalDate.of(2024, 2, 29);
+    private static final LocalDate MARCH = LocalDate.of(2024, 3, 31);
+
+    @Mock
+    private MarketDataMonthlyRepository marketDataMonthlyRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private PriceHistoryStore store;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        store = new PriceHistoryStore(marketDataMonthlyRepository, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Should answer the last price on or before a date")
+    void shouldCarryLastObservationForward() {
+        // Given: AAPL has no February price, and an AAPL row of another asset type exists
+        when(marketDataMonthlyRepository.findBySymbols(anyCollection())).thenReturn(List.of(
+            row("AAPL", AssetType.STOCK, MARCH, "190.25"), row("AAPL", AssetType.STOCK, JANUARY, "185.50"),
+            row("AAPL", AssetType.CRYPTO, FEBRUARY, "1.00")));
+
+        // When
+        PriceHistoryStore.Prices prices = store.pricesOf(List.of("AAPL", "MSFT"));
+
+        // Then
+        assertNull(prices.asOf("AAPL", AssetType.STOCK, JANUARY.minusDays(1)));
+        assertEquals(new PriceHistoryStore.Observation(JANUARY, new BigDecimal("185.50")), prices.asOf("AAPL", AssetType.STOCK, JANUARY));
+        assertEquals(new PriceHistoryStore.Observation(JANUARY, new BigDecimal("185.50")), prices.asOf("AAPL", AssetType.STOCK, FEBRUARY));
+        assertEquals(new PriceHistoryStore.Observation(MARCH, new BigDecimal("190.25")), prices.asOf("AAPL", AssetType.STOCK, MARCH.plusYears(1)));
+        assertNull(prices.asOf("MSFT", AssetType.STOCK, MARCH));
+    }
+
+    @Test
+    @DisplayName("Should only read the symbols that are not resident")
+    void shouldOnlyLoadMissingSymbols() {
+        // Given
+        when(marketDataMonthlyRepository.findBySymbols(anyCollection()))
+            .thenReturn(List.of(row("AAPL", AssetType.STOCK, JANUARY, "185.50")), List.of(row("MSFT", AssetType.STOCK, JANUARY, "390.00")));
+        store.pricesOf(List.of("AAPL"));
+
+        // When
+        PriceHistoryStore.Prices prices = store.pricesOf(List.of("AAPL", "MSFT"));
+
+        // Then
+        assertEquals(new BigDecimal("185.50"), prices.asOf("AAPL", AssetType.STOCK, MARCH).price());
+        assertEquals(new BigDecimal("390.00"), prices.asOf("MSFT", AssetType.STOCK, MARCH).price());
+        verify(marketDataMonthlyRepository).findBySymbols(List.of("MSFT"));
+        assertEquals(2, meterRegistry.get("market.data.price.history.loads").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should apply completed prices to resident symbols without reading them again")
+    void shouldApplyCompletedPrices() {
+        // Given
+        when(marketDataMonthlyRepository.findBySymbols(anyCollection())).thenReturn(List.of(row("AAPL", AssetType.STOCK, JANUARY, "185.50")));
+        store.pricesOf(List.of("AAPL"));
+
+        // When: The ETL stores February and corrects January
+        store.onHistoricalMarketData(new HistoricalMarketDataEvent(List.of(new HistoricalMarketDataEvent.Asset("AAPL", AssetType.STOCK)),
+            JANUARY.withDayOfMonth(1), FEBRUARY, List.of(row("AAPL", AssetType.STOCK, JANUARY, "186.00"), row("AAPL", AssetType.STOCK, FEBRUARY, "188.75"))));
+        PriceHistoryStore.Prices prices = store.pricesOf(List.of("AAPL"));
+
+        // Then
+        assertEquals(new BigDecimal("186.00"), prices.asOf("AAPL", AssetType.STOCK, JANUARY).price());
+        assertEquals(new PriceHistoryStore.Observation(FEBRUARY, new BigDecimal("188.75")), prices.asOf("AAPL", AssetType.STOCK, MARCH));
+        verify(marketDataMonthlyRepository, times(1)).findBySymbols(anyCollection());
+    }
+
+    @Test
+    @DisplayName("Should evict the least recently used symbols beyond the memory budget")
+    void shouldEvictLeastRecentlyUsedSymbols() {
+        // Given: A budget that holds a single symbol
+        ReflectionTestUtils.setField(store, "maxBytes", 200L);
+        when(marketDataMonthlyRepository.findBySymbols(anyCollection())).thenAnswer(invocation -> {
+            Collection<String> symbols = invocation.getArgument(0);
+            return symbols.stream().map(symbol -> row(symbol, AssetType.STOCK, JANUARY, "100.00")).toList();
+        });
+        store.pricesOf(List.of("AAPL"));
+        store.pricesOf(List.of("MSFT"));
+
+        // When
+        store.pricesOf(List.of("MSFT"));
+        store.pricesOf(List.of("AAPL"));
+
+        // Then: MSFT stayed resident, AAPL was read again
+        verify(marketDataMonthlyRepository, times(2)).findBySymbols(List.of("AAPL"));
+        verify(marketDataMonthlyRepository, times(1)).findBySymbols(List.of("MSFT"));
+        assertEquals(2, meterRegistry.get("market.data.price.history.evictions").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should read resident symbols again after the refresh interval")
+    void shouldReloadAfterRefreshInterval() {
+        // Given: February is stored without a completion reaching this node
+        ReflectionTestUtils.setField(store, "refreshMillis", 0L);
+        when(marketDataMonthlyRepository.findBySymbols(anyCollection()))
+            .thenReturn(List.of(row("AAPL", AssetType.STOCK, JANUARY, "185.50")),
+                List.of(row("AAPL", AssetType.STOCK, JANUARY, "185.50"), row("AAPL", AssetType.STOCK, FEBRUARY, "188.75")));
+        store.pricesOf(List.of("AAPL"));
+
+        // When
+        PriceHistoryStore.Prices prices = store.pricesOf(List.of("AAPL"));
+
+        // Then
+        assertEquals(FEBRUARY, prices.asOf("AAPL", AssetType.STOCK, MARCH).date());
+        verify(marketDataMonthlyRepository, times(2)).findBySymbols(anyCollection());
+    }
+
+    @Test
+    @DisplayName("Should round finer prices to cents and keep prices too large for scaled longs")
+    void shouldKeepLargeAndFinelyScaledPrices() {
+        // Given: A price with more decimals than the column, and one beyond the range of a long in cents
+        when(marketDataMonthlyRepository.findBySymbols(anyCollection())).thenReturn(List.of(
+            row("AAPL", AssetType.STOCK, JANUARY, "185.505"), row("AAPL", AssetType.STOCK, FEBRUARY, "188.75"),
+            row("BTC", AssetType.CRYPTO, JANUARY, "123456789012345678.25"), row("BTC", AssetType.CRYPTO, FEBRUARY, "2.5")));
+
+        // When
+        PriceHistoryStore.Prices prices = store.pricesOf(List.of("AAPL", "BTC"));
+
+        // Then: The other prices of both series keep their value and the column's scale
+        assertEquals(new BigDecimal("185.51"), prices.asOf("AAPL", AssetType.STOCK, JANUARY).price());
+        assertEquals(new BigDecimal("188.75"), prices.asOf("AAPL", AssetType.STOCK, FEBRUARY).price());
+        assertEquals(new BigDecimal("123456789012345678.25"), prices.asOf("BTC", AssetType.CRYPTO, JANUARY).price());
+        assertEquals(new BigDecimal("2.50"), prices.asOf("BTC", AssetType.CRYPTO, MARCH).price());
+    }
+
+    private static MarketDataMonthly row(String symbol, AssetType assetType, LocalDate date, String price) {
+        MarketDataMonthly row = new MarketDataMonthly();
+        row.setSymbol(symbol);
+        row.setAssetType(assetType);
+        row.setDate(date);
+        row.setPrice(new BigDecimal(price));
+        return row;
+    }
+}
@@ -31,6 +31,15 @@ class StockMarketDataServiceTest {
     @Mock
     private KafkaProducerService kafkaProducerService;
 
+    @Mock
+    private MarketDataRequestCoalescer requestCoalescer;
+
+    @Mock
+    private MarketDataCompletionRegistry completionRegistry;
+
+    @Mock
+    private HistoricalCoverageIndex historicalCoverageIndex;
+
     private StockMarketDataService stockMarketDataService;
 
     private static final List<String> TEST_SYMBOLS = Arrays.asList("AAPL", "GOOGL", "MSFT");
@@ -41,7 +50,10 @@ class StockMarketDataServiceTest {
         stockMarketDataService = new StockMarketDataService(
             cachedMarketDataService,
             holdingsMonthlyRepository,
-            kafkaProducerService
+            kafkaProducerService,
+            requestCoalescer,
+            completionRegistry,
+            historicalCoverageIndex
         );
     }
 
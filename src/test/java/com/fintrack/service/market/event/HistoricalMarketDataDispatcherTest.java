@@ -0,0 +1,143 @@
+package com.fintrack.service.market.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fintrack.constants.finance.AssetType;
+import com.fintrack.model.market.MarketDataMonthly;
+import com.fintrack.repository.market.MarketDataMonthlyRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.annotation.Order;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("HistoricalMarketDataDispatcher Tests")
+class HistoricalMarketDataDispatcherTest {
+
+    private static final String LOADED = "{\"assets\":[{\"symbol\":\"AAPL\",\"asset_type\":\"STOCK\"},"
+        + "{\"symbol\":\"EUR/USD\",\"assetType\":\"forex\"}],\"start_date\":\"2024-01-01\",\"end_date\":\"2024-03-31\"}";
+
+    @Mock
+    private MarketDataMonthlyRepository marketDataMonthlyRepository;
+
+    @Mock
+    private Acknowledgment acknowledgment;
+
+    private final List<String> calls = new ArrayList<>();
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    @DisplayName("Should pass the stored prices of the loaded assets to the handlers in order")
+    void shouldDispatchStoredPricesInOrder() {
+        // Given: The range also holds an AAPL row of another asset type
+        when(marketDataMonthlyRepository.findBySymbolsAndDateRange(anyList(), eq(LocalDate.of(2024, 1, 1)), eq(LocalDate.of(2024, 3, 31))))
+            .thenReturn(List.of(row("AAPL", AssetType.STOCK, "2024-01-31", "185.50"), row("AAPL", AssetType.CRYPTO, "2024-01-31", "1.00"),
+                row("EUR/USD", AssetType.FOREX, "2024-02-29", "1.08")));
+        HistoricalMarketDataDispatcher dispatcher = dispatcher(new DerivedStateHandler(calls), new PriceRecorder(calls));
+
+        // When
+        receive(dispatcher, LOADED);
+
+        // Then
+        assertEquals(List.of("prices:AAPL-STOCK=185.50,EUR/USD-FOREX=1.08", "derived:2024-01-01"), calls);
+        verify(acknowledgment).acknowledge();
+    }
+
+    @Test
+    @DisplayName("Should count unreadable messages and skip messages without assets")
+    void shouldCountUnreadableMessages() {
+        // Given
+        HistoricalMarketDataDispatcher dispatcher = dispatcher(new PriceRecorder(calls));
+
+        // When
+        receive(dispatcher, "not json", "", "{\"assets\":[],\"start_date\":\"2024-01-01\"}",
+            "{\"assets\":[{\"symbol\":\"AAPL\",\"asset_type\":\"STOCK\"}],\"start_date\":\"January\"}");
+
+        // Then: The batch is still acknowledged, so it is not read again
+        assertTrue(calls.isEmpty());
+        assertEquals(3, meterRegistry.get("market.data.historical.unreadable").counter().count());
+        verifyNoInteractions(marketDataMonthlyRepository);
+        verify(acknowledgment).acknowledge();
+    }
+
+    @Test
+    @DisplayName("Should keep calling the other handlers when one fails")
+    void shouldIsolateHandlerFailures() {
+        // Given
+        when(marketDataMonthlyRepository.findBySymbolsAndDateRange(anyList(), any(), any())).thenReturn(List.of());
+        HistoricalMarketDataDispatcher dispatcher = dispatcher(new FailingHandler(), new DerivedStateHandler(calls));
+
+        // When
+        receive(dispatcher, LOADED);
+
+        // Then
+        assertEquals(List.of("derived:2024-01-01"), calls);
+        assertEquals(1, meterRegistry.get("market.data.historical.handler")
+            .tags("handler", "FailingHandler", "outcome", "error").timer().count());
+    }
+
+    private void receive(HistoricalMarketDataDispatcher dispatcher, String... messages) {
+        List<byte[]> records = new ArrayList<>();
+        for (String message : messages) {
+            records.add(message.getBytes(StandardCharsets.UTF_8));
+        }
+        dispatcher.onHistoricalMarketDataBatch(records, acknowledgment);
+    }
+
+    private HistoricalMarketDataDispatcher dispatcher(HistoricalMarketDataHandler... handlers) {
+        return new HistoricalMarketDataDispatcher(new ObjectMapper(), marketDataMonthlyRepository, List.of(handlers), meterRegistry);
+    }
+
+    private static MarketDataMonthly row(String symbol, AssetType assetType, String date, String price) {
+        MarketDataMonthly row = new MarketDataMonthly();
+        row.setSymbol(symbol);
+        row.setAssetType(assetType);
+        row.setDate(LocalDate.parse(date));
+        row.setPrice(new BigDecimal(price));
+        return row;
+    }
+
+    @Order(HistoricalMarketDataHandler.PRICE_HISTORY_ORDER)
+    private record PriceRecorder(List<String> calls) implements HistoricalMarketDataHandler {
+        @Override
+        public void onHistoricalMarketData(HistoricalMarketDataEvent event) {
+            StringJoiner prices = new StringJoiner(",", "prices:", "");
+            event.prices().forEach(row -> prices.add(row.getSymbol() + "-" + row.getAssetType() + "=" + row.getPrice().toPlainString()));
+            calls.add(prices.toString());
+        }
+    }
+
+    @Order(HistoricalMarketDataHandler.DERIVED_STATE_ORDER)
+    private record DerivedStateHandler(List<String> calls) implements HistoricalMarketDataHandler {
+        @Override
+        public void onHistoricalMarketData(HistoricalMarketDataEvent event) {
+            calls.add("derived:" + event.firstChangedDate());
+        }
+    }
+
+    @Order(HistoricalMarketDataHandler.COVERAGE_ORDER)
+    private static class FailingHandler implements HistoricalMarketDataHandler {
+        @Override
+        public void onHistoricalMarketData(HistoricalMarketDataEvent event) {
+            throw new IllegalStateException("boom");
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.fintrack.service.market.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fintrack.config.KafkaConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.kafka.listener.BatchAcknowledgingMessageListener;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the former record-at-a-time String listener, which parsed each message into a Map before converting it,
+ * with the batch listener binding record bytes straight into MarketDataUpdateMessage, against a real Kafka broker.
+ * Both read through the market data batch container factory, so the difference is the listener work.
+ *
+ * Only runs when KAFKA_BENCHMARK_BOOTSTRAP_SERVERS is set, e.g.
+ * KAFKA_BENCHMARK_BOOTSTRAP_SERVERS=localhost:9092 mvn test -Dtest=MarketDataUpdateBatchBenchmarkTest
+ */
+@EnabledIfEnvironmentVariable(named = "KAFKA_BENCHMARK_BOOTSTRAP_SERVERS", matches = ".+")
+@DisplayName("Market data update batch listener benchmark")
+class MarketDataUpdateBatchBenchmarkTest {
+
+    private static final int MESSAGES = 20000;
+    private static final int ASSETS_PER_MESSAGE = 10;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicInteger assetsSeen = new AtomicInteger();
+    private String bootstrapServers;
+    private MarketDataUpdateDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        bootstrapServers = System.getenv("KAFKA_BENCHMARK_BOOTSTRAP_SERVERS");
+        MarketDataUpdateHandler countingHandler = new MarketDataUpdateHandler() {
+            @Override
+            public Set<MarketDataUpdateEvent.Kind> eventKinds() {
+                return EnumSet.of(MarketDataUpdateEvent.Kind.UPDATED);
+            }
+
+            @Override
+            public void onMarketDataUpdate(MarketDataUpdateEvent event) {
+                assetsSeen.addAndGet(event.marketData().size());
+            }
+        };
+        dispatcher = new MarketDataUpdateDispatcher(objectMapper, List.of(countingHandler), new SimpleMeterRegistry());
+    }
+
+    @Test
+    @DisplayName("Batch listener should consume completion messages faster than the record listener")
+    void compareRecordAndBatchListeners() throws Exception {
+        String topic = "market-data-update-benchmark-" + UUID.randomUUID();
+        produce(topic);
+
+        // The former listener: one String record at a time, read into a Map and converted again
+        assetsSeen.set(0);
+        long recordNanos = consume(topic, (records, acknowledgment) -> {
+            for (ConsumerRecord<String, byte[]> record : records) {
+                try {
+                    Map<?, ?> payload = objectMapper.readValue(new String(record.value(), StandardCharsets.UTF_8), Map.class);
+                    dispatcher.dispatch(MarketDataUpdateEvent.from(objectMapper.convertValue(payload, MarketDataUpdateMessage.class)));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            acknowledgment.acknowledge();
+        });
+        assertEquals(MESSAGES * ASSETS_PER_MESSAGE, assetsSeen.get());
+
+        assetsSeen.set(0);
+        long batchNanos = consume(topic, (records, acknowledgment) ->
+            dispatcher.onMarketDataUpdateBatch(records.stream().map(ConsumerRecord::value).toList(), acknowledgment));
+        assertEquals(MESSAGES * ASSETS_PER_MESSAGE, assetsSeen.get());
+
+        System.out.printf("%d completion messages of %d assets: record listener %.0f msg/s, batch listener %.0f msg/s%n",
+            MESSAGES, ASSETS_PER_MESSAGE, MESSAGES / (recordNanos / 1e9), MESSAGES / (batchNanos / 1e9));
+
+        assertTrue(batchNanos < recordNanos, "The batch listener should beat parsing every record twice");
+    }
+
+    private void produce(String topic) throws Exception {
+        Map<String, Object> configProps = new HashMap<>();
+        configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+        configProps.put(ProducerConfig.LINGER_MS_CONFIG, 5);
+        try (KafkaProducer<String, byte[]> producer = new KafkaProducer<>(configProps)) {
+            for (int i = 0; i < MESSAGES; i++) {
+                producer.send(new ProducerRecord<>(topic, createMessage(i).getBytes(StandardCharsets.UTF_8)));
+            }
+            producer.flush();
+        }
+    }
+
+    /**
+     * Reads the whole topic with a new consumer group, timed from the first batch to the last record.
+     */
+    private long consume(String topic, BatchAcknowledgingMessageListener<String, byte[]> listener) throws Exception {
+        KafkaConfig kafkaConfig = new KafkaConfig(new StandardEnvironment());
+        ReflectionTestUtils.setField(kafkaConfig, "bootstrapServers", bootstrapServers);
+        ConcurrentMessageListenerContainer<String, byte[]> container =
+            kafkaConfig.marketDataBatchListenerFactory().createContainer(topic);
+        container.getContainerProperties().setGroupId("market-data-update-benchmark-" + UUID.randomUUID());
+        Properties consumerProperties = new Properties();
+        consumerProperties.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        container.getContainerProperties().setKafkaConsumerProperties(consumerProperties);
+
+        CountDownLatch received = new CountDownLatch(MESSAGES);
+        AtomicLong firstBatchNanos = new AtomicLong();
+        AtomicLong lastBatchNanos = new AtomicLong();
+        container.setupMessageListener((BatchAcknowledgingMessageListener<String, byte[]>) (records, acknowledgment) -> {
+            firstBatchNanos.compareAndSet(0, System.nanoTime());
+            listener.onMessage(records, acknowledgment);
+            lastBatchNanos.set(System.nanoTime());
+            records.forEach(record -> received.countDown());
+        });
+
+        container.start();
+        try {
+            assertTrue(received.await(2, TimeUnit.MINUTES), "All benchmark messages should be consumed");
+        } finally {
+            container.stop();
+        }
+        return lastBatchNanos.get() - firstBatchNanos.get();
+    }
+
+    private String createMessage(int message) {
+        StringBuilder json = new StringBuilder("{\"totalBatches\":1,\"processingTimeMs\":12,\"assets\":[");
+        for (int asset = 0; asset < ASSETS_PER_MESSAGE; asset++) {
+            if (asset > 0) {
+                json.append(',');
+            }
+            json.append("{\"symbol\":\"SYM").append(message * ASSETS_PER_MESSAGE + asset)
+                .append("\",\"asset_type\":\"STOCK\",\"price\":").append(100 + asset)
+                .append(".25,\"percent_change\":0.5,\"change\":0.5,\"high\":101.5,\"low\":99.5")
+                .append(",\"updated_at\":\"2024-01-02 10:00:00\"}");
+        }
+        return json.append("]}").toString();
+    }
+}
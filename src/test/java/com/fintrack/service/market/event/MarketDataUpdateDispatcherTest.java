@@ -0,0 +1,307 @@
+package com.fintrack.service.market.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fintrack.constants.finance.AssetType;
+import com.fintrack.model.market.MarketData;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.annotation.Order;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("MarketDataUpdateDispatcher Tests")
+class MarketDataUpdateDispatcherTest {
+
+    private static final String UPDATE =
+        "{\"assets\":[{\"symbol\":\"AAPL\",\"asset_type\":\"STOCK\",\"price\":150.5},"
+            + "{\"symbol\":\"EURUSD\",\"asset_type\":\"FOREX\",\"price\":1.08}]}";
+
+    @Mock
+    private Acknowledgment acknowledgment;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<String> calls = new ArrayList<>();
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    @DisplayName("Should call handlers in their order, whatever the bean order")
+    void shouldCallHandlersInOrder() {
+        // Given
+        MarketDataUpdateDispatcher dispatcher = dispatcher(
+            new DerivedStateHandler(calls), new CacheUpdateHandler(calls), new InvalidationHandler(calls));
+
+        // When
+        receive(dispatcher, UPDATE);
+
+        // Then
+        assertEquals(List.of("invalidation:2", "update:2", "derived:1"), calls);
+    }
+
+    @Test
+    @DisplayName("Should only pass the asset types a handler asked for")
+    void shouldFilterByAssetType() {
+        // Given
+        MarketDataUpdateDispatcher dispatcher = dispatcher(new DerivedStateHandler(calls));
+
+        // When
+        receive(dispatcher,
+            "{\"assets\":[{\"symbol\":\"AAPL\",\"asset_type\":\"STOCK\"},{\"symbol\":\"MSFT\",\"asset_type\":\"STOCK\"}]}");
+
+        // Then: No FOREX asset, so the handler is not called at all
+        assertTrue(calls.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should only call handlers for the kinds they asked for")
+    void shouldFilterByKind() {
+        // Given
+        MarketDataUpdateDispatcher dispatcher = dispatcher(
+            new InvalidationHandler(calls), new CacheUpdateHandler(calls), new DerivedStateHandler(calls));
+
+        // When
+        receive(dispatcher, "{\"error\":\"ETL failed\",\"errorType\":\"VALIDATION_ERROR\"}");
+        receive(dispatcher, "{\"full_refresh\":true}");
+
+        // Then
+        assertEquals(List.of("update:0", "invalidation:0", "update:0", "derived:0"), calls);
+    }
+
+    @Test
+    @DisplayName("Should keep calling the other handlers when one fails")
+    void shouldIsolateHandlerFailures() {
+        // Given
+        MarketDataUpdateDispatcher dispatcher = dispatcher(
+            new InvalidationHandler(calls), new FailingHandler(), new CacheUpdateHandler(calls));
+
+        // When
+        receive(dispatcher, UPDATE);
+
+        // Then
+        assertEquals(List.of("invalidation:2", "update:2"), calls);
+        assertEquals(1, meterRegistry.get("market.data.update.handler")
+            .tags("handler", "FailingHandler", "outcome", "error").timer().count());
+        assertEquals(1, meterRegistry.get("market.data.update.handler")
+            .tags("handler", "CacheUpdateHandler", "outcome", "success").timer().count());
+    }
+
+    @Test
+    @DisplayName("Should count unreadable messages without calling any handler")
+    void shouldCountUnreadableMessages() {
+        // Given
+        MarketDataUpdateDispatcher dispatcher = dispatcher(new InvalidationHandler(calls));
+
+        // When
+        receive(dispatcher, "not json", "", null, "null");
+
+        // Then: The batch is still acknowledged, so it is not read again
+        assertTrue(calls.isEmpty());
+        assertEquals(4, meterRegistry.get("market.data.update.unreadable").counter().count());
+        verify(acknowledgment).acknowledge();
+    }
+
+    @Test
+    @DisplayName("Should merge consecutive updates of a batch and keep refreshes in place")
+    void shouldMergeConsecutiveUpdates() {
+        // Given
+        MarketDataUpdateDispatcher dispatcher = dispatcher(new InvalidationHandler(calls), new PriceRecorder(calls));
+
+        // When
+        receive(dispatcher,
+            "{\"assets\":[{\"symbol\":\"AAPL\",\"asset_type\":\"STOCK\",\"price\":150}]}",
+            "{\"assets\":[{\"symbol\":\"AAPL\",\"asset_type\":\"STOCK\",\"price\":151},{\"symbol\":\"BTC\",\"asset_type\":\"CRYPTO\",\"price\":60000}]}",
+            "{\"full_refresh\":true}",
+            "{\"assets\":[{\"symbol\":\"MSFT\",\"asset_type\":\"STOCK\",\"price\":400}]}");
+
+        // Then: One write for the first two messages, with the latest AAPL price
+        assertEquals(List.of(
+            "invalidation:2", "prices:AAPL=151,BTC=60000",
+            "invalidation:0", "prices:",
+            "invalidation:1", "prices:MSFT=400"), calls);
+        verify(acknowledgment, times(1)).acknowledge();
+    }
+
+    @Test
+    @DisplayName("Should drop asset updates older than the last one applied")
+    void shouldDropStaleUpdates() {
+        // Given
+        MarketDataUpdateDispatcher dispatcher = dispatcher(new PriceRecorder(calls));
+        receive(dispatcher, "{\"assets\":[{\"symbol\":\"AAPL\",\"asset_type\":\"STOCK\",\"price\":151,"
+            + "\"updated_at\":\"2024-01-02 10:01:00\"}]}");
+
+        // When: A redelivered batch brings an older AAPL price, and AAPL is updated out of order within a batch
+        receive(dispatcher,
+            "{\"assets\":[{\"symbol\":\"AAPL\",\"asset_type\":\"STOCK\",\"price\":150,\"updated_at\":\"2024-01-02 10:00:00\"},"
+                + "{\"symbol\":\"MSFT\",\"asset_type\":\"STOCK\",\"price\":400,\"updated_at\":\"2024-01-02 10:00:00\"}]}");
+        receive(dispatcher,
+            "{\"assets\":[{\"symbol\":\"AAPL\",\"asset_type\":\"STOCK\",\"price\":153,\"updated_at\":\"2024-01-02 10:03:00\"}]}",
+            "{\"assets\":[{\"symbol\":\"AAPL\",\"asset_type\":\"STOCK\",\"price\":152,\"updated_at\":\"2024-01-02 10:02:00\"}]}");
+        receive(dispatcher,
+            "{\"assets\":[{\"symbol\":\"AAPL\",\"asset_type\":\"STOCK\",\"price\":150,\"updated_at\":\"2024-01-02 10:00:00\"}]}");
+
+        // Then: Only current prices reach the handler, and a fully stale event is not dispatched
+        assertEquals(List.of("prices:AAPL=151", "prices:MSFT=400", "prices:AAPL=153"), calls);
+        assertEquals(2, meterRegistry.get("market.data.update.stale").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should call cluster handlers from the shared group and node handlers from the node group")
+    void shouldDispatchByScope() {
+        // Given
+        MarketDataUpdateDispatcher dispatcher = dispatcher(new SharedCacheHandler(calls), new PriceRecorder(calls));
+        byte[] update = "{\"assets\":[{\"symbol\":\"AAPL\",\"asset_type\":\"STOCK\",\"price\":150,\"updated_at\":\"2024-01-02 10:00:00\"}]}"
+            .getBytes(StandardCharsets.UTF_8);
+
+        // When: Both groups read the same update
+        dispatcher.onSharedMarketDataUpdateBatch(List.of(update), acknowledgment);
+        dispatcher.onMarketDataUpdateBatch(List.of(update), acknowledgment);
+
+        // Then: Each handler runs once, and one group does not mark the update stale for the other
+        assertEquals(List.of("shared:1", "prices:AAPL=150"), calls);
+        assertEquals(0, meterRegistry.get("market.data.update.stale").counter().count());
+        verify(acknowledgment, times(2)).acknowledge();
+    }
+
+    @Test
+    @DisplayName("Should parse snake_case and camelCase assets into one event")
+    void shouldParseEvent() throws Exception {
+        // When
+        MarketDataUpdateEvent event = MarketDataUpdateEvent.fromJson(objectMapper,
+            "{\"totalBatches\":3,\"assets\":[{\"symbol\":\"AAPL\",\"asset_type\":\"stock\",\"price\":\"150.50\","
+                + "\"updated_at\":\"2024-01-02 10:00:00\"},{\"symbol\":\"BTC\",\"assetType\":\"CRYPTO\","
+                + "\"updatedAt\":\"2024-01-02T10:00:00Z\"},{\"symbol\":\"X\",\"asset_type\":\"UNKNOWN\"}]}");
+
+        // Then
+        assertEquals(MarketDataUpdateEvent.Kind.UPDATED, event.kind());
+        assertEquals(2, event.marketData().size());
+        MarketData stock = event.marketData().get(0);
+        assertEquals(AssetType.STOCK, stock.getAssetType());
+        assertEquals("150.50", stock.getPrice().toPlainString());
+        assertNotNull(stock.getUpdatedAt());
+        assertEquals(AssetType.CRYPTO, event.marketData().get(1).getAssetType());
+        assertEquals(3, event.metadata().get("totalBatches"));
+        assertFalse(event.metadata().containsKey("assets"));
+    }
+
+    private void receive(MarketDataUpdateDispatcher dispatcher, String... messages) {
+        List<byte[]> records = new ArrayList<>();
+        for (String message : messages) {
+            records.add(message != null ? message.getBytes(StandardCharsets.UTF_8) : null);
+        }
+        dispatcher.onMarketDataUpdateBatch(records, acknowledgment);
+    }
+
+    private MarketDataUpdateDispatcher dispatcher(MarketDataUpdateHandler... handlers) {
+        return new MarketDataUpdateDispatcher(objectMapper, List.of(handlers), meterRegistry);
+    }
+
+    private static String describe(String name, MarketDataUpdateEvent event) {
+        return name + ":" + event.marketData().size();
+    }
+
+    @Order(MarketDataUpdateHandler.CACHE_INVALIDATION_ORDER)
+    private record InvalidationHandler(List<String> calls) implements MarketDataUpdateHandler {
+        @Override
+        public Set<MarketDataUpdateEvent.Kind> eventKinds() {
+            return EnumSet.of(MarketDataUpdateEvent.Kind.UPDATED, MarketDataUpdateEvent.Kind.FULL_REFRESH);
+        }
+
+        @Override
+        public void onMarketDataUpdate(MarketDataUpdateEvent event) {
+            calls.add(describe("invalidation", event));
+        }
+    }
+
+    @Order(MarketDataUpdateHandler.CACHE_INVALIDATION_ORDER)
+    private record SharedCacheHandler(List<String> calls) implements MarketDataUpdateHandler {
+        @Override
+        public Set<MarketDataUpdateEvent.Kind> eventKinds() {
+            return EnumSet.of(MarketDataUpdateEvent.Kind.UPDATED, MarketDataUpdateEvent.Kind.FULL_REFRESH);
+        }
+
+        @Override
+        public Scope scope() {
+            return Scope.CLUSTER;
+        }
+
+        @Override
+        public void onMarketDataUpdate(MarketDataUpdateEvent event) {
+            calls.add(describe("shared", event));
+        }
+    }
+
+    @Order(MarketDataUpdateHandler.CACHE_UPDATE_ORDER)
+    private record CacheUpdateHandler(List<String> calls) implements MarketDataUpdateHandler {
+        @Override
+        public Set<MarketDataUpdateEvent.Kind> eventKinds() {
+            return EnumSet.allOf(MarketDataUpdateEvent.Kind.class);
+        }
+
+        @Override
+        public void onMarketDataUpdate(MarketDataUpdateEvent event) {
+            calls.add(describe("update", event));
+        }
+    }
+
+    @Order(MarketDataUpdateHandler.DERIVED_STATE_ORDER)
+    private record DerivedStateHandler(List<String> calls) implements MarketDataUpdateHandler {
+        @Override
+        public Set<MarketDataUpdateEvent.Kind> eventKinds() {
+            return EnumSet.of(MarketDataUpdateEvent.Kind.UPDATED, MarketDataUpdateEvent.Kind.FULL_REFRESH);
+        }
+
+        @Override
+        public Set<AssetType> assetTypes() {
+            return EnumSet.of(AssetType.FOREX);
+        }
+
+        @Override
+        public void onMarketDataUpdate(MarketDataUpdateEvent event) {
+            calls.add(describe("derived", event));
+        }
+    }
+
+    @Order(MarketDataUpdateHandler.CACHE_UPDATE_ORDER)
+    private record PriceRecorder(List<String> calls) implements MarketDataUpdateHandler {
+        @Override
+        public Set<MarketDataUpdateEvent.Kind> eventKinds() {
+            return EnumSet.of(MarketDataUpdateEvent.Kind.UPDATED, MarketDataUpdateEvent.Kind.FULL_REFRESH);
+        }
+
+        @Override
+        public void onMarketDataUpdate(MarketDataUpdateEvent event) {
+            calls.add("prices:" + event.marketData().stream()
+                .map(data -> data.getSymbol() + "=" + data.getPrice().toPlainString())
+                .collect(Collectors.joining(",")));
+        }
+    }
+
+    @Order(MarketDataUpdateHandler.CACHE_INVALIDATION_ORDER + 1)
+    private static class FailingHandler implements MarketDataUpdateHandler {
+        @Override
+        public Set<MarketDataUpdateEvent.Kind> eventKinds() {
+            return EnumSet.allOf(MarketDataUpdateEvent.Kind.class);
+        }
+
+        @Override
+        public void onMarketDataUpdate(MarketDataUpdateEvent event) {
+            throw new IllegalStateException("boom");
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.fintrack.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("KafkaProducerServiceImpl Tests")
+class KafkaProducerServiceImplTest {
+
+    private static final String BEST_EFFORT_TOPIC = "MARKET_DATA_UPDATE_REQUEST";
+    private static final String RELIABLE_TOPIC = "HISTORICAL_MARKET_DATA_REQUEST";
+
+    @Mock
+    private KafkaTemplate<String, String> kafkaTemplate;
+
+    private final MockEnvironment environment = new MockEnvironment();
+    private SimpleMeterRegistry meterRegistry;
+    private KafkaProducerServiceImpl producerService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        producerService = new KafkaProducerServiceImpl(kafkaTemplate, meterRegistry, environment);
+        ReflectionTestUtils.setField(producerService, "retryIntervalMillis", 10L);
+        ReflectionTestUtils.setField(producerService, "offerTimeoutMillis", 10L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        producerService.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should complete the future once the broker acknowledged the message")
+    void shouldCompleteFutureWhenSent() throws Exception {
+        // Given
+        when(kafkaTemplate.send(RELIABLE_TOPIC, null, "payload")).thenReturn(CompletableFuture.completedFuture(sendResult(RELIABLE_TOPIC)));
+
+        // When
+        producerService.publishEventAsync(RELIABLE_TOPIC, "payload").get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertEquals(1, meterRegistry.get("kafka.publish.latency")
+            .tags("topic", RELIABLE_TOPIC, "outcome", "success").timer().count());
+    }
+
+    @Test
+    @DisplayName("Should send the record key")
+    void shouldSendRecordKey() throws Exception {
+        // Given
+        when(kafkaTemplate.send(BEST_EFFORT_TOPIC, "STOCK", "payload"))
+            .thenReturn(CompletableFuture.completedFuture(sendResult(BEST_EFFORT_TOPIC)));
+
+        // When
+        producerService.publishEventAsync(BEST_EFFORT_TOPIC, "STOCK", "payload").get(5, TimeUnit.SECONDS);
+
+        // Then
+        verify(kafkaTemplate).send(BEST_EFFORT_TOPIC, "STOCK", "payload");
+    }
+
+    @Test
+    @DisplayName("Should retry a failed send without blocking the caller")
+    void shouldRetryFailedSends() throws Exception {
+        // Given
+        when(kafkaTemplate.send(RELIABLE_TOPIC, null, "payload"))
+            .thenReturn(CompletableFuture.failedFuture(new RuntimeException("Broker unavailable")))
+            .thenReturn(CompletableFuture.completedFuture(sendResult(RELIABLE_TOPIC)));
+
+        // When
+        producerService.publishEventAsync(RELIABLE_TOPIC, "payload").get(5, TimeUnit.SECONDS);
+
+        // Then
+        verify(kafkaTemplate, times(2)).send(RELIABLE_TOPIC, null, "payload");
+    }
+
+    @Test
+    @DisplayName("Should fail the future after the last attempt")
+    void shouldFailAfterLastAttempt() {
+        // Given
+        when(kafkaTemplate.send(RELIABLE_TOPIC, null, "payload"))
+            .thenReturn(CompletableFuture.failedFuture(new RuntimeException("Broker unavailable")));
+
+        // When
+        CompletableFuture<Void> future = producerService.publishEventAsync(RELIABLE_TOPIC, "payload");
+
+        // Then
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertEquals("Broker unavailable", e.getCause().getMessage());
+        verify(kafkaTemplate, times(3)).send(RELIABLE_TOPIC, null, "payload");
+        assertEquals(1, meterRegistry.get("kafka.publish.latency")
+            .tags("topic", RELIABLE_TOPIC, "outcome", "failure").timer().count());
+    }
+
+    @Test
+    @DisplayName("Should drop best-effort messages and reject others when the queue is full")
+    void shouldApplyQueuePoliciesWhenFull() throws Exception {
+        // Given: A broker that blocks the sender thread, and room for one more message
+        ReflectionTestUtils.setField(producerService, "queueCapacity", 1);
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch brokerBack = new CountDownLatch(1);
+        when(kafkaTemplate.send(anyString(), any(), anyString())).thenAnswer(invocation -> {
+            sending.countDown();
+            brokerBack.await(5, TimeUnit.SECONDS);
+            return CompletableFuture.completedFuture(sendResult(invocation.getArgument(0)));
+        });
+        producerService.publishEvent(RELIABLE_TOPIC, "first");
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+        producerService.publishEvent(RELIABLE_TOPIC, "second");
+
+        // When
+        CompletableFuture<Void> dropped = assertTimeoutPreemptively(Duration.ofSeconds(1),
+            () -> producerService.publishEventAsync(BEST_EFFORT_TOPIC, "hint"));
+
+        // Then: The hint is dropped right away, the reliable message is rejected after the offer timeout
+        assertTrue(dropped.isCompletedExceptionally());
+        assertDoesNotThrow(() -> producerService.publishEvent(BEST_EFFORT_TOPIC, "hint"));
+        assertThrows(RejectedExecutionException.class, () -> producerService.publishEvent(RELIABLE_TOPIC, "third"));
+        assertEquals(2, meterRegistry.get("kafka.publish.dropped").tags("topic", BEST_EFFORT_TOPIC).counter().count());
+        assertEquals(1, meterRegistry.get("kafka.publish.dropped").tags("topic", RELIABLE_TOPIC).counter().count());
+        assertEquals(1, meterRegistry.get("kafka.publish.queue.depth").gauge().value());
+
+        brokerBack.countDown();
+    }
+
+    @Test
+    @DisplayName("Should send topics with producer overrides through their own producer")
+    void shouldUseProducerOverridesPerTopic() {
+        // Given
+        environment.setProperty("kafka.publish.topics." + BEST_EFFORT_TOPIC + ".linger-ms", "20");
+        environment.setProperty("kafka.publish.topics." + BEST_EFFORT_TOPIC + ".compression-type", "lz4");
+        @SuppressWarnings("unchecked")
+        ProducerFactory<String, String> defaultFactory = mock(ProducerFactory.class);
+        @SuppressWarnings("unchecked")
+        ProducerFactory<String, String> overriddenFactory = mock(ProducerFactory.class);
+        when(kafkaTemplate.getProducerFactory()).thenReturn(defaultFactory);
+        when(defaultFactory.copyWithConfigurationOverride(anyMap())).thenReturn(overriddenFactory);
+
+        // When
+        producerService.publishEventAsync(BEST_EFFORT_TOPIC, "hint");
+
+        // Then
+        verify(defaultFactory, timeout(5000)).copyWithConfigurationOverride(
+            Map.of(ProducerConfig.LINGER_MS_CONFIG, 20, ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4"));
+        verify(kafkaTemplate, never()).send(anyString(), any(), anyString());
+    }
+
+    private static SendResult<String, String> sendResult(String topic) {
+        return new SendResult<>(new ProducerRecord<>(topic, "payload"),
+            new RecordMetadata(new TopicPartition(topic, 0), 0L, 0, 0L, 0, 0));
+    }
+}